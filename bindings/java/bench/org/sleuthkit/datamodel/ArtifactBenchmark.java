@@ -0,0 +1,136 @@
+/*
+ * Sleuth Kit Data Model
+ * 
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
+import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
+
+/**
+ * Benchmarks of adding and querying blackboard artifacts. The inserts add to
+ * the case as they run, so the case grows by the number of operations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ArtifactBenchmark {
+
+	/**
+	 * Number of artifacts added before the benchmarks run, so the queries
+	 * have rows to find.
+	 */
+	static final int INITIAL_ARTIFACTS = 10000;
+	/**
+	 * Number of artifacts added by one call of insertArtifactBatch().
+	 */
+	static final int BATCH_SIZE = 100;
+	private static final String MODULE_NAME = "ArtifactBenchmark"; //NON-NLS
+	private BenchmarkCase benchmarkCase;
+	private SleuthkitCase skCase;
+	private List<Long> fileIds;
+	private int next = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		benchmarkCase = BenchmarkCase.create();
+		skCase = benchmarkCase.getCase();
+		fileIds = benchmarkCase.getFileIds();
+		List<Long> objIds = new ArrayList<Long>();
+		List<List<BlackboardAttribute>> attributes = new ArrayList<List<BlackboardAttribute>>();
+		for (int i = 0; i < INITIAL_ARTIFACTS; ++i) {
+			objIds.add(fileIds.get(i % fileIds.size()));
+			attributes.add(Collections.singletonList(keyword(i)));
+		}
+		skCase.newBlackboardArtifacts(ARTIFACT_TYPE.TSK_KEYWORD_HIT, objIds, attributes);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		benchmarkCase.delete();
+	}
+
+	/**
+	 * Add one artifact with one attribute, the way most modules do.
+	 */
+	@Benchmark
+	public BlackboardArtifact insertArtifact() throws TskCoreException {
+		BlackboardArtifact artifact = skCase.newBlackboardArtifact(ARTIFACT_TYPE.TSK_KEYWORD_HIT, nextFileId());
+		artifact.addAttribute(keyword(next));
+		return artifact;
+	}
+
+	/**
+	 * Add BATCH_SIZE artifacts with one attribute each in one transaction.
+	 */
+	@Benchmark
+	public List<BlackboardArtifact> insertArtifactBatch() throws TskCoreException {
+		List<Long> objIds = new ArrayList<Long>(BATCH_SIZE);
+		List<List<BlackboardAttribute>> attributes = new ArrayList<List<BlackboardAttribute>>(BATCH_SIZE);
+		for (int i = 0; i < BATCH_SIZE; ++i) {
+			objIds.add(nextFileId());
+			attributes.add(Collections.singletonList(keyword(next)));
+		}
+		return skCase.newBlackboardArtifacts(ARTIFACT_TYPE.TSK_KEYWORD_HIT, objIds, attributes);
+	}
+
+	/**
+	 * Get the artifacts of one file.
+	 */
+	@Benchmark
+	public List<BlackboardArtifact> getArtifactsOfFile() throws TskCoreException {
+		return skCase.getBlackboardArtifacts(ARTIFACT_TYPE.TSK_KEYWORD_HIT, nextFileId());
+	}
+
+	/**
+	 * Find the artifacts with a given attribute value.
+	 */
+	@Benchmark
+	public List<BlackboardArtifact> getArtifactsByAttribute() throws TskCoreException {
+		nextFileId();
+		return skCase.getBlackboardArtifacts(ATTRIBUTE_TYPE.TSK_KEYWORD, "keyword" + (next % INITIAL_ARTIFACTS)); //NON-NLS
+	}
+
+	private long nextFileId() {
+		next = (next + 1) % fileIds.size();
+		return fileIds.get(next);
+	}
+
+	private static BlackboardAttribute keyword(int i) {
+		return new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_KEYWORD.getTypeID(), MODULE_NAME, "keyword" + i); //NON-NLS
+	}
+}
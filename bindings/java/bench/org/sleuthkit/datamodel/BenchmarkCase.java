@@ -0,0 +1,148 @@
+/*
+ * Sleuth Kit Data Model
+ * 
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A synthetic case for the benchmarks, so they run without evidence images.
+ *
+ * The case is written by CaseGenerator. Its image is a raw file of random
+ * bytes. The case has one file system whose root directory holds one
+ * directory for each of DIRECTORY_SIZES, with that many files, and
+ * LAYOUT_FILE_COUNT unallocated space files whose ranges are spread over the
+ * image. It has no artifacts or tags. The file system files can not be read,
+ * since the image holds no real file system, but the layout files can.
+ */
+final class BenchmarkCase {
+
+	static final int[] DIRECTORY_SIZES = {10, 1000, 10000};
+	static final long IMAGE_SIZE = 64L * 1024 * 1024;
+	static final int LAYOUT_FILE_COUNT = 16;
+	static final int RANGES_PER_LAYOUT_FILE = 8;
+	static final int RANGE_SIZE = 256 * 1024;
+	private final File dir;
+	private final Map<Integer, Integer> directories = new HashMap<Integer, Integer>();
+	private final List<Long> fileIds = new ArrayList<Long>();
+	private final List<Long> layoutFileIds = new ArrayList<Long>();
+	private CaseGenerator generator;
+	private String imagePath;
+	private SleuthkitCase skCase;
+
+	private BenchmarkCase(File dir) {
+		this.dir = dir;
+	}
+
+	/**
+	 * Create the image and the case in a new temporary directory, and open
+	 * the case.
+	 */
+	static BenchmarkCase create() throws IOException, SQLException, TskCoreException, InterruptedException {
+		File dir = File.createTempFile("tskbench", ""); //NON-NLS
+		if (!dir.delete() || !dir.mkdir()) {
+			throw new IOException("Could not create directory " + dir); //NON-NLS
+		}
+		BenchmarkCase benchmarkCase = new BenchmarkCase(dir);
+		benchmarkCase.generate();
+		return benchmarkCase;
+	}
+
+	SleuthkitCase getCase() {
+		return skCase;
+	}
+
+	String getImagePath() {
+		return imagePath;
+	}
+
+	/**
+	 * @return object id of the directory with the given number of files, one
+	 * of DIRECTORY_SIZES
+	 */
+	long getDirectoryId(int size) {
+		return generator.getDirectoryId(directories.get(size));
+	}
+
+	/**
+	 * @return parent path of the files of the directory with the given
+	 * number of files, one of DIRECTORY_SIZES
+	 */
+	String getDirectoryPath(int size) {
+		return generator.getDirectoryPath(directories.get(size));
+	}
+
+	/**
+	 * @return object ids of all the file system files
+	 */
+	List<Long> getFileIds() {
+		return fileIds;
+	}
+
+	/**
+	 * @return object ids of the unallocated space files
+	 */
+	List<Long> getLayoutFileIds() {
+		return layoutFileIds;
+	}
+
+	/**
+	 * Close the case and delete its directory.
+	 */
+	void delete() {
+		if (skCase != null) {
+			skCase.close();
+		}
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		dir.delete();
+	}
+
+	private void generate() throws IOException, SQLException, TskCoreException, InterruptedException {
+		generator = new CaseGenerator(new CaseGenerator.Config()
+				.setDirectorySizes(DIRECTORY_SIZES)
+				.setHashes(0, 0)
+				.setArtifacts(0)
+				.setTags(0, 0, 0)
+				.setImageSize(IMAGE_SIZE)
+				.setLayout(LAYOUT_FILE_COUNT, RANGES_PER_LAYOUT_FILE, RANGE_SIZE));
+		CaseGenerator.Result result = generator.generate(dir);
+		imagePath = result.getImagePath();
+		long file = 0;
+		for (int d = 0; d < DIRECTORY_SIZES.length; ++d) {
+			directories.put(DIRECTORY_SIZES[d], d + 1);
+			for (int i = 0; i < DIRECTORY_SIZES[d]; ++i) {
+				fileIds.add(generator.getFileId(file++));
+			}
+		}
+		for (int i = 0; i < LAYOUT_FILE_COUNT; ++i) {
+			layoutFileIds.add(generator.getLayoutFileId(i));
+		}
+		skCase = SleuthkitCase.openCase(result.getDbPath());
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Sleuth Kit Data Model
+ * 
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of looking up files in the case database and creating their
+ * objects.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CaseDbBenchmark {
+
+	/**
+	 * The size of the directory used by the directory benchmarks.
+	 */
+	@State(Scope.Benchmark)
+	public static class DirectorySize {
+
+		@Param({"10", "1000", "10000"})
+		public int files;
+	}
+	private BenchmarkCase benchmarkCase;
+	private SleuthkitCase skCase;
+	private long[] fileIds;
+	private int next = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		benchmarkCase = BenchmarkCase.create();
+		skCase = benchmarkCase.getCase();
+		List<Long> ids = benchmarkCase.getFileIds();
+		fileIds = new long[ids.size()];
+		for (int i = 0; i < fileIds.length; ++i) {
+			fileIds[i] = ids.get(i);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		benchmarkCase.delete();
+	}
+
+	/**
+	 * Look up one file by id, going through the files in turn.
+	 */
+	@Benchmark
+	public Content getContentById() throws TskCoreException {
+		long id = fileIds[next];
+		next = (next + 1) % fileIds.length;
+		return skCase.getContentById(id);
+	}
+
+	/**
+	 * List the children of a directory, from a new directory object so no
+	 * children are cached.
+	 */
+	@Benchmark
+	public List<Content> getChildren(DirectorySize size) throws TskCoreException {
+		return skCase.getContentById(benchmarkCase.getDirectoryId(size.files)).getChildren();
+	}
+
+	/**
+	 * Query the rows of the files of a directory and create an AbstractFile
+	 * for each, which is what resultSetToAbstractFiles() does for most file
+	 * queries.
+	 */
+	@Benchmark
+	public List<AbstractFile> hydrateFiles(DirectorySize size) throws TskCoreException {
+		return skCase.findAllFilesWhere("parent_path = '" + benchmarkCase.getDirectoryPath(size.files) + "'"); //NON-NLS
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2014 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sleuthkit.datamodel.TskData.FileKnown;
+import org.sleuthkit.datamodel.TskData.TSK_DB_FILES_TYPE_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_META_FLAG_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_META_MODE_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_META_TYPE_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_NAME_FLAG_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_NAME_TYPE_ENUM;
+
+/**
+ * Benchmarks of decoding the enum and flag columns of tsk_files rows, as done
+ * for every file by SleuthkitCase, with the lookup tables in TskData and with
+ * the values() scans they replaced. One operation decodes all the columns of
+ * ROWS synthetic rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EnumDecodeBenchmark {
+
+	static final int ROWS = 10000;
+	private final short[] dirTypes = new short[ROWS];
+	private final short[] metaTypes = new short[ROWS];
+	private final short[] dirFlags = new short[ROWS];
+	private final short[] metaFlags = new short[ROWS];
+	private final short[] modes = new short[ROWS];
+	private final byte[] known = new byte[ROWS];
+	private final short[] fileTypes = new short[ROWS];
+
+	/**
+	 * Fill the columns with realistic values.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(0);
+		for (int i = 0; i < ROWS; ++i) {
+			dirTypes[i] = (short) (random.nextBoolean() ? 5 : 3);
+			metaTypes[i] = (short) (dirTypes[i] == 5 ? 1 : 2);
+			dirFlags[i] = (short) (random.nextInt(10) == 0 ? 2 : 1);
+			metaFlags[i] = (short) (dirFlags[i] == 1 ? 5 : 6);
+			modes[i] = (short) 0644;
+			known[i] = (byte) random.nextInt(3);
+			fileTypes[i] = (short) random.nextInt(7);
+		}
+	}
+
+	/**
+	 * Decode the rows with the valueOf() and valuesOf() lookup tables.
+	 */
+	@Benchmark
+	public long decodeWithTables() {
+		long sink = 0;
+		for (int i = 0; i < ROWS; ++i) {
+			sink += TSK_FS_NAME_TYPE_ENUM.valueOf(dirTypes[i]).ordinal();
+			sink += TSK_FS_META_TYPE_ENUM.valueOf(metaTypes[i]).ordinal();
+			sink += TSK_FS_NAME_FLAG_ENUM.valueOf(dirFlags[i]).ordinal();
+			sink += TSK_FS_META_FLAG_ENUM.valuesOf(metaFlags[i]).size();
+			sink += TSK_FS_META_MODE_ENUM.valuesOf(modes[i]).size();
+			sink += FileKnown.valueOf(known[i]).ordinal();
+			sink += TSK_DB_FILES_TYPE_ENUM.valueOf(fileTypes[i]).ordinal();
+		}
+		return sink;
+	}
+
+	/**
+	 * Decode the rows by scanning values(), the baseline.
+	 */
+	@Benchmark
+	public long decodeWithScans() {
+		long sink = 0;
+		for (int i = 0; i < ROWS; ++i) {
+			sink += scanNameType(dirTypes[i]).ordinal();
+			sink += scanMetaType(metaTypes[i]).ordinal();
+			sink += scanNameFlag(dirFlags[i]).ordinal();
+			sink += scanMetaFlags(metaFlags[i]).size();
+			sink += scanModes(modes[i]).size();
+			sink += scanKnown(known[i]).ordinal();
+			sink += scanFileType(fileTypes[i]).ordinal();
+		}
+		return sink;
+	}
+
+	private static TSK_FS_NAME_TYPE_ENUM scanNameType(short value) {
+		for (TSK_FS_NAME_TYPE_ENUM v : TSK_FS_NAME_TYPE_ENUM.values()) {
+			if (v.getValue() == value) {
+				return v;
+			}
+		}
+		throw new IllegalArgumentException();
+	}
+
+	private static TSK_FS_META_TYPE_ENUM scanMetaType(short value) {
+		for (TSK_FS_META_TYPE_ENUM v : TSK_FS_META_TYPE_ENUM.values()) {
+			if (v.getValue() == value) {
+				return v;
+			}
+		}
+		throw new IllegalArgumentException();
+	}
+
+	private static TSK_FS_NAME_FLAG_ENUM scanNameFlag(short value) {
+		for (TSK_FS_NAME_FLAG_ENUM v : TSK_FS_NAME_FLAG_ENUM.values()) {
+			if (v.getValue() == value) {
+				return v;
+			}
+		}
+		throw new IllegalArgumentException();
+	}
+
+	private static Set<TSK_FS_META_FLAG_ENUM> scanMetaFlags(short value) {
+		Set<TSK_FS_META_FLAG_ENUM> flags = EnumSet.noneOf(TSK_FS_META_FLAG_ENUM.class);
+		for (TSK_FS_META_FLAG_ENUM v : TSK_FS_META_FLAG_ENUM.values()) {
+			if ((value & v.getValue()) == v.getValue()) {
+				flags.add(v);
+			}
+		}
+		return flags;
+	}
+
+	private static Set<TSK_FS_META_MODE_ENUM> scanModes(short value) {
+		Set<TSK_FS_META_MODE_ENUM> modes = EnumSet.noneOf(TSK_FS_META_MODE_ENUM.class);
+		for (TSK_FS_META_MODE_ENUM v : TSK_FS_META_MODE_ENUM.values()) {
+			if ((value & v.getMode()) == v.getMode()) {
+				modes.add(v);
+			}
+		}
+		return modes;
+	}
+
+	private static FileKnown scanKnown(byte value) {
+		for (FileKnown v : FileKnown.values()) {
+			if (v.getFileKnownValue() == value) {
+				return v;
+			}
+		}
+		throw new IllegalArgumentException();
+	}
+
+	private static TSK_DB_FILES_TYPE_ENUM scanFileType(short value) {
+		for (TSK_DB_FILES_TYPE_ENUM v : TSK_DB_FILES_TYPE_ENUM.values()) {
+			if (v.getFileType() == value) {
+				return v;
+			}
+		}
+		throw new IllegalArgumentException();
+	}
+}
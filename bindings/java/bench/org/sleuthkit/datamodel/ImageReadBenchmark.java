@@ -0,0 +1,139 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2014 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of how image read throughput scales with the number of reading
+ * threads, with and without a pool of image handles. Each operation reads a
+ * random 64KB block of the image, so the score times 64KB is the throughput.
+ *
+ * The image of BenchmarkCase is read unless another one is given, preferably
+ * a large E01, with -p image=path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImageReadBenchmark {
+
+	static final int READ_SIZE = 64 * 1024;
+
+	/**
+	 * The image to read, or the empty string for the image of BenchmarkCase.
+	 */
+	@Param({""})
+	public String image;
+
+	/**
+	 * The image handle pool size. A pool of 8 handles gives each thread its
+	 * own handle in all the benchmarks, since the pool only opens another
+	 * handle when all the open ones are in use.
+	 */
+	@Param({"1", "8"})
+	public int poolSize;
+
+	/**
+	 * The state of one reading thread.
+	 */
+	@State(Scope.Thread)
+	public static class Reader {
+
+		private final Random random = new Random();
+		private final byte[] buf = new byte[READ_SIZE];
+	}
+	private BenchmarkCase benchmarkCase;
+	private long imageHandle;
+	private long blocks;
+	private int previousPoolSize;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		long imageSize;
+		if (image.isEmpty()) {
+			benchmarkCase = BenchmarkCase.create();
+			imageHandle = benchmarkCase.getCase().getImages().get(0).getImageHandle();
+			imageSize = BenchmarkCase.IMAGE_SIZE;
+		} else {
+			imageHandle = SleuthkitJNI.openImage(new String[]{image});
+			imageSize = SleuthkitJNI.findDeviceSize(image);
+		}
+		blocks = Math.max(1, imageSize / READ_SIZE);
+		NativeHandleManager manager = SleuthkitJNI.getHandleManager();
+		previousPoolSize = manager.getImageHandlePoolSize();
+		manager.setImageHandlePoolSize(poolSize);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		SleuthkitJNI.getHandleManager().setImageHandlePoolSize(previousPoolSize);
+		if (benchmarkCase != null) {
+			benchmarkCase.delete();
+		} else {
+			SleuthkitJNI.closeImg(imageHandle);
+		}
+	}
+
+	@Benchmark
+	@Threads(1)
+	public int read1Thread(Reader reader) throws TskCoreException {
+		return read(reader);
+	}
+
+	@Benchmark
+	@Threads(2)
+	public int read2Threads(Reader reader) throws TskCoreException {
+		return read(reader);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public int read4Threads(Reader reader) throws TskCoreException {
+		return read(reader);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public int read8Threads(Reader reader) throws TskCoreException {
+		return read(reader);
+	}
+
+	private int read(Reader reader) throws TskCoreException {
+		long offset = (long) (reader.random.nextDouble() * blocks) * READ_SIZE;
+		return SleuthkitJNI.readImg(imageHandle, reader.buf, offset, READ_SIZE);
+	}
+}
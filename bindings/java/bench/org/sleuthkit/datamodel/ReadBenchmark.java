@@ -0,0 +1,137 @@
+/*
+ * Sleuth Kit Data Model
+ * 
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of reading content through the layers above the native code:
+ * SleuthkitJNI calls, LayoutFile reads of ranges of the image,
+ * ReadContentInputStream and MD5 hashing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReadBenchmark {
+
+	/**
+	 * The number of bytes read by one call of the read call benchmarks.
+	 */
+	@State(Scope.Benchmark)
+	public static class ReadSize {
+
+		@Param({"512", "4096", "65536"})
+		public int bytes;
+	}
+	private BenchmarkCase benchmarkCase;
+	private long imageHandle;
+	private LayoutFile[] layoutFiles;
+	private final Random random = new Random(0);
+	private final byte[] buf = new byte[1024 * 1024];
+	private int next = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		benchmarkCase = BenchmarkCase.create();
+		SleuthkitCase skCase = benchmarkCase.getCase();
+		imageHandle = skCase.getImages().get(0).getImageHandle();
+		layoutFiles = new LayoutFile[benchmarkCase.getLayoutFileIds().size()];
+		for (int i = 0; i < layoutFiles.length; ++i) {
+			layoutFiles[i] = (LayoutFile) skCase.getAbstractFileById(benchmarkCase.getLayoutFileIds().get(i));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		benchmarkCase.delete();
+	}
+
+	/**
+	 * Read from a random offset of the image with one JNI call; with small
+	 * reads this is mostly the cost of the call.
+	 */
+	@Benchmark
+	public int readImage(ReadSize size) throws TskCoreException {
+		long offset = (long) (random.nextDouble() * (BenchmarkCase.IMAGE_SIZE - size.bytes));
+		return SleuthkitJNI.readImg(imageHandle, buf, offset, size.bytes);
+	}
+
+	/**
+	 * Read from a random offset of a layout file, which maps the read to
+	 * the ranges of the file in the image.
+	 */
+	@Benchmark
+	public int readLayoutFile(ReadSize size) throws TskCoreException {
+		LayoutFile file = nextLayoutFile();
+		long offset = (long) (random.nextDouble() * (file.getSize() - size.bytes));
+		return file.read(buf, offset, size.bytes);
+	}
+
+	/**
+	 * Read a whole layout file through a ReadContentInputStream, in 8KB
+	 * reads.
+	 */
+	@Benchmark
+	public long readContentInputStream() throws IOException {
+		InputStream in = new ReadContentInputStream(nextLayoutFile());
+		try {
+			byte[] chunk = new byte[8 * 1024];
+			long total = 0;
+			int len;
+			while ((len = in.read(chunk)) != -1) {
+				total += len;
+			}
+			return total;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Hash a whole layout file, which also stores the hash in the case.
+	 */
+	@Benchmark
+	public String calculateMd5() throws IOException {
+		return HashUtility.calculateMd5(nextLayoutFile());
+	}
+
+	private LayoutFile nextLayoutFile() {
+		next = (next + 1) % layoutFiles.length;
+		return layoutFiles[next];
+	}
+}
@@ -20,6 +20,12 @@
 #include <string>
 #include <algorithm>
 #include <sstream>
+#ifdef TSK_WIN32
+#include <io.h>
+#include <fcntl.h>
+#else
+#include <unistd.h>
+#endif
 using std::string;
 using std::vector;
 using std::map;
@@ -828,10 +834,13 @@ JNIEXPORT jobject JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_hashDbLookup
  * @param timezone timezone for the image
  * @param addUnallocSpace whether to process unallocated filesystem blocks and volumes in the image
  * @param noFatFsOrphans whether to skip processing orphans on FAT filesystems
+ * @param unallocChunkSize number of bytes to group unallocated space into (0 for one chunk per volume, -1 for one per run)
+ * @param parallelUnalloc whether to walk the unallocated blocks of each filesystem on its own thread
  */
 JNIEXPORT jlong JNICALL
     Java_org_sleuthkit_datamodel_SleuthkitJNI_initAddImgNat(JNIEnv * env,
-    jclass obj, jlong caseHandle, jstring timezone, jboolean addUnallocSpace, jboolean noFatFsOrphans) {
+    jclass obj, jlong caseHandle, jstring timezone, jboolean addUnallocSpace, jboolean noFatFsOrphans,
+    jlong unallocChunkSize, jboolean parallelUnalloc) {
     jboolean isCopy;
 
     TskCaseDb *tskCase = castCaseDb(env, caseHandle);
@@ -875,7 +884,8 @@ JNIEXPORT jlong JNICALL
 
     // set the options flags
     if (addUnallocSpace) {
-        tskAuto->setAddUnallocSpace(true, 500*1024*1024);
+        tskAuto->setAddUnallocSpace(true, (int64_t) unallocChunkSize);
+        tskAuto->setParallelUnallocSpace(parallelUnalloc?true:false);
     }
     else {
         tskAuto->setAddUnallocSpace(false);
@@ -1342,6 +1352,152 @@ Java_org_sleuthkit_datamodel_SleuthkitJNI_readImgNat(JNIEnv * env,
 }
 
 
+/** Comparator that orders indices into an array of image offsets by offset. */
+class ImgRangeOffsetLess {
+  public:
+    ImgRangeOffsetLess(const jlong * a_offsets) : m_offsets(a_offsets) {}
+    bool operator()(jsize a, jsize b) const {
+        return m_offsets[a] < m_offsets[b];
+    }
+  private:
+    const jlong * m_offsets;
+};
+
+/*
+ * Read a list of byte ranges from the given image into one java buffer.
+ * Ranges are read in image offset order and ranges that are adjacent in both
+ * the image and the buffer are read with a single tsk_img_read call. 
+ * @return number of bytes read, counting ranges in the order given and
+ * stopping at the first range that could not be read in full, -1 on error
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @param a_img_info the pointer to the image object
+ * @param jbuf the buffer to write to
+ * @param jimgOffsets byte offset in the image of each range
+ * @param jlens length of each range
+ * @param jbufOffsets offset in jbuf to write each range to
+ */
+JNIEXPORT jint JNICALL
+Java_org_sleuthkit_datamodel_SleuthkitJNI_readImgRangesNat(JNIEnv * env,
+    jclass obj, jlong a_img_info, jbyteArray jbuf, jlongArray jimgOffsets,
+    jlongArray jlens, jintArray jbufOffsets)
+{
+    TSK_IMG_INFO *img_info = castImgInfo(env, a_img_info);
+    if (img_info == 0) {
+        //exception already set
+        return -1;
+    }
+
+    jsize numRanges = env->GetArrayLength(jimgOffsets);
+    if (env->GetArrayLength(jlens) != numRanges
+        || env->GetArrayLength(jbufOffsets) != numRanges) {
+        setThrowTskCoreError(env, "readImgRangesNat: range arrays have different lengths");
+        return -1;
+    }
+    if (numRanges == 0) {
+        return 0;
+    }
+
+    std::vector<jlong> imgOffsets(numRanges);
+    std::vector<jlong> lens(numRanges);
+    std::vector<jint> bufOffsets(numRanges);
+    env->GetLongArrayRegion(jimgOffsets, 0, numRanges, &imgOffsets[0]);
+    env->GetLongArrayRegion(jlens, 0, numRanges, &lens[0]);
+    env->GetIntArrayRegion(jbufOffsets, 0, numRanges, &bufOffsets[0]);
+
+    jsize jbuflen = env->GetArrayLength(jbuf);
+    size_t maxLen = 0;
+    for (jsize i = 0; i < numRanges; i++) {
+        if (lens[i] < 0 || bufOffsets[i] < 0 || bufOffsets[i] + lens[i] > jbuflen) {
+            setThrowTskCoreError(env, "readImgRangesNat: range does not fit in buffer");
+            return -1;
+        }
+    }
+
+    // sort by image offset and merge runs that are contiguous in the image and the buffer
+    std::vector<jsize> order(numRanges);
+    for (jsize i = 0; i < numRanges; i++) {
+        order[i] = i;
+    }
+    std::stable_sort(order.begin(), order.end(), ImgRangeOffsetLess(&imgOffsets[0]));
+
+    // groups[g] is the first index into order of group g
+    std::vector<jsize> groups;
+    std::vector<jlong> groupLens;
+    for (jsize i = 0; i < numRanges; i++) {
+        jsize cur = order[i];
+        if (i > 0) {
+            jsize prev = order[i - 1];
+            if (imgOffsets[prev] + lens[prev] == imgOffsets[cur]
+                && bufOffsets[prev] + lens[prev] == bufOffsets[cur]) {
+                groupLens.back() += lens[cur];
+                continue;
+            }
+        }
+        groups.push_back(i);
+        groupLens.push_back(lens[cur]);
+    }
+    for (size_t g = 0; g < groupLens.size(); g++) {
+        if ((size_t) groupLens[g] > maxLen)
+            maxLen = (size_t) groupLens[g];
+    }
+
+    //use fixed size stack-allocated buffer if possible
+    char fixed_buf [FIXED_BUF_SIZE];
+    char * buf = fixed_buf;
+    bool dynBuf = false;
+    if (maxLen > FIXED_BUF_SIZE) {
+        dynBuf = true;
+        buf = (char *) tsk_malloc(maxLen);
+        if (buf == NULL) {
+            setThrowTskCoreError(env);
+            return -1;
+        }
+    }
+
+    // number of bytes read for each range, in the original order
+    std::vector<jlong> readLens(numRanges, 0);
+    for (size_t g = 0; g < groups.size(); g++) {
+        jsize first = order[groups[g]];
+        ssize_t bytesread = 0;
+        if (groupLens[g] > 0) {
+            bytesread = tsk_img_read(img_info, (TSK_OFF_T) imgOffsets[first], buf, (size_t) groupLens[g]);
+        }
+        if (bytesread == -1) {
+            if (dynBuf) {
+                free(buf);
+            }
+            setThrowTskCoreError(env, tsk_error_get());
+            return -1;
+        }
+        if (bytesread > 0) {
+            env->SetByteArrayRegion(jbuf, bufOffsets[first], (jsize) bytesread, (jbyte *) buf);
+        }
+
+        // hand out what was read to the ranges in the group
+        size_t end = (g + 1 < groups.size()) ? (size_t) groups[g + 1] : (size_t) numRanges;
+        jlong left = bytesread;
+        for (size_t i = groups[g]; i < end; i++) {
+            jsize cur = order[i];
+            readLens[cur] = (left < lens[cur]) ? left : lens[cur];
+            left -= readLens[cur];
+        }
+    }
+
+    if (dynBuf) {
+        free(buf);
+    }
+
+    jlong total = 0;
+    for (jsize i = 0; i < numRanges; i++) {
+        total += readLens[i];
+        if (readLens[i] != lens[i])
+            break;
+    }
+    return (jint) total;
+}
+
+
 /*
  * Read bytes from the given volume system
  * @return number of bytes read from the volume system, -1 on error
@@ -1605,47 +1761,444 @@ Java_org_sleuthkit_datamodel_SleuthkitJNI_readFileNat(JNIEnv * env,
 
 
 /**
- * Runs istat on a given file and saves the output to a temp file.
- *
- * @returns -1 on error (and throws exception)
+ * Get the file handle for the istat / meta data calls and check its pointers.
+ * @returns NULL on error (and throws exception)
  */
-JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_saveFileMetaDataTextNat
-  (JNIEnv *env, jclass obj, jlong a_file_handle, jstring a_tmp_path)
+static const TSK_JNI_FILEHANDLE *
+castMetaFile(JNIEnv * env, jlong a_file_handle)
 {
     const TSK_JNI_FILEHANDLE *file_handle = castFsFile(env, a_file_handle);
     if (file_handle == 0) {
         //exception already set
-        return -1;
+        return NULL;
     }
     
     // check the pointers
     if (file_handle->fs_file == NULL || file_handle->fs_file->fs_info == NULL || file_handle->fs_file->meta == NULL) {
         setThrowTskCoreError(env, "NULL pointers for istat file.");
-        return -1;
+        return NULL;
+    }
+    return file_handle;
+}
+
+#ifdef TSK_MULTITHREAD_LIB
+/**
+ * The read end of a pipe and what has been read from it.
+ */
+typedef struct {
+    int readFd;
+    std::string data;
+} TSK_JNI_PIPE_READER;
+
+/**
+ * Read from a pipe into a growable buffer until the write end is closed, so
+ * that a writer on another thread never blocks on a full pipe.
+ */
+#ifdef TSK_WIN32
+static DWORD WINAPI readPipeThread(LPVOID a_reader)
+{
+    TSK_JNI_PIPE_READER *reader = (TSK_JNI_PIPE_READER *) a_reader;
+    char buf[4096];
+    int count;
+    while ((count = _read(reader->readFd, buf, sizeof(buf))) > 0) {
+        reader->data.append(buf, count);
+    }
+    return 0;
+}
+#else
+static void *readPipeThread(void *a_reader)
+{
+    TSK_JNI_PIPE_READER *reader = (TSK_JNI_PIPE_READER *) a_reader;
+    char buf[4096];
+    ssize_t count;
+    while ((count = read(reader->readFd, buf, sizeof(buf))) > 0) {
+        reader->data.append(buf, (size_t) count);
+    }
+    return NULL;
+}
+#endif
+#endif
+
+/**
+ * Runs istat on a given file and returns the output. The output is written 
+ * to a pipe that is read into memory on another thread, the same on every
+ * platform, so that no file is created. Builds without thread support write
+ * it to an anonymous temp file instead.
+ *
+ * @returns istat output as UTF-8 bytes, NULL on error (and throws exception)
+ */
+JNIEXPORT jbyteArray JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_getFileMetaDataTextNat
+  (JNIEnv *env, jclass obj, jlong a_file_handle)
+{
+    const TSK_JNI_FILEHANDLE *file_handle = castMetaFile(env, a_file_handle);
+    if (file_handle == NULL) {
+        //exception already set
+        return NULL;
     }
     TSK_FS_INFO *fs_info = file_handle->fs_file->fs_info;   
 
-    // open a file to write the details to
-    jboolean isCopy;
-    char *str8 = (char *) env->GetStringUTFChars(a_tmp_path, &isCopy);
-    FILE *hFile = fopen(str8, "w");
+#ifdef TSK_MULTITHREAD_LIB
+    int fds[2];
+#ifdef TSK_WIN32
+    if (_pipe(fds, 65536, _O_BINARY) != 0) {
+#else
+    if (pipe(fds) != 0) {
+#endif
+        setThrowTskCoreError(env, "Couldn't open istat pipe for writing.");
+        return NULL;
+    }
+
+    TSK_JNI_PIPE_READER reader;
+    reader.readFd = fds[0];
+#ifdef TSK_WIN32
+    HANDLE thread = CreateThread(NULL, 0, readPipeThread, &reader, 0, NULL);
+    if (thread == NULL) {
+        _close(fds[0]);
+        _close(fds[1]);
+#else
+    pthread_t thread;
+    if (pthread_create(&thread, NULL, readPipeThread, &reader) != 0) {
+        close(fds[0]);
+        close(fds[1]);
+#endif
+        setThrowTskCoreError(env, "Couldn't start istat pipe reader thread.");
+        return NULL;
+    }
+
+    // closing the write end ends the reader thread
+#ifdef TSK_WIN32
+    FILE *hFile = _fdopen(fds[1], "wb");
+    if (hFile == NULL) {
+        _close(fds[1]);
+    }
+#else
+    FILE *hFile = fdopen(fds[1], "w");
+    if (hFile == NULL) {
+        close(fds[1]);
+    }
+#endif
+    uint8_t ret = 1;
+    if (hFile != NULL) {
+        ret = fs_info->istat(fs_info, hFile, file_handle->fs_file->meta->addr, 0, 0);
+        fclose(hFile);
+    }
+#ifdef TSK_WIN32
+    WaitForSingleObject(thread, INFINITE);
+    CloseHandle(thread);
+    _close(fds[0]);
+#else
+    pthread_join(thread, NULL);
+    close(fds[0]);
+#endif
+    if (hFile == NULL) {
+        setThrowTskCoreError(env, "Couldn't open istat pipe for writing.");
+        return NULL;
+    }
+    if (ret != 0) {
+        setThrowTskCoreError(env);
+        return NULL;
+    }
+    const char *buf = reader.data.data();
+    size_t bufLen = reader.data.size();
+#else
+    FILE *hFile = tmpfile();
     if (hFile == NULL) {
-        env->ReleaseStringUTFChars(a_tmp_path, str8);
         setThrowTskCoreError(env, "Couldn't open istat temp file for writing.");
-        return -1;
+        return NULL;
     }
-    env->ReleaseStringUTFChars(a_tmp_path, str8);
     
     if (fs_info->istat(fs_info, hFile, file_handle->fs_file->meta->addr, 0, 0) != 0) {
         fclose(hFile);
         setThrowTskCoreError(env);
-        return -1;
+        return NULL;
     }
 
+    long len = ftell(hFile);
+    if (len < 0 || fseek(hFile, 0, SEEK_SET) != 0) {
+        fclose(hFile);
+        setThrowTskCoreError(env, "Couldn't read istat temp file.");
+        return NULL;
+    }
+    std::string data((size_t) len, '\0');
+    size_t bufLen = (len > 0) ? fread(&data[0], 1, (size_t) len, hFile) : 0;
     fclose(hFile);
+    const char *buf = data.data();
+#endif
+
+    jbyteArray result = env->NewByteArray((jsize) bufLen);
+    if (result != NULL) {
+        env->SetByteArrayRegion(result, 0, (jsize) bufLen, (const jbyte *) buf);
+    }
+    else {
+        setThrowTskCoreError(env, "NewByteArray returned error while getting an array to copy istat output into.");
+    }
+    return result;
+}
+
+/**
+ * Get the meta data of a file, its attributes and their runs as a
+ * FileMetaData object.
+ *
+ * @returns FileMetaData object, NULL on error (and throws exception)
+ */
+JNIEXPORT jobject JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_getFileMetaDataNat
+  (JNIEnv *env, jclass obj, jlong a_file_handle)
+{
+    const TSK_JNI_FILEHANDLE *file_handle = castMetaFile(env, a_file_handle);
+    if (file_handle == NULL) {
+        //exception already set
+        return NULL;
+    }
+    TSK_FS_FILE *fs_file = file_handle->fs_file;
+    TSK_FS_META *meta = fs_file->meta;
+
+    jclass clazz = env->FindClass("org/sleuthkit/datamodel/FileMetaData");
+    if (clazz == NULL) {
+        //exception already set
+        return NULL;
+    }
+    jmethodID ctor = env->GetMethodID(clazz, "<init>", "(JJIIIIJJJJIJIJIJIJLjava/lang/String;)V");
+    jmethodID addAttribute = env->GetMethodID(clazz, "addAttribute", "(IILjava/lang/String;IJZ)I");
+    jmethodID addRun = env->GetMethodID(clazz, "addRun", "(IJJJI)V");
+    if (ctor == NULL || addAttribute == NULL || addRun == NULL) {
+        //exception already set
+        return NULL;
+    }
+
+    jstring linkj = env->NewStringUTF(meta->link != NULL ? meta->link : "");
+    jobject metaData = env->NewObject(clazz, ctor,
+        (jlong) meta->addr, (jlong) meta->seq, (jint) meta->type, (jint) meta->flags,
+        (jint) meta->mode, (jint) meta->nlink, (jlong) meta->uid, (jlong) meta->gid,
+        (jlong) meta->size, (jlong) meta->mtime, (jint) meta->mtime_nano,
+        (jlong) meta->atime, (jint) meta->atime_nano, (jlong) meta->ctime,
+        (jint) meta->ctime_nano, (jlong) meta->crtime, (jint) meta->crtime_nano,
+        (jlong) fs_file->fs_info->block_size, linkj);
+    if (metaData == NULL) {
+        //exception already set
+        return NULL;
+    }
+
+    int numAttrs = tsk_fs_file_attr_getsize(fs_file);
+    for (int i = 0; i < numAttrs; i++) {
+        const TSK_FS_ATTR *fs_attr = tsk_fs_file_attr_get_idx(fs_file, i);
+        if (fs_attr == NULL) {
+            continue;
+        }
+        jstring namej = env->NewStringUTF(fs_attr->name != NULL ? fs_attr->name : "");
+        jboolean resident = (fs_attr->flags & TSK_FS_ATTR_RES) ? JNI_TRUE : JNI_FALSE;
+        jint attrIndex = env->CallIntMethod(metaData, addAttribute, (jint) fs_attr->type,
+            (jint) fs_attr->id, namej, (jint) fs_attr->flags, (jlong) fs_attr->size, resident);
+        env->DeleteLocalRef(namej);
+        if (env->ExceptionCheck()) {
+            return NULL;
+        }
+
+        if (fs_attr->flags & TSK_FS_ATTR_NONRES) {
+            for (TSK_FS_ATTR_RUN *run = fs_attr->nrd.run; run != NULL; run = run->next) {
+                env->CallVoidMethod(metaData, addRun, attrIndex, (jlong) run->offset,
+                    (jlong) run->addr, (jlong) run->len, (jint) run->flags);
+                if (env->ExceptionCheck()) {
+                    return NULL;
+                }
+            }
+        }
+    }
+    // reading attributes can set an error that we don't care about here
+    tsk_error_reset();
+
+    return metaData;
+}
+
+/*
+ * Layout of the packed records written by walkFsNat. Must match
+ * FsWalkRecord.java. All values are in native byte order and every record
+ * starts on an 8 byte boundary.
+ */
+#define FS_WALK_REC_LEN          0       // int, total bytes in the record incl. padding
+#define FS_WALK_REC_NAME_LEN     4       // int, bytes of UTF-8 name
+#define FS_WALK_REC_PATH_LEN     8       // int, bytes of UTF-8 parent path
+#define FS_WALK_REC_NAME_TYPE    12      // short
+#define FS_WALK_REC_META_TYPE    14      // short
+#define FS_WALK_REC_META_ADDR    16      // long
+#define FS_WALK_REC_PAR_ADDR     24      // long
+#define FS_WALK_REC_SIZE         32      // long
+#define FS_WALK_REC_MTIME        40      // long
+#define FS_WALK_REC_ATIME        48      // long
+#define FS_WALK_REC_CTIME        56      // long
+#define FS_WALK_REC_CRTIME       64      // long
+#define FS_WALK_REC_NAME_FLAGS   72      // int
+#define FS_WALK_REC_META_FLAGS   76      // int
+#define FS_WALK_REC_MODE         80      // int
+#define FS_WALK_REC_META_SEQ     84      // int
+#define FS_WALK_REC_HEADER_SIZE  88
+
+typedef struct {
+    JNIEnv *env;
+    jobject decoder;
+    jmethodID decode;
+    char *buf;
+    size_t capacity;
+    size_t used;
+    uint8_t stopped;            // decoder asked to stop (or threw)
+    uint8_t tooLarge;           // a record did not fit in an empty buffer
+} FS_WALK_STATE;
+
+template <typename T>
+static void
+putFsWalkValue(char *rec, size_t off, T value)
+{
+    memcpy(rec + off, &value, sizeof(T));
+}
+
+/*
+ * Hand the filled part of the buffer to the Java decoder.
+ * @returns 0 if the walk should continue
+ */
+static uint8_t
+flushFsWalk(FS_WALK_STATE * state)
+{
+    if (state->used == 0) {
+        return 0;
+    }
+    jboolean more = state->env->CallBooleanMethod(state->decoder, state->decode, (jint) state->used);
+    state->used = 0;
+    if (state->env->ExceptionCheck() || more == JNI_FALSE) {
+        state->stopped = 1;
+        return 1;
+    }
     return 0;
 }
 
+static TSK_WALK_RET_ENUM
+fsWalkCallback(TSK_FS_FILE * fs_file, const char *path, void *ptr)
+{
+    FS_WALK_STATE *state = (FS_WALK_STATE *) ptr;
+    const TSK_FS_NAME *fs_name = fs_file->name;
+    if (fs_name == NULL || fs_name->name == NULL || TSK_FS_ISDOT(fs_name->name)) {
+        return TSK_WALK_CONT;
+    }
+
+    size_t nameLen = strlen(fs_name->name);
+    size_t pathLen = (path != NULL) ? strlen(path) : 0;
+    size_t recLen = (FS_WALK_REC_HEADER_SIZE + nameLen + pathLen + 7) & ~((size_t) 7);
+    if (recLen > state->capacity) {
+        state->tooLarge = 1;
+        return TSK_WALK_STOP;
+    }
+    if (state->used + recLen > state->capacity) {
+        if (flushFsWalk(state)) {
+            return TSK_WALK_STOP;
+        }
+    }
+
+    char *rec = state->buf + state->used;
+    const TSK_FS_META *meta = fs_file->meta;
+    putFsWalkValue<int32_t>(rec, FS_WALK_REC_LEN, (int32_t) recLen);
+    putFsWalkValue<int32_t>(rec, FS_WALK_REC_NAME_LEN, (int32_t) nameLen);
+    putFsWalkValue<int32_t>(rec, FS_WALK_REC_PATH_LEN, (int32_t) pathLen);
+    putFsWalkValue<int16_t>(rec, FS_WALK_REC_NAME_TYPE, (int16_t) fs_name->type);
+    putFsWalkValue<int16_t>(rec, FS_WALK_REC_META_TYPE, (int16_t) (meta ? meta->type : 0));
+    putFsWalkValue<int64_t>(rec, FS_WALK_REC_META_ADDR, (int64_t) fs_name->meta_addr);
+    putFsWalkValue<int64_t>(rec, FS_WALK_REC_PAR_ADDR, (int64_t) fs_name->par_addr);
+    putFsWalkValue<int64_t>(rec, FS_WALK_REC_SIZE, (int64_t) (meta ? meta->size : 0));
+    putFsWalkValue<int64_t>(rec, FS_WALK_REC_MTIME, (int64_t) (meta ? meta->mtime : 0));
+    putFsWalkValue<int64_t>(rec, FS_WALK_REC_ATIME, (int64_t) (meta ? meta->atime : 0));
+    putFsWalkValue<int64_t>(rec, FS_WALK_REC_CTIME, (int64_t) (meta ? meta->ctime : 0));
+    putFsWalkValue<int64_t>(rec, FS_WALK_REC_CRTIME, (int64_t) (meta ? meta->crtime : 0));
+    putFsWalkValue<int32_t>(rec, FS_WALK_REC_NAME_FLAGS, (int32_t) fs_name->flags);
+    putFsWalkValue<int32_t>(rec, FS_WALK_REC_META_FLAGS, (int32_t) (meta ? meta->flags : 0));
+    putFsWalkValue<int32_t>(rec, FS_WALK_REC_MODE, (int32_t) (meta ? meta->mode : 0));
+    putFsWalkValue<int32_t>(rec, FS_WALK_REC_META_SEQ, (int32_t) fs_name->meta_seq);
+    memcpy(rec + FS_WALK_REC_HEADER_SIZE, fs_name->name, nameLen);
+    if (pathLen > 0) {
+        memcpy(rec + FS_WALK_REC_HEADER_SIZE + nameLen, path, pathLen);
+    }
+    memset(rec + FS_WALK_REC_HEADER_SIZE + nameLen + pathLen, 0,
+        recLen - (FS_WALK_REC_HEADER_SIZE + nameLen + pathLen));
+    state->used += recLen;
+
+    return TSK_WALK_CONT;
+}
+
+/**
+ * Walk the names in a directory (and optionally its sub-directories) and
+ * write a packed record for each one into a direct buffer. Each time the 
+ * buffer is full, and at the end of the walk, decoder.decode(int) is called 
+ * with the number of bytes written; if it returns false the walk stops.
+ * @param env pointer to java environment this was called from
+ * @param obj the java object this was called from
+ * @param a_fs_info the pointer to the file system object
+ * @param a_dir_addr meta address of the directory to start at, or -1 for
+ * the root directory
+ * @param a_recurse true to walk into sub-directories
+ * @param a_unalloc true to include unallocated names
+ * @param a_buf direct ByteBuffer to write the records to
+ * @param a_decoder object with a boolean decode(int) method
+ * @return 1 if the decoder stopped the walk, 0 otherwise
+ */
+JNIEXPORT jint JNICALL
+Java_org_sleuthkit_datamodel_SleuthkitJNI_walkFsNat(JNIEnv * env,
+    jclass obj, jlong a_fs_info, jlong a_dir_addr, jboolean a_recurse,
+    jboolean a_unalloc, jobject a_buf, jobject a_decoder)
+{
+    TSK_FS_INFO *fs_info = castFsInfo(env, a_fs_info);
+    if (fs_info == 0) {
+        //exception already set
+        return -1;
+    }
+
+    FS_WALK_STATE state;
+    memset(&state, 0, sizeof(FS_WALK_STATE));
+    state.env = env;
+    state.decoder = a_decoder;
+    state.buf = (char *) env->GetDirectBufferAddress(a_buf);
+    jlong capacity = env->GetDirectBufferCapacity(a_buf);
+    if (state.buf == NULL || capacity <= 0) {
+        setThrowTskCoreError(env, "walkFsNat: buffer is not a direct buffer");
+        return -1;
+    }
+    state.capacity = (size_t) capacity;
+    jclass decoderClass = env->GetObjectClass(a_decoder);
+    state.decode = env->GetMethodID(decoderClass, "decode", "(I)Z");
+    if (state.decode == NULL) {
+        //exception already set
+        return -1;
+    }
+
+    int flags = TSK_FS_DIR_WALK_FLAG_ALLOC;
+    if (a_recurse) {
+        flags |= TSK_FS_DIR_WALK_FLAG_RECURSE;
+    }
+    if (a_unalloc) {
+        flags |= TSK_FS_DIR_WALK_FLAG_UNALLOC;
+    }
+    TSK_INUM_T dirAddr = (a_dir_addr < 0) ? fs_info->root_inum : (TSK_INUM_T) a_dir_addr;
+    if (tsk_fs_dir_walk(fs_info, dirAddr,
+            (TSK_FS_DIR_WALK_FLAG_ENUM) flags, fsWalkCallback, &state)) {
+        if (!env->ExceptionCheck()) {
+            setThrowTskCoreError(env);
+        }
+        return -1;
+    }
+    if (env->ExceptionCheck()) {
+        // thrown by the decoder
+        return -1;
+    }
+    if (state.tooLarge) {
+        setThrowTskCoreError(env, "walkFsNat: buffer is too small for a record");
+        return -1;
+    }
+    if (!state.stopped) {
+        flushFsWalk(&state);
+        if (env->ExceptionCheck()) {
+            return -1;
+        }
+    }
+    // errors in individual directories are not fatal to the walk
+    tsk_error_reset();
+    return state.stopped ? 1 : 0;
+}
+
 /*
  * Close the given image
  * @param env pointer to java environment this was called from
@@ -196,10 +196,10 @@ JNIEXPORT jobject JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_hashDbLookup
 /*
  * Class:     org_sleuthkit_datamodel_SleuthkitJNI
  * Method:    initAddImgNat
- * Signature: (JLjava/lang/String;ZZ)J
+ * Signature: (JLjava/lang/String;ZZJZ)J
  */
 JNIEXPORT jlong JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_initAddImgNat
-  (JNIEnv *, jclass, jlong, jstring, jboolean, jboolean);
+  (JNIEnv *, jclass, jlong, jstring, jboolean, jboolean, jlong, jboolean);
 
 /*
  * Class:     org_sleuthkit_datamodel_SleuthkitJNI
@@ -281,6 +281,14 @@ JNIEXPORT jlong JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_openFileNat
 JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readImgNat
   (JNIEnv *, jclass, jlong, jbyteArray, jlong, jlong);
 
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    readImgRangesNat
+ * Signature: (J[B[J[J[I)I
+ */
+JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readImgRangesNat
+  (JNIEnv *, jclass, jlong, jbyteArray, jlongArray, jlongArray, jintArray);
+
 /*
  * Class:     org_sleuthkit_datamodel_SleuthkitJNI
  * Method:    readVsNat
@@ -315,11 +323,27 @@ JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_readFileNat
 
 /*
  * Class:     org_sleuthkit_datamodel_SleuthkitJNI
- * Method:    saveFileMetaDataTextNat
- * Signature: (JLjava/lang/String;)I
+ * Method:    getFileMetaDataTextNat
+ * Signature: (J)[B
+ */
+JNIEXPORT jbyteArray JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_getFileMetaDataTextNat
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    getFileMetaDataNat
+ * Signature: (J)Lorg/sleuthkit/datamodel/FileMetaData;
+ */
+JNIEXPORT jobject JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_getFileMetaDataNat
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     org_sleuthkit_datamodel_SleuthkitJNI
+ * Method:    walkFsNat
+ * Signature: (JJZZLjava/nio/ByteBuffer;Lorg/sleuthkit/datamodel/FsWalkRecord$Decoder;)I
  */
-JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_saveFileMetaDataTextNat
-  (JNIEnv *, jclass, jlong, jstring);
+JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_walkFsNat
+  (JNIEnv *, jclass, jlong, jlong, jboolean, jboolean, jobject, jobject);
 
 /*
  * Class:     org_sleuthkit_datamodel_SleuthkitJNI
@@ -21,6 +21,7 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
@@ -156,6 +157,23 @@ public Content getDataSource() throws TskCoreException {
 		return myParent.getDataSource();
 	}
 
+	/**
+	 * Queues a read of the data this content object is associated with on the
+	 * default ReadScheduler and returns without waiting for it. For other
+	 * Content implementations, use ReadScheduler.submit().
+	 *
+	 * @param buf a character array of data (in bytes) to copy read data to
+	 * @param offset byte offset in the content to start reading from
+	 * @param len number of bytes to read into buf.
+	 * @param priority INTERACTIVE if a user is waiting for the data, BATCH
+	 * for background work
+	 * @return Future for the number of bytes read, or -1 if nothing could be
+	 * read. Cancelling it stops the read.
+	 */
+	public Future<Integer> readAsync(byte[] buf, long offset, long len, ReadScheduler.Priority priority) {
+		return ReadScheduler.getDefault().submit(this, buf, offset, len, priority);
+	}
+
 	/**
 	 * Gets handle of SleuthkitCase to which this content belongs
 	 *
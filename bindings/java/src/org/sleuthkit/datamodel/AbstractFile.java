@@ -18,15 +18,16 @@
  */
 package org.sleuthkit.datamodel;
 
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
 import java.text.MessageFormat;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.TimeZone;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.sleuthkit.datamodel.TskData.FileKnown;
@@ -48,17 +49,22 @@ public abstract class AbstractFile extends AbstractContent {
 	protected final TSK_FS_NAME_FLAG_ENUM dirFlag;
 	protected final Set<TSK_FS_META_FLAG_ENUM> metaFlags;
 	protected long size;
-	protected final long metaAddr, ctime, crtime, atime, mtime;
+	protected final long metaAddr;
+	//not final: for files read with the light projection the times, modes,
+	//uid and gid are set when one of their getters is first called, so
+	//subclasses should read them through the getters
+	protected long ctime, crtime, atime, mtime;
 	protected final int metaSeq;
-	protected final int uid, gid;
+	protected int uid, gid;
 	protected final short attrId;
 	protected final TskData.TSK_FS_ATTR_TYPE_ENUM attrType;
-	protected final Set<TskData.TSK_FS_META_MODE_ENUM> modes;
+	protected Set<TskData.TSK_FS_META_MODE_ENUM> modes;
+	//set until the times, modes, uid and gid left out of a light query are loaded
+	private volatile DeferredColumns deferredColumns = null;
 	//local file support
 	private boolean localPathSet = false; ///< if set by setLocalPath(), reads are done on local file 
 	private String localPath; ///< local path as stored in db tsk_files_path, is relative to the db, 
 	private String localAbsPath; ///< absolute path representation of the local path
-	private volatile RandomAccessFile localFileHandle;
 	private volatile java.io.File localFile;
 	//range support
 	private List<TskFileRange> ranges;
@@ -76,6 +82,19 @@ public abstract class AbstractFile extends AbstractContent {
 	protected String md5Hash;
 	private static final Logger logger = Logger.getLogger(AbstractFile.class.getName());
     private static final ResourceBundle bundle = ResourceBundle.getBundle("org.sleuthkit.datamodel.Bundle");
+	//SimpleDateFormat is not thread safe, so each thread gets its own
+	private static final ThreadLocal<SimpleDateFormat> TIME_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss z"); //NON-NLS
+		}
+	};
+	private static final ThreadLocal<SimpleDateFormat> PARSE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"); //NON-NLS
+		}
+	};
 
 	/**
 	 * Initializes common fields used by AbstactFile implementations (objects in
@@ -172,6 +191,7 @@ public short getAttrId() {
 	 * @return change time
 	 */
 	public long getCtime() {
+		loadDeferredColumns();
 		return ctime;
 	}
 
@@ -181,7 +201,7 @@ public long getCtime() {
 	 * @return change time as Date
 	 */
 	public String getCtimeAsDate() {
-		return FsContent.epochToTime(ctime);
+		return FsContent.epochToTime(getCtime());
 	}
 
 	/**
@@ -190,6 +210,7 @@ public String getCtimeAsDate() {
 	 * @return creation time
 	 */
 	public long getCrtime() {
+		loadDeferredColumns();
 		return crtime;
 	}
 
@@ -199,7 +220,7 @@ public long getCrtime() {
 	 * @return creation time as Date
 	 */
 	public String getCrtimeAsDate() {
-		return FsContent.epochToTime(crtime);
+		return FsContent.epochToTime(getCrtime());
 	}
 
 	/**
@@ -208,6 +229,7 @@ public String getCrtimeAsDate() {
 	 * @return access time
 	 */
 	public long getAtime() {
+		loadDeferredColumns();
 		return atime;
 	}
 
@@ -217,7 +239,7 @@ public long getAtime() {
 	 * @return access time as Date
 	 */
 	public String getAtimeAsDate() {
-		return FsContent.epochToTime(atime);
+		return FsContent.epochToTime(getAtime());
 	}
 
 	/**
@@ -226,6 +248,7 @@ public String getAtimeAsDate() {
 	 * @return modified time
 	 */
 	public long getMtime() {
+		loadDeferredColumns();
 		return mtime;
 	}
 
@@ -235,7 +258,7 @@ public long getMtime() {
 	 * @return modified time as Date
 	 */
 	public String getMtimeAsDate() {
-		return FsContent.epochToTime(mtime);
+		return FsContent.epochToTime(getMtime());
 	}
 
 	/**
@@ -244,6 +267,7 @@ public String getMtimeAsDate() {
 	 * @return user id
 	 */
 	public int getUid() {
+		loadDeferredColumns();
 		return uid;
 	}
 
@@ -253,6 +277,7 @@ public int getUid() {
 	 * @return group id
 	 */
 	public int getGid() {
+		loadDeferredColumns();
 		return gid;
 	}
 
@@ -281,6 +306,7 @@ public long getMetaSeq() {
 	 * @return formatted user-displayable string for mode
 	 */
 	public String getModesAsString() {
+		loadDeferredColumns();
 		int mode = TskData.TSK_FS_META_MODE_ENUM.toInt(modes);
 		String result = "";
 
@@ -393,9 +419,103 @@ public String getModesAsString() {
 	}
 
 	public boolean isModeSet(TskData.TSK_FS_META_MODE_ENUM mode) {
+		loadDeferredColumns();
 		return modes.contains(mode);
 	}
 
+	/**
+	 * Mark the times, modes, uid and gid as not read yet. Called by
+	 * ResultSetHelper, before the file is handed out, when they were left out
+	 * of the query.
+	 *
+	 * @param group the files of the same query, loaded together
+	 */
+	void deferColumns(DeferredColumns group) {
+		group.add(this);
+		deferredColumns = group;
+	}
+
+	/**
+	 * Set the columns that were left out of the query.
+	 */
+	void setDeferredColumns(long ctime, long crtime, long atime, long mtime, short modes, int uid, int gid) {
+		this.ctime = ctime;
+		this.crtime = crtime;
+		this.atime = atime;
+		this.mtime = mtime;
+		this.modes = TskData.TSK_FS_META_MODE_ENUM.valuesOf(modes);
+		this.uid = uid;
+		this.gid = gid;
+	}
+
+	/**
+	 * Load the times, modes, uid and gid from the database if they were left
+	 * out of the query that created this file, together with those of the
+	 * other files of that query.
+	 */
+	private void loadDeferredColumns() {
+		DeferredColumns group = deferredColumns;
+		if (group != null) {
+			group.load();
+		}
+	}
+
+	/**
+	 * Up to MAX_FILES consecutive files read by one query that left out the
+	 * times, modes, uid and gid. The first time one of the files needs them
+	 * they are read, with one query, for the files of its group that are still
+	 * in use. The group only holds weak references, so holding one file does
+	 * not keep the rest of the result set in memory.
+	 */
+	static final class DeferredColumns {
+
+		static final int MAX_FILES = SleuthkitCase.DEFERRED_COLUMNS_BATCH_SIZE;
+		private List<WeakReference<AbstractFile>> files = new ArrayList<WeakReference<AbstractFile>>(); //guarded by this
+		private int added = 0; //guarded by this
+
+		synchronized void add(AbstractFile file) {
+			files.add(new WeakReference<AbstractFile>(file));
+			++added;
+		}
+
+		/**
+		 * @return true if MAX_FILES files have been added, so the next file
+		 * of the query needs a new group
+		 */
+		synchronized boolean isFull() {
+			return added >= MAX_FILES;
+		}
+
+		/**
+		 * Read the columns of the files of the group that are still in use. If
+		 * they can not be read the error is logged and the files keep the zero
+		 * values they were created with, so that the getters do not query
+		 * again on every call.
+		 */
+		synchronized void load() {
+			List<AbstractFile> batch = new ArrayList<AbstractFile>(files.size());
+			for (WeakReference<AbstractFile> reference : files) {
+				AbstractFile file = reference.get();
+				if (file != null) {
+					batch.add(file);
+				}
+			}
+			files = new ArrayList<WeakReference<AbstractFile>>();
+			if (batch.isEmpty()) {
+				return;
+			}
+			try {
+				batch.get(0).getSleuthkitCase().loadDeferredFileColumns(batch);
+			} catch (TskCoreException ex) {
+				logger.log(Level.SEVERE, "Error loading times and modes of " + batch.size() + " files", ex); //NON-NLS
+			} finally {
+				for (AbstractFile file : batch) {
+					file.deferredColumns = null;
+				}
+			}
+		}
+	}
+
 	/**
 	 * Sets md5 hash string Note: database or other FsContent objects are not
 	 * updated. Currently only SleuthkiCase calls it to update the object while
@@ -724,51 +844,8 @@ protected final int readLocal(byte[] buf, long offset, long len) throws TskCoreE
 			return 0;
 		}
 
-		getLocalFile();
-		if (!localFile.exists()) {
-			throw new TskCoreException(
-                    MessageFormat.format(bundle.getString("AbstractFile.readLocal.exception.msg2.text"), localAbsPath));
-		}
-		if (!localFile.canRead()) {
-			throw new TskCoreException(
-                    MessageFormat.format(bundle.getString("AbstractFile.readLocal.exception.msg3.text"), localAbsPath));
-		}
-
-		int bytesRead = 0;
-
-		if (localFileHandle == null) {
-			synchronized (this) {
-				if (localFileHandle == null) {
-					try {
-						localFileHandle = new RandomAccessFile(localFile, "r");
-					} catch (FileNotFoundException ex) {
-						final String msg = MessageFormat.format(bundle.getString(
-                                                               "AbstractFile.readLocal.exception.msg4.text"),
-                                                               localAbsPath);
-						logger.log(Level.SEVERE, msg, ex);
-						//file could have been deleted or moved
-						throw new TskCoreException(msg, ex);
-					}
-				}
-			}
-		}
-
-		try {
-			//move to the user request offset in the stream
-			long curOffset = localFileHandle.getFilePointer();
-			if (curOffset != offset) {
-				localFileHandle.seek(offset);
-			}
-			//note, we are always writing at 0 offset of user buffer
-			bytesRead = localFileHandle.read(buf, 0, (int) len);
-		} catch (IOException ex) {
-			final String msg = MessageFormat.format(bundle.getString("AbstractFile.readLocal.exception.msg5.text"), localAbsPath);
-			logger.log(Level.SEVERE, msg, ex);
-			//local file could have been deleted / moved
-			throw new TskCoreException(msg, ex);
-		}
-
-		return bytesRead;
+		//the channel cache checks that the file exists and is readable when it opens it
+		return LocalFileChannelCache.getInstance().read(localAbsPath, buf, offset, len);
 	}
 
 	/**
@@ -871,18 +948,9 @@ private java.io.File getLocalFile() {
 	@Override
 	public void close() {
 
-		//close local file handle if set
-		if (localFileHandle != null) {
-			synchronized (this) {
-				if (localFileHandle != null) {
-					try {
-						localFileHandle.close();
-					} catch (IOException ex) {
-						logger.log(Level.SEVERE, "Could not close file handle for file: " + getParentPath() + "/" + getName(), ex); //NON-NLS
-					}
-					localFileHandle = null;
-				}
-			}
+		//close the cached local file channel, unless another object is reading it
+		if (localPathSet) {
+			LocalFileChannelCache.getInstance().closeIfIdle(localAbsPath);
 		}
 
 	}
@@ -931,7 +999,12 @@ public String toString(boolean preserveState) {
 	public static String epochToTime(long epoch) {
 		String time = "0000-00-00 00:00:00";
 		if (epoch != 0) {
-			time = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss z").format(new java.util.Date(epoch * 1000));
+			SimpleDateFormat format = TIME_FORMAT.get();
+			TimeZone zone = TimeZone.getDefault();
+			if (!zone.equals(format.getTimeZone())) {
+				format.setTimeZone(zone); //the default was changed
+			}
+			time = format.format(new Date(epoch * 1000));
 		}
 		return time;
 	}
@@ -945,7 +1018,12 @@ public static String epochToTime(long epoch) {
 	public static long timeToEpoch(String time) {
 		long epoch = 0;
 		try {
-			epoch = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse(time).getTime() / 1000;
+			SimpleDateFormat format = PARSE_FORMAT.get();
+			TimeZone zone = TimeZone.getDefault();
+			if (!zone.equals(format.getTimeZone())) {
+				format.setTimeZone(zone); //the default was changed
+			}
+			epoch = format.parse(time).getTime() / 1000;
 		} catch (Exception e) {
 		}
 
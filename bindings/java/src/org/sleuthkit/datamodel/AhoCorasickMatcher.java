@@ -0,0 +1,207 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2014 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Finds all occurrences of a set of byte patterns in one pass over the data,
+ * with an Aho-Corasick automaton. ASCII letters are matched case
+ * insensitively.
+ *
+ * The automaton is immutable once built and can be shared by threads; the
+ * scan state is an int that the caller carries from one buffer to the next,
+ * so matches that span buffers are found.
+ */
+final class AhoCorasickMatcher {
+
+	/**
+	 * Receives the matches of a scan.
+	 */
+	interface MatchHandler {
+
+		/**
+		 * @param pattern index of the pattern, in the order it was given
+		 * @param end offset just past the last byte of the match, counted
+		 * like the offsets given to scan()
+		 */
+		void match(int pattern, long end);
+	}
+	private static final int[] NO_PATTERNS = new int[0];
+	//the trie, by state; state 0 is the root
+	private final byte[][] labels;
+	private final int[][] targets;
+	private final int[] fail;
+	//patterns ending at each state, including those of its fail states
+	private final int[][] outputs;
+	//transitions of the root for every byte, for speed
+	private final int[] rootNext = new int[256];
+	private final int[] patternLengths;
+
+	/**
+	 * Build the automaton.
+	 *
+	 * @param patterns the patterns, none of them empty
+	 */
+	AhoCorasickMatcher(List<byte[]> patterns) {
+		//build the trie with sorted maps, then compact it into arrays
+		List<TreeMap<Byte, Integer>> children = new ArrayList<TreeMap<Byte, Integer>>();
+		List<List<Integer>> ends = new ArrayList<List<Integer>>();
+		children.add(new TreeMap<Byte, Integer>());
+		ends.add(new ArrayList<Integer>());
+		patternLengths = new int[patterns.size()];
+		for (int p = 0; p < patterns.size(); ++p) {
+			byte[] pattern = patterns.get(p);
+			if (pattern.length == 0) {
+				throw new IllegalArgumentException("Empty search pattern"); //NON-NLS
+			}
+			patternLengths[p] = pattern.length;
+			int state = 0;
+			for (byte b : pattern) {
+				Byte label = fold(b);
+				Integer next = children.get(state).get(label);
+				if (next == null) {
+					next = children.size();
+					children.add(new TreeMap<Byte, Integer>());
+					ends.add(new ArrayList<Integer>());
+					children.get(state).put(label, next);
+				}
+				state = next;
+			}
+			ends.get(state).add(p);
+		}
+
+		final int stateCount = children.size();
+		labels = new byte[stateCount][];
+		targets = new int[stateCount][];
+		fail = new int[stateCount];
+		outputs = new int[stateCount][];
+		for (int s = 0; s < stateCount; ++s) {
+			TreeMap<Byte, Integer> map = children.get(s);
+			labels[s] = new byte[map.size()];
+			targets[s] = new int[map.size()];
+			int i = 0;
+			for (Map.Entry<Byte, Integer> entry : map.entrySet()) {
+				labels[s][i] = entry.getKey();
+				targets[s][i] = entry.getValue();
+				++i;
+			}
+		}
+
+		//fail links and outputs, breadth first so fail states are done first
+		for (int b = 0; b < 256; ++b) {
+			int next = child(0, (byte) b);
+			rootNext[b] = (next >= 0) ? next : 0;
+		}
+		outputs[0] = toArray(ends.get(0), NO_PATTERNS);
+		LinkedList<Integer> queue = new LinkedList<Integer>();
+		for (int t : targets[0]) {
+			fail[t] = 0;
+			outputs[t] = toArray(ends.get(t), NO_PATTERNS);
+			queue.add(t);
+		}
+		while (!queue.isEmpty()) {
+			int s = queue.removeFirst();
+			for (int i = 0; i < labels[s].length; ++i) {
+				int t = targets[s][i];
+				fail[t] = next(fail[s], labels[s][i]);
+				outputs[t] = toArray(ends.get(t), outputs[fail[t]]);
+				queue.add(t);
+			}
+		}
+	}
+
+	/**
+	 * @return number of bytes of a pattern
+	 */
+	int getPatternLength(int pattern) {
+		return patternLengths[pattern];
+	}
+
+	/**
+	 * Scan a buffer.
+	 *
+	 * @param state the state returned by the scan of the previous buffer, or
+	 * 0 at the start of the data
+	 * @param buf the data
+	 * @param off offset of the first byte in buf
+	 * @param len number of bytes
+	 * @param dataOffset offset of buf[off] in the whole data
+	 * @param handler receives the matches
+	 * @return the state to scan the next buffer with
+	 */
+	int scan(int state, byte[] buf, int off, int len, long dataOffset, MatchHandler handler) {
+		for (int i = 0; i < len; ++i) {
+			state = next(state, fold(buf[off + i]));
+			int[] matches = outputs[state];
+			for (int m = 0; m < matches.length; ++m) {
+				handler.match(matches[m], dataOffset + i + 1);
+			}
+		}
+		return state;
+	}
+
+	private int next(int state, byte b) {
+		while (state != 0) {
+			int t = child(state, b);
+			if (t >= 0) {
+				return t;
+			}
+			state = fail[state];
+		}
+		return rootNext[b & 0xff];
+	}
+
+	private int child(int state, byte b) {
+		byte[] stateLabels = labels[state];
+		int low = 0;
+		int high = stateLabels.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (stateLabels[mid] < b) {
+				low = mid + 1;
+			} else if (stateLabels[mid] > b) {
+				high = mid - 1;
+			} else {
+				return targets[state][mid];
+			}
+		}
+		return -1;
+	}
+
+	private static byte fold(byte b) {
+		return (b >= 'A' && b <= 'Z') ? (byte) (b + ('a' - 'A')) : b;
+	}
+
+	private static int[] toArray(List<Integer> own, int[] inherited) {
+		if (own.isEmpty()) {
+			return inherited;
+		}
+		int[] result = new int[own.size() + inherited.length];
+		for (int i = 0; i < own.size(); ++i) {
+			result[i] = own.get(i);
+		}
+		System.arraycopy(inherited, 0, result, own.size(), inherited.length);
+		return result;
+	}
+}
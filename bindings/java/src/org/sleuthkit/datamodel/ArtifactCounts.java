@@ -0,0 +1,123 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2014 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory counts of the rows of the blackboard_artifacts table of a case,
+ * kept by SleuthkitCase so that counting artifacts does not scan the table.
+ *
+ * The counts by artifact type are loaded when the case is opened. The counts
+ * by source object are loaded for one object at a time when first asked for
+ * and the most recently used MAX_CACHED_SOURCES objects are kept. Both are
+ * updated as artifacts are added through the SleuthkitCase.
+ */
+final class ArtifactCounts {
+
+	/**
+	 * Most source objects whose counts are kept.
+	 */
+	static final int MAX_CACHED_SOURCES = 100000;
+	//guarded by this
+	private final Map<Integer, Long> typeCounts = new HashMap<Integer, Long>();
+	//least recently used first, guarded by this
+	private final LinkedHashMap<Long, Map<Integer, Long>> sourceCounts = new LinkedHashMap<Long, Map<Integer, Long>>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Map<Integer, Long>> eldest) {
+			return size() > MAX_CACHED_SOURCES;
+		}
+	};
+
+	/**
+	 * Replace the counts by artifact type.
+	 *
+	 * @param counts count of artifacts by artifact type id
+	 */
+	synchronized void setTypeCounts(Map<Integer, Long> counts) {
+		typeCounts.clear();
+		typeCounts.putAll(counts);
+	}
+
+	synchronized long getTypeCount(int artifactTypeId) {
+		Long count = typeCounts.get(artifactTypeId);
+		return (count != null) ? count : 0;
+	}
+
+	/**
+	 * @return copy of the count of artifacts by artifact type id
+	 */
+	synchronized Map<Integer, Long> getTypeCounts() {
+		return new HashMap<Integer, Long>(typeCounts);
+	}
+
+	/**
+	 * @param objId id of the source object
+	 * @return copy of the count of artifacts of the object by artifact type
+	 * id, or null if it is not cached
+	 */
+	synchronized Map<Integer, Long> getSourceCounts(long objId) {
+		Map<Integer, Long> counts = sourceCounts.get(objId);
+		return (counts != null) ? new HashMap<Integer, Long>(counts) : null;
+	}
+
+	/**
+	 * @return ids of the source objects whose counts are cached
+	 */
+	synchronized List<Long> getCachedSources() {
+		return new ArrayList<Long>(sourceCounts.keySet());
+	}
+
+	/**
+	 * Cache the counts of one source object. Must be called with the case
+	 * database lock held, so that no artifact can be added between counting
+	 * and caching.
+	 *
+	 * @param objId id of the source object
+	 * @param counts count of artifacts of the object by artifact type id
+	 */
+	synchronized void putSourceCounts(long objId, Map<Integer, Long> counts) {
+		sourceCounts.put(objId, new HashMap<Integer, Long>(counts));
+	}
+
+	/**
+	 * Count an artifact that was added to the case database.
+	 *
+	 * @param objId id of the source object of the artifact
+	 * @param artifactTypeId artifact type id of the artifact
+	 */
+	synchronized void artifactAdded(long objId, int artifactTypeId) {
+		increment(typeCounts, artifactTypeId);
+		Map<Integer, Long> counts = sourceCounts.get(objId);
+		if (counts != null) {
+			increment(counts, artifactTypeId);
+		}
+	}
+
+	private static void increment(Map<Integer, Long> counts, int artifactTypeId) {
+		Long count = counts.get(artifactTypeId);
+		counts.put(artifactTypeId, (count != null) ? count + 1 : 1L);
+	}
+}
@@ -20,7 +20,9 @@
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
 
 
@@ -133,6 +135,15 @@ public enum ARTIFACT_TYPE implements SleuthkitVisitableItem {
 		private final String label;
 		private final int typeID;
 		private final String displayName;
+		private static final Map<String, ARTIFACT_TYPE> byLabel = new HashMap<String, ARTIFACT_TYPE>();
+		private static final Map<Integer, ARTIFACT_TYPE> byID = new HashMap<Integer, ARTIFACT_TYPE>();
+
+		static {
+			for (ARTIFACT_TYPE v : values()) {
+				byLabel.put(v.label, v);
+				byID.put(v.typeID, v);
+			}
+		}
 		
 		private ARTIFACT_TYPE(int typeID, String label, String displayName) {
 			this.typeID = typeID;
@@ -162,10 +173,9 @@ public int getTypeID() {
 		 * @return the corresponding enum
 		 */
 		static public ARTIFACT_TYPE fromLabel(String label) {
-			for (ARTIFACT_TYPE v : ARTIFACT_TYPE.values()) {
-				if (v.label.equals(label)) {
-					return v;
-				}
+			ARTIFACT_TYPE v = byLabel.get(label);
+			if (v != null) {
+				return v;
 			}
 			throw new IllegalArgumentException("No ARTIFACT_TYPE matching type: " + label);
 		}
@@ -176,10 +186,9 @@ static public ARTIFACT_TYPE fromLabel(String label) {
 		 * @return the corresponding enum
 		 */
 		static public ARTIFACT_TYPE fromID(int ID) {
-			for (ARTIFACT_TYPE v : ARTIFACT_TYPE.values()) {
-				if (v.typeID == ID) {
-					return v;
-				}
+			ARTIFACT_TYPE v = byID.get(ID);
+			if (v != null) {
+				return v;
 			}
 			throw new IllegalArgumentException("No ARTIFACT_TYPE matching type: " + ID);
 		}
@@ -18,6 +18,8 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.ResourceBundle;
 
 /**
@@ -54,6 +56,16 @@ public enum TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE {
 		BYTE(4, "Byte");      ///< byte NON-NLS
 		private long type;
 		private String label;
+		//indexed by type, decoded for every attribute row
+		private static final TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE[] byType;
+
+		static {
+			TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE[] all = values();
+			byType = new TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE[all.length];
+			for (TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE v : all) {
+				byType[(int) v.type] = v;
+			}
+		}
 
 		private TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE(long type, String label) {
 			this.type = type;
@@ -81,10 +93,8 @@ public String getLabel() {
 		 * @return enum type
 		 */
 		static public TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE fromType(long type) {
-			for (TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE v : TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.values()) {
-				if (v.type == type) {
-					return v;
-				}
+			if (type >= 0 && type < byType.length) {
+				return byType[(int) type];
 			}
 			throw new IllegalArgumentException("No TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE matching type: " + type);
 		}
@@ -332,6 +342,13 @@ public enum ATTRIBUTE_TYPE {
 		private String label;
 		private int typeID;
 		private String displayName;
+		private static final Map<String, ATTRIBUTE_TYPE> byLabel = new HashMap<String, ATTRIBUTE_TYPE>();
+
+		static {
+			for (ATTRIBUTE_TYPE v : values()) {
+				byLabel.put(v.label, v);
+			}
+		}
 
         private ATTRIBUTE_TYPE(int typeID, String label, String displayName) {
 			this.typeID = typeID;
@@ -364,10 +381,9 @@ public int getTypeID() {
 		 * @return the enum value
 		 */
 		static public ATTRIBUTE_TYPE fromLabel(String label) {
-			for (ATTRIBUTE_TYPE v : ATTRIBUTE_TYPE.values()) {
-				if (v.label.equals(label)) {
-					return v;
-				}
+			ATTRIBUTE_TYPE v = byLabel.get(label);
+			if (v != null) {
+				return v;
 			}
 			throw new IllegalArgumentException("No ATTRIBUTE_TYPE matching type: " + label);
 		}
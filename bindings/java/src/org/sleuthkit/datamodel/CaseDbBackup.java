@@ -0,0 +1,350 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2014 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Copies a live case database to a backup file, from
+ * SleuthkitCase.backupCaseDb().
+ *
+ * The database file is copied in steps of a number of pages. Each step holds
+ * the shared lock of the case and a SQLite read lock on the file only while it
+ * copies its pages, so readers are never blocked and writers only wait for one
+ * step. If a transaction was committed between steps, which the file change
+ * counter in the database header shows, another pass copies the pages that
+ * differ from the backup. After the allowed number of online passes, a last
+ * pass holds the locks throughout so the backup is always consistent.
+ *
+ * If the backup file already exists, for example from an earlier backup of the
+ * same case, only the steps that differ from it are written, so it is updated
+ * incrementally.
+ *
+ * The case database does not use write-ahead logging, so the file itself is a
+ * complete image of the database whenever the read lock is held. A backup
+ * should not be started while an image is being added, since the native
+ * add-image code does not retry a commit that finds the file locked.
+ */
+public final class CaseDbBackup {
+
+	/**
+	 * Told about the progress of a backup.
+	 */
+	public interface ProgressListener {
+
+		/**
+		 * Called after each step.
+		 *
+		 * @param pass the pass, starting at 1
+		 * @param bytesDone bytes of the database covered so far in this pass
+		 * @param bytesTotal size of the database, in bytes
+		 */
+		void progress(int pass, long bytesDone, long bytesTotal);
+	}
+	private static final Logger logger = Logger.getLogger(CaseDbBackup.class.getName());
+	/**
+	 * Default number of database pages copied per step.
+	 */
+	public static final int DEFAULT_PAGES_PER_STEP = 4096;
+	/**
+	 * Default number of passes made without holding the locks throughout.
+	 */
+	public static final int DEFAULT_ONLINE_PASSES = 3;
+	//database header fields, see the SQLite file format
+	private static final int HEADER_SIZE = 100;
+	private static final int HEADER_PAGE_SIZE = 16;
+	private static final int HEADER_CHANGE_COUNTER = 24;
+	private final SleuthkitCase skCase;
+	private final Connection lockConnection;
+	private final FileChannel src;
+	private final FileChannel dest;
+	private final ProgressListener listener;
+	private int stepSize;
+	private ByteBuffer srcBuf;
+	private ByteBuffer destBuf;
+	private long bytesWritten = 0;
+	private long databaseSize = 0;
+	private int passes = 0;
+
+	private CaseDbBackup(SleuthkitCase skCase, Connection lockConnection, FileChannel src, FileChannel dest, ProgressListener listener) {
+		this.skCase = skCase;
+		this.lockConnection = lockConnection;
+		this.src = src;
+		this.dest = dest;
+		this.listener = listener;
+	}
+
+	/**
+	 * Back up a case database.
+	 *
+	 * @param skCase the open case
+	 * @param dbPath path of the case database
+	 * @param destPath path of the backup, updated if it exists
+	 * @param pagesPerStep number of pages copied per step
+	 * @param onlinePasses number of passes made before the locks are held
+	 * for a whole pass, 0 or more
+	 * @param listener told about the progress, or null
+	 * @return the finished backup
+	 * @throws TskCoreException if the database can not be read or the backup
+	 * written
+	 */
+	static CaseDbBackup backup(SleuthkitCase skCase, String dbPath, String destPath, int pagesPerStep,
+			int onlinePasses, ProgressListener listener) throws TskCoreException {
+		if (pagesPerStep < 1 || onlinePasses < 0) {
+			throw new IllegalArgumentException("Pages per step must be at least 1 and online passes at least 0"); //NON-NLS
+		}
+		Connection lockConnection = null;
+		RandomAccessFile srcFile = null;
+		RandomAccessFile destFile = null;
+		try {
+			lockConnection = DriverManager.getConnection("jdbc:sqlite:" + dbPath); //NON-NLS
+			lockConnection.setAutoCommit(false);
+			srcFile = new RandomAccessFile(dbPath, "r"); //NON-NLS
+			destFile = new RandomAccessFile(destPath, "rw"); //NON-NLS
+			CaseDbBackup backup = new CaseDbBackup(skCase, lockConnection, srcFile.getChannel(), destFile.getChannel(), listener);
+			backup.run(pagesPerStep, onlinePasses);
+			return backup;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error locking case database for backup", ex);
+		} catch (IOException ex) {
+			throw new TskCoreException("Error backing up case database to " + destPath, ex);
+		} finally {
+			close(srcFile);
+			close(destFile);
+			if (lockConnection != null) {
+				try {
+					lockConnection.close();
+				} catch (SQLException ex) {
+					logger.log(Level.WARNING, "Error closing backup lock connection", ex); //NON-NLS
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return number of bytes written to the backup; less than the database
+	 * size if the backup existed and only changed pages were written
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	/**
+	 * @return size of the database, and so of the backup, in bytes
+	 */
+	public long getDatabaseSize() {
+		return databaseSize;
+	}
+
+	/**
+	 * @return number of passes needed to get a consistent copy
+	 */
+	public int getPasses() {
+		return passes;
+	}
+
+	private void run(int pagesPerStep, int onlinePasses) throws IOException, SQLException {
+		lock();
+		try {
+			stepSize = (int) Math.min(Integer.MAX_VALUE, (long) pagesPerStep * readPageSize());
+		} finally {
+			unlock();
+		}
+		srcBuf = ByteBuffer.allocate(stepSize);
+		destBuf = ByteBuffer.allocate(stepSize);
+		while (true) {
+			++passes;
+			final boolean lastPass = passes > onlinePasses;
+			if (copyPass(lastPass) || lastPass) {
+				break;
+			}
+		}
+		dest.force(false);
+	}
+
+	/**
+	 * Copy the database once, step by step.
+	 *
+	 * @param holdLock true to hold the locks for the whole pass
+	 * @return true if no transaction was committed during the pass
+	 */
+	private boolean copyPass(boolean holdLock) throws IOException, SQLException {
+		long changeCounter = -1;
+		boolean consistent = true;
+		long pos = 0;
+		if (holdLock) {
+			lock();
+		}
+		try {
+			while (true) {
+				int len;
+				if (!holdLock) {
+					lock();
+				}
+				try {
+					long counter = readChangeCounter();
+					if (changeCounter == -1) {
+						changeCounter = counter;
+					} else if (counter != changeCounter) {
+						consistent = false;
+					}
+					databaseSize = src.size();
+					if (pos >= databaseSize) {
+						if (dest.size() > databaseSize) {
+							dest.truncate(databaseSize);
+						}
+						return consistent;
+					}
+					len = (int) Math.min(stepSize, databaseSize - pos);
+					copyStep(pos, len);
+				} finally {
+					if (!holdLock) {
+						unlock();
+					}
+				}
+				pos += len;
+				if (listener != null) {
+					listener.progress(passes, pos, databaseSize);
+				}
+			}
+		} finally {
+			if (holdLock) {
+				unlock();
+			}
+		}
+	}
+
+	/**
+	 * Copy len bytes at pos, writing them only if the backup differs.
+	 */
+	private void copyStep(long pos, int len) throws IOException {
+		if (dest.size() < pos + len) {
+			//nothing to compare with, copy without reading into the heap
+			long done = 0;
+			while (done < len) {
+				done += src.transferTo(pos + done, len - done, dest.position(pos + done));
+			}
+			bytesWritten += len;
+			return;
+		}
+		read(src, srcBuf, pos, len);
+		read(dest, destBuf, pos, len);
+		if (!srcBuf.equals(destBuf)) {
+			srcBuf.rewind();
+			while (srcBuf.hasRemaining()) {
+				dest.write(srcBuf, pos + srcBuf.position());
+			}
+			bytesWritten += len;
+		}
+	}
+
+	private static void read(FileChannel channel, ByteBuffer buf, long pos, int len) throws IOException {
+		buf.clear();
+		buf.limit(len);
+		while (buf.hasRemaining()) {
+			if (channel.read(buf, pos + buf.position()) < 0) {
+				break;
+			}
+		}
+		buf.flip();
+	}
+
+	private int readPageSize() throws IOException {
+		if (src.size() < HEADER_SIZE) {
+			return 1024;
+		}
+		ByteBuffer header = ByteBuffer.allocate(2);
+		read(src, header, HEADER_PAGE_SIZE, 2);
+		int pageSize = header.getShort(0) & 0xffff;
+		return (pageSize == 1) ? 65536 : pageSize; //1 stands for 65536
+	}
+
+	private long readChangeCounter() throws IOException {
+		if (src.size() < HEADER_SIZE) {
+			return 0;
+		}
+		ByteBuffer header = ByteBuffer.allocate(4);
+		read(src, header, HEADER_CHANGE_COUNTER, 4);
+		return header.getInt(0) & 0xffffffffL;
+	}
+
+	/**
+	 * Take the shared lock of the case, so no write of this process is in
+	 * progress, and a SQLite read lock on the file, so no other connection
+	 * commits until unlock().
+	 */
+	private void lock() throws SQLException {
+		skCase.acquireSharedLock();
+		try {
+			while (true) {
+				Statement statement = lockConnection.createStatement();
+				try {
+					ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM sqlite_master"); //NON-NLS
+					rs.close();
+					return;
+				} catch (SQLException ex) {
+					if (ex.getErrorCode() != SleuthkitCase.SQLITE_BUSY_ERROR && ex.getErrorCode() != SleuthkitCase.DATABASE_LOCKED_ERROR) {
+						throw ex;
+					}
+					//a writer is committing, let it finish
+					lockConnection.rollback();
+				} finally {
+					statement.close();
+				}
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new SQLException("Interrupted while waiting to lock case database", ex); //NON-NLS
+				}
+			}
+		} catch (SQLException ex) {
+			skCase.releaseSharedLock();
+			throw ex;
+		}
+	}
+
+	private void unlock() throws SQLException {
+		try {
+			lockConnection.commit(); //ends the read transaction
+		} finally {
+			skCase.releaseSharedLock();
+		}
+	}
+
+	private static void close(RandomAccessFile file) {
+		if (file != null) {
+			try {
+				file.close();
+			} catch (IOException ex) {
+				logger.log(Level.WARNING, "Error closing file after case database backup", ex); //NON-NLS
+			}
+		}
+	}
+}
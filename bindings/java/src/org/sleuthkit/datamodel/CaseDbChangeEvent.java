@@ -0,0 +1,149 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2014 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Describes changes of one kind that were committed to a case database. The
+ * changes made since the last delivery are coalesced, so one event can stand
+ * for any number of changes. Register a Listener with
+ * SleuthkitCase.addChangeListener() to receive them.
+ */
+public final class CaseDbChangeEvent {
+
+	/**
+	 * The kinds of change. The meaning of the ids and type ids of an event
+	 * depends on its type.
+	 */
+	public enum Type {
+
+		/**
+		 * Ids are artifact ids, type ids are artifact type ids.
+		 */
+		ARTIFACTS_ADDED,
+		/**
+		 * Ids are the artifact ids of the attributes, type ids are artifact
+		 * type ids.
+		 */
+		ATTRIBUTES_ADDED,
+		/**
+		 * Ids are file object ids, type ids are the new FileKnown values.
+		 */
+		FILES_KNOWN_CHANGED,
+		/**
+		 * Ids are file object ids, there are no type ids.
+		 */
+		FILES_MD5_CHANGED,
+		/**
+		 * Ids are file object ids, type ids are TSK_DB_FILES_TYPE_ENUM values.
+		 */
+		FILES_ADDED,
+		/**
+		 * Ids are image object ids, there are no type ids.
+		 */
+		IMAGES_ADDED,
+		/**
+		 * Ids are tag ids, type ids are tag name ids.
+		 */
+		CONTENT_TAGS_ADDED,
+		/**
+		 * Ids are tag ids, type ids are tag name ids.
+		 */
+		CONTENT_TAGS_DELETED,
+		/**
+		 * Ids are tag ids, type ids are tag name ids.
+		 */
+		ARTIFACT_TAGS_ADDED,
+		/**
+		 * Ids are tag ids, type ids are tag name ids.
+		 */
+		ARTIFACT_TAGS_DELETED
+	}
+
+	/**
+	 * Receives the change events of a case.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called on the event thread of the case with the changes committed
+		 * since the last call, at most one event per type. Changes committed
+		 * while this runs are delivered in the next call, so a slow listener
+		 * gets fewer, bigger batches.
+		 *
+		 * @param events the changes, in the order of Type
+		 */
+		void changed(List<CaseDbChangeEvent> events);
+	}
+	private final Type type;
+	private final Set<Long> ids;
+	private final Set<Long> typeIds;
+	private final int changeCount;
+	private final boolean idsComplete;
+
+	CaseDbChangeEvent(Type type, Set<Long> ids, Set<Long> typeIds, int changeCount, boolean idsComplete) {
+		this.type = type;
+		this.ids = Collections.unmodifiableSet(ids);
+		this.typeIds = Collections.unmodifiableSet(typeIds);
+		this.changeCount = changeCount;
+		this.idsComplete = idsComplete;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return ids of the changed items, see Type; only some of them if
+	 * isIdsComplete() is false
+	 */
+	public Set<Long> getIds() {
+		return ids;
+	}
+
+	/**
+	 * @return the distinct type ids of the changed items, see Type
+	 */
+	public Set<Long> getTypeIds() {
+		return typeIds;
+	}
+
+	/**
+	 * @return number of changes coalesced into this event
+	 */
+	public int getChangeCount() {
+		return changeCount;
+	}
+
+	/**
+	 * @return false if there were too many changes to keep all of their ids,
+	 * in which case listeners should refresh everything of this type
+	 */
+	public boolean isIdsComplete() {
+		return idsComplete;
+	}
+
+	@Override
+	public String toString() {
+		return type + " (" + changeCount + " changes)"; //NON-NLS
+	}
+}
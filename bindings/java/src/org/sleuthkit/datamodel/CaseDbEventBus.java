@@ -0,0 +1,217 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2014 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.sleuthkit.datamodel.CaseDbChangeEvent.Type;
+
+/**
+ * Delivers the CaseDbChangeEvents of one case to its listeners on a single
+ * daemon thread.
+ *
+ * Publishing never blocks on the listeners: changes are added to a pending
+ * batch, one per event type, that the thread hands out after waiting a short
+ * time for more changes to arrive. Changes published while the listeners run
+ * go into the next batch. Only the first MAX_IDS_PER_EVENT ids of a type are
+ * kept per batch, so a listener that falls behind costs bounded memory.
+ */
+final class CaseDbEventBus {
+
+	private static final Logger logger = Logger.getLogger(CaseDbEventBus.class.getName());
+	/**
+	 * Most ids kept per event type in one batch.
+	 */
+	static final int MAX_IDS_PER_EVENT = 10000;
+	/**
+	 * Time, in milliseconds, that the first change of a batch waits for more.
+	 */
+	static final long COALESCE_MILLIS = 100;
+	private final CopyOnWriteArrayList<CaseDbChangeEvent.Listener> listeners = new CopyOnWriteArrayList<CaseDbChangeEvent.Listener>();
+	private final Object lock = new Object();
+	private Map<Type, Pending> pending = new EnumMap<Type, Pending>(Type.class); //guarded by lock
+	private Thread dispatcher = null; //guarded by lock
+	private boolean closed = false; //guarded by lock
+
+	void addListener(CaseDbChangeEvent.Listener listener) {
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+			listeners.addIfAbsent(listener);
+			if (dispatcher == null) {
+				dispatcher = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						dispatch();
+					}
+				}, "SleuthkitCase change events"); //NON-NLS
+				dispatcher.setDaemon(true);
+				dispatcher.start();
+			}
+		}
+	}
+
+	void removeListener(CaseDbChangeEvent.Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Record a committed change. Does nothing if there are no listeners.
+	 *
+	 * @param type kind of change
+	 * @param id id of the changed item
+	 * @param typeId type id of the changed item, or -1 if there is none
+	 */
+	void publish(Type type, long id, long typeId) {
+		if (listeners.isEmpty()) {
+			return;
+		}
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+			if (pending.isEmpty()) {
+				lock.notifyAll(); //first change of a batch
+			}
+			Pending changes = pending.get(type);
+			if (changes == null) {
+				changes = new Pending();
+				pending.put(type, changes);
+			}
+			changes.add(id, typeId);
+		}
+	}
+
+	/**
+	 * Stop delivering events. Changes not yet delivered are dropped.
+	 */
+	void close() {
+		synchronized (lock) {
+			closed = true;
+			pending.clear();
+			lock.notifyAll();
+		}
+		listeners.clear();
+	}
+
+	private void dispatch() {
+		while (true) {
+			try {
+				synchronized (lock) {
+					while (pending.isEmpty() && !closed) {
+						lock.wait();
+					}
+					if (closed) {
+						return;
+					}
+				}
+				//let more changes of the same burst join the batch
+				Thread.sleep(COALESCE_MILLIS);
+			} catch (InterruptedException ex) {
+				return;
+			}
+
+			Map<Type, Pending> batch;
+			synchronized (lock) {
+				if (closed) {
+					return;
+				}
+				batch = pending;
+				pending = new EnumMap<Type, Pending>(Type.class);
+			}
+			List<CaseDbChangeEvent> events = new ArrayList<CaseDbChangeEvent>(batch.size());
+			for (Map.Entry<Type, Pending> entry : batch.entrySet()) {
+				Pending changes = entry.getValue();
+				events.add(new CaseDbChangeEvent(entry.getKey(), changes.ids, changes.typeIds, changes.count, changes.idsComplete));
+			}
+			for (CaseDbChangeEvent.Listener listener : listeners) {
+				try {
+					listener.changed(Collections.unmodifiableList(events));
+				} catch (RuntimeException ex) {
+					logger.log(Level.WARNING, "Case database change listener failed", ex); //NON-NLS
+				}
+			}
+		}
+	}
+
+	/**
+	 * Changes made in a transaction, held back until it is committed.
+	 */
+	static final class Deferred {
+
+		private final List<Type> types = new ArrayList<Type>();
+		private final List<Long> ids = new ArrayList<Long>();
+		private final List<Long> typeIds = new ArrayList<Long>();
+
+		void add(Type type, long id, long typeId) {
+			types.add(type);
+			ids.add(id);
+			typeIds.add(typeId);
+		}
+
+		/**
+		 * Publish the changes to the bus and forget them.
+		 */
+		void publishTo(CaseDbEventBus bus) {
+			for (int i = 0; i < types.size(); ++i) {
+				bus.publish(types.get(i), ids.get(i), typeIds.get(i));
+			}
+			clear();
+		}
+
+		void clear() {
+			types.clear();
+			ids.clear();
+			typeIds.clear();
+		}
+	}
+
+	/**
+	 * Changes of one type that have not been delivered yet.
+	 */
+	private static final class Pending {
+
+		private final Set<Long> ids = new LinkedHashSet<Long>();
+		private final Set<Long> typeIds = new HashSet<Long>();
+		private int count = 0;
+		private boolean idsComplete = true;
+
+		void add(long id, long typeId) {
+			++count;
+			if (typeId != -1) {
+				typeIds.add(typeId);
+			}
+			if (ids.size() < MAX_IDS_PER_EVENT) {
+				ids.add(id);
+			} else if (!ids.contains(id)) {
+				idsComplete = false;
+			}
+		}
+	}
+}
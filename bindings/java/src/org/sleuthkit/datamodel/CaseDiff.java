@@ -0,0 +1,460 @@
+/*
+ * Sleuth Kit Data Model
+ * 
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compares the files of two cases, for example two acquisitions of the same
+ * disk or a reference image and a suspect image, and reports the files that
+ * were added, removed or modified.
+ *
+ * The file systems of the two cases are paired by the position of their image
+ * in the case and their offset in the image. The files of a pair of file
+ * systems are read from both cases with FileCursors sorted by parent path,
+ * name and metadata address, and merged in one pass, so memory use does not
+ * depend on the number of files. A file is the same file in both cases if it
+ * has the same path, name and metadata address; it is modified if its size,
+ * MD5 hash (when both are hashed), times, type or allocation status differ.
+ * Files that are not in a file system, such as local and derived files, are
+ * not compared.
+ *
+ * Pairs of file systems are compared in parallel. The differences of one pair
+ * are reported in path order, and the listener is called by one thread at a
+ * time.
+ */
+public final class CaseDiff {
+
+	/**
+	 * The kinds of difference.
+	 */
+	public enum Type {
+
+		/**
+		 * The file is only in the other case.
+		 */
+		ADDED,
+		/**
+		 * The file is only in the baseline case.
+		 */
+		REMOVED,
+		/**
+		 * The file is in both cases and some of its fields differ.
+		 */
+		MODIFIED
+	}
+
+	/**
+	 * The fields of a file that are compared.
+	 */
+	public enum Field {
+
+		SIZE,
+		MD5,
+		MTIME,
+		ATIME,
+		CTIME,
+		CRTIME,
+		META_TYPE,
+		ALLOCATION
+	}
+
+	/**
+	 * Receives the differences found.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called for each difference. Calls are not concurrent.
+		 */
+		void difference(Difference difference);
+	}
+
+	/**
+	 * A file that differs between the two cases.
+	 */
+	public static final class Difference {
+
+		private final Type type;
+		private final String fileSystemKey;
+		private final long baselineFileId;
+		private final long otherFileId;
+		private final String parentPath;
+		private final String name;
+		private final Set<Field> changedFields;
+
+		private Difference(Type type, String fileSystemKey, Row baseline, Row other, Set<Field> changedFields) {
+			this.type = type;
+			this.fileSystemKey = fileSystemKey;
+			this.baselineFileId = (baseline != null) ? baseline.objId : -1;
+			this.otherFileId = (other != null) ? other.objId : -1;
+			Row row = (baseline != null) ? baseline : other;
+			this.parentPath = row.parentPath;
+			this.name = row.name;
+			this.changedFields = changedFields;
+		}
+
+		public Type getType() {
+			return type;
+		}
+
+		/**
+		 * @return the file system of the file, as the position of its image in
+		 * the case, starting at 0, and its offset in the image, separated by a
+		 * colon
+		 */
+		public String getFileSystemKey() {
+			return fileSystemKey;
+		}
+
+		/**
+		 * @return object id of the file in the baseline case, or -1 if it was
+		 * added
+		 */
+		public long getBaselineFileId() {
+			return baselineFileId;
+		}
+
+		/**
+		 * @return object id of the file in the other case, or -1 if it was
+		 * removed
+		 */
+		public long getOtherFileId() {
+			return otherFileId;
+		}
+
+		public String getParentPath() {
+			return parentPath;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the fields that differ; empty unless the file was modified
+		 */
+		public Set<Field> getChangedFields() {
+			return Collections.unmodifiableSet(changedFields);
+		}
+	}
+	private final SleuthkitCase baseline;
+	private final SleuthkitCase other;
+
+	/**
+	 * @param baseline the case to compare with
+	 * @param other the case to compare
+	 */
+	public CaseDiff(SleuthkitCase baseline, SleuthkitCase other) {
+		this.baseline = baseline;
+		this.other = other;
+	}
+
+	/**
+	 * Compare the cases. Returns when all file systems are compared.
+	 *
+	 * @param listener receives the differences
+	 * @param threads number of pairs of file systems to compare at once
+	 * @return number of differences found
+	 * @throws TskCoreException if a case could not be read, the listener
+	 * threw an exception, or the calling thread was interrupted
+	 */
+	public long compare(Listener listener, int threads) throws TskCoreException {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Need at least one thread"); //NON-NLS
+		}
+		Map<String, Long> baselineFileSystems = getFileSystems(baseline);
+		Map<String, Long> otherFileSystems = getFileSystems(other);
+		List<String> keys = new ArrayList<String>(baselineFileSystems.keySet());
+		for (String key : otherFileSystems.keySet()) {
+			if (!baselineFileSystems.containsKey(key)) {
+				keys.add(key);
+			}
+		}
+		final Comparison comparison = new Comparison(keys.iterator(), baselineFileSystems, otherFileSystems, listener);
+		List<Thread> workers = new ArrayList<Thread>();
+		for (int i = 0; i < threads; ++i) {
+			Thread worker = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					comparison.work();
+				}
+			}, "CaseDiff-" + i); //NON-NLS
+			worker.setDaemon(true);
+			worker.start();
+			workers.add(worker);
+		}
+		try {
+			for (Thread worker : workers) {
+				worker.join();
+			}
+		} catch (InterruptedException ex) {
+			comparison.fail(new TskCoreException("Interrupted while comparing cases", ex)); //NON-NLS
+			for (Thread worker : workers) {
+				worker.interrupt();
+			}
+			Thread.currentThread().interrupt();
+		}
+		if (comparison.failure != null) {
+			throw comparison.failure;
+		}
+		return comparison.differenceCount;
+	}
+
+	/**
+	 * @return object ids of the file systems of a case, by key
+	 */
+	private static Map<String, Long> getFileSystems(SleuthkitCase skCase) throws TskCoreException {
+		Map<String, Long> fileSystems = new LinkedHashMap<String, Long>();
+		int imageIndex = 0;
+		for (Image image : skCase.getImages()) {
+			for (FileSystem fs : skCase.getFileSystems(image)) {
+				fileSystems.put(imageIndex + ":" + fs.getImageOffset(), fs.getId()); //NON-NLS
+			}
+			++imageIndex;
+		}
+		return fileSystems;
+	}
+
+	/**
+	 * State of one call to compare(), shared by its threads.
+	 */
+	private final class Comparison {
+
+		private final Iterator<String> keys; //guarded by this
+		private final Map<String, Long> baselineFileSystems;
+		private final Map<String, Long> otherFileSystems;
+		private final Listener listener; //called with this held
+		private volatile TskCoreException failure = null;
+		private long differenceCount = 0; //guarded by this
+
+		Comparison(Iterator<String> keys, Map<String, Long> baselineFileSystems, Map<String, Long> otherFileSystems, Listener listener) {
+			this.keys = keys;
+			this.baselineFileSystems = baselineFileSystems;
+			this.otherFileSystems = otherFileSystems;
+			this.listener = listener;
+		}
+
+		void work() {
+			String key;
+			while ((key = next()) != null) {
+				try {
+					compareFileSystems(key, baselineFileSystems.get(key), otherFileSystems.get(key));
+				} catch (TskCoreException ex) {
+					fail(ex);
+				} catch (RuntimeException ex) {
+					//for example from the listener; compare() must not look finished
+					fail(new TskCoreException("Error comparing file systems " + key, ex)); //NON-NLS
+				} catch (Error ex) {
+					TskCoreException wrapped = new TskCoreException("Error comparing file systems " + key); //NON-NLS
+					wrapped.initCause(ex);
+					fail(wrapped);
+				}
+			}
+		}
+
+		private synchronized String next() {
+			if (failure != null || Thread.currentThread().isInterrupted() || !keys.hasNext()) {
+				return null;
+			}
+			return keys.next();
+		}
+
+		/**
+		 * Merge the sorted files of a pair of file systems.
+		 *
+		 * @param baselineFsId the file system in the baseline case, or null
+		 * @param otherFsId the file system in the other case, or null
+		 */
+		private void compareFileSystems(String key, Long baselineFsId, Long otherFsId) throws TskCoreException {
+			FileCursor baselineCursor = null;
+			FileCursor otherCursor = null;
+			try {
+				baselineCursor = openCursor(baseline, baselineFsId);
+				otherCursor = openCursor(other, otherFsId);
+				Row baselineRow = Row.next(baselineCursor);
+				Row otherRow = Row.next(otherCursor);
+				while (baselineRow != null || otherRow != null) {
+					if (failure != null || Thread.currentThread().isInterrupted()) {
+						return;
+					}
+					int order;
+					if (baselineRow == null) {
+						order = 1;
+					} else if (otherRow == null) {
+						order = -1;
+					} else {
+						order = baselineRow.compareTo(otherRow);
+					}
+					if (order < 0) {
+						report(new Difference(Type.REMOVED, key, baselineRow, null, EnumSet.noneOf(Field.class)));
+						baselineRow = Row.next(baselineCursor);
+					} else if (order > 0) {
+						report(new Difference(Type.ADDED, key, null, otherRow, EnumSet.noneOf(Field.class)));
+						otherRow = Row.next(otherCursor);
+					} else {
+						Set<Field> changed = baselineRow.getChangedFields(otherRow);
+						if (!changed.isEmpty()) {
+							report(new Difference(Type.MODIFIED, key, baselineRow, otherRow, changed));
+						}
+						baselineRow = Row.next(baselineCursor);
+						otherRow = Row.next(otherCursor);
+					}
+				}
+			} finally {
+				if (otherCursor != null) {
+					otherCursor.close();
+				}
+				if (baselineCursor != null) {
+					baselineCursor.close();
+				}
+			}
+		}
+
+		private synchronized void report(Difference difference) {
+			++differenceCount;
+			listener.difference(difference);
+		}
+
+		synchronized void fail(TskCoreException ex) {
+			if (failure == null) {
+				failure = ex;
+			}
+		}
+	}
+
+	private static FileCursor openCursor(SleuthkitCase skCase, Long fsObjId) throws TskCoreException {
+		if (fsObjId == null) {
+			return null;
+		}
+		return skCase.openFileCursor("fs_obj_id = " + fsObjId, "parent_path, name, meta_addr, obj_id"); //NON-NLS
+	}
+
+	/**
+	 * The compared columns of one file row.
+	 */
+	private static final class Row implements Comparable<Row> {
+
+		private final long objId;
+		private final String parentPath;
+		private final String name;
+		private final long metaAddr;
+		private final long size;
+		private final String md5;
+		private final long mtime;
+		private final long atime;
+		private final long ctime;
+		private final long crtime;
+		private final TskData.TSK_FS_META_TYPE_ENUM metaType;
+		private final TskData.TSK_FS_NAME_FLAG_ENUM dirFlag;
+
+		private Row(FileCursor cursor) throws TskCoreException {
+			objId = cursor.getId();
+			parentPath = cursor.getParentPath();
+			name = cursor.getName();
+			metaAddr = cursor.getMetaAddr();
+			size = cursor.getSize();
+			md5 = cursor.getMd5Hash();
+			mtime = cursor.getMtime();
+			atime = cursor.getAtime();
+			ctime = cursor.getCtime();
+			crtime = cursor.getCrtime();
+			metaType = cursor.getMetaType();
+			dirFlag = cursor.getDirFlag();
+		}
+
+		/**
+		 * @return the next row of a cursor, or null at the end or if there is
+		 * no cursor
+		 */
+		static Row next(FileCursor cursor) throws TskCoreException {
+			return (cursor != null && cursor.next()) ? new Row(cursor) : null;
+		}
+
+		/**
+		 * Order rows like the ORDER BY of the cursors: SQLite compares text as
+		 * UTF-8 bytes, which is code point order.
+		 */
+		@Override
+		public int compareTo(Row row) {
+			int order = compareCodePoints(parentPath, row.parentPath);
+			if (order == 0) {
+				order = compareCodePoints(name, row.name);
+			}
+			if (order == 0 && metaAddr != row.metaAddr) {
+				order = (metaAddr < row.metaAddr) ? -1 : 1;
+			}
+			return order;
+		}
+
+		Set<Field> getChangedFields(Row row) {
+			Set<Field> changed = EnumSet.noneOf(Field.class);
+			if (size != row.size) {
+				changed.add(Field.SIZE);
+			}
+			if (md5 != null && row.md5 != null && !md5.equalsIgnoreCase(row.md5)) {
+				changed.add(Field.MD5);
+			}
+			if (mtime != row.mtime) {
+				changed.add(Field.MTIME);
+			}
+			if (atime != row.atime) {
+				changed.add(Field.ATIME);
+			}
+			if (ctime != row.ctime) {
+				changed.add(Field.CTIME);
+			}
+			if (crtime != row.crtime) {
+				changed.add(Field.CRTIME);
+			}
+			if (metaType != row.metaType) {
+				changed.add(Field.META_TYPE);
+			}
+			if (dirFlag != row.dirFlag) {
+				changed.add(Field.ALLOCATION);
+			}
+			return changed;
+		}
+	}
+
+	static int compareCodePoints(String a, String b) {
+		int i = 0;
+		int j = 0;
+		while (i < a.length() && j < b.length()) {
+			int ca = a.codePointAt(i);
+			int cb = b.codePointAt(j);
+			if (ca != cb) {
+				return (ca < cb) ? -1 : 1;
+			}
+			i += Character.charCount(ca);
+			j += Character.charCount(cb);
+		}
+		if (i < a.length()) {
+			return 1;
+		}
+		return (j < b.length()) ? -1 : 0;
+	}
+}
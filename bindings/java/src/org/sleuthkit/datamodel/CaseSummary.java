@@ -0,0 +1,244 @@
+/*
+ * Sleuth Kit Data Model
+ * 
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.sleuthkit.datamodel.TskData.FileKnown;
+import org.sleuthkit.datamodel.TskData.TSK_DB_FILES_TYPE_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_META_TYPE_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_NAME_TYPE_ENUM;
+
+/**
+ * Summary of the contents of a case, from SleuthkitCase.getCaseSummary():
+ * file counts by type, meta type, known status and size, for the whole case,
+ * per file system and per data source, and the artifact and tag counts.
+ *
+ * The file counts come from the tsk_files_summary table, which triggers on the
+ * tsk_files table keep up to date, so making a summary reads a few hundred
+ * rows rather than scanning the files. A summary is a snapshot and does not
+ * change.
+ */
+public final class CaseSummary {
+
+	/**
+	 * Exclusive upper bounds of the file sizes of the size classes: class 0 is
+	 * empty files, class 1 is files under 1 KiB, and so on; the last class has
+	 * no bound.
+	 */
+	private static final long[] SIZE_CLASS_LIMITS = {1, 1024, 64 * 1024, 1024 * 1024, 16 * 1024 * 1024, 1024 * 1024 * 1024};
+	/**
+	 * Number of size classes.
+	 */
+	public static final int SIZE_CLASS_COUNT = SIZE_CLASS_LIMITS.length + 1;
+	/**
+	 * Key of the counts of the files that are not in a file system, or whose
+	 * data source is not known.
+	 */
+	public static final long NO_ID = -1;
+
+	/**
+	 * File counts of a set of files.
+	 */
+	public static final class Counts {
+
+		private long fileCount = 0;
+		private long totalSize = 0;
+		private long hashedCount = 0;
+		private long unhashedCount = 0;
+		private final Map<Short, Long> byType = new HashMap<Short, Long>();
+		private final Map<Short, Long> byMetaType = new HashMap<Short, Long>();
+		private final Map<Byte, Long> byKnown = new HashMap<Byte, Long>();
+		private final long[] sizeHistogram = new long[SIZE_CLASS_COUNT];
+
+		private void add(short type, short metaType, short dirType, byte known, boolean hashed, int sizeClass, long count, long size) {
+			fileCount += count;
+			totalSize += size;
+			increment(byType, type, count);
+			increment(byMetaType, metaType, count);
+			increment(byKnown, known, count);
+			sizeHistogram[sizeClass] += count;
+			if (sizeClass > 0 && hashed) {
+				hashedCount += count;
+			} else if (sizeClass > 0 && dirType == TSK_FS_NAME_TYPE_ENUM.REG.getValue()) {
+				unhashedCount += count;
+			}
+		}
+
+		public long getFileCount() {
+			return fileCount;
+		}
+
+		/**
+		 * @return sum of the sizes of the files, in bytes
+		 */
+		public long getTotalSize() {
+			return totalSize;
+		}
+
+		public long getCountByType(TSK_DB_FILES_TYPE_ENUM type) {
+			return get(byType, type.getFileType());
+		}
+
+		public long getCountByMetaType(TSK_FS_META_TYPE_ENUM metaType) {
+			return get(byMetaType, metaType.getValue());
+		}
+
+		public long getCountByKnown(FileKnown known) {
+			return get(byKnown, known.getFileKnownValue());
+		}
+
+		/**
+		 * @return number of non-empty files with an MD5 hash
+		 */
+		public long getMd5HashedCount() {
+			return hashedCount;
+		}
+
+		/**
+		 * @return number of non-empty regular files without an MD5 hash
+		 */
+		public long getMd5UnhashedCount() {
+			return unhashedCount;
+		}
+
+		/**
+		 * @return number of files in each size class, see
+		 * getSizeClassLimit()
+		 */
+		public long[] getSizeHistogram() {
+			return sizeHistogram.clone();
+		}
+
+		private static <K> void increment(Map<K, Long> counts, K key, long count) {
+			Long current = counts.get(key);
+			counts.put(key, (current != null) ? current + count : count);
+		}
+
+		private static <K> long get(Map<K, Long> counts, K key) {
+			Long count = counts.get(key);
+			return (count != null) ? count : 0;
+		}
+	}
+	private final Counts totals = new Counts();
+	private final Map<Long, Counts> fileSystems = new HashMap<Long, Counts>();
+	private final Map<Long, Counts> dataSources = new HashMap<Long, Counts>();
+	private final Map<Integer, Long> artifactTypeCounts;
+	private final List<TagName> tagNamesInUse;
+
+	CaseSummary(Map<Integer, Long> artifactTypeCounts, List<TagName> tagNamesInUse) {
+		this.artifactTypeCounts = Collections.unmodifiableMap(artifactTypeCounts);
+		this.tagNamesInUse = Collections.unmodifiableList(tagNamesInUse);
+	}
+
+	/**
+	 * Add a row of the tsk_files_summary table.
+	 */
+	void addFiles(long fsObjId, long dataSourceObjId, short type, short metaType, short dirType, byte known,
+			boolean hashed, int sizeClass, long count, long size) {
+		totals.add(type, metaType, dirType, known, hashed, sizeClass, count, size);
+		counts(fileSystems, fsObjId).add(type, metaType, dirType, known, hashed, sizeClass, count, size);
+		counts(dataSources, dataSourceObjId).add(type, metaType, dirType, known, hashed, sizeClass, count, size);
+	}
+
+	/**
+	 * @return counts of all of the files of the case
+	 */
+	public Counts getTotals() {
+		return totals;
+	}
+
+	/**
+	 * @return object ids of the file systems with files, and NO_ID if there
+	 * are files outside of file systems
+	 */
+	public Set<Long> getFileSystemIds() {
+		return Collections.unmodifiableSet(fileSystems.keySet());
+	}
+
+	/**
+	 * @param fsObjId object id of a file system, or NO_ID
+	 * @return counts of the files of the file system, empty if it has none
+	 */
+	public Counts getFileSystemCounts(long fsObjId) {
+		Counts counts = fileSystems.get(fsObjId);
+		return (counts != null) ? counts : new Counts();
+	}
+
+	/**
+	 * @return object ids of the images with files, and NO_ID for the files
+	 * whose image is not known, such as local files
+	 */
+	public Set<Long> getDataSourceIds() {
+		return Collections.unmodifiableSet(dataSources.keySet());
+	}
+
+	/**
+	 * @param dataSourceObjId object id of an image, or NO_ID
+	 * @return counts of the files of the image, empty if it has none
+	 */
+	public Counts getDataSourceCounts(long dataSourceObjId) {
+		Counts counts = dataSources.get(dataSourceObjId);
+		return (counts != null) ? counts : new Counts();
+	}
+
+	/**
+	 * @return number of artifacts by artifact type id
+	 */
+	public Map<Integer, Long> getArtifactTypeCounts() {
+		return artifactTypeCounts;
+	}
+
+	public List<TagName> getTagNamesInUse() {
+		return tagNamesInUse;
+	}
+
+	/**
+	 * @param sizeClass a size class
+	 * @return exclusive upper bound of the file sizes of the class, or
+	 * Long.MAX_VALUE for the last class
+	 */
+	public static long getSizeClassLimit(int sizeClass) {
+		return (sizeClass < SIZE_CLASS_LIMITS.length) ? SIZE_CLASS_LIMITS[sizeClass] : Long.MAX_VALUE;
+	}
+
+	/**
+	 * @param size SQL expression of a file size
+	 * @return SQL expression of the size class of the size
+	 */
+	static String getSizeClassSql(String size) {
+		StringBuilder sql = new StringBuilder("CASE"); //NON-NLS
+		for (int i = 0; i < SIZE_CLASS_LIMITS.length; ++i) {
+			sql.append(" WHEN IFNULL(").append(size).append(", 0) < ").append(SIZE_CLASS_LIMITS[i]).append(" THEN ").append(i); //NON-NLS
+		}
+		return sql.append(" ELSE ").append(SIZE_CLASS_LIMITS.length).append(" END").toString(); //NON-NLS
+	}
+
+	private static Counts counts(Map<Long, Counts> map, long id) {
+		Counts counts = map.get(id);
+		if (counts == null) {
+			counts = new Counts();
+			map.put(id, counts);
+		}
+		return counts;
+	}
+}
@@ -0,0 +1,481 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2014 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
+import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
+
+/**
+ * Searches the content of files, including unallocated space LayoutFiles, for
+ * the keywords of any number of keyword lists, and records what it finds as
+ * TSK_KEYWORD_HIT artifacts.
+ *
+ * Each file is read once, in chunks, whatever the number of keywords. The
+ * literal keywords of all lists are found together by one Aho-Corasick
+ * automaton, in their UTF-8 and UTF-16LE forms, with ASCII letters matched
+ * case insensitively. The regular expressions are run over each chunk with
+ * the bytes taken as ISO-8859-1 characters, so they match single byte text.
+ * Consecutive chunks overlap by MAX_HIT_LENGTH bytes so that hits that cross
+ * a chunk boundary are found exactly once.
+ *
+ * Files are searched in parallel. Each file gets at most one artifact per
+ * literal keyword and list, and one per distinct regular expression match and
+ * list, with a preview of the text around the first hit. The artifacts are
+ * written in batches, each in one transaction.
+ */
+public final class ContentSearch {
+
+	/**
+	 * Default number of bytes read from a file at a time.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+	/**
+	 * Longest regular expression match that is sure to be found whole; also
+	 * the overlap of consecutive chunks.
+	 */
+	public static final int MAX_HIT_LENGTH = 1024;
+	/**
+	 * Default number of artifacts written per transaction.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+	/**
+	 * Most distinct matches of one regular expression recorded per file.
+	 */
+	static final int MAX_REGEX_TERMS_PER_FILE = 1000;
+	/**
+	 * Bytes of context on each side of a hit in its preview.
+	 */
+	static final int PREVIEW_CONTEXT = 40;
+	private static final Logger logger = Logger.getLogger(ContentSearch.class.getName());
+	private static final Charset UTF_8 = Charset.forName("UTF-8"); //NON-NLS
+	private static final Charset UTF_16LE = Charset.forName("UTF-16LE"); //NON-NLS
+	private final SleuthkitCase skCase;
+	private final String moduleName;
+	private final int chunkSize;
+	private final int batchSize;
+	//literal keywords, by index, and the keyword index of each pattern
+	private final List<Keyword> literals = new ArrayList<Keyword>();
+	private final List<KeywordList> literalLists = new ArrayList<KeywordList>();
+	private final int[] patternKeywords;
+	private final AhoCorasickMatcher matcher; //null if there are no literals
+	private final List<Pattern> regexes = new ArrayList<Pattern>();
+	private final List<KeywordList> regexLists = new ArrayList<KeywordList>();
+
+	/**
+	 * Prepare a search with the default chunk and batch sizes.
+	 *
+	 * @param skCase the case to add the keyword hits to
+	 * @param moduleName module name of the hit attributes
+	 * @param keywordLists the keyword lists to search for
+	 * @throws java.util.regex.PatternSyntaxException if a regular expression
+	 * is not valid
+	 */
+	public ContentSearch(SleuthkitCase skCase, String moduleName, List<KeywordList> keywordLists) {
+		this(skCase, moduleName, keywordLists, DEFAULT_CHUNK_SIZE, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Prepare a search.
+	 *
+	 * @param skCase the case to add the keyword hits to
+	 * @param moduleName module name of the hit attributes
+	 * @param keywordLists the keyword lists to search for
+	 * @param chunkSize number of bytes read from a file at a time
+	 * @param batchSize number of artifacts written per transaction
+	 * @throws java.util.regex.PatternSyntaxException if a regular expression
+	 * is not valid
+	 */
+	public ContentSearch(SleuthkitCase skCase, String moduleName, List<KeywordList> keywordLists, int chunkSize, int batchSize) {
+		if (chunkSize < 1 || batchSize < 1) {
+			throw new IllegalArgumentException("Chunk size and batch size must be positive"); //NON-NLS
+		}
+		this.skCase = skCase;
+		this.moduleName = moduleName;
+		this.chunkSize = chunkSize;
+		this.batchSize = batchSize;
+		List<byte[]> patterns = new ArrayList<byte[]>();
+		List<Integer> keywordOfPattern = new ArrayList<Integer>();
+		for (KeywordList list : keywordLists) {
+			for (Keyword keyword : list.getKeywords()) {
+				if (keyword.isLiteral()) {
+					patterns.add(keyword.getTerm().getBytes(UTF_8));
+					keywordOfPattern.add(literals.size());
+					patterns.add(keyword.getTerm().getBytes(UTF_16LE));
+					keywordOfPattern.add(literals.size());
+					literals.add(keyword);
+					literalLists.add(list);
+				} else {
+					regexes.add(Pattern.compile(keyword.getTerm()));
+					regexLists.add(list);
+				}
+			}
+		}
+		patternKeywords = new int[keywordOfPattern.size()];
+		for (int i = 0; i < patternKeywords.length; ++i) {
+			patternKeywords[i] = keywordOfPattern.get(i);
+		}
+		matcher = patterns.isEmpty() ? null : new AhoCorasickMatcher(patterns);
+	}
+
+	/**
+	 * Search files and add an artifact for each hit to the case. Returns when
+	 * all of the files are searched and the artifacts written. A file that
+	 * can not be read is logged and skipped.
+	 *
+	 * @param contents the files to search
+	 * @param threads number of files to search at once
+	 * @return number of keyword hit artifacts added
+	 * @throws TskCoreException if the artifacts could not be written, a
+	 * search thread failed (for example a keyword regex threw), or the calling
+	 * thread was interrupted; the artifacts of batches written before that
+	 * stay in the case
+	 */
+	public long search(Collection<? extends Content> contents, int threads) throws TskCoreException {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Need at least one thread"); //NON-NLS
+		}
+		final Search search = new Search(contents.iterator());
+		List<Thread> workers = new ArrayList<Thread>();
+		for (int i = 0; i < threads; ++i) {
+			Thread worker = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					search.work();
+				}
+			}, "ContentSearch-" + i); //NON-NLS
+			worker.setDaemon(true);
+			worker.start();
+			workers.add(worker);
+		}
+		try {
+			for (Thread worker : workers) {
+				worker.join();
+			}
+		} catch (InterruptedException ex) {
+			search.fail(new TskCoreException("Interrupted while searching content", ex)); //NON-NLS
+			for (Thread worker : workers) {
+				worker.interrupt();
+			}
+			Thread.currentThread().interrupt();
+		}
+		search.flush();
+		if (search.failure != null) {
+			throw search.failure;
+		}
+		return search.artifactCount;
+	}
+
+	/**
+	 * State of one call to search(), shared by its threads.
+	 */
+	private final class Search {
+
+		private final Iterator<? extends Content> contents; //guarded by this
+		private List<Long> pendingObjIds = new ArrayList<Long>(); //guarded by this
+		private List<List<BlackboardAttribute>> pendingAttributes = new ArrayList<List<BlackboardAttribute>>(); //guarded by this
+		private volatile TskCoreException failure = null;
+		private long artifactCount = 0; //guarded by this
+
+		Search(Iterator<? extends Content> contents) {
+			this.contents = contents;
+		}
+
+		void work() {
+			byte[] chunk = new byte[chunkSize];
+			byte[] window = new byte[MAX_HIT_LENGTH + chunkSize];
+			Content content;
+			while ((content = next()) != null) {
+				try {
+					FileHits hits = searchContent(content, chunk, window);
+					add(content.getId(), hits.toAttributes());
+				} catch (TskCoreException ex) {
+					logger.log(Level.WARNING, "Error reading " + content + " for keyword search, skipped", ex); //NON-NLS
+				} catch (RuntimeException ex) {
+					//for example from a keyword regex; search() must not look finished
+					fail(new TskCoreException("Error searching " + content, ex)); //NON-NLS
+				} catch (Error ex) {
+					//a StackOverflowError from a backtracking regex lands here
+					TskCoreException wrapped = new TskCoreException("Error searching " + content); //NON-NLS
+					wrapped.initCause(ex);
+					fail(wrapped);
+				}
+			}
+		}
+
+		private synchronized Content next() {
+			if (failure != null || Thread.currentThread().isInterrupted() || !contents.hasNext()) {
+				return null;
+			}
+			return contents.next();
+		}
+
+		private void add(long objId, List<List<BlackboardAttribute>> artifacts) {
+			List<Long> objIds = null;
+			List<List<BlackboardAttribute>> attributes = null;
+			synchronized (this) {
+				for (List<BlackboardAttribute> artifact : artifacts) {
+					pendingObjIds.add(objId);
+					pendingAttributes.add(artifact);
+				}
+				if (pendingObjIds.size() >= batchSize) {
+					objIds = pendingObjIds;
+					attributes = pendingAttributes;
+					pendingObjIds = new ArrayList<Long>();
+					pendingAttributes = new ArrayList<List<BlackboardAttribute>>();
+				}
+			}
+			if (objIds != null) {
+				write(objIds, attributes);
+			}
+		}
+
+		void flush() {
+			List<Long> objIds;
+			List<List<BlackboardAttribute>> attributes;
+			synchronized (this) {
+				objIds = pendingObjIds;
+				attributes = pendingAttributes;
+				pendingObjIds = new ArrayList<Long>();
+				pendingAttributes = new ArrayList<List<BlackboardAttribute>>();
+			}
+			if (!objIds.isEmpty() && failure == null) {
+				write(objIds, attributes);
+			}
+		}
+
+		private void write(List<Long> objIds, List<List<BlackboardAttribute>> attributes) {
+			try {
+				skCase.newBlackboardArtifacts(ARTIFACT_TYPE.TSK_KEYWORD_HIT, objIds, attributes);
+				synchronized (this) {
+					artifactCount += objIds.size();
+				}
+			} catch (TskCoreException ex) {
+				fail(ex);
+			}
+		}
+
+		synchronized void fail(TskCoreException ex) {
+			if (failure == null) {
+				failure = ex;
+			}
+		}
+	}
+
+	/**
+	 * Search one file without writing anything to the case.
+	 *
+	 * @return the attributes of the artifact of each hit
+	 */
+	List<List<BlackboardAttribute>> searchContent(Content content) throws TskCoreException {
+		return searchContent(content, new byte[chunkSize], new byte[MAX_HIT_LENGTH + chunkSize]).toAttributes();
+	}
+
+	/**
+	 * Read a file chunk by chunk and find the hits in it.
+	 *
+	 * @param chunk buffer of chunkSize bytes
+	 * @param window buffer of MAX_HIT_LENGTH + chunkSize bytes
+	 */
+	private FileHits searchContent(Content content, byte[] chunk, final byte[] window) throws TskCoreException {
+		final FileHits hits = new FileHits();
+		final long size = content.getSize();
+		long pos = 0; //offset of the next chunk
+		int tailLen = 0; //bytes at the start of window kept from the last chunk
+		int state = 0;
+		Matcher[] regexMatchers = new Matcher[regexes.size()];
+		long[] regexResume = new long[regexes.size()]; //end of the last match
+		while (pos < size) {
+			int read = content.read(chunk, pos, Math.min(chunkSize, size - pos));
+			if (read <= 0) {
+				break;
+			}
+			System.arraycopy(chunk, 0, window, tailLen, read);
+			final long windowStart = pos - tailLen;
+			final int windowLen = tailLen + read;
+			pos += read;
+			final boolean last = pos >= size;
+
+			if (matcher != null) {
+				state = matcher.scan(state, window, tailLen, read, pos - read, new AhoCorasickMatcher.MatchHandler() {
+					@Override
+					public void match(int pattern, long end) {
+						int keyword = patternKeywords[pattern];
+						if (!hits.literalHits.containsKey(keyword)) {
+							int start = (int) (end - matcher.getPatternLength(pattern) - windowStart);
+							hits.literalHits.put(keyword, preview(window, windowLen, start, (int) (end - windowStart)));
+						}
+					}
+				});
+			}
+
+			//report regex matches that start before the part kept for the
+			//next chunk, which sees the rest
+			final int keep = last ? 0 : Math.min(windowLen, MAX_HIT_LENGTH);
+			final int reportEnd = windowLen - keep;
+			CharSequence text = new ByteCharSequence(window, windowLen);
+			for (int r = 0; r < regexMatchers.length; ++r) {
+				if (regexMatchers[r] == null) {
+					regexMatchers[r] = regexes.get(r).matcher(text);
+				} else {
+					regexMatchers[r].reset(text);
+				}
+				Matcher m = regexMatchers[r];
+				int from = (int) Math.max(0, regexResume[r] - windowStart);
+				if (from > windowLen || !m.find(from)) {
+					continue;
+				}
+				do {
+					if (m.start() >= reportEnd) {
+						break;
+					}
+					if (m.end() > m.start()) {
+						hits.addRegexHit(r, m.group(), preview(window, windowLen, m.start(), m.end()));
+						regexResume[r] = windowStart + m.end();
+					}
+				} while (m.find());
+			}
+
+			System.arraycopy(window, windowLen - keep, window, 0, keep);
+			tailLen = keep;
+		}
+		return hits;
+	}
+
+	/**
+	 * Make the preview of a hit: its printable ASCII text with some context,
+	 * leaving out the NUL bytes of UTF-16 text.
+	 */
+	private static String preview(byte[] window, int windowLen, int start, int end) {
+		int from = Math.max(0, start - PREVIEW_CONTEXT);
+		int to = Math.min(windowLen, end + PREVIEW_CONTEXT);
+		StringBuilder preview = new StringBuilder(to - from);
+		for (int i = from; i < to; ++i) {
+			byte b = window[i];
+			if (b >= 0x20 && b < 0x7f) {
+				preview.append((char) b);
+			} else if (b != 0) {
+				preview.append(' ');
+			}
+		}
+		return preview.toString();
+	}
+
+	/**
+	 * The hits of one file.
+	 */
+	private final class FileHits {
+
+		//preview of the first hit, by literal keyword index
+		private final Map<Integer, String> literalHits = new HashMap<Integer, String>();
+		//preview of the first hit, by matched text, by regex index
+		private final Map<Integer, Map<String, String>> regexMatches = new HashMap<Integer, Map<String, String>>();
+
+		void addRegexHit(int regex, String match, String preview) {
+			Map<String, String> matches = regexMatches.get(regex);
+			if (matches == null) {
+				matches = new LinkedHashMap<String, String>();
+				regexMatches.put(regex, matches);
+			}
+			if (matches.size() < MAX_REGEX_TERMS_PER_FILE && !matches.containsKey(match)) {
+				matches.put(match, preview);
+			}
+		}
+
+		/**
+		 * @return the attributes of the artifact of each hit
+		 */
+		List<List<BlackboardAttribute>> toAttributes() {
+			List<List<BlackboardAttribute>> artifacts = new ArrayList<List<BlackboardAttribute>>();
+			for (Map.Entry<Integer, String> hit : literalHits.entrySet()) {
+				List<BlackboardAttribute> attributes = new ArrayList<BlackboardAttribute>();
+				attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_KEYWORD.getTypeID(), moduleName, literals.get(hit.getKey()).getTerm()));
+				attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_KEYWORD_PREVIEW.getTypeID(), moduleName, hit.getValue()));
+				attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_SET_NAME.getTypeID(), moduleName, literalLists.get(hit.getKey()).getName()));
+				artifacts.add(attributes);
+			}
+			for (Map.Entry<Integer, Map<String, String>> regex : regexMatches.entrySet()) {
+				for (Map.Entry<String, String> hit : regex.getValue().entrySet()) {
+					List<BlackboardAttribute> attributes = new ArrayList<BlackboardAttribute>();
+					attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_KEYWORD.getTypeID(), moduleName, hit.getKey()));
+					attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_KEYWORD_REGEXP.getTypeID(), moduleName, regexes.get(regex.getKey()).pattern()));
+					attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_KEYWORD_PREVIEW.getTypeID(), moduleName, hit.getValue()));
+					attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_SET_NAME.getTypeID(), moduleName, regexLists.get(regex.getKey()).getName()));
+					artifacts.add(attributes);
+				}
+			}
+			return artifacts;
+		}
+	}
+
+	/**
+	 * The bytes of a buffer as ISO-8859-1 characters, for regular expressions.
+	 */
+	private static final class ByteCharSequence implements CharSequence {
+
+		private final byte[] bytes;
+		private final int offset;
+		private final int length;
+
+		ByteCharSequence(byte[] bytes, int length) {
+			this(bytes, 0, length);
+		}
+
+		private ByteCharSequence(byte[] bytes, int offset, int length) {
+			this.bytes = bytes;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return (char) (bytes[offset + index] & 0xff);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return new ByteCharSequence(bytes, offset + start, end - start);
+		}
+
+		@Override
+		public String toString() {
+			char[] chars = new char[length];
+			for (int i = 0; i < length; ++i) {
+				chars[i] = charAt(i);
+			}
+			return new String(chars);
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Sleuth Kit Data Model
+ * 
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A set of files with the same MD5 hash, from
+ * SleuthkitCase.findDuplicateFiles().
+ */
+public final class DuplicateFileGroup {
+
+	private final String md5Hash;
+	private final long size;
+	private final long[] objIds;
+
+	DuplicateFileGroup(String md5Hash, long size, long[] objIds) {
+		this.md5Hash = md5Hash;
+		this.size = size;
+		this.objIds = objIds;
+	}
+
+	/**
+	 * @return the MD5 hash of the files, in lower case
+	 */
+	public String getMd5Hash() {
+		return md5Hash;
+	}
+
+	/**
+	 * @return size of each file, in bytes
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return number of files in the group, at least 2
+	 */
+	public int getFileCount() {
+		return objIds.length;
+	}
+
+	/**
+	 * @return object ids of the files, in increasing order
+	 */
+	public List<Long> getObjIds() {
+		List<Long> ids = new ArrayList<Long>(objIds.length);
+		for (long objId : objIds) {
+			ids.add(objId);
+		}
+		return ids;
+	}
+
+	/**
+	 * @return bytes that would be saved by keeping one file of the group
+	 */
+	public long getWastedBytes() {
+		return size * (objIds.length - 1);
+	}
+}
@@ -0,0 +1,293 @@
+/*
+ * Sleuth Kit Data Model
+ * 
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.Closeable;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import org.sleuthkit.datamodel.TskData.FileKnown;
+import org.sleuthkit.datamodel.TskData.TSK_DB_FILES_TYPE_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_META_TYPE_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_NAME_FLAG_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_NAME_TYPE_ENUM;
+
+/**
+ * Forward-only cursor over rows of the tsk_files table, from
+ * SleuthkitCase.openFileCursor().
+ *
+ * The rows are read a page at a time into arrays, and the accessors read the
+ * columns of the current row from them, so scanning does not create an
+ * AbstractFile (and its caches) per row. Use getAbstractFile() to create the
+ * full object for the rows that need it; the objects for the rest of the page
+ * are created with it, by one query.
+ *
+ * The shared lock on the case database is held only while a page is read, so
+ * writers are not held up for the whole scan. Pages are read by keyset: the
+ * next page starts after the object id (or, for a cursor with its own order,
+ * the rank) of the last row of the previous one, so a page costs the same
+ * wherever it is in the scan. A row that changes between pages is seen as it
+ * is when its page is read, and a row deleted before its page is read is
+ * skipped.
+ */
+public final class FileCursor implements Closeable {
+
+	/**
+	 * Number of rows read per page.
+	 */
+	static final int PAGE_SIZE = 1000;
+	//the columns read, in this order, the numbers first
+	static final String[] COLUMNS = {"obj_id", "fs_obj_id", "type", "meta_addr", "dir_type", "meta_type", "dir_flags", //NON-NLS
+		"meta_flags", "size", "ctime", "crtime", "atime", "mtime", "known", "name", "md5", "parent_path"}; //NON-NLS
+	private static final int OBJ_ID = 0;
+	private static final int FS_OBJ_ID = 1;
+	private static final int TYPE = 2;
+	private static final int META_ADDR = 3;
+	private static final int DIR_TYPE = 4;
+	private static final int META_TYPE = 5;
+	private static final int DIR_FLAGS = 6;
+	private static final int META_FLAGS = 7;
+	private static final int SIZE = 8;
+	private static final int CTIME = 9;
+	private static final int CRTIME = 10;
+	private static final int ATIME = 11;
+	private static final int MTIME = 12;
+	private static final int KNOWN = 13;
+	//the key of the row for keyset paging, read after the columns
+	private static final int KEY = 14;
+	private static final int LONG_COUNT = 15;
+	private static final int NAME = 0;
+	private static final int MD5 = 1;
+	private static final int PARENT_PATH = 2;
+	private static final int STRING_COUNT = 3;
+	private final SleuthkitCase db;
+	private final String sqlWhereClause;
+	private final String orderTable;
+	private final long[] longs = new long[PAGE_SIZE * LONG_COUNT];
+	private final String[] strings = new String[PAGE_SIZE * STRING_COUNT];
+	//file objects of the rows of the page, created by the first getAbstractFile() on it
+	private AbstractFile[] files = null;
+	private int rowCount = 0;
+	private int row = -1;
+	private long lastKey = Long.MIN_VALUE;
+	private boolean lastPage = false;
+	private boolean closed = false;
+
+	/**
+	 * @param db the case
+	 * @param sqlWhereClause which files to read
+	 * @param orderTable temporary table of the object ids of the files by
+	 * rank, or null to read the files in object id order
+	 */
+	FileCursor(SleuthkitCase db, String sqlWhereClause, String orderTable) {
+		this.db = db;
+		this.sqlWhereClause = sqlWhereClause;
+		this.orderTable = orderTable;
+	}
+
+	/**
+	 * Move to the next row. The cursor is closed when there are no more rows.
+	 *
+	 * @return true if there is a current row
+	 * @throws TskCoreException if the row could not be read
+	 */
+	public boolean next() throws TskCoreException {
+		if (closed) {
+			return false;
+		}
+		if (++row < rowCount) {
+			return true;
+		}
+		if (!lastPage) {
+			try {
+				rowCount = db.readFileCursorPage(this, sqlWhereClause, orderTable, lastKey);
+			} catch (TskCoreException ex) {
+				close();
+				throw ex;
+			}
+			row = 0;
+			files = null;
+			lastPage = rowCount < PAGE_SIZE;
+			if (rowCount > 0) {
+				lastKey = longs[(rowCount - 1) * LONG_COUNT + KEY];
+				return true;
+			}
+		}
+		close();
+		return false;
+	}
+
+	/**
+	 * Read a page of rows. The result set has the COLUMNS and then the key.
+	 *
+	 * @return number of rows read
+	 */
+	int readPage(ResultSet rs) throws SQLException {
+		int count = 0;
+		while (count < PAGE_SIZE && rs.next()) {
+			int base = count * LONG_COUNT;
+			for (int i = 0; i < KNOWN + 1; ++i) {
+				longs[base + i] = rs.getLong(i + 1);
+			}
+			base = count * STRING_COUNT;
+			for (int i = 0; i < STRING_COUNT; ++i) {
+				strings[base + i] = rs.getString(KNOWN + 2 + i);
+			}
+			longs[count * LONG_COUNT + KEY] = rs.getLong(KNOWN + 2 + STRING_COUNT);
+			++count;
+		}
+		return count;
+	}
+
+	public long getId() throws TskCoreException {
+		return getLong(OBJ_ID);
+	}
+
+	/**
+	 * @return object id of the file system, or 0 if the file is not in one
+	 */
+	public long getFileSystemId() throws TskCoreException {
+		return getLong(FS_OBJ_ID);
+	}
+
+	public String getName() throws TskCoreException {
+		return getString(NAME);
+	}
+
+	public TSK_DB_FILES_TYPE_ENUM getType() throws TskCoreException {
+		return TSK_DB_FILES_TYPE_ENUM.valueOf((short) getLong(TYPE));
+	}
+
+	public long getMetaAddr() throws TskCoreException {
+		return getLong(META_ADDR);
+	}
+
+	public TSK_FS_NAME_TYPE_ENUM getDirType() throws TskCoreException {
+		return TSK_FS_NAME_TYPE_ENUM.valueOf((short) getLong(DIR_TYPE));
+	}
+
+	public TSK_FS_META_TYPE_ENUM getMetaType() throws TskCoreException {
+		return TSK_FS_META_TYPE_ENUM.valueOf((short) getLong(META_TYPE));
+	}
+
+	public TSK_FS_NAME_FLAG_ENUM getDirFlag() throws TskCoreException {
+		return TSK_FS_NAME_FLAG_ENUM.valueOf((short) getLong(DIR_FLAGS));
+	}
+
+	/**
+	 * @return the raw TSK_FS_META_FLAG_ENUM flags
+	 */
+	public short getMetaFlags() throws TskCoreException {
+		return (short) getLong(META_FLAGS);
+	}
+
+	public long getSize() throws TskCoreException {
+		return getLong(SIZE);
+	}
+
+	public long getCtime() throws TskCoreException {
+		return getLong(CTIME);
+	}
+
+	public long getCrtime() throws TskCoreException {
+		return getLong(CRTIME);
+	}
+
+	public long getAtime() throws TskCoreException {
+		return getLong(ATIME);
+	}
+
+	public long getMtime() throws TskCoreException {
+		return getLong(MTIME);
+	}
+
+	/**
+	 * @return md5 hash of the file, or null if it has not been calculated
+	 */
+	public String getMd5Hash() throws TskCoreException {
+		return getString(MD5);
+	}
+
+	public FileKnown getKnown() throws TskCoreException {
+		return FileKnown.valueOf((byte) getLong(KNOWN));
+	}
+
+	/**
+	 * @return path of the parent directory, or empty string
+	 */
+	public String getParentPath() throws TskCoreException {
+		String parentPath = getString(PARENT_PATH);
+		return (parentPath != null) ? parentPath : ""; //NON-NLS
+	}
+
+	/**
+	 * Create the full file object for the current row. The first call on a
+	 * page reads the files of the current and later rows of the page from the
+	 * case database with one query, so the file is as it is then, and the
+	 * other calls on the page use those.
+	 *
+	 * @return the file, or null if the row is of an unknown file type or the
+	 * file was deleted
+	 * @throws TskCoreException if the files could not be read
+	 */
+	public AbstractFile getAbstractFile() throws TskCoreException {
+		final int current = currentRow();
+		if (files == null) {
+			long[] ids = new long[rowCount - current];
+			for (int i = 0; i < ids.length; ++i) {
+				ids[i] = longs[(current + i) * LONG_COUNT + OBJ_ID];
+			}
+			Map<Long, AbstractFile> byId = db.getFileCursorFiles(ids);
+			files = new AbstractFile[rowCount];
+			for (int i = current; i < rowCount; ++i) {
+				files[i] = byId.get(longs[i * LONG_COUNT + OBJ_ID]);
+			}
+		}
+		return files[current];
+	}
+
+	/**
+	 * Close the cursor. Safe to call more than once.
+	 */
+	@Override
+	public void close() {
+		if (!closed) {
+			closed = true;
+			files = null;
+			if (orderTable != null) {
+				db.dropFileCursorOrder(orderTable);
+			}
+		}
+	}
+
+	private long getLong(int column) throws TskCoreException {
+		return longs[currentRow() * LONG_COUNT + column];
+	}
+
+	private String getString(int column) throws TskCoreException {
+		return strings[currentRow() * STRING_COUNT + column];
+	}
+
+	private int currentRow() throws TskCoreException {
+		if (closed || row < 0 || row >= rowCount) {
+			throw new TskCoreException("The file cursor is not on a row"); //NON-NLS
+		}
+		return row;
+	}
+}
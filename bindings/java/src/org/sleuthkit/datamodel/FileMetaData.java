@@ -0,0 +1,299 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2014 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.sleuthkit.datamodel.TskData.TSK_FS_META_FLAG_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_META_MODE_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_META_TYPE_ENUM;
+
+/**
+ * The meta data of a file system file as read by TSK: the same information
+ * that is in the 'istat' text, but as values. Created in native code by
+ * SleuthkitJNI.getFileMetaData().
+ */
+public class FileMetaData {
+
+	private final long metaAddr;
+	private final long metaSeq;
+	private final int metaType;
+	private final int metaFlags;
+	private final int mode;
+	private final int nlink;
+	private final long uid;
+	private final long gid;
+	private final long size;
+	private final long mtime, atime, ctime, crtime;
+	private final int mtimeNano, atimeNano, ctimeNano, crtimeNano;
+	private final long blockSize;
+	private final String link;
+	private final List<Attribute> attributes = new ArrayList<Attribute>();
+
+	FileMetaData(long metaAddr, long metaSeq, int metaType, int metaFlags, int mode, int nlink,
+			long uid, long gid, long size, long mtime, int mtimeNano, long atime, int atimeNano,
+			long ctime, int ctimeNano, long crtime, int crtimeNano, long blockSize, String link) {
+		this.metaAddr = metaAddr;
+		this.metaSeq = metaSeq;
+		this.metaType = metaType;
+		this.metaFlags = metaFlags;
+		this.mode = mode;
+		this.nlink = nlink;
+		this.uid = uid;
+		this.gid = gid;
+		this.size = size;
+		this.mtime = mtime;
+		this.mtimeNano = mtimeNano;
+		this.atime = atime;
+		this.atimeNano = atimeNano;
+		this.ctime = ctime;
+		this.ctimeNano = ctimeNano;
+		this.crtime = crtime;
+		this.crtimeNano = crtimeNano;
+		this.blockSize = blockSize;
+		this.link = link;
+	}
+
+	/**
+	 * Called from native code to add an attribute.
+	 *
+	 * @return index of the new attribute, to pass to addRun()
+	 */
+	int addAttribute(int type, int id, String name, int flags, long size, boolean resident) {
+		attributes.add(new Attribute(type, id, name, flags, size, resident));
+		return attributes.size() - 1;
+	}
+
+	/**
+	 * Called from native code to add a run to a non-resident attribute.
+	 */
+	void addRun(int attrIndex, long offset, long addr, long len, int flags) {
+		attributes.get(attrIndex).runs.add(new Run(offset, addr, len, flags));
+	}
+
+	public long getMetaAddr() {
+		return metaAddr;
+	}
+
+	public long getMetaSeq() {
+		return metaSeq;
+	}
+
+	public TSK_FS_META_TYPE_ENUM getMetaType() {
+		return TSK_FS_META_TYPE_ENUM.valueOf((short) metaType);
+	}
+
+	public Set<TSK_FS_META_FLAG_ENUM> getMetaFlags() {
+		return TSK_FS_META_FLAG_ENUM.valuesOf((short) metaFlags);
+	}
+
+	public Set<TSK_FS_META_MODE_ENUM> getModes() {
+		return TSK_FS_META_MODE_ENUM.valuesOf((short) mode);
+	}
+
+	public int getLinkCount() {
+		return nlink;
+	}
+
+	public long getUid() {
+		return uid;
+	}
+
+	public long getGid() {
+		return gid;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return last content modification time, in seconds since the epoch
+	 */
+	public long getMtime() {
+		return mtime;
+	}
+
+	public int getMtimeNano() {
+		return mtimeNano;
+	}
+
+	/**
+	 * @return last access time, in seconds since the epoch
+	 */
+	public long getAtime() {
+		return atime;
+	}
+
+	public int getAtimeNano() {
+		return atimeNano;
+	}
+
+	/**
+	 * @return last metadata change time, in seconds since the epoch
+	 */
+	public long getCtime() {
+		return ctime;
+	}
+
+	public int getCtimeNano() {
+		return ctimeNano;
+	}
+
+	/**
+	 * @return creation time, in seconds since the epoch
+	 */
+	public long getCrtime() {
+		return crtime;
+	}
+
+	public int getCrtimeNano() {
+		return crtimeNano;
+	}
+
+	/**
+	 * @return block size of the file system, in bytes, that the run offsets
+	 * and lengths are in
+	 */
+	public long getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * @return target of a symbolic link, or empty string
+	 */
+	public String getLink() {
+		return link;
+	}
+
+	public List<Attribute> getAttributes() {
+		return Collections.unmodifiableList(attributes);
+	}
+
+	/**
+	 * An attribute (data stream, NTFS attribute, HFS fork etc.) of the file.
+	 */
+	public static class Attribute {
+
+		private final int type;
+		private final int id;
+		private final String name;
+		private final int flags;
+		private final long size;
+		private final boolean resident;
+		private final List<Run> runs = new ArrayList<Run>();
+
+		private Attribute(int type, int id, String name, int flags, long size, boolean resident) {
+			this.type = type;
+			this.id = id;
+			this.name = name;
+			this.flags = flags;
+			this.size = size;
+			this.resident = resident;
+		}
+
+		/**
+		 * @return the attribute type, one of the TSK_FS_ATTR_TYPE_ENUM values
+		 */
+		public int getType() {
+			return type;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		/**
+		 * @return name of the attribute, or empty string
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the TSK_FS_ATTR_FLAG_ENUM flags of the attribute
+		 */
+		public int getFlags() {
+			return flags;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public boolean isResident() {
+			return resident;
+		}
+
+		/**
+		 * @return runs of a non-resident attribute, empty for a resident one
+		 */
+		public List<Run> getRuns() {
+			return Collections.unmodifiableList(runs);
+		}
+	}
+
+	/**
+	 * A run of consecutive blocks of a non-resident attribute.
+	 */
+	public static class Run {
+
+		private final long offset;
+		private final long addr;
+		private final long len;
+		private final int flags;
+
+		private Run(long offset, long addr, long len, int flags) {
+			this.offset = offset;
+			this.addr = addr;
+			this.len = len;
+			this.flags = flags;
+		}
+
+		/**
+		 * @return offset of the run in the attribute, in blocks
+		 */
+		public long getOffset() {
+			return offset;
+		}
+
+		/**
+		 * @return address of the first block of the run in the file system
+		 */
+		public long getAddr() {
+			return addr;
+		}
+
+		/**
+		 * @return number of blocks in the run
+		 */
+		public long getLength() {
+			return len;
+		}
+
+		/**
+		 * @return the TSK_FS_ATTR_RUN_FLAG_ENUM flags of the run
+		 */
+		public int getFlags() {
+			return flags;
+		}
+	}
+}
@@ -31,8 +31,8 @@
 
 /**
  * Generalized class that stores metadata that are common to both File and
- * Directory objects stored in tsk_files table Caches internal tsk file handle
- * and reuses it for reads
+ * Directory objects stored in tsk_files table. Reads use internal tsk file
+ * handles leased from the NativeHandleManager
  *
  * TODO move common getters to AbstractFile class
  */
@@ -52,10 +52,16 @@ public abstract class FsContent extends AbstractFile {
 	 * parent file system
 	 */
 	private volatile FileSystem parentFileSystem;
+	//last lease of the file handle, so it can be leased again without a lookup
+	private volatile NativeHandleManager.FileHandleLease lastLease;
 	///other members
 	/**
 	 * file Handle
+	 *
+	 * @deprecated file handles are leased from the NativeHandleManager for
+	 * each read and are no longer kept by the object
 	 */
+	@Deprecated
 	protected volatile long fileHandle = 0;
 
 	/**
@@ -130,18 +136,16 @@ public FileSystem getFileSystem() throws TskCoreException {
 	}
 	
 	/**
-	 * Open JNI file handle if it is not open already
-	 * 
-	 * @throws TskCoreException 
+	 * Lease the JNI file handle from the handle manager. The lease must be
+	 * released when done with the handle.
+	 *
+	 * @throws TskCoreException
 	 */
-	private void loadFileHandle() throws TskCoreException {
-		if (fileHandle == 0) {
-			synchronized (this) {
-				if (fileHandle == 0) {
-					fileHandle = SleuthkitJNI.openFile(getFileSystem().getFileSystemHandle(), metaAddr, attrType, attrId);
-				}
-			}
-		}
+	private NativeHandleManager.FileHandleLease leaseFileHandle() throws TskCoreException {
+		NativeHandleManager.FileHandleLease lease = SleuthkitJNI.getHandleManager().leaseFile(lastLease,
+				getFileSystem().getFileSystemHandle(), metaAddr, attrType, attrId);
+		lastLease = lease;
+		return lease;
 	}
 
 	@Override
@@ -152,8 +156,12 @@ protected int readInt(byte[] buf, long offset, long len) throws TskCoreException
 				//special case for 0-size file
 				return 0;
 			}
-			loadFileHandle();
-			return SleuthkitJNI.readFile(fileHandle, buf, offset, len);
+			NativeHandleManager.FileHandleLease lease = leaseFileHandle();
+			try {
+				return SleuthkitJNI.readFile(lease.getHandle(), buf, offset, len);
+			} finally {
+				lease.release();
+			}
 		}
 		catch (TskCoreException ex) {
 			Content dataSource = getDataSource();
@@ -231,12 +239,36 @@ public synchronized List<String> getMetaDataText() throws TskCoreException {
 			return metaDataText;
 		}
 		
-		loadFileHandle();
-		metaDataText = SleuthkitJNI.getFileMetaDataText(fileHandle);
+		NativeHandleManager.FileHandleLease lease = leaseFileHandle();
+		try {
+			metaDataText = SleuthkitJNI.getFileMetaDataText(lease.getHandle());
+		} finally {
+			lease.release();
+		}
 		return metaDataText;
 	}
 
+	/**
+	 * Get the meta data of this file, its attributes and their runs as
+	 * values. This is the same information as getMetaDataText().
+	 *
+	 * @return the meta data, or null if the file has no meta data structure
+	 * @throws TskCoreException if the meta data could not be read
+	 */
+	public FileMetaData getMetaData() throws TskCoreException {
+		if (metaAddr == 0) {
+			return null;
+		}
+		NativeHandleManager.FileHandleLease lease = leaseFileHandle();
+		try {
+			return SleuthkitJNI.getFileMetaData(lease.getHandle());
+		} finally {
+			lease.release();
+		}
+	}
+
 	@Override
+	@SuppressWarnings("deprecation")
 	public void close() {
 		if (fileHandle != 0) {
 			synchronized (this) {
@@ -259,6 +291,7 @@ public void finalize() throws Throwable {
 	}
 
 	@Override
+	@SuppressWarnings("deprecation")
 	public String toString(boolean preserveState) {
 		return super.toString(preserveState)
 				+ "FsContent [\t" //NON-NLS
@@ -0,0 +1,233 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2014 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Set;
+import org.sleuthkit.datamodel.TskData.TSK_FS_META_FLAG_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_META_TYPE_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_NAME_FLAG_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_NAME_TYPE_ENUM;
+
+/**
+ * A view of one packed file record written by SleuthkitJNI.walkFileSystem().
+ *
+ * The same object is moved over every record in the walk buffer, so nothing
+ * is allocated per file unless the name or path is asked for. Copy out the
+ * values that are needed; the record is only valid during the call to
+ * Handler.handle().
+ */
+public final class FsWalkRecord {
+
+	/**
+	 * Gets each record of a file system walk.
+	 */
+	public interface Handler {
+
+		/**
+		 * @param record the current record, only valid during this call
+		 * @return false to stop the walk
+		 */
+		boolean handle(FsWalkRecord record);
+	}
+	/**
+	 * Default size, in bytes, of a walk buffer.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+	/**
+	 * Smallest allowed walk buffer, big enough for any single record.
+	 */
+	public static final int MIN_BUFFER_SIZE = 64 * 1024;
+	private static final Charset UTF8 = Charset.forName("UTF-8"); //NON-NLS
+	//record layout, must match walkFsNat in dataModel_SleuthkitJNI.cpp
+	private static final int REC_LEN = 0;
+	private static final int NAME_LEN = 4;
+	private static final int PATH_LEN = 8;
+	private static final int NAME_TYPE = 12;
+	private static final int META_TYPE = 14;
+	private static final int META_ADDR = 16;
+	private static final int PAR_ADDR = 24;
+	private static final int SIZE = 32;
+	private static final int MTIME = 40;
+	private static final int ATIME = 48;
+	private static final int CTIME = 56;
+	private static final int CRTIME = 64;
+	private static final int NAME_FLAGS = 72;
+	private static final int META_FLAGS = 76;
+	private static final int MODE = 80;
+	private static final int META_SEQ = 84;
+	private static final int HEADER_SIZE = 88;
+	private final ByteBuffer buf;
+	private int pos = 0;
+
+	private FsWalkRecord(ByteBuffer buf) {
+		this.buf = buf;
+	}
+
+	/**
+	 * Allocate a buffer that can be passed to walkFileSystem() and reused for
+	 * any number of walks (one at a time).
+	 *
+	 * @param capacity size of the buffer, at least MIN_BUFFER_SIZE
+	 * @return direct buffer in native byte order
+	 */
+	public static ByteBuffer allocateBuffer(int capacity) {
+		if (capacity < MIN_BUFFER_SIZE) {
+			throw new IllegalArgumentException("Walk buffer must be at least " + MIN_BUFFER_SIZE + " bytes"); //NON-NLS
+		}
+		return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+	}
+
+	public long getMetaAddr() {
+		return buf.getLong(pos + META_ADDR);
+	}
+
+	/**
+	 * @return sequence number of the meta data structure (NTFS only)
+	 */
+	public int getMetaSeq() {
+		return buf.getInt(pos + META_SEQ);
+	}
+
+	/**
+	 * @return meta data address of the parent directory
+	 */
+	public long getParentMetaAddr() {
+		return buf.getLong(pos + PAR_ADDR);
+	}
+
+	public TSK_FS_NAME_TYPE_ENUM getNameType() {
+		return TSK_FS_NAME_TYPE_ENUM.valueOf(buf.getShort(pos + NAME_TYPE));
+	}
+
+	/**
+	 * @return type from the meta data, TSK_FS_META_TYPE_UNDEF if there is no
+	 * meta data
+	 */
+	public TSK_FS_META_TYPE_ENUM getMetaType() {
+		return TSK_FS_META_TYPE_ENUM.valueOf(buf.getShort(pos + META_TYPE));
+	}
+
+	/**
+	 * @return the raw TSK_FS_NAME_FLAG_ENUM flags
+	 */
+	public int getNameFlags() {
+		return buf.getInt(pos + NAME_FLAGS);
+	}
+
+	public boolean isAllocated() {
+		return (getNameFlags() & TSK_FS_NAME_FLAG_ENUM.ALLOC.getValue()) != 0;
+	}
+
+	/**
+	 * @return the raw TSK_FS_META_FLAG_ENUM flags
+	 */
+	public int getMetaFlags() {
+		return buf.getInt(pos + META_FLAGS);
+	}
+
+	public Set<TSK_FS_META_FLAG_ENUM> getMetaFlagSet() {
+		return TSK_FS_META_FLAG_ENUM.valuesOf((short) getMetaFlags());
+	}
+
+	/**
+	 * @return the raw TSK_FS_META_MODE_ENUM mode bits
+	 */
+	public int getMode() {
+		return buf.getInt(pos + MODE);
+	}
+
+	public long getSize() {
+		return buf.getLong(pos + SIZE);
+	}
+
+	public long getMtime() {
+		return buf.getLong(pos + MTIME);
+	}
+
+	public long getAtime() {
+		return buf.getLong(pos + ATIME);
+	}
+
+	public long getCtime() {
+		return buf.getLong(pos + CTIME);
+	}
+
+	public long getCrtime() {
+		return buf.getLong(pos + CRTIME);
+	}
+
+	/**
+	 * @return file name; decoded on every call
+	 */
+	public String getName() {
+		return decode(pos + HEADER_SIZE, buf.getInt(pos + NAME_LEN));
+	}
+
+	/**
+	 * @return path of the parent directory relative to the start of the walk,
+	 * with a trailing '/' unless empty; decoded on every call
+	 */
+	public String getParentPath() {
+		return decode(pos + HEADER_SIZE + buf.getInt(pos + NAME_LEN), buf.getInt(pos + PATH_LEN));
+	}
+
+	private String decode(int start, int len) {
+		byte[] bytes = new byte[len];
+		for (int i = 0; i < len; ++i) {
+			bytes[i] = buf.get(start + i);
+		}
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * Called from native code each time the walk buffer has been filled.
+	 */
+	static final class Decoder {
+
+		private final FsWalkRecord record;
+		private final Handler handler;
+
+		Decoder(ByteBuffer buf, Handler handler) {
+			this.record = new FsWalkRecord(buf.order(ByteOrder.nativeOrder()));
+			this.handler = handler;
+		}
+
+		/**
+		 * Hand each record in the first length bytes of the buffer to the
+		 * handler.
+		 *
+		 * @param length number of bytes of records in the buffer
+		 * @return false if the handler stopped the walk
+		 */
+		boolean decode(int length) {
+			int pos = 0;
+			while (pos < length) {
+				record.pos = pos;
+				if (!handler.handle(record)) {
+					return false;
+				}
+				pos += record.buf.getInt(pos + REC_LEN);
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Sleuth Kit Data Model
+ * 
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+/**
+ * A term to search file content for with a ContentSearch: either a literal
+ * string or a regular expression.
+ */
+public final class Keyword {
+
+	private final String term;
+	private final boolean literal;
+
+	/**
+	 * @param term the string, or the java.util.regex pattern, to search for
+	 * @param literal true if term is a literal string, false if it is a
+	 * regular expression
+	 */
+	public Keyword(String term, boolean literal) {
+		if (term == null || term.isEmpty()) {
+			throw new IllegalArgumentException("Keyword must not be empty"); //NON-NLS
+		}
+		this.term = term;
+		this.literal = literal;
+	}
+
+	public String getTerm() {
+		return term;
+	}
+
+	/**
+	 * @return true if the term is a literal string, false if it is a regular
+	 * expression
+	 */
+	public boolean isLiteral() {
+		return literal;
+	}
+
+	@Override
+	public String toString() {
+		return term;
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Sleuth Kit Data Model
+ * 
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A named list of keywords. The name is recorded as the set name of the
+ * keyword hit artifacts a ContentSearch creates for its keywords.
+ */
+public final class KeywordList {
+
+	private final String name;
+	private final List<Keyword> keywords;
+
+	public KeywordList(String name, List<Keyword> keywords) {
+		this.name = name;
+		this.keywords = Collections.unmodifiableList(new ArrayList<Keyword>(keywords));
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public List<Keyword> getKeywords() {
+		return keywords;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
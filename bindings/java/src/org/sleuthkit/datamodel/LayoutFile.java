@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -101,7 +102,6 @@ public void close() {
 	@Override
     protected int readInt(byte[] buf, long offset, long len) throws TskCoreException {
         long offsetInThisLayoutContent = 0; // current offset in this LayoutContent
-        int bytesRead = 0; // Bytes read so far
 		
 		if (imageHandle == -1) {
 			Content dataSource = getDataSource();
@@ -114,45 +114,41 @@ protected int readInt(byte[] buf, long offset, long len) throws TskCoreException
 			}
 		}
 		
-        for (TskFileRange range : getRanges()) {
-            if (bytesRead < len) { // we haven't read enough yet
-                if (offset < offsetInThisLayoutContent + range.getByteLen()) { // if we are in a range object we want to read from
-                    long offsetInRange = 0; // how far into the current range object to start reading
-                    if(bytesRead == 0){ // we haven't read anything yet so we want to read from the correct offset in this range object
-                        offsetInRange = offset - offsetInThisLayoutContent; // start reading from the correct offset
-                    }
-                    long offsetInImage = range.getByteStart() + offsetInRange; // how far into the image to start reading
-                    long lenToRead = Math.min(range.getByteLen() - offsetInRange, len-bytesRead); // how much we can read this time
-                    int lenRead = readImgToOffset(imageHandle, buf, bytesRead, offsetInImage, (int) lenToRead);
-                    bytesRead += lenRead;
-                    if(lenToRead != lenRead) { // If image read failed or was cut short
-                        break;
-                    }
-                }
-				offsetInThisLayoutContent += range.getByteLen();
-            } else { // we're done reading
-                break;
-            }
-        }
-        return bytesRead;
-    }
-	
-	/*
-	 * Read bytes from an image into a buffer, starting at given position in buffer
-	 * 
-	 * @param imgHandle		the image to read from
-	 * @param buf			the array to read into
-	 * @param offsetInBuf	where to start in the array
-	 * @param offsetInImage	where to start in the image
-	 * @param lenToRead		how far to read in the image
-	 */
-    private int readImgToOffset(long imgHandle, byte[] buf, int offsetInBuf, long offsetInImage, int lenToRead) throws TskCoreException {
-        byte[] currentBuffer = new byte[lenToRead]; // the buffer for the current range object
-        int lenRead = SleuthkitJNI.readImg(imgHandle, currentBuffer, offsetInImage, lenToRead);
-        System.arraycopy(currentBuffer, 0, buf, offsetInBuf, lenToRead); // copy what we just read into the main buffer
-        return lenRead;
-    }
-
+		// work out which part of each range is wanted, then read them all at once
+		List<TskFileRange> ranges = getRanges();
+		long[] imgOffsets = new long[ranges.size()];
+		long[] lens = new long[ranges.size()];
+		int[] bufOffsets = new int[ranges.size()];
+		int numRanges = 0;
+		long bytesToRead = 0;
+		for (TskFileRange range : ranges) {
+			if (bytesToRead >= len) { // we have all we need
+				break;
+			}
+			if (offset < offsetInThisLayoutContent + range.getByteLen()) { // if we are in a range object we want to read from
+				long offsetInRange = 0; // how far into the current range object to start reading
+				if (bytesToRead == 0) { // nothing yet so we want to read from the correct offset in this range object
+					offsetInRange = offset - offsetInThisLayoutContent;
+				}
+				long lenToRead = Math.min(range.getByteLen() - offsetInRange, len - bytesToRead); // how much we can read this time
+				imgOffsets[numRanges] = range.getByteStart() + offsetInRange;
+				lens[numRanges] = lenToRead;
+				bufOffsets[numRanges] = (int) bytesToRead;
+				++numRanges;
+				bytesToRead += lenToRead;
+			}
+			offsetInThisLayoutContent += range.getByteLen();
+		}
+		if (numRanges == 0) {
+			return 0;
+		}
+		if (numRanges < ranges.size()) {
+			imgOffsets = Arrays.copyOf(imgOffsets, numRanges);
+			lens = Arrays.copyOf(lens, numRanges);
+			bufOffsets = Arrays.copyOf(bufOffsets, numRanges);
+		}
+		return SleuthkitJNI.readImgRanges(imageHandle, buf, imgOffsets, lens, bufOffsets);
+	}
 
 	@Override
 	public <T> T accept(ContentVisitor<T> v) {
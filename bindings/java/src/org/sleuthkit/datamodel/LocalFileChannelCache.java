@@ -0,0 +1,446 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2014 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shared cache of open channels to the local files (LocalFile, DerivedFile and
+ * any other AbstractFile with a local path) that are read by the data model.
+ *
+ * Reads are positional, so any number of threads can read the same file at
+ * once without affecting each other. Files no bigger than the mapping
+ * threshold can optionally be memory mapped. A channel that has not been used
+ * for the idle timeout, or the least recently used one when there are too many
+ * open, is closed once no read is using it, and its mapping is released. Idle
+ * channels are swept on a daemon thread while any are open, so they are
+ * closed even if no more reads are done.
+ */
+public final class LocalFileChannelCache {
+
+	private static final Logger logger = Logger.getLogger(LocalFileChannelCache.class.getName());
+	private static final ResourceBundle bundle = ResourceBundle.getBundle("org.sleuthkit.datamodel.Bundle");
+	private static final LocalFileChannelCache instance = new LocalFileChannelCache();
+	/**
+	 * Default time, in milliseconds, that an unused channel is kept open.
+	 */
+	public static final long DEFAULT_IDLE_TIMEOUT = 30 * 1000;
+	/**
+	 * Default maximum number of channels kept open.
+	 */
+	public static final int DEFAULT_MAX_OPEN_CHANNELS = 256;
+	//least recently used first, guarded by this
+	private final LinkedHashMap<String, ChannelEntry> channels = new LinkedHashMap<String, ChannelEntry>(16, 0.75f, true);
+	private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+	private int maxOpenChannels = DEFAULT_MAX_OPEN_CHANNELS;
+	private long mappedReadThreshold = 0;
+	private long lastSweep = 0;
+	private ScheduledExecutorService sweepExecutor = null;
+	private ScheduledFuture<?> sweepFuture = null; //set while a sweep is scheduled
+
+	private LocalFileChannelCache() {
+	}
+
+	/**
+	 * @return the shared cache
+	 */
+	public static LocalFileChannelCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Memory map files that are no bigger than the given size, instead of
+	 * reading them through the channel. 0, the default, turns mapping off.
+	 *
+	 * @param bytes largest file size to map, in bytes
+	 */
+	public synchronized void setMappedReadThreshold(long bytes) {
+		if (bytes < 0 || bytes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Mapped read threshold must be between 0 and Integer.MAX_VALUE"); //NON-NLS
+		}
+		mappedReadThreshold = bytes;
+	}
+
+	/**
+	 * @return largest file size that is memory mapped, 0 if mapping is off
+	 */
+	public synchronized long getMappedReadThreshold() {
+		return mappedReadThreshold;
+	}
+
+	/**
+	 * Set how long, in milliseconds, an unused channel is kept open.
+	 *
+	 * @param millis idle timeout
+	 */
+	public synchronized void setIdleTimeout(long millis) {
+		idleTimeout = millis;
+	}
+
+	/**
+	 * Set the number of channels that may be kept open.
+	 *
+	 * @param max maximum number of open channels, at least 1
+	 */
+	public synchronized void setMaxOpenChannels(int max) {
+		if (max < 1) {
+			throw new IllegalArgumentException("Maximum open channels must be at least 1"); //NON-NLS
+		}
+		maxOpenChannels = max;
+	}
+
+	/**
+	 * Close all of the channels and release their mappings. Channels that are
+	 * being read are closed when their reads are done. Files read after this
+	 * are opened again.
+	 */
+	public void closeAll() {
+		List<ChannelEntry> toClose = new ArrayList<ChannelEntry>();
+		synchronized (this) {
+			for (ChannelEntry entry : channels.values()) {
+				if (entry.refCount == 0) {
+					toClose.add(entry);
+				} else {
+					entry.closeOnRelease = true;
+				}
+			}
+			channels.clear();
+			if (sweepFuture != null) {
+				sweepFuture.cancel(false);
+				sweepFuture = null;
+			}
+		}
+		for (ChannelEntry entry : toClose) {
+			entry.close();
+		}
+	}
+
+	/**
+	 * @return number of channels that are open
+	 */
+	public synchronized int getOpenChannelCount() {
+		return channels.size();
+	}
+
+	/**
+	 * Read from a local file.
+	 *
+	 * @param absPath absolute path of the file
+	 * @param buf buffer to read to, starting at index 0
+	 * @param offset byte offset in the file to start at
+	 * @param len number of bytes to read
+	 * @return number of bytes read, or -1 if offset is at or past the end of
+	 * the file
+	 * @throws TskCoreException if the file can not be opened or read
+	 */
+	int read(String absPath, byte[] buf, long offset, long len) throws TskCoreException {
+		ChannelEntry entry = acquire(absPath);
+		try {
+			final int toRead = (int) Math.min(len, buf.length);
+			if (entry.map != null) {
+				if (offset >= entry.map.capacity()) {
+					return -1;
+				}
+				//duplicate so each read has its own position
+				ByteBuffer view = entry.map.duplicate();
+				view.position((int) offset);
+				int bytesRead = Math.min(toRead, view.remaining());
+				view.get(buf, 0, bytesRead);
+				return bytesRead;
+			}
+
+			ByteBuffer dst = ByteBuffer.wrap(buf, 0, toRead);
+			long position = offset;
+			while (dst.hasRemaining()) {
+				int read = entry.channel.read(dst, position);
+				if (read < 0) {
+					break;
+				}
+				position += read;
+			}
+			int bytesRead = (int) (position - offset);
+			return (bytesRead == 0 && toRead > 0) ? -1 : bytesRead;
+		} catch (IOException ex) {
+			final String msg = MessageFormat.format(bundle.getString("AbstractFile.readLocal.exception.msg5.text"), absPath);
+			logger.log(Level.SEVERE, msg, ex);
+			//local file could have been deleted / moved
+			throw new TskCoreException(msg, ex);
+		} finally {
+			release(entry);
+		}
+	}
+
+	/**
+	 * Close the channel to a file if no read is using it.
+	 *
+	 * @param absPath absolute path of the file
+	 */
+	void closeIfIdle(String absPath) {
+		ChannelEntry toClose = null;
+		synchronized (this) {
+			ChannelEntry entry = channels.get(absPath);
+			if (entry != null && entry.refCount == 0) {
+				channels.remove(absPath);
+				toClose = entry;
+			}
+		}
+		if (toClose != null) {
+			toClose.close();
+		}
+	}
+
+	private ChannelEntry acquire(String absPath) throws TskCoreException {
+		synchronized (this) {
+			ChannelEntry entry = channels.get(absPath);
+			if (entry != null) {
+				entry.refCount++;
+				return entry;
+			}
+		}
+
+		//open outside of the lock
+		ChannelEntry opened = open(absPath);
+		ChannelEntry duplicate = null;
+		ChannelEntry entry;
+		synchronized (this) {
+			entry = channels.get(absPath);
+			if (entry != null) {
+				duplicate = opened;
+			} else {
+				entry = opened;
+				channels.put(absPath, entry);
+				scheduleSweep();
+			}
+			entry.refCount++;
+		}
+		if (duplicate != null) {
+			duplicate.close();
+		}
+		return entry;
+	}
+
+	private void release(ChannelEntry entry) {
+		List<ChannelEntry> toClose = new ArrayList<ChannelEntry>();
+		synchronized (this) {
+			entry.refCount--;
+			entry.lastUsed = System.currentTimeMillis();
+			if (entry.closeOnRelease && entry.refCount == 0) {
+				toClose.add(entry);
+			}
+			evictIdle(toClose, entry.lastUsed, entry.lastUsed - lastSweep >= idleTimeout);
+		}
+		for (ChannelEntry closing : toClose) {
+			closing.close();
+		}
+	}
+
+	/**
+	 * Sweep the idle channels on the daemon thread after the idle timeout, if
+	 * any are open and no sweep is scheduled yet. Must be called with the
+	 * lock held.
+	 */
+	private void scheduleSweep() {
+		if (sweepFuture != null || channels.isEmpty()) {
+			return;
+		}
+		if (sweepExecutor == null) {
+			sweepExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "Local file channel sweeper"); //NON-NLS
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		sweepFuture = sweepExecutor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				sweep();
+			}
+		}, Math.max(1, idleTimeout), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Close the channels that have timed out, and schedule the next sweep
+	 * while any are still open.
+	 */
+	private void sweep() {
+		List<ChannelEntry> toClose = new ArrayList<ChannelEntry>();
+		synchronized (this) {
+			sweepFuture = null;
+			evictIdle(toClose, System.currentTimeMillis(), true);
+			scheduleSweep();
+		}
+		for (ChannelEntry entry : toClose) {
+			entry.close();
+		}
+	}
+
+	/**
+	 * Remove unused channels that are over the count limit or, if sweep is
+	 * set, have timed out. Must be called with the lock held.
+	 */
+	private void evictIdle(List<ChannelEntry> toClose, long now, boolean sweep) {
+		if (!sweep && channels.size() <= maxOpenChannels) {
+			return;
+		}
+		Iterator<ChannelEntry> it = channels.values().iterator();
+		while (it.hasNext()) {
+			ChannelEntry entry = it.next();
+			if (entry.refCount > 0) {
+				continue;
+			}
+			if (channels.size() > maxOpenChannels || now - entry.lastUsed >= idleTimeout) {
+				it.remove();
+				toClose.add(entry);
+			} else if (!sweep) {
+				break;
+			}
+		}
+		if (sweep) {
+			lastSweep = now;
+		}
+	}
+
+	/**
+	 * Open a channel to a file, checking that it exists and is readable only
+	 * if the open fails.
+	 */
+	private ChannelEntry open(String absPath) throws TskCoreException {
+		File localFile = new File(absPath);
+		FileInputStream stream;
+		try {
+			stream = new FileInputStream(localFile);
+		} catch (FileNotFoundException ex) {
+			if (!localFile.exists()) {
+				throw new TskCoreException(
+						MessageFormat.format(bundle.getString("AbstractFile.readLocal.exception.msg2.text"), absPath), ex);
+			}
+			if (!localFile.canRead()) {
+				throw new TskCoreException(
+						MessageFormat.format(bundle.getString("AbstractFile.readLocal.exception.msg3.text"), absPath), ex);
+			}
+			final String msg = MessageFormat.format(bundle.getString("AbstractFile.readLocal.exception.msg4.text"), absPath);
+			logger.log(Level.SEVERE, msg, ex);
+			//file could have been deleted or moved
+			throw new TskCoreException(msg, ex);
+		}
+
+		FileChannel channel = stream.getChannel();
+		MappedByteBuffer map = null;
+		long threshold;
+		synchronized (this) {
+			threshold = mappedReadThreshold;
+		}
+		if (threshold > 0) {
+			try {
+				long size = channel.size();
+				if (size > 0 && size <= threshold) {
+					map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				}
+			} catch (IOException ex) {
+				logger.log(Level.WARNING, "Could not map local file, reading it through the channel: " + absPath, ex); //NON-NLS
+			}
+		}
+		return new ChannelEntry(stream, channel, map);
+	}
+
+	private static final class ChannelEntry {
+
+		private final FileInputStream stream;
+		private final FileChannel channel;
+		private final MappedByteBuffer map;
+		private int refCount = 0; //guarded by the cache
+		private long lastUsed; //guarded by the cache
+		private boolean closeOnRelease = false; //guarded by the cache
+
+		ChannelEntry(FileInputStream stream, FileChannel channel, MappedByteBuffer map) {
+			this.stream = stream;
+			this.channel = channel;
+			this.map = map;
+			this.lastUsed = System.currentTimeMillis();
+		}
+
+		/**
+		 * Close the channel and release the mapping. Only called once no read
+		 * is using the entry.
+		 */
+		void close() {
+			if (map != null) {
+				unmap(map);
+			}
+			try {
+				stream.close();
+			} catch (IOException ex) {
+				logger.log(Level.WARNING, "Could not close local file channel", ex); //NON-NLS
+			}
+		}
+	}
+
+	/**
+	 * Release a mapping now rather than when it is garbage collected, which
+	 * is the only way Java offers. Until then the address space stays in use
+	 * and, on Windows, the file can not be deleted. Uses Unsafe.invokeCleaner()
+	 * on Java 9 and later and the buffer's cleaner before that, through
+	 * reflection; if neither is available the mapping is left to the garbage
+	 * collector.
+	 */
+	private static void unmap(MappedByteBuffer map) {
+		try {
+			try {
+				Class<?> unsafeClass = Class.forName("sun.misc.Unsafe"); //NON-NLS
+				Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class); //NON-NLS
+				Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe"); //NON-NLS
+				theUnsafe.setAccessible(true);
+				invokeCleaner.invoke(theUnsafe.get(null), map);
+			} catch (NoSuchMethodException ex) {
+				Method cleanerMethod = map.getClass().getMethod("cleaner"); //NON-NLS
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(map);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner); //NON-NLS
+				}
+			}
+		} catch (Exception ex) {
+			logger.log(Level.FINE, "Could not unmap local file, leaving it to the garbage collector", ex); //NON-NLS
+		}
+	}
+}
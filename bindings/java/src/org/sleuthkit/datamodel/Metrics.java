@@ -0,0 +1,519 @@
+/*
+ * Sleuth Kit Data Model
+ * 
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * A set of named counters, histograms and gauges, with no dependencies beyond
+ * the JDK. Each SleuthkitCase has one, from SleuthkitCase.getMetrics(), and
+ * the native image, file system and file calls share another one, from
+ * SleuthkitJNI.getMetrics().
+ *
+ * Updates are lock free so metrics can be kept on hot paths; reading them
+ * gives a snapshot that may be a little behind concurrent updates. Durations
+ * are recorded in microseconds. The values can be read with getValues(), sent
+ * periodically to a Reporter, or read over JMX once registerMBean() has been
+ * called, as attributes of the bean
+ * org.sleuthkit.datamodel:type=Metrics,name=<name>,instance=<n>. The instance
+ * number tells apart metrics with the same name, such as those of a case that
+ * is open twice; see getMBeanName().
+ */
+public final class Metrics {
+
+	/**
+	 * Receives the values of the metrics periodically, see addReporter().
+	 */
+	public interface Reporter {
+
+		/**
+		 * @param name name of the metrics
+		 * @param values the values, as from getValues()
+		 */
+		void report(String name, SortedMap<String, Long> values);
+	}
+
+	/**
+	 * A value read when the metrics are read, for example the size of a
+	 * cache.
+	 */
+	public interface Gauge {
+
+		long getValue();
+	}
+
+	/**
+	 * A count that only goes up, until reset.
+	 */
+	public static final class Counter {
+
+		private final AtomicLong count = new AtomicLong();
+
+		private Counter() {
+		}
+
+		public void increment() {
+			count.incrementAndGet();
+		}
+
+		public void add(long amount) {
+			count.addAndGet(amount);
+		}
+
+		public long getCount() {
+			return count.get();
+		}
+
+		private void reset() {
+			count.set(0);
+		}
+	}
+
+	/**
+	 * The distribution of non-negative values, usually durations. Values
+	 * under 16 are counted exactly; larger ones in buckets of 8 per power of
+	 * two, so percentiles are within 12.5% of the true value.
+	 */
+	public static final class Histogram {
+
+		private static final int EXACT = 16;
+		private static final int SUB_BUCKETS = 8;
+		private static final int BUCKET_COUNT = EXACT + (63 - 4) * SUB_BUCKETS;
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong total = new AtomicLong();
+		private final AtomicLong max = new AtomicLong();
+
+		private Histogram() {
+		}
+
+		/**
+		 * @param value the value; negative values are counted as 0
+		 */
+		public void record(long value) {
+			if (value < 0) {
+				value = 0;
+			}
+			buckets.incrementAndGet(bucketOf(value));
+			count.incrementAndGet();
+			total.addAndGet(value);
+			long current = max.get();
+			while (value > current && !max.compareAndSet(current, value)) {
+				current = max.get();
+			}
+		}
+
+		/**
+		 * Record the time since a start time, in microseconds.
+		 *
+		 * @param startNanos start time, from System.nanoTime()
+		 */
+		public void recordSince(long startNanos) {
+			record((System.nanoTime() - startNanos) / 1000);
+		}
+
+		public long getCount() {
+			return count.get();
+		}
+
+		/**
+		 * @return sum of the values
+		 */
+		public long getTotal() {
+			return total.get();
+		}
+
+		public long getMax() {
+			return max.get();
+		}
+
+		public long getMean() {
+			long n = count.get();
+			return (n > 0) ? total.get() / n : 0;
+		}
+
+		/**
+		 * @param percentile the percentile, from 0 to 100
+		 * @return the smallest value that at least that percentage of the
+		 * values are less than or equal to, to within 12.5%
+		 */
+		public long getPercentile(double percentile) {
+			long[] counts = new long[BUCKET_COUNT];
+			long n = 0;
+			for (int i = 0; i < BUCKET_COUNT; ++i) {
+				counts[i] = buckets.get(i);
+				n += counts[i];
+			}
+			if (n == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(n * Math.min(100, Math.max(0, percentile)) / 100));
+			long seen = 0;
+			for (int i = 0; i < BUCKET_COUNT; ++i) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return Math.min(bucketMax(i), max.get());
+				}
+			}
+			return max.get();
+		}
+
+		private void reset() {
+			for (int i = 0; i < BUCKET_COUNT; ++i) {
+				buckets.set(i, 0);
+			}
+			count.set(0);
+			total.set(0);
+			max.set(0);
+		}
+
+		private static int bucketOf(long value) {
+			if (value < EXACT) {
+				return (int) value;
+			}
+			int exponent = 63 - Long.numberOfLeadingZeros(value);
+			int mantissa = (int) (value >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+			return EXACT + (exponent - 4) * SUB_BUCKETS + mantissa;
+		}
+
+		/**
+		 * @return largest value that goes in a bucket
+		 */
+		private static long bucketMax(int bucket) {
+			if (bucket < EXACT) {
+				return bucket;
+			}
+			int exponent = (bucket - EXACT) / SUB_BUCKETS + 4;
+			long mantissa = (bucket - EXACT) % SUB_BUCKETS;
+			return ((SUB_BUCKETS + mantissa + 1) << (exponent - 3)) - 1;
+		}
+	}
+	private static final Logger logger = Logger.getLogger(Metrics.class.getName());
+	private static final String DOMAIN = "org.sleuthkit.datamodel"; //NON-NLS
+	private static final AtomicLong instanceCount = new AtomicLong();
+	private final String name;
+	private final long instance = instanceCount.incrementAndGet();
+	private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+	private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+	private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<String, Gauge>();
+	//guarded by this
+	private ScheduledExecutorService reportExecutor;
+	private final Map<Reporter, ScheduledFuture<?>> reporters = new ConcurrentHashMap<Reporter, ScheduledFuture<?>>();
+	private ObjectName objectName;
+
+	/**
+	 * @param name name of the metrics, used in reports and for the JMX bean
+	 */
+	Metrics(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Get a counter, creating it if needed.
+	 */
+	public Counter counter(String counterName) {
+		Counter counter = counters.get(counterName);
+		if (counter == null) {
+			Counter newCounter = new Counter();
+			counter = counters.putIfAbsent(counterName, newCounter);
+			if (counter == null) {
+				counter = newCounter;
+			}
+		}
+		return counter;
+	}
+
+	/**
+	 * Get a histogram, creating it if needed.
+	 */
+	public Histogram histogram(String histogramName) {
+		Histogram histogram = histograms.get(histogramName);
+		if (histogram == null) {
+			Histogram newHistogram = new Histogram();
+			histogram = histograms.putIfAbsent(histogramName, newHistogram);
+			if (histogram == null) {
+				histogram = newHistogram;
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * Add a gauge, replacing any gauge of the same name.
+	 */
+	public void gauge(String gaugeName, Gauge gauge) {
+		gauges.put(gaugeName, gauge);
+	}
+
+	/**
+	 * Set the counters and histograms back to zero. Gauges are not affected.
+	 */
+	public void reset() {
+		for (Counter counter : counters.values()) {
+			counter.reset();
+		}
+		for (Histogram histogram : histograms.values()) {
+			histogram.reset();
+		}
+	}
+
+	/**
+	 * Read all of the metrics. A counter or gauge gives one value under its
+	 * name; a histogram gives name.count, name.total, name.mean, name.max,
+	 * name.p50, name.p90 and name.p99.
+	 *
+	 * @return the values, by name
+	 */
+	public SortedMap<String, Long> getValues() {
+		SortedMap<String, Long> values = new TreeMap<String, Long>();
+		for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+			values.put(entry.getKey(), entry.getValue().getCount());
+		}
+		for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+			Histogram histogram = entry.getValue();
+			if (histogram.getCount() == 0) {
+				continue;
+			}
+			String prefix = entry.getKey();
+			values.put(prefix + ".count", histogram.getCount()); //NON-NLS
+			values.put(prefix + ".total", histogram.getTotal()); //NON-NLS
+			values.put(prefix + ".mean", histogram.getMean()); //NON-NLS
+			values.put(prefix + ".max", histogram.getMax()); //NON-NLS
+			values.put(prefix + ".p50", histogram.getPercentile(50)); //NON-NLS
+			values.put(prefix + ".p90", histogram.getPercentile(90)); //NON-NLS
+			values.put(prefix + ".p99", histogram.getPercentile(99)); //NON-NLS
+		}
+		for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+			try {
+				values.put(entry.getKey(), entry.getValue().getValue());
+			} catch (RuntimeException ex) {
+				logger.log(Level.WARNING, "Error reading gauge " + entry.getKey(), ex); //NON-NLS
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Send the values to a reporter periodically, on a daemon thread, until
+	 * removeReporter() is called.
+	 *
+	 * @param reporter the reporter
+	 * @param period time between reports
+	 * @param unit unit of period
+	 */
+	public synchronized void addReporter(final Reporter reporter, long period, TimeUnit unit) {
+		if (reportExecutor == null) {
+			reportExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "Metrics reporter " + name); //NON-NLS
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		ScheduledFuture<?> future = reportExecutor.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					reporter.report(name, getValues());
+				} catch (RuntimeException ex) {
+					logger.log(Level.WARNING, "Error reporting metrics", ex); //NON-NLS
+				}
+			}
+		}, period, period, unit);
+		ScheduledFuture<?> previous = reporters.put(reporter, future);
+		if (previous != null) {
+			previous.cancel(false);
+		}
+	}
+
+	/**
+	 * Stop sending values to a reporter.
+	 */
+	public synchronized void removeReporter(Reporter reporter) {
+		ScheduledFuture<?> future = reporters.remove(reporter);
+		if (future != null) {
+			future.cancel(false);
+		}
+		if (reporters.isEmpty() && reportExecutor != null) {
+			reportExecutor.shutdown();
+			reportExecutor = null;
+		}
+	}
+
+	/**
+	 * A reporter that writes the values to a logger at INFO level, one metric
+	 * per line.
+	 */
+	public static Reporter newLogReporter(final Logger reportLogger) {
+		return new Reporter() {
+			@Override
+			public void report(String name, SortedMap<String, Long> values) {
+				if (!reportLogger.isLoggable(Level.INFO)) {
+					return;
+				}
+				StringBuilder text = new StringBuilder("Metrics of ").append(name); //NON-NLS
+				for (Map.Entry<String, Long> entry : values.entrySet()) {
+					text.append('\n').append(entry.getKey()).append(" = ").append(entry.getValue()); //NON-NLS
+				}
+				reportLogger.info(text.toString());
+			}
+		};
+	}
+
+	/**
+	 * Register the metrics with the platform MBean server, if they are not
+	 * already. Errors are logged, not thrown, since metrics are not worth
+	 * failing for.
+	 */
+	public synchronized void registerMBean() {
+		if (objectName != null) {
+			return;
+		}
+		try {
+			ObjectName newName = new ObjectName(DOMAIN + ":type=Metrics,name=" + ObjectName.quote(name) + ",instance=" + instance); //NON-NLS
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), newName);
+			objectName = newName;
+		} catch (JMException ex) {
+			logger.log(Level.WARNING, "Could not register metrics MBean for " + name, ex); //NON-NLS
+		}
+	}
+
+	/**
+	 * @return the name the metrics are registered with in the platform MBean
+	 * server, or null if registerMBean() has not been called or failed
+	 */
+	public synchronized ObjectName getMBeanName() {
+		return objectName;
+	}
+
+	/**
+	 * Stop the reporters and unregister the JMX bean.
+	 */
+	synchronized void close() {
+		for (Reporter reporter : new ArrayList<Reporter>(reporters.keySet())) {
+			removeReporter(reporter);
+		}
+		if (objectName != null) {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			try {
+				server.unregisterMBean(objectName);
+			} catch (JMException ex) {
+				logger.log(Level.WARNING, "Could not unregister metrics MBean for " + name, ex); //NON-NLS
+			}
+			objectName = null;
+		}
+	}
+
+	/**
+	 * Exposes the values as read-only Long attributes, and reset() as an
+	 * operation. The attributes are those of getValues() when the bean info
+	 * is read, so new metrics show up when a JMX client refreshes.
+	 */
+	private final class MetricsMBean implements DynamicMBean {
+
+		private static final String RESET = "reset"; //NON-NLS
+
+		@Override
+		public Object getAttribute(String attribute) throws AttributeNotFoundException {
+			Long value = getValues().get(attribute);
+			if (value == null) {
+				throw new AttributeNotFoundException(attribute);
+			}
+			return value;
+		}
+
+		@Override
+		public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+			throw new AttributeNotFoundException("Metrics are read-only"); //NON-NLS
+		}
+
+		@Override
+		public AttributeList getAttributes(String[] attributes) {
+			SortedMap<String, Long> values = getValues();
+			AttributeList list = new AttributeList();
+			for (String attribute : attributes) {
+				Long value = values.get(attribute);
+				if (value != null) {
+					list.add(new Attribute(attribute, value));
+				}
+			}
+			return list;
+		}
+
+		@Override
+		public AttributeList setAttributes(AttributeList attributes) {
+			return new AttributeList();
+		}
+
+		@Override
+		public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+			if (RESET.equals(actionName) && (params == null || params.length == 0)) {
+				reset();
+				return null;
+			}
+			throw new ReflectionException(new NoSuchMethodException(actionName));
+		}
+
+		@Override
+		public MBeanInfo getMBeanInfo() {
+			List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+			for (String key : getValues().keySet()) {
+				attributes.add(new MBeanAttributeInfo(key, Long.class.getName(), key, true, false, false));
+			}
+			MBeanOperationInfo reset = new MBeanOperationInfo(RESET, "Set the counters and histograms to zero", //NON-NLS
+					null, "void", MBeanOperationInfo.ACTION); //NON-NLS
+			return new MBeanInfo(Metrics.class.getName(), "Metrics of " + name, //NON-NLS
+					attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null,
+					new MBeanOperationInfo[]{reset}, null);
+		}
+	}
+}
@@ -0,0 +1,723 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2014 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.sleuthkit.datamodel.TskData.TSK_FS_ATTR_TYPE_ENUM;
+
+/**
+ * Keeps track of the native image, file system and file handles that are
+ * opened through SleuthkitJNI.
+ *
+ * Image and file system handles are cached for the duration of the
+ * application, as they always have been, but are looked up without a global
+ * lock. Each image can also have a small pool of extra image handles that are
+ * used only by readImg(), so that threads reading the same image do not all
+ * wait on the cache lock of one native TSK_IMG_INFO.
+ *
+ * File handles are handed out as reference counted leases. A file handle that
+ * is not leased by anyone is kept open in case it is needed again, and the
+ * least recently used idle handles are closed once the estimated native memory
+ * used by all of the open file handles goes over the budget. Leasing and
+ * releasing an open handle only updates its reference count; the idle list
+ * has its own lock, taken only when a count goes between 0 and 1.
+ *
+ * Get the instance with SleuthkitJNI.getHandleManager().
+ */
+public final class NativeHandleManager {
+
+	private static final Logger logger = Logger.getLogger(NativeHandleManager.class.getName());
+
+	/**
+	 * Rough estimate, in bytes, of the native memory held by one open file
+	 * handle (the TSK_FS_FILE, its meta data and attribute list).
+	 */
+	public static final long ESTIMATED_FILE_HANDLE_SIZE = 8 * 1024;
+	/**
+	 * Default budget, in bytes, for the native memory held by open file
+	 * handles.
+	 */
+	public static final long DEFAULT_NATIVE_MEMORY_BUDGET = 64L * 1024 * 1024;
+	//map concat. image paths to cached image handle
+	private final ConcurrentMap<String, ImageEntry> images = new ConcurrentHashMap<String, ImageEntry>();
+	//map image handle returned by openImage() to its entry
+	private final ConcurrentMap<Long, ImageEntry> imagesByHandle = new ConcurrentHashMap<Long, ImageEntry>();
+	private volatile int imageHandlePoolSize = 1;
+	//map image handle to map of fs offsets to cached fs handle
+	private final ConcurrentMap<Long, ConcurrentMap<Long, FsEntry>> fileSystems = new ConcurrentHashMap<Long, ConcurrentMap<Long, FsEntry>>();
+	//all open file handles
+	private final ConcurrentMap<FileKey, FileHandleLease> files = new ConcurrentHashMap<FileKey, FileHandleLease>();
+	//open file handles that are not leased, least recently released first, guarded by idleLock
+	private final LinkedHashMap<FileKey, FileHandleLease> idleFiles = new LinkedHashMap<FileKey, FileHandleLease>();
+	private final Object idleLock = new Object();
+	private volatile long nativeMemoryBudget = DEFAULT_NATIVE_MEMORY_BUDGET;
+	private final AtomicLong fileOpens = new AtomicLong();
+	private final AtomicLong fileHits = new AtomicLong();
+	private final AtomicLong fileEvictions = new AtomicLong();
+	private final Metrics.Counter imageHits;
+	private final Metrics.Counter imageMisses;
+	private final Metrics.Histogram imageOpenTime;
+	private final Metrics.Counter fsHits;
+	private final Metrics.Counter fsMisses;
+	private final Metrics.Histogram fsOpenTime;
+
+	/**
+	 * @param metrics where to keep the cache hits and misses, and the time
+	 * taken to open images and file systems
+	 */
+	NativeHandleManager(Metrics metrics) {
+		imageHits = metrics.counter("cache.image.hits"); //NON-NLS
+		imageMisses = metrics.counter("cache.image.misses"); //NON-NLS
+		imageOpenTime = metrics.histogram("jni.open.img"); //NON-NLS
+		fsHits = metrics.counter("cache.fs.hits"); //NON-NLS
+		fsMisses = metrics.counter("cache.fs.misses"); //NON-NLS
+		fsOpenTime = metrics.histogram("jni.open.fs"); //NON-NLS
+		metrics.gauge("cache.image.open", new Metrics.Gauge() { //NON-NLS
+			@Override
+			public long getValue() {
+				return getOpenImageCount();
+			}
+		});
+		metrics.gauge("cache.image.pooled", new Metrics.Gauge() { //NON-NLS
+			@Override
+			public long getValue() {
+				return getPooledImageHandleCount();
+			}
+		});
+		metrics.gauge("cache.fs.open", new Metrics.Gauge() { //NON-NLS
+			@Override
+			public long getValue() {
+				return getOpenFileSystemCount();
+			}
+		});
+		metrics.gauge("cache.file.open", new Metrics.Gauge() { //NON-NLS
+			@Override
+			public long getValue() {
+				return getOpenFileCount();
+			}
+		});
+		metrics.gauge("cache.file.leased", new Metrics.Gauge() { //NON-NLS
+			@Override
+			public long getValue() {
+				return getLeasedFileCount();
+			}
+		});
+		metrics.gauge("cache.file.hits", new Metrics.Gauge() { //NON-NLS
+			@Override
+			public long getValue() {
+				return getFileHitCount();
+			}
+		});
+		metrics.gauge("cache.file.misses", new Metrics.Gauge() { //NON-NLS
+			@Override
+			public long getValue() {
+				return getFileOpenCount();
+			}
+		});
+		metrics.gauge("cache.file.evictions", new Metrics.Gauge() { //NON-NLS
+			@Override
+			public long getValue() {
+				return getFileEvictionCount();
+			}
+		});
+	}
+
+	/**
+	 * Get the cached handle for an image, opening it if needed.
+	 *
+	 * @param imageFiles the paths to the image parts
+	 * @return the image handle
+	 * @throws TskCoreException if the image could not be opened
+	 */
+	long openImage(String[] imageFiles) throws TskCoreException {
+		StringBuilder keyBuilder = new StringBuilder();
+		for (int i = 0; i < imageFiles.length; ++i) {
+			keyBuilder.append(imageFiles[i]);
+		}
+		final String imageKey = keyBuilder.toString();
+
+		ImageEntry entry = images.get(imageKey);
+		if (entry == null) {
+			ImageEntry newEntry = new ImageEntry(imageFiles);
+			entry = images.putIfAbsent(imageKey, newEntry);
+			if (entry == null) {
+				entry = newEntry;
+			}
+		}
+		long handle = entry.handle;
+		if (handle != 0) {
+			imageHits.increment();
+		} else {
+			long start = System.nanoTime();
+			handle = entry.getHandle();
+			imageOpenTime.recordSince(start);
+			imageMisses.increment();
+		}
+		imagesByHandle.putIfAbsent(handle, entry);
+		return handle;
+	}
+
+	/**
+	 * Read from an image. If the image handle pool size is more than one, the
+	 * read is done with whichever handle of the image is not in use, opening
+	 * another one if the pool is not full yet.
+	 *
+	 * @param imgHandle handle returned by openImage()
+	 * @param readBuffer buffer to read to
+	 * @param offset byte offset in the image to start at
+	 * @param len amount of data to read
+	 * @return the number of bytes read, or -1 on end of image
+	 * @throws TskCoreException if the read failed
+	 */
+	int readImg(long imgHandle, byte[] readBuffer, long offset, long len) throws TskCoreException {
+		final int poolSize = imageHandlePoolSize;
+		ImageEntry entry;
+		if (poolSize <= 1 || (entry = imagesByHandle.get(imgHandle)) == null) {
+			return SleuthkitJNI.readImgNat(imgHandle, readBuffer, offset, len);
+		}
+		long readHandle = entry.acquireReader(poolSize);
+		try {
+			return SleuthkitJNI.readImgNat(readHandle, readBuffer, offset, len);
+		} finally {
+			releaseReader(entry, readHandle);
+		}
+	}
+
+	/**
+	 * Read a list of ranges from an image with one native call, using the
+	 * image handle pool in the same way as readImg().
+	 *
+	 * @param imgHandle handle returned by openImage()
+	 * @param readBuffer buffer to read to
+	 * @param imgOffsets byte offset in the image of each range
+	 * @param lens length in bytes of each range
+	 * @param bufOffsets offset in readBuffer to read each range to
+	 * @return the number of bytes read
+	 * @throws TskCoreException if the read failed
+	 */
+	int readImgRanges(long imgHandle, byte[] readBuffer, long[] imgOffsets, long[] lens, int[] bufOffsets) throws TskCoreException {
+		final int poolSize = imageHandlePoolSize;
+		ImageEntry entry;
+		if (poolSize <= 1 || (entry = imagesByHandle.get(imgHandle)) == null) {
+			return SleuthkitJNI.readImgRangesNat(imgHandle, readBuffer, imgOffsets, lens, bufOffsets);
+		}
+		long readHandle = entry.acquireReader(poolSize);
+		try {
+			return SleuthkitJNI.readImgRangesNat(readHandle, readBuffer, imgOffsets, lens, bufOffsets);
+		} finally {
+			releaseReader(entry, readHandle);
+		}
+	}
+
+	/**
+	 * Return a pooled handle to its image, closing idle handles while the
+	 * image has more than the pool allows. Checking the pool size after the
+	 * handle is returned means either this or setImageHandlePoolSize() closes
+	 * it if the pool is made smaller at the same time.
+	 */
+	private void releaseReader(ImageEntry entry, long readHandle) {
+		entry.releaseReader(readHandle);
+		entry.trimReaders(imageHandlePoolSize);
+	}
+
+	/**
+	 * Set the number of native handles each image may have open for reads
+	 * through readImg(). Each handle has its own native read cache (about
+	 * 256KB) and, for E01 and other formats, its own library state. A value
+	 * of 1, the default, reads every image through the single handle that is
+	 * also used by its file systems. Making the pool smaller closes the
+	 * extra handles that are not in use now and the others when their reads
+	 * are done.
+	 *
+	 * @param size number of handles per image, at least 1
+	 */
+	public void setImageHandlePoolSize(int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("Image handle pool size must be at least 1"); //NON-NLS
+		}
+		imageHandlePoolSize = size;
+		for (ImageEntry entry : images.values()) {
+			entry.trimReaders(size);
+		}
+	}
+
+	/**
+	 * @return the number of native handles each image may have open for reads
+	 */
+	public int getImageHandlePoolSize() {
+		return imageHandlePoolSize;
+	}
+
+	/**
+	 * Get the cached handle for a file system, opening it if needed.
+	 *
+	 * @param imgHandle handle of the image the file system is in
+	 * @param fsOffset byte offset of the file system in the image
+	 * @return the file system handle
+	 * @throws TskCoreException if the file system could not be opened
+	 */
+	long openFs(long imgHandle, long fsOffset) throws TskCoreException {
+		ConcurrentMap<Long, FsEntry> imgFileSystems = fileSystems.get(imgHandle);
+		if (imgFileSystems == null) {
+			ConcurrentMap<Long, FsEntry> newMap = new ConcurrentHashMap<Long, FsEntry>();
+			imgFileSystems = fileSystems.putIfAbsent(imgHandle, newMap);
+			if (imgFileSystems == null) {
+				imgFileSystems = newMap;
+			}
+		}
+		FsEntry entry = imgFileSystems.get(fsOffset);
+		if (entry == null) {
+			FsEntry newEntry = new FsEntry(imgHandle, fsOffset);
+			entry = imgFileSystems.putIfAbsent(fsOffset, newEntry);
+			if (entry == null) {
+				entry = newEntry;
+			}
+		}
+		long handle = entry.handle;
+		if (handle != 0) {
+			fsHits.increment();
+			return handle;
+		}
+		long start = System.nanoTime();
+		handle = entry.getHandle();
+		fsOpenTime.recordSince(start);
+		fsMisses.increment();
+		return handle;
+	}
+
+	/**
+	 * Lease a handle to a file attribute, opening it if it is not already
+	 * open. The lease must be released, once, when the caller is done with
+	 * the handle; the handle will not be closed while it is leased.
+	 *
+	 * @param hint a lease of the same file attribute returned by an earlier
+	 * call, or null; if its handle is still open it is leased again without
+	 * looking it up
+	 * @param fsHandle handle of the file system the file is in
+	 * @param metaAddr meta data address of the file
+	 * @param attrType type of the attribute to open
+	 * @param attrId id of the attribute to open
+	 * @return lease on the file handle
+	 * @throws TskCoreException if the file could not be opened
+	 */
+	FileHandleLease leaseFile(FileHandleLease hint, long fsHandle, long metaAddr, TSK_FS_ATTR_TYPE_ENUM attrType, int attrId) throws TskCoreException {
+		if (hint != null && acquire(hint)) {
+			fileHits.incrementAndGet();
+			return hint;
+		}
+		final FileKey key = new FileKey(fsHandle, metaAddr, attrType.getValue(), attrId);
+		FileHandleLease lease = files.get(key);
+		if (lease != null && acquire(lease)) {
+			fileHits.incrementAndGet();
+			return lease;
+		}
+
+		//open outside of any lock, it can take a while
+		FileHandleLease opened = new FileHandleLease(key, SleuthkitJNI.openFile(fsHandle, metaAddr, attrType, attrId));
+		while (true) {
+			lease = files.putIfAbsent(key, opened);
+			if (lease == null) {
+				fileOpens.incrementAndGet();
+				return opened;
+			}
+			if (acquire(lease)) {
+				//someone else opened it while we were
+				SleuthkitJNI.closeFile(opened.handle);
+				fileHits.incrementAndGet();
+				return lease;
+			}
+			//that one is being closed
+			files.remove(key, lease);
+		}
+	}
+
+	/**
+	 * Add a reference to a lease.
+	 *
+	 * @return false if its handle has been closed
+	 */
+	private boolean acquire(FileHandleLease lease) {
+		while (true) {
+			int count = lease.refCount.get();
+			if (count < 0) {
+				return false;
+			}
+			if (lease.refCount.compareAndSet(count, count + 1)) {
+				if (count == 0) {
+					synchronized (idleLock) {
+						idleFiles.remove(lease.key);
+					}
+				}
+				return true;
+			}
+		}
+	}
+
+	private void release(FileHandleLease lease) {
+		if (lease.refCount.decrementAndGet() > 0) {
+			return;
+		}
+		List<Long> toClose;
+		synchronized (idleLock) {
+			if (lease.refCount.get() != 0) {
+				return; //leased again already
+			}
+			idleFiles.remove(lease.key);
+			idleFiles.put(lease.key, lease);
+			toClose = evictIdleFiles();
+		}
+		closeFiles(toClose);
+	}
+
+	/**
+	 * Remove idle file handles, least recently used first, until the open
+	 * handles fit in the budget. Must be called with idleLock held.
+	 *
+	 * @return the handles that need to be closed
+	 */
+	private List<Long> evictIdleFiles() {
+		List<Long> toClose = new ArrayList<Long>();
+		final long budget = nativeMemoryBudget;
+		Iterator<FileHandleLease> it = idleFiles.values().iterator();
+		while (files.size() * ESTIMATED_FILE_HANDLE_SIZE > budget && it.hasNext()) {
+			FileHandleLease lease = it.next();
+			it.remove();
+			if (close(lease)) {
+				toClose.add(lease.handle);
+				fileEvictions.incrementAndGet();
+			}
+		}
+		return toClose;
+	}
+
+	/**
+	 * Mark an idle lease closed and forget it, unless it was just leased
+	 * again.
+	 *
+	 * @return true if the handle needs to be closed
+	 */
+	private boolean close(FileHandleLease lease) {
+		if (!lease.refCount.compareAndSet(0, -1)) {
+			return false; //leased again, its acquire() took it off the idle list
+		}
+		files.remove(lease.key, lease);
+		return true;
+	}
+
+	private static void closeFiles(List<Long> handles) {
+		for (Long handle : handles) {
+			SleuthkitJNI.closeFile(handle);
+		}
+	}
+
+	/**
+	 * Close all of the file handles that are not currently leased.
+	 */
+	public void closeIdleFiles() {
+		List<Long> toClose = new ArrayList<Long>();
+		synchronized (idleLock) {
+			for (FileHandleLease lease : idleFiles.values()) {
+				if (close(lease)) {
+					toClose.add(lease.handle);
+				}
+			}
+			idleFiles.clear();
+		}
+		closeFiles(toClose);
+	}
+
+	/**
+	 * Set the budget for the native memory used by open file handles. Idle
+	 * handles are closed, least recently used first, to stay under it.
+	 *
+	 * @param bytes budget in bytes
+	 */
+	public void setNativeMemoryBudget(long bytes) {
+		if (bytes < 0) {
+			throw new IllegalArgumentException("Native memory budget must not be negative"); //NON-NLS
+		}
+		nativeMemoryBudget = bytes;
+		List<Long> toClose;
+		synchronized (idleLock) {
+			toClose = evictIdleFiles();
+		}
+		closeFiles(toClose);
+	}
+
+	/**
+	 * @return the budget, in bytes, for the native memory used by open file
+	 * handles
+	 */
+	public long getNativeMemoryBudget() {
+		return nativeMemoryBudget;
+	}
+
+	/**
+	 * @return number of images that are open
+	 */
+	public int getOpenImageCount() {
+		int count = 0;
+		for (ImageEntry entry : images.values()) {
+			if (entry.handle != 0) {
+				++count;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return number of extra image handles that have been opened for
+	 * pooled reads, across all images
+	 */
+	public int getPooledImageHandleCount() {
+		int count = 0;
+		for (ImageEntry entry : images.values()) {
+			count += entry.readers.get();
+		}
+		return count;
+	}
+
+	/**
+	 * @return number of file systems that are open
+	 */
+	public int getOpenFileSystemCount() {
+		int count = 0;
+		for (ConcurrentMap<Long, FsEntry> imgFileSystems : fileSystems.values()) {
+			for (FsEntry entry : imgFileSystems.values()) {
+				if (entry.handle != 0) {
+					++count;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return number of file handles that are open, leased or idle
+	 */
+	public int getOpenFileCount() {
+		return files.size();
+	}
+
+	/**
+	 * @return number of file handles that are currently leased
+	 */
+	public int getLeasedFileCount() {
+		synchronized (idleLock) {
+			return Math.max(0, files.size() - idleFiles.size());
+		}
+	}
+
+	/**
+	 * @return estimated native memory, in bytes, used by the open file
+	 * handles
+	 */
+	public long getEstimatedFileHandleMemory() {
+		return getOpenFileCount() * ESTIMATED_FILE_HANDLE_SIZE;
+	}
+
+	/**
+	 * @return number of times a file handle was opened in native code
+	 */
+	public long getFileOpenCount() {
+		return fileOpens.get();
+	}
+
+	/**
+	 * @return number of times a file handle lease was satisfied by an already
+	 * open handle
+	 */
+	public long getFileHitCount() {
+		return fileHits.get();
+	}
+
+	/**
+	 * @return number of idle file handles that were closed to stay under the
+	 * native memory budget
+	 */
+	public long getFileEvictionCount() {
+		return fileEvictions.get();
+	}
+
+	/**
+	 * A lease on an open native file handle, shared by everyone who leased
+	 * it. The handle stays open at least until each lease is released.
+	 */
+	final class FileHandleLease {
+
+		private final FileKey key;
+		private final long handle;
+		//number of leases, or -1 once the handle is being closed
+		private final AtomicInteger refCount = new AtomicInteger(1);
+
+		private FileHandleLease(FileKey key, long handle) {
+			this.key = key;
+			this.handle = handle;
+		}
+
+		/**
+		 * @return the native file handle
+		 */
+		long getHandle() {
+			return handle;
+		}
+
+		/**
+		 * Release the lease. Must be called once for each leaseFile() that
+		 * returned it.
+		 */
+		void release() {
+			NativeHandleManager.this.release(this);
+		}
+	}
+
+	private static final class ImageEntry {
+
+		private final String[] paths;
+		private volatile long handle = 0;
+		//extra handles used only for reads that are not in use
+		private final ConcurrentLinkedQueue<Long> idleReaders = new ConcurrentLinkedQueue<Long>();
+		//number of extra handles that are open
+		private final AtomicInteger readers = new AtomicInteger();
+
+		ImageEntry(String[] paths) {
+			this.paths = paths.clone();
+		}
+
+		/**
+		 * Get a handle to read with: an idle pooled one, a new one if the pool
+		 * is not full, or else the main handle (which is safe to share).
+		 */
+		long acquireReader(int poolSize) {
+			Long idle = idleReaders.poll();
+			if (idle != null) {
+				return idle;
+			}
+			if (readers.incrementAndGet() < poolSize) {
+				try {
+					return SleuthkitJNI.openImgNat(paths, paths.length);
+				} catch (TskCoreException ex) {
+					logger.log(Level.WARNING, "Could not open pooled image handle, using shared handle", ex); //NON-NLS
+				}
+			}
+			readers.decrementAndGet();
+			return handle;
+		}
+
+		void releaseReader(long readHandle) {
+			if (readHandle != handle) {
+				idleReaders.offer(readHandle);
+			}
+		}
+
+		/**
+		 * Close idle extra handles until there are no more than the pool
+		 * allows.
+		 */
+		void trimReaders(int poolSize) {
+			while (readers.get() >= poolSize) {
+				Long idle = idleReaders.poll();
+				if (idle == null) {
+					return;
+				}
+				readers.decrementAndGet();
+				SleuthkitJNI.closeImgNat(idle);
+			}
+		}
+
+		long getHandle() throws TskCoreException {
+			if (handle == 0) {
+				synchronized (this) {
+					if (handle == 0) {
+						handle = SleuthkitJNI.openImgNat(paths, paths.length);
+					}
+				}
+			}
+			return handle;
+		}
+	}
+
+	private static final class FsEntry {
+
+		private final long imgHandle;
+		private final long fsOffset;
+		private volatile long handle = 0;
+
+		FsEntry(long imgHandle, long fsOffset) {
+			this.imgHandle = imgHandle;
+			this.fsOffset = fsOffset;
+		}
+
+		long getHandle() throws TskCoreException {
+			if (handle == 0) {
+				synchronized (this) {
+					if (handle == 0) {
+						handle = SleuthkitJNI.openFsNat(imgHandle, fsOffset);
+					}
+				}
+			}
+			return handle;
+		}
+	}
+
+	private static final class FileKey {
+
+		private final long fsHandle;
+		private final long metaAddr;
+		private final int attrType;
+		private final int attrId;
+
+		FileKey(long fsHandle, long metaAddr, int attrType, int attrId) {
+			this.fsHandle = fsHandle;
+			this.metaAddr = metaAddr;
+			this.attrType = attrType;
+			this.attrId = attrId;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof FileKey)) {
+				return false;
+			}
+			FileKey other = (FileKey) obj;
+			return fsHandle == other.fsHandle && metaAddr == other.metaAddr
+					&& attrType == other.attrType && attrId == other.attrId;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = 7;
+			hash = 31 * hash + (int) (fsHandle ^ (fsHandle >>> 32));
+			hash = 31 * hash + (int) (metaAddr ^ (metaAddr >>> 32));
+			hash = 31 * hash + attrType;
+			hash = 31 * hash + attrId;
+			return hash;
+		}
+	}
+}
@@ -68,7 +68,7 @@ public OSInfo(BlackboardArtifact a_art, boolean a_isBackup, long a_fileSystemId,
 		haveFsContent = true;
 		attributeMap = new HashMap<Integer, String>();
 		for (BlackboardAttribute attr : a_art.getAttributes()) {
-			attributeMap.put(attr.getAttributeTypeID(), attr.getValueString());
+			attributeMap.put(attr.getAttributeTypeID(), getValue(attr));
 		}
 
 		if (a_parent != null) {
@@ -105,10 +105,84 @@ public OSInfo(BlackboardArtifact a_art, boolean a_isBackup, Content a_parent) th
 		}
 		attributeMap = new HashMap<Integer, String>();
 		for (BlackboardAttribute attr : a_art.getAttributes()) {
-			attributeMap.put(attr.getAttributeTypeID(), attr.getValueString());
+			attributeMap.put(attr.getAttributeTypeID(), getValue(attr));
 		}
 	}
 
+	/**
+	 * Initialize an OSInfo object from values that were already read from the
+	 * database.
+	 *
+	 * @param art - OSInfo artifact associated with one registry hive
+	 * @param isBackup - True if the registry hive was found in a "RegBack"
+	 * directory
+	 * @param haveFsContent - True if the registry hive is in a file system
+	 * @param fileSystemId - File system ID for FS containing the registry hive
+	 * @param haveParentId - True if the parent directory is known
+	 * @param parentObjId - Object ID of the directory containing the hive
+	 * @param attributes - the attribute values of art, by attribute type ID
+	 */
+	OSInfo(BlackboardArtifact art, boolean isBackup, boolean haveFsContent, long fileSystemId,
+			boolean haveParentId, long parentObjId, Map<Integer, String> attributes) {
+		artifacts = new ArrayList<BlackboardArtifact>();
+		artifacts.add(art);
+		this.isBackup = isBackup;
+		this.haveFsContent = haveFsContent;
+		this.fileSystemId = haveFsContent ? fileSystemId : 0;
+		this.haveParentId = haveParentId;
+		this.parentObjId = haveParentId ? parentObjId : 0;
+		attributeMap = new HashMap<Integer, String>(attributes);
+	}
+
+	/**
+	 * Get the value of an attribute as it is kept in the attribute map: text
+	 * as is, and other value types formatted by getDisplayString(), since
+	 * their value string is empty.
+	 *
+	 * @param attr - an attribute of an OSInfo artifact
+	 * @return the value as a string
+	 */
+	static String getValue(BlackboardAttribute attr) {
+		if (attr.getValueType() == BlackboardAttribute.TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.STRING) {
+			return attr.getValueString();
+		}
+		return attr.getDisplayString();
+	}
+
+	/**
+	 * Copy an OSInfo object, so that the copy can be combined with others
+	 * without changing the original.
+	 *
+	 * @param other - the object to copy
+	 */
+	OSInfo(OSInfo other) {
+		artifacts = new ArrayList<BlackboardArtifact>(other.artifacts);
+		attributeMap = new HashMap<Integer, String>(other.attributeMap);
+		isBackup = other.isBackup;
+		haveFsContent = other.haveFsContent;
+		fileSystemId = other.fileSystemId;
+		haveParentId = other.haveParentId;
+		parentObjId = other.parentObjId;
+	}
+
+	/**
+	 * Get a key that is equal for OSInfo objects that matches() would
+	 * combine: the parent directory if it is known, else the file system and
+	 * backup status. Registry hives are files, so in practice the parent is
+	 * always known.
+	 *
+	 * @return the key, or null if this object matches no other
+	 */
+	String getMatchKey() {
+		if (haveParentId) {
+			return "p" + parentObjId; //NON-NLS
+		}
+		if (haveFsContent) {
+			return "f" + fileSystemId + (isBackup ? "b" : ""); //NON-NLS
+		}
+		return null;
+	}
+
 	/**
 	 * Determine whether two OSInfo objects should be combined.
 	 *
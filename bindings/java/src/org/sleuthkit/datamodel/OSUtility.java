@@ -18,10 +18,10 @@
  */
 package org.sleuthkit.datamodel;
 
-import java.util.List;
 import java.util.ArrayList;
-
-import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Utility class to combine information from various OS info artifacts into
@@ -91,71 +91,41 @@ private static List<OSInfo> getOSInfoInternal(SleuthkitCase skCase, boolean incl
 
 		List<OSInfo> infoList = new ArrayList<OSInfo>();
 
-		// Get all OS_INFO artifacts for this case
-		ArrayList<BlackboardArtifact> results = skCase.getBlackboardArtifacts(ARTIFACT_TYPE.TSK_OS_INFO);
+		// Combined objects by OSInfo.getMatchKey(), so each artifact is merged
+		// with one lookup instead of a scan of infoList
+		Map<String, OSInfo> infoByKey = new HashMap<String, OSInfo>();
 
-		for (BlackboardArtifact art : results) {
-
-			AbstractFile file = skCase.getAbstractFileById(art.getObjectID());
+		for (OSInfo artInfo : skCase.getOSInfoArtifacts()) {
 
 			// Check if we're in a backup directory. If so and we're not including backups,
 			// skip this artifact.
-			boolean isBackup = file.getParentPath().contains("RegBack");
-			if (isBackup && (!includeBackups)) {
+			if (artInfo.getIsBackup() && (!includeBackups)) {
 				continue;
 			}
 
-			// FsContent allows us to get the file system ID.
-			if (file instanceof FsContent) {
-				FsContent fsc = (FsContent) file;
-
-				// If we're restricting the file system, skip any that don't match
-				if (restrictFs && (fsId != fsc.getFileSystemId())) {
-					continue;
-				}
-
-				// Make a new OSInfo object
-				OSInfo newInfo = new OSInfo(art, isBackup, fsc.getFileSystemId(), file.getParent());
-
-				// Attempt to merge it with an existing object
-				boolean mergedInfo = false;
-				for (OSInfo info : infoList) {
-					if (info.matches(newInfo)) {
-						info.combine(newInfo);
-						mergedInfo = true;
-						break;
-					}
-				}
-
-				// If nothing matched, add the new object to the list
-				if (!mergedInfo) {
-					infoList.add(newInfo);
-				}
-			} else if (!restrictFs) {
-				// Make a new OSInfo object (no file system ID in this case)
-				OSInfo newInfo = new OSInfo(art, isBackup, file.getParent());
+			// If we're restricting the file system, skip any that don't match.
+			// This includes data we can't find the FS for.
+			if (restrictFs && (!artInfo.haveFileSystem() || fsId != artInfo.getFileSystemId())) {
+				continue;
+			}
 
-				// Attempt to merge it with an existing object
-				boolean mergedInfo = false;
-				for (OSInfo info : infoList) {
-					if (info.matches(newInfo)) {
-						info.combine(newInfo);
-						mergedInfo = true;
-						break;
-					}
-				}
+			// Copy the cached object, since combining changes it
+			OSInfo newInfo = new OSInfo(artInfo);
 
+			// Attempt to merge it with an existing object
+			String key = newInfo.getMatchKey();
+			OSInfo info = (key != null) ? infoByKey.get(key) : null;
+			if (info != null) {
+				info.combine(newInfo);
+			} else {
 				// If nothing matched, add the new object to the list
-				if (!mergedInfo) {
-					infoList.add(newInfo);
+				infoList.add(newInfo);
+				if (key != null) {
+					infoByKey.put(key, newInfo);
 				}
-			} else {
-				// If we're limiting the search to one FS, don't include any
-				// data we can't find the FS for
 			}
 		}
 
 		return infoList;
 	}
-
 }
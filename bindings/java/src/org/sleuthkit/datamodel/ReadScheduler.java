@@ -0,0 +1,440 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2014 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs Content reads on a fixed set of threads, in priority order.
+ *
+ * Reads are queued per data source and per priority. A worker always takes an
+ * INTERACTIVE read before a BATCH read, and a data source never has more than
+ * the configured number of reads in progress at once. Large reads are done in
+ * chunks and go back to the end of their queue after each chunk, so a long
+ * batch read (hashing a multi-GB file, say) delays an interactive read by at
+ * most one chunk. Cancelling the returned Future removes a queued read and
+ * stops a read that is in progress at the next chunk boundary.
+ *
+ * Use AbstractContent.readAsync() or getDefault() for the shared scheduler.
+ */
+public final class ReadScheduler {
+
+	/**
+	 * Priority class of a read.
+	 */
+	public enum Priority {
+
+		/**
+		 * A user is waiting for the data (previews, viewers, thumbnails).
+		 */
+		INTERACTIVE,
+		/**
+		 * Background work (ingest, hashing, carving).
+		 */
+		BATCH
+	}
+	/**
+	 * Default number of bytes read per chunk of a large read.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+	private static final Logger logger = Logger.getLogger(ReadScheduler.class.getName());
+	private static ReadScheduler defaultScheduler = null;
+	private final int maxReadsPerDataSource;
+	private final int chunkSize;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition workAvailable = lock.newCondition();
+	//guarded by lock
+	private final Map<Long, DataSourceQueue> queues = new HashMap<Long, DataSourceQueue>();
+	private final List<DataSourceQueue> queueOrder = new ArrayList<DataSourceQueue>();
+	private int nextQueue = 0;
+	private boolean shutdown = false;
+	private final List<Thread> workers = new ArrayList<Thread>();
+
+	/**
+	 * Create a scheduler with its own worker threads.
+	 *
+	 * @param threads number of worker threads
+	 * @param maxReadsPerDataSource maximum number of reads in progress at once
+	 * for one data source (image)
+	 * @param chunkSize number of bytes to read before letting other reads run
+	 */
+	public ReadScheduler(int threads, int maxReadsPerDataSource, int chunkSize) {
+		if (threads < 1 || maxReadsPerDataSource < 1 || chunkSize < 1) {
+			throw new IllegalArgumentException("Threads, reads per data source and chunk size must be positive"); //NON-NLS
+		}
+		this.maxReadsPerDataSource = maxReadsPerDataSource;
+		this.chunkSize = chunkSize;
+		for (int i = 0; i < threads; ++i) {
+			Thread worker = new Thread(new Worker(), "ReadScheduler-" + i); //NON-NLS
+			worker.setDaemon(true);
+			workers.add(worker);
+			worker.start();
+		}
+	}
+
+	/**
+	 * Get the scheduler used by AbstractContent.readAsync(). It has four threads and
+	 * allows two reads in progress per data source.
+	 *
+	 * @return the shared scheduler
+	 */
+	public static synchronized ReadScheduler getDefault() {
+		if (defaultScheduler == null) {
+			defaultScheduler = new ReadScheduler(4, 2, DEFAULT_CHUNK_SIZE);
+		}
+		return defaultScheduler;
+	}
+
+	/**
+	 * Queue a read of content into buf.
+	 *
+	 * @param content content to read
+	 * @param buf buffer to read to, starting at index 0
+	 * @param offset byte offset in the content to start reading from
+	 * @param len number of bytes to read
+	 * @param priority priority class of the read
+	 * @return Future for the number of bytes read, or -1 if nothing could be
+	 * read. get() throws an ExecutionException wrapping the TskCoreException
+	 * if the read failed.
+	 */
+	public Future<Integer> submit(Content content, byte[] buf, long offset, long len, Priority priority) {
+		if (len > buf.length) {
+			throw new IllegalArgumentException("Buffer is smaller than the read length"); //NON-NLS
+		}
+		ReadTask task = new ReadTask(content, buf, offset, len);
+		long queueId;
+		try {
+			Content dataSource = content.getDataSource();
+			queueId = (dataSource != null) ? dataSource.getId() : content.getId();
+		} catch (TskCoreException ex) {
+			queueId = content.getId();
+		}
+		lock.lock();
+		try {
+			if (shutdown) {
+				throw new IllegalStateException("ReadScheduler has been shut down"); //NON-NLS
+			}
+			DataSourceQueue queue = queues.get(queueId);
+			if (queue == null) {
+				queue = new DataSourceQueue();
+				queues.put(queueId, queue);
+				queueOrder.add(queue);
+			}
+			task.queue = queue;
+			task.priority = priority;
+			queue.add(task);
+			workAvailable.signal();
+		} finally {
+			lock.unlock();
+		}
+		return task;
+	}
+
+	/**
+	 * Stop the worker threads. Queued reads are cancelled.
+	 */
+	public void shutdown() {
+		List<ReadTask> cancelled = new ArrayList<ReadTask>();
+		lock.lock();
+		try {
+			shutdown = true;
+			for (DataSourceQueue queue : queueOrder) {
+				cancelled.addAll(queue.interactive);
+				cancelled.addAll(queue.batch);
+				queue.interactive.clear();
+				queue.batch.clear();
+			}
+			workAvailable.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		for (ReadTask task : cancelled) {
+			task.cancel(false);
+		}
+	}
+
+	/**
+	 * @return number of reads waiting to run, over all data sources
+	 */
+	public int getQueuedCount() {
+		lock.lock();
+		try {
+			int count = 0;
+			for (DataSourceQueue queue : queueOrder) {
+				count += queue.interactive.size() + queue.batch.size();
+			}
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Take the next read to run, waiting if there is none. Must be called
+	 * with the lock held.
+	 *
+	 * @return the next read, or null if the scheduler was shut down
+	 */
+	private ReadTask takeTask() throws InterruptedException {
+		while (!shutdown) {
+			ReadTask task = pollTask(Priority.INTERACTIVE);
+			if (task == null) {
+				task = pollTask(Priority.BATCH);
+			}
+			if (task != null) {
+				task.queue.inProgress++;
+				return task;
+			}
+			workAvailable.await();
+		}
+		return null;
+	}
+
+	/**
+	 * Find a read of the given priority for a data source that is under its
+	 * limit, going round robin over the data sources. Must be called with the
+	 * lock held.
+	 */
+	private ReadTask pollTask(Priority priority) {
+		final int size = queueOrder.size();
+		for (int i = 0; i < size; ++i) {
+			DataSourceQueue queue = queueOrder.get((nextQueue + i) % size);
+			if (queue.inProgress >= maxReadsPerDataSource) {
+				continue;
+			}
+			LinkedList<ReadTask> tasks = (priority == Priority.INTERACTIVE) ? queue.interactive : queue.batch;
+			while (!tasks.isEmpty()) {
+				ReadTask task = tasks.removeFirst();
+				if (!task.isDone()) {
+					nextQueue = (nextQueue + i + 1) % size;
+					return task;
+				}
+			}
+		}
+		return null;
+	}
+
+	private class Worker implements Runnable {
+
+		@Override
+		public void run() {
+			while (true) {
+				ReadTask task;
+				lock.lock();
+				try {
+					task = takeTask();
+				} catch (InterruptedException ex) {
+					return;
+				} finally {
+					lock.unlock();
+				}
+				if (task == null) {
+					return;
+				}
+
+				boolean more = false;
+				try {
+					more = task.readChunk(chunkSize);
+				} catch (RuntimeException ex) {
+					logger.log(Level.WARNING, "Unexpected error in scheduled read", ex); //NON-NLS
+					task.fail(ex);
+				}
+
+				lock.lock();
+				try {
+					task.queue.inProgress--;
+					if (more && !shutdown) {
+						task.queue.add(task);
+					} else if (more) {
+						task.cancel(false);
+					}
+					workAvailable.signalAll();
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Queued reads of one data source. Guarded by the scheduler lock.
+	 */
+	private static final class DataSourceQueue {
+
+		private final LinkedList<ReadTask> interactive = new LinkedList<ReadTask>();
+		private final LinkedList<ReadTask> batch = new LinkedList<ReadTask>();
+		private int inProgress = 0;
+
+		void add(ReadTask task) {
+			if (task.priority == Priority.INTERACTIVE) {
+				interactive.addLast(task);
+			} else {
+				batch.addLast(task);
+			}
+		}
+	}
+
+	/**
+	 * A read in progress. Only one worker runs a given task at a time.
+	 */
+	private static final class ReadTask implements Future<Integer> {
+
+		private final Content content;
+		private final byte[] buf;
+		private final long offset;
+		private final long len;
+		private DataSourceQueue queue; //set once before the task is queued
+		private Priority priority;
+		private long done = 0;
+		private boolean eof = false;
+		private byte[] chunkBuf = null;
+		private final CountDownLatch completed = new CountDownLatch(1);
+		private volatile boolean cancelled = false;
+		private volatile boolean finished = false;
+		private volatile int result;
+		private volatile Throwable failure = null;
+
+		ReadTask(Content content, byte[] buf, long offset, long len) {
+			this.content = content;
+			this.buf = buf;
+			this.offset = offset;
+			this.len = len;
+		}
+
+		/**
+		 * Read the next chunk.
+		 *
+		 * @return true if there is more to read
+		 */
+		boolean readChunk(int chunkSize) {
+			if (isDone()) {
+				return false;
+			}
+			final long toRead = Math.min(chunkSize, len - done);
+			try {
+				int read;
+				if (done == 0 && toRead == len) {
+					read = content.read(buf, offset, len);
+				} else {
+					if (chunkBuf == null) {
+						chunkBuf = new byte[(int) Math.min(chunkSize, len)];
+					}
+					read = content.read(chunkBuf, offset + done, toRead);
+					if (read > 0) {
+						System.arraycopy(chunkBuf, 0, buf, (int) done, read);
+					}
+				}
+				if (read <= 0) {
+					eof = true;
+				} else {
+					done += read;
+					if (read < toRead) {
+						eof = true;
+					}
+				}
+			} catch (TskCoreException ex) {
+				fail(ex);
+				return false;
+			}
+
+			if (eof || done >= len) {
+				complete((done == 0 && eof) ? -1 : (int) done);
+				return false;
+			}
+			return !cancelled;
+		}
+
+		private synchronized void complete(int value) {
+			if (finished) {
+				return;
+			}
+			result = value;
+			finished = true;
+			completed.countDown();
+		}
+
+		synchronized void fail(Throwable ex) {
+			if (finished) {
+				return;
+			}
+			failure = ex;
+			finished = true;
+			completed.countDown();
+		}
+
+		@Override
+		public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+			if (finished) {
+				return false;
+			}
+			cancelled = true;
+			finished = true;
+			completed.countDown();
+			return true;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		@Override
+		public boolean isDone() {
+			return finished;
+		}
+
+		@Override
+		public Integer get() throws InterruptedException, ExecutionException {
+			completed.await();
+			return getResult();
+		}
+
+		@Override
+		public Integer get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			if (!completed.await(timeout, unit)) {
+				throw new TimeoutException();
+			}
+			return getResult();
+		}
+
+		private Integer getResult() throws ExecutionException {
+			if (cancelled) {
+				throw new CancellationException();
+			}
+			if (failure != null) {
+				throw new ExecutionException(failure);
+			}
+			return result;
+		}
+	}
+}
@@ -19,9 +19,12 @@
 package org.sleuthkit.datamodel;
 
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.sleuthkit.datamodel.TskData.FileKnown;
 import org.sleuthkit.datamodel.TskData.TSK_FS_ATTR_TYPE_ENUM;
 import org.sleuthkit.datamodel.TskData.TSK_FS_META_TYPE_ENUM;
@@ -33,6 +36,21 @@
  * Content subclass constructors.
  */
 class ResultSetHelper {
+
+	/**
+	 * The tsk_files columns, in a fixed order, for queries that create file
+	 * objects.
+	 */
+	static final String FILE_COLUMNS = "obj_id, fs_obj_id, attr_type, attr_id, name, meta_addr, meta_seq, " //NON-NLS
+			+ "type, has_layout, has_path, dir_type, meta_type, dir_flags, meta_flags, size, " //NON-NLS
+			+ "ctime, crtime, atime, mtime, mode, uid, gid, md5, known, parent_path"; //NON-NLS
+	/**
+	 * FILE_COLUMNS without the times, mode, uid and gid. Files read with it
+	 * load those columns from the database the first time one is used.
+	 */
+	static final String FILE_COLUMNS_LIGHT = "obj_id, fs_obj_id, attr_type, attr_id, name, meta_addr, meta_seq, " //NON-NLS
+			+ "type, has_layout, has_path, dir_type, meta_type, dir_flags, meta_flags, size, " //NON-NLS
+			+ "md5, known, parent_path"; //NON-NLS
 	SleuthkitCase db;
 
 	ResultSetHelper(SleuthkitCase db) {
@@ -153,75 +171,117 @@ FileSystem fileSystem(ResultSet rs, Content parent) throws SQLException {
 	 * tsk_files table
 	 *
 	 * @param rs the result set
+	 * @param cols the columns of the result set
 	 * @param fs parent file system
 	 * @return a newly create File
 	 * @throws SQLException
 	 */
-	File file(ResultSet rs, FileSystem fs) throws SQLException {
-		File f = new File(db, rs.getLong("obj_id"), rs.getLong("fs_obj_id"), //NON-NLS
-				TSK_FS_ATTR_TYPE_ENUM.valueOf(rs.getShort("attr_type")), //NON-NLS
-				rs.getShort("attr_id"), rs.getString("name"), rs.getLong("meta_addr"), rs.getInt("meta_seq"), //NON-NLS
-				TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort("dir_type")), //NON-NLS
-				TSK_FS_META_TYPE_ENUM.valueOf(rs.getShort("meta_type")), //NON-NLS
-				TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort("dir_flags")), //NON-NLS
-				rs.getShort("meta_flags"), rs.getLong("size"), //NON-NLS
-				rs.getLong("ctime"), rs.getLong("crtime"), rs.getLong("atime"), rs.getLong("mtime"), //NON-NLS
-				rs.getShort("mode"), rs.getInt("uid"), rs.getInt("gid"), //NON-NLS
-				rs.getString("md5"), //NON-NLS
-				FileKnown.valueOf(rs.getByte("known")), rs.getString("parent_path")); //NON-NLS
+	File file(ResultSet rs, FileColumns cols, FileSystem fs) throws SQLException {
+		File f = new File(db, rs.getLong(cols.objId), rs.getLong(cols.fsObjId),
+				TSK_FS_ATTR_TYPE_ENUM.valueOf(rs.getShort(cols.attrType)),
+				rs.getShort(cols.attrId), rs.getString(cols.name), rs.getLong(cols.metaAddr), rs.getInt(cols.metaSeq),
+				TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort(cols.dirType)),
+				TSK_FS_META_TYPE_ENUM.valueOf(rs.getShort(cols.metaType)),
+				TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort(cols.dirFlags)),
+				rs.getShort(cols.metaFlags), rs.getLong(cols.size),
+				getLong(rs, cols.ctime), getLong(rs, cols.crtime), getLong(rs, cols.atime), getLong(rs, cols.mtime),
+				(short) getLong(rs, cols.mode), (int) getLong(rs, cols.uid), (int) getLong(rs, cols.gid),
+				rs.getString(cols.md5),
+				FileKnown.valueOf(rs.getByte(cols.known)), rs.getString(cols.parentPath));
 		f.setFileSystem(fs);
+		if (cols.deferred) {
+			f.deferColumns(cols.getDeferredGroup());
+		}
 		return f;
 	}
 
+	/**
+	 * Create a File object from the result set containing query results on
+	 * tsk_files table
+	 *
+	 * @param rs the result set
+	 * @param fs parent file system
+	 * @return a newly create File
+	 * @throws SQLException
+	 */
+	File file(ResultSet rs, FileSystem fs) throws SQLException {
+		return file(rs, new FileColumns(rs), fs);
+	}
+
 	/**
 	 * Create a Directory object from the result set containing query results on
 	 * tsk_files table
 	 *
 	 * @param rs the result set
+	 * @param cols the columns of the result set
 	 * @param fs parent file system
 	 * @name the directory name (TODO why do we need it passed, just query it )
 	 * @return a newly created Directory object
 	 * @throws SQLException thrown if SQL error occurred
 	 */
-	Directory directory(ResultSet rs, FileSystem fs, String name) throws SQLException {
-		Directory dir = new Directory(db, rs.getLong("obj_id"), rs.getLong("fs_obj_id"), //NON-NLS
-				TSK_FS_ATTR_TYPE_ENUM.valueOf(rs.getShort("attr_type")), //NON-NLS
-				rs.getShort("attr_id"), name, rs.getLong("meta_addr"), rs.getInt("meta_seq"), //NON-NLS
-				TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort("dir_type")), //NON-NLS
-				TSK_FS_META_TYPE_ENUM.valueOf(rs.getShort("meta_type")), //NON-NLS
-				TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort("dir_flags")), //NON-NLS
-				rs.getShort("meta_flags"), rs.getLong("size"), //NON-NLS
-				rs.getLong("ctime"), rs.getLong("crtime"), rs.getLong("atime"), rs.getLong("mtime"), //NON-NLS
-				rs.getShort("mode"), rs.getInt("uid"), rs.getInt("gid"), //NON-NLS
-				rs.getString("md5"), //NON-NLS
-				FileKnown.valueOf(rs.getByte("known")), rs.getString("parent_path")); //NON-NLS
+	Directory directory(ResultSet rs, FileColumns cols, FileSystem fs, String name) throws SQLException {
+		Directory dir = new Directory(db, rs.getLong(cols.objId), rs.getLong(cols.fsObjId),
+				TSK_FS_ATTR_TYPE_ENUM.valueOf(rs.getShort(cols.attrType)),
+				rs.getShort(cols.attrId), name, rs.getLong(cols.metaAddr), rs.getInt(cols.metaSeq),
+				TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort(cols.dirType)),
+				TSK_FS_META_TYPE_ENUM.valueOf(rs.getShort(cols.metaType)),
+				TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort(cols.dirFlags)),
+				rs.getShort(cols.metaFlags), rs.getLong(cols.size),
+				getLong(rs, cols.ctime), getLong(rs, cols.crtime), getLong(rs, cols.atime), getLong(rs, cols.mtime),
+				(short) getLong(rs, cols.mode), (int) getLong(rs, cols.uid), (int) getLong(rs, cols.gid),
+				rs.getString(cols.md5),
+				FileKnown.valueOf(rs.getByte(cols.known)), rs.getString(cols.parentPath));
 		dir.setFileSystem(fs);
+		if (cols.deferred) {
+			dir.deferColumns(cols.getDeferredGroup());
+		}
 		return dir;
 	}
 
+	/**
+	 * Create a Directory object from the result set containing query results on
+	 * tsk_files table
+	 *
+	 * @param rs the result set
+	 * @param fs parent file system
+	 * @name the directory name (TODO why do we need it passed, just query it )
+	 * @return a newly created Directory object
+	 * @throws SQLException thrown if SQL error occurred
+	 */
+	Directory directory(ResultSet rs, FileSystem fs, String name) throws SQLException {
+		return directory(rs, new FileColumns(rs), fs, name);
+	}
+
 	/**
 	 * Create a virtual directory object from a result set
 	 *
 	 * @param rs the result set
+	 * @param cols the columns of the result set
 	 * @return
 	 * @throws SQLException
 	 */
-	VirtualDirectory virtualDirectory(ResultSet rs) throws SQLException {
-		String parentPath = rs.getString("parent_path"); //NON-NLS
-		if (parentPath == null) {
-			parentPath = "";
-		}
-		
-		final VirtualDirectory vd = new VirtualDirectory(db, rs.getLong("obj_id"), //NON-NLS
-				rs.getString("name"), //NON-NLS
-				TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort("dir_type")), //NON-NLS
-				TSK_FS_META_TYPE_ENUM.valueOf(rs.getShort("meta_type")), //NON-NLS
-				TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort("dir_flags")), rs.getShort("meta_flags"), //NON-NLS
-				rs.getLong("size"), rs.getString("md5"), //NON-NLS
-				FileKnown.valueOf(rs.getByte("known")), parentPath); //NON-NLS
+	VirtualDirectory virtualDirectory(ResultSet rs, FileColumns cols) throws SQLException {
+		final VirtualDirectory vd = new VirtualDirectory(db, rs.getLong(cols.objId),
+				rs.getString(cols.name),
+				TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort(cols.dirType)),
+				TSK_FS_META_TYPE_ENUM.valueOf(rs.getShort(cols.metaType)),
+				TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort(cols.dirFlags)), rs.getShort(cols.metaFlags),
+				rs.getLong(cols.size), rs.getString(cols.md5),
+				FileKnown.valueOf(rs.getByte(cols.known)), parentPath(rs, cols));
 		return vd;
 	}
 
+	/**
+	 * Create a virtual directory object from a result set
+	 *
+	 * @param rs the result set
+	 * @return
+	 * @throws SQLException
+	 */
+	VirtualDirectory virtualDirectory(ResultSet rs) throws SQLException {
+		return virtualDirectory(rs, new FileColumns(rs));
+	}
+
 	/**
 	 * Create a Directory object from the result set containing query results on
 	 * tsk_files table
@@ -232,7 +292,60 @@ VirtualDirectory virtualDirectory(ResultSet rs) throws SQLException {
 	 * @throws SQLException thrown if SQL error occurred
 	 */
 	Directory directory(ResultSet rs, FileSystem fs) throws SQLException {
-		return directory(rs, fs, rs.getString("name")); //NON-NLS
+		FileColumns cols = new FileColumns(rs);
+		return directory(rs, cols, fs, rs.getString(cols.name));
+	}
+
+	/**
+	 * Create a carved or unallocated blocks file from a result set
+	 *
+	 * @param rs the result set
+	 * @param cols the columns of the result set
+	 * @param type TSK_DB_FILES_TYPE_ENUM.CARVED or UNALLOC_BLOCKS
+	 * @return layout file object created
+	 * @throws SQLException
+	 */
+	LayoutFile layoutFile(ResultSet rs, FileColumns cols, TskData.TSK_DB_FILES_TYPE_ENUM type) throws SQLException {
+		return new LayoutFile(db, rs.getLong(cols.objId), rs.getString(cols.name),
+				type,
+				TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort(cols.dirType)),
+				TSK_FS_META_TYPE_ENUM.valueOf(rs.getShort(cols.metaType)),
+				TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort(cols.dirFlags)),
+				rs.getShort(cols.metaFlags),
+				rs.getLong(cols.size),
+				rs.getString(cols.md5), FileKnown.valueOf(rs.getByte(cols.known)), parentPath(rs, cols));
+	}
+
+	/**
+	 * Create the file object of the type given in the row of a result set
+	 *
+	 * @param rs the result set
+	 * @param cols the columns of the result set
+	 * @param parentId parent id or AbstractContent.UNKNOWN_ID
+	 * @return file object, or null if the row is of an unknown file type
+	 * @throws SQLException
+	 */
+	AbstractFile abstractFile(ResultSet rs, FileColumns cols, long parentId) throws SQLException {
+		TskData.TSK_DB_FILES_TYPE_ENUM type = TskData.TSK_DB_FILES_TYPE_ENUM.valueOf(rs.getShort(cols.type));
+		switch (type) {
+			case FS:
+				if (rs.getShort(cols.metaType) == TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR.getValue()) {
+					return directory(rs, cols, null, rs.getString(cols.name));
+				} else {
+					return file(rs, cols, null);
+				}
+			case VIRTUAL_DIR:
+				return virtualDirectory(rs, cols);
+			case UNALLOC_BLOCKS:
+			case CARVED:
+				return layoutFile(rs, cols, type);
+			case DERIVED:
+				return derivedFile(rs, cols, parentId);
+			case LOCAL:
+				return localFile(rs, cols, parentId);
+			default:
+				return null;
+		}
 	}
 
 	/**
@@ -252,72 +365,90 @@ TskFileRange tskFileRange(ResultSet rs) throws SQLException {
 	 * Creates an derived file given result set and parent id (optional)
 	 *
 	 * @param rs exsting active result set
+	 * @param cols the columns of the result set
 	 * @param parentId parent id or AbstractContent.UNKNOWN_ID
 	 * @return derived file object created
 	 * @throws SQLException
 	 */
-	DerivedFile derivedFile(ResultSet rs, long parentId) throws SQLException {
-		boolean hasLocalPath = rs.getBoolean("has_path"); //NON-NLS
-		long objId = rs.getLong("obj_id"); //NON-NLS
+	DerivedFile derivedFile(ResultSet rs, FileColumns cols, long parentId) throws SQLException {
+		long objId = rs.getLong(cols.objId);
 		String localPath = null;
-		if (hasLocalPath) {
+		if (rs.getBoolean(cols.hasPath)) {
 			localPath = db.getFilePath(objId);
 		}
 
-		String parentPath = rs.getString("parent_path"); //NON-NLS
-		if (parentPath == null) {
-			parentPath = "";
-		}
-
 		final DerivedFile df =
-				new DerivedFile(db, objId, rs.getString("name"), //NON-NLS
-				TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort("dir_type")), //NON-NLS
-				TSK_FS_META_TYPE_ENUM.valueOf(rs.getShort("meta_type")), //NON-NLS
-				TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort("dir_flags")), rs.getShort("meta_flags"), //NON-NLS
-				rs.getLong("size"), //NON-NLS
-				rs.getLong("ctime"), rs.getLong("crtime"), rs.getLong("atime"), rs.getLong("mtime"), //NON-NLS
-				rs.getString("md5"), FileKnown.valueOf(rs.getByte("known")), //NON-NLS
-				parentPath, localPath,
+				new DerivedFile(db, objId, rs.getString(cols.name),
+				TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort(cols.dirType)),
+				TSK_FS_META_TYPE_ENUM.valueOf(rs.getShort(cols.metaType)),
+				TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort(cols.dirFlags)), rs.getShort(cols.metaFlags),
+				rs.getLong(cols.size),
+				getLong(rs, cols.ctime), getLong(rs, cols.crtime), getLong(rs, cols.atime), getLong(rs, cols.mtime),
+				rs.getString(cols.md5), FileKnown.valueOf(rs.getByte(cols.known)),
+				parentPath(rs, cols), localPath,
 				parentId);
-
+		if (cols.deferred) {
+			df.deferColumns(cols.getDeferredGroup());
+		}
 		return df;
 	}
 
+	/**
+	 * Creates an derived file given result set and parent id (optional)
+	 *
+	 * @param rs exsting active result set
+	 * @param parentId parent id or AbstractContent.UNKNOWN_ID
+	 * @return derived file object created
+	 * @throws SQLException
+	 */
+	DerivedFile derivedFile(ResultSet rs, long parentId) throws SQLException {
+		return derivedFile(rs, new FileColumns(rs), parentId);
+	}
+
 	/**
 	 * Creates an local file given result set and parent id (optional)
 	 *
 	 * @param rs exsting active result set
+	 * @param cols the columns of the result set
 	 * @param parentId parent id or AbstractContent.UNKNOWN_ID
 	 * @return local file object created
 	 * @throws SQLException
 	 */
-	LocalFile localFile(ResultSet rs, long parentId) throws SQLException {
-		boolean hasLocalPath = rs.getBoolean("has_path"); //NON-NLS
-		long objId = rs.getLong("obj_id"); //NON-NLS
+	LocalFile localFile(ResultSet rs, FileColumns cols, long parentId) throws SQLException {
+		long objId = rs.getLong(cols.objId);
 		String localPath = null;
-		if (hasLocalPath) {
+		if (rs.getBoolean(cols.hasPath)) {
 			localPath = db.getFilePath(objId);
 		}
 
-		String parentPath = rs.getString("parent_path"); //NON-NLS
-		if (parentPath == null) {
-			parentPath = "";
-		}
-
 		final LocalFile lf =
-				new LocalFile(db, objId, rs.getString("name"), //NON-NLS
-				TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort("dir_type")), //NON-NLS
-				TSK_FS_META_TYPE_ENUM.valueOf(rs.getShort("meta_type")), //NON-NLS
-				TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort("dir_flags")), rs.getShort("meta_flags"), //NON-NLS
-				rs.getLong("size"), //NON-NLS
-				rs.getLong("ctime"), rs.getLong("crtime"), rs.getLong("atime"), rs.getLong("mtime"), //NON-NLS
-				rs.getString("md5"), FileKnown.valueOf(rs.getByte("known")), //NON-NLS
-				parentPath, localPath,
+				new LocalFile(db, objId, rs.getString(cols.name),
+				TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort(cols.dirType)),
+				TSK_FS_META_TYPE_ENUM.valueOf(rs.getShort(cols.metaType)),
+				TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort(cols.dirFlags)), rs.getShort(cols.metaFlags),
+				rs.getLong(cols.size),
+				getLong(rs, cols.ctime), getLong(rs, cols.crtime), getLong(rs, cols.atime), getLong(rs, cols.mtime),
+				rs.getString(cols.md5), FileKnown.valueOf(rs.getByte(cols.known)),
+				parentPath(rs, cols), localPath,
 				parentId);
-
+		if (cols.deferred) {
+			lf.deferColumns(cols.getDeferredGroup());
+		}
 		return lf;
 	}
-	
+
+	/**
+	 * Creates an local file given result set and parent id (optional)
+	 *
+	 * @param rs exsting active result set
+	 * @param parentId parent id or AbstractContent.UNKNOWN_ID
+	 * @return local file object created
+	 * @throws SQLException
+	 */
+	LocalFile localFile(ResultSet rs, long parentId) throws SQLException {
+		return localFile(rs, new FileColumns(rs), parentId);
+	}
+
 	/**
 	 * Returns the list of abstractFile objects from a result of selecting many
 	 * files that meet a certain criteria. 
@@ -328,45 +459,96 @@ LocalFile localFile(ResultSet rs, long parentId) throws SQLException {
 	 */
 	List<Content> fileChildren(ResultSet rs, long parentId) throws SQLException {
 		List<Content> children = new ArrayList<Content>();
-
+		FileColumns cols = new FileColumns(rs);
 		while (rs.next()) {
-			TskData.TSK_DB_FILES_TYPE_ENUM type = TskData.TSK_DB_FILES_TYPE_ENUM.valueOf(rs.getShort("type"));
-
-			if (type == TskData.TSK_DB_FILES_TYPE_ENUM.FS) {
-				FsContent result;
-				if (rs.getShort("meta_type") == TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR.getValue()) {
-					result = directory(rs, null);
-				} else {
-					result = file(rs, null);
-				}
-				children.add(result);
-			} else if (type == TskData.TSK_DB_FILES_TYPE_ENUM.VIRTUAL_DIR) {
-				VirtualDirectory virtDir = virtualDirectory(rs);
-				children.add(virtDir);
-			} else if (type == TskData.TSK_DB_FILES_TYPE_ENUM.UNALLOC_BLOCKS
-					|| type == TskData.TSK_DB_FILES_TYPE_ENUM.CARVED) {
-				String parentPath = rs.getString("parent_path");
-				if (parentPath == null) {
-					parentPath = "";
-				}
-				final LayoutFile lf =
-						new LayoutFile(db, rs.getLong("obj_id"), rs.getString("name"),
-						type,
-						TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort("dir_type")),
-						TSK_FS_META_TYPE_ENUM.valueOf(rs.getShort("meta_type")),
-						TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort("dir_flags")),
-						rs.getShort("meta_flags"),
-						rs.getLong("size"),
-						rs.getString("md5"), FileKnown.valueOf(rs.getByte("known")), parentPath);
-				children.add(lf);
-			} else if (type == TskData.TSK_DB_FILES_TYPE_ENUM.DERIVED) {
-				final DerivedFile df = derivedFile(rs, parentId);
-				children.add(df);
-			} else if (type == TskData.TSK_DB_FILES_TYPE_ENUM.LOCAL) {
-				final LocalFile lf = localFile(rs, parentId);
-				children.add(lf);
+			AbstractFile child = abstractFile(rs, cols, parentId);
+			if (child != null) {
+				children.add(child);
 			}
 		}
 		return children;
 	}
-}
\ No newline at end of file
+
+	private static String parentPath(ResultSet rs, FileColumns cols) throws SQLException {
+		String parentPath = rs.getString(cols.parentPath);
+		return (parentPath != null) ? parentPath : "";
+	}
+
+	/**
+	 * Read a column that may be left out of the query, as 0 if it is.
+	 */
+	private static long getLong(ResultSet rs, int column) throws SQLException {
+		return (column != 0) ? rs.getLong(column) : 0;
+	}
+
+	/**
+	 * Indexes of the tsk_files columns in a result set, looked up once per
+	 * query so that rows are read by index rather than by name. The result
+	 * set may have been selected with FILE_COLUMNS, FILE_COLUMNS_LIGHT,
+	 * "tsk_files.*" or "*" (when there are duplicate names the first column
+	 * is used, as ResultSet.findColumn() does).
+	 */
+	static final class FileColumns {
+
+		final int objId, fsObjId, attrType, attrId, name, metaAddr, metaSeq, type, hasPath;
+		final int dirType, metaType, dirFlags, metaFlags, size, md5, known, parentPath;
+		//0 if left out of the query
+		final int ctime, crtime, atime, mtime, mode, uid, gid;
+		//true if any of the above was left out and must be loaded on use
+		final boolean deferred;
+		//the group of the files being read from the result set that need
+		//them, replaced by a new one when full; null if none do
+		private AbstractFile.DeferredColumns deferredFiles;
+
+		FileColumns(ResultSet rs) throws SQLException {
+			ResultSetMetaData metaData = rs.getMetaData();
+			Map<String, Integer> indexes = new HashMap<String, Integer>();
+			for (int i = metaData.getColumnCount(); i >= 1; --i) {
+				indexes.put(metaData.getColumnLabel(i).toLowerCase(), i);
+			}
+			objId = index(indexes, "obj_id"); //NON-NLS
+			fsObjId = index(indexes, "fs_obj_id"); //NON-NLS
+			attrType = index(indexes, "attr_type"); //NON-NLS
+			attrId = index(indexes, "attr_id"); //NON-NLS
+			name = index(indexes, "name"); //NON-NLS
+			metaAddr = index(indexes, "meta_addr"); //NON-NLS
+			metaSeq = index(indexes, "meta_seq"); //NON-NLS
+			type = index(indexes, "type"); //NON-NLS
+			hasPath = index(indexes, "has_path"); //NON-NLS
+			dirType = index(indexes, "dir_type"); //NON-NLS
+			metaType = index(indexes, "meta_type"); //NON-NLS
+			dirFlags = index(indexes, "dir_flags"); //NON-NLS
+			metaFlags = index(indexes, "meta_flags"); //NON-NLS
+			size = index(indexes, "size"); //NON-NLS
+			md5 = index(indexes, "md5"); //NON-NLS
+			known = index(indexes, "known"); //NON-NLS
+			parentPath = index(indexes, "parent_path"); //NON-NLS
+			ctime = index(indexes, "ctime"); //NON-NLS
+			crtime = index(indexes, "crtime"); //NON-NLS
+			atime = index(indexes, "atime"); //NON-NLS
+			mtime = index(indexes, "mtime"); //NON-NLS
+			mode = index(indexes, "mode"); //NON-NLS
+			uid = index(indexes, "uid"); //NON-NLS
+			gid = index(indexes, "gid"); //NON-NLS
+			deferred = ctime == 0 || crtime == 0 || atime == 0 || mtime == 0 || mode == 0 || uid == 0 || gid == 0;
+			deferredFiles = deferred ? new AbstractFile.DeferredColumns() : null;
+		}
+
+		/**
+		 * @return the group to add the next file read from the result set to,
+		 * so the deferred columns are loaded for at most
+		 * DeferredColumns.MAX_FILES files at a time
+		 */
+		AbstractFile.DeferredColumns getDeferredGroup() {
+			if (deferredFiles.isFull()) {
+				deferredFiles = new AbstractFile.DeferredColumns();
+			}
+			return deferredFiles;
+		}
+
+		private static int index(Map<String, Integer> indexes, String column) {
+			Integer index = indexes.get(column);
+			return (index != null) ? index : 0;
+		}
+	}
+}
@@ -18,13 +18,7 @@
  */
 package org.sleuthkit.datamodel;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -35,6 +29,8 @@
 import java.text.MessageFormat;
 import java.util.ResourceBundle;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -56,9 +52,11 @@
  */
 public class SleuthkitCase {
 
-	private static final int SCHEMA_VERSION_NUMBER = 3; // This must be the same as TSK_SCHEMA_VER in tsk/auto/db_sqlite.cpp.				
-	private static final int DATABASE_LOCKED_ERROR = 0; // This should be 6 according to documentation, but it has been observed to be 0.
-	private static final int SQLITE_BUSY_ERROR = 5;
+	private static final int SCHEMA_VERSION_NUMBER = 4; // This must be the same as TSK_SCHEMA_VER in tsk/auto/db_sqlite.cpp.				
+	static final int DATABASE_LOCKED_ERROR = 0; // This should be 6 according to documentation, but it has been observed to be 0.
+	static final int SQLITE_BUSY_ERROR = 5;
+	//key of the tsk_files_summary table
+	private static final String[] FILE_SUMMARY_KEY_COLUMNS = {"fs_obj_id", "type", "meta_type", "dir_type", "known", "hashed", "size_class"}; //NON-NLS
 	private static final long BASE_ARTIFACT_ID = Long.MIN_VALUE; // Artifact ids will start at the lowest negative value
 	private static final Logger logger = Logger.getLogger(SleuthkitCase.class.getName());
 	private static final ResourceBundle bundle = ResourceBundle.getBundle("org.sleuthkit.datamodel.Bundle");
@@ -79,6 +77,35 @@ public class SleuthkitCase {
 	// locking protocol improves performance for reasons that are not currently
 	// understood. Note that the lock is contructed to use a fairness policy.
 	private final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock(true);
+	//changed each time a TSK_OS_INFO artifact or attribute is added
+	private final AtomicLong osInfoGeneration = new AtomicLong();
+	//number of files read per page by buildTimeline()
+	private static final int TIMELINE_PAGE_SIZE = 10000;
+	//number of files per query of loadDeferredFileColumns()
+	static final int DEFERRED_COLUMNS_BATCH_SIZE = 500;
+	//used to name the order tables of file cursors
+	private final AtomicLong fileCursorCount = new AtomicLong();
+	//result of getOSInfoArtifacts() and the generation it was read at
+	private List<OSInfo> osInfoCache = null;
+	private long osInfoCacheGeneration = -1;
+	private final Object osInfoCacheLock = new Object();
+	//rows in content_tags and blackboard_artifact_tags by tag_name_id, loaded on
+	//first use, then kept up to date by the tag writes; guarded by tagCountsLock
+	private Map<Long, long[]> tagCounts = null;
+	private final Object tagCountsLock = new Object();
+	private static final int CONTENT_TAG_COUNT = 0;
+	private static final int ARTIFACT_TAG_COUNT = 1;
+	private final CaseDbEventBus eventBus = new CaseDbEventBus();
+	private final ArtifactCounts artifactCounts = new ArtifactCounts();
+	/**
+	 * Default time, in milliseconds, a statement may take before it is
+	 * logged as a slow query.
+	 */
+	public static final long DEFAULT_SLOW_QUERY_MILLIS = 1000;
+	private final Metrics metrics;
+	private final StatementMetrics statementMetrics;
+	private final Metrics.Histogram sharedLockWait;
+	private final Metrics.Histogram exclusiveLockWait;
 
 	/**
 	 * Private constructor, clients must use newCase() or openCase() method to
@@ -94,13 +121,50 @@ private SleuthkitCase(String dbPath, SleuthkitJNI.CaseDbHandle caseHandle) throw
 		this.dbPath = dbPath;
 		this.dbDirPath = new java.io.File(dbPath).getParentFile().getAbsolutePath();
 		this.caseHandle = caseHandle;
+		this.metrics = new Metrics(dbPath);
+		this.statementMetrics = new StatementMetrics(metrics);
+		this.sharedLockWait = metrics.histogram("lock.shared.wait"); //NON-NLS
+		this.exclusiveLockWait = metrics.histogram("lock.exclusive.wait"); //NON-NLS
+		initMetrics();
 		initBlackboardArtifactTypes();
 		initBlackboardAttributeTypes();
 		initNextArtifactId();
 		updateDatabaseSchema();
+		initArtifactCounts();
 		logSQLiteJDBCDriverInfo();
 	}
 
+	/**
+	 * Add the gauges of the case and register its metrics with JMX.
+	 */
+	private void initMetrics() {
+		metrics.gauge("lock.shared.holds", new Metrics.Gauge() { //NON-NLS
+			@Override
+			public long getValue() {
+				return rwLock.getReadLockCount();
+			}
+		});
+		metrics.gauge("lock.exclusive.held", new Metrics.Gauge() { //NON-NLS
+			@Override
+			public long getValue() {
+				return rwLock.isWriteLocked() ? 1 : 0;
+			}
+		});
+		metrics.gauge("lock.queued", new Metrics.Gauge() { //NON-NLS
+			@Override
+			public long getValue() {
+				return rwLock.getQueueLength();
+			}
+		});
+		metrics.gauge("db.connections", new Metrics.Gauge() { //NON-NLS
+			@Override
+			public long getValue() {
+				return connections.getOpenConnectionCount();
+			}
+		});
+		metrics.registerMBean();
+	}
+
 	/**
 	 * Make sure the predefined artifact types are in the artifact types table.
 	 *
@@ -177,6 +241,237 @@ private void initNextArtifactId() throws TskCoreException, SQLException {
 		}		
 	}
 	
+	/**
+	 * Create the tables, indexes and triggers of schema version 4 that speed up
+	 * tsk_files lookups, filled from the files already in the case. Any left
+	 * over from an earlier attempt are dropped first.
+	 * <ul>
+	 * <li>tsk_files_path_index holds the lower case name and parent path of
+	 * every file, for case insensitive name and path lookups.</li>
+	 * <li>tsk_files_summary holds the number and total size of the files for
+	 * each combination of file system, type, meta type, name type, known
+	 * status, whether there is an MD5 hash and size class. NULL values are
+	 * stored as -1.</li>
+	 * <li>tsk_files_md5 indexes the files by MD5 hash, with the file system and
+	 * size, so that duplicate and cross data source lookups only read the
+	 * index.</li>
+	 * </ul>
+	 * The two tables are kept up to date by triggers on tsk_files, so files
+	 * added by the native code are counted as well. A new case gets the same
+	 * objects from TskDbSqlite::initialize() in tsk/auto/db_sqlite.cpp, which
+	 * must be kept in step with this method.
+	 *
+	 * @param statement a statement of the case database, in a transaction
+	 * @throws SQLException
+	 */
+	static void createFileIndexes(Statement statement) throws SQLException {
+		statement.execute("DROP TRIGGER IF EXISTS tsk_files_path_index_insert"); //NON-NLS
+		statement.execute("DROP TRIGGER IF EXISTS tsk_files_path_index_update"); //NON-NLS
+		statement.execute("DROP TRIGGER IF EXISTS tsk_files_path_index_delete"); //NON-NLS
+		statement.execute("DROP TRIGGER IF EXISTS tsk_files_summary_insert"); //NON-NLS
+		statement.execute("DROP TRIGGER IF EXISTS tsk_files_summary_update"); //NON-NLS
+		statement.execute("DROP TRIGGER IF EXISTS tsk_files_summary_delete"); //NON-NLS
+		statement.execute("DROP TABLE IF EXISTS tsk_files_path_index"); //NON-NLS
+		statement.execute("DROP TABLE IF EXISTS tsk_files_summary"); //NON-NLS
+		statement.execute("DROP INDEX IF EXISTS tsk_files_md5"); //NON-NLS
+
+		statement.execute("CREATE TABLE tsk_files_path_index (obj_id INTEGER PRIMARY KEY, fs_obj_id INTEGER, name_lower TEXT, parent_path_lower TEXT)"); //NON-NLS
+		statement.execute("INSERT INTO tsk_files_path_index (obj_id, fs_obj_id, name_lower, parent_path_lower) " //NON-NLS
+				+ "SELECT obj_id, fs_obj_id, LOWER(name), LOWER(parent_path) FROM tsk_files"); //NON-NLS
+		statement.execute("CREATE INDEX tsk_files_path_index_name ON tsk_files_path_index (fs_obj_id, name_lower)"); //NON-NLS
+		statement.execute("CREATE TRIGGER tsk_files_path_index_insert AFTER INSERT ON tsk_files BEGIN " //NON-NLS
+				+ "INSERT INTO tsk_files_path_index (obj_id, fs_obj_id, name_lower, parent_path_lower) " //NON-NLS
+				+ "VALUES (NEW.obj_id, NEW.fs_obj_id, LOWER(NEW.name), LOWER(NEW.parent_path)); END"); //NON-NLS
+		statement.execute("CREATE TRIGGER tsk_files_path_index_update AFTER UPDATE OF fs_obj_id, name, parent_path ON tsk_files BEGIN " //NON-NLS
+				+ "UPDATE tsk_files_path_index SET fs_obj_id = NEW.fs_obj_id, name_lower = LOWER(NEW.name), parent_path_lower = LOWER(NEW.parent_path) " //NON-NLS
+				+ "WHERE obj_id = NEW.obj_id; END"); //NON-NLS
+		statement.execute("CREATE TRIGGER tsk_files_path_index_delete AFTER DELETE ON tsk_files BEGIN " //NON-NLS
+				+ "DELETE FROM tsk_files_path_index WHERE obj_id = OLD.obj_id; END"); //NON-NLS
+
+		StringBuilder keyColumns = new StringBuilder();
+		for (String column : FILE_SUMMARY_KEY_COLUMNS) {
+			keyColumns.append((keyColumns.length() > 0) ? ", " : "").append(column);
+		}
+		final String columns = keyColumns.toString();
+		statement.execute("CREATE TABLE tsk_files_summary (fs_obj_id INTEGER NOT NULL, type INTEGER NOT NULL, " //NON-NLS
+				+ "meta_type INTEGER NOT NULL, dir_type INTEGER NOT NULL, known INTEGER NOT NULL, hashed INTEGER NOT NULL, " //NON-NLS
+				+ "size_class INTEGER NOT NULL, file_count INTEGER NOT NULL, total_size INTEGER NOT NULL, " //NON-NLS
+				+ "PRIMARY KEY (" + columns + "))"); //NON-NLS
+		statement.execute("INSERT INTO tsk_files_summary SELECT " + columns + ", COUNT(*), SUM(size) FROM (SELECT " //NON-NLS
+				+ getFileSummaryKeySql("tsk_files", true) + ", IFNULL(tsk_files.size, 0) AS size FROM tsk_files) " //NON-NLS
+				+ "GROUP BY " + columns); //NON-NLS
+		final String addNew = "INSERT OR IGNORE INTO tsk_files_summary VALUES (" + getFileSummaryKeySql("NEW", false) + ", 0, 0); " //NON-NLS
+				+ "UPDATE tsk_files_summary SET file_count = file_count + 1, total_size = total_size + IFNULL(NEW.size, 0) " //NON-NLS
+				+ "WHERE " + getFileSummaryMatchSql("NEW") + "; "; //NON-NLS
+		final String removeOld = "UPDATE tsk_files_summary SET file_count = file_count - 1, total_size = total_size - IFNULL(OLD.size, 0) " //NON-NLS
+				+ "WHERE " + getFileSummaryMatchSql("OLD") + "; "; //NON-NLS
+		statement.execute("CREATE TRIGGER tsk_files_summary_insert AFTER INSERT ON tsk_files BEGIN " + addNew + "END"); //NON-NLS
+		statement.execute("CREATE TRIGGER tsk_files_summary_update AFTER UPDATE OF fs_obj_id, type, meta_type, dir_type, known, md5, size " //NON-NLS
+				+ "ON tsk_files BEGIN " + removeOld + addNew + "END"); //NON-NLS
+		statement.execute("CREATE TRIGGER tsk_files_summary_delete AFTER DELETE ON tsk_files BEGIN " + removeOld + "END"); //NON-NLS
+
+		statement.execute("CREATE INDEX tsk_files_md5 ON tsk_files (md5, fs_obj_id, size)"); //NON-NLS
+	}
+
+	/**
+	 * @param row the tsk_files row, such as NEW in a trigger
+	 * @param named true to name the values after the summary columns
+	 * @return SQL of the tsk_files_summary key values of the row
+	 */
+	private static String getFileSummaryKeySql(String row, boolean named) {
+		String[] values = getFileSummaryKeyValues(row);
+		StringBuilder sql = new StringBuilder();
+		for (int i = 0; i < values.length; ++i) {
+			sql.append((i > 0) ? ", " : "").append(values[i]);
+			if (named) {
+				sql.append(" AS ").append(FILE_SUMMARY_KEY_COLUMNS[i]); //NON-NLS
+			}
+		}
+		return sql.toString();
+	}
+
+	/**
+	 * @param row the tsk_files row, such as NEW in a trigger
+	 * @return SQL condition matching the tsk_files_summary row of the row
+	 */
+	private static String getFileSummaryMatchSql(String row) {
+		String[] values = getFileSummaryKeyValues(row);
+		StringBuilder sql = new StringBuilder();
+		for (int i = 0; i < values.length; ++i) {
+			sql.append((i > 0) ? " AND " : "").append(FILE_SUMMARY_KEY_COLUMNS[i]).append(" = ").append(values[i]); //NON-NLS
+		}
+		return sql.toString();
+	}
+
+	private static String[] getFileSummaryKeyValues(String row) {
+		return new String[]{
+			"IFNULL(" + row + ".fs_obj_id, -1)", //NON-NLS
+			"IFNULL(" + row + ".type, -1)", //NON-NLS
+			"IFNULL(" + row + ".meta_type, -1)", //NON-NLS
+			"IFNULL(" + row + ".dir_type, -1)", //NON-NLS
+			"IFNULL(" + row + ".known, -1)", //NON-NLS
+			"(" + row + ".md5 IS NOT NULL)", //NON-NLS
+			CaseSummary.getSizeClassSql(row + ".size")};
+	}
+
+	/**
+	 * Load the count of artifacts of each type with one grouped query.
+	 *
+	 * @throws TskCoreException
+	 * @throws SQLException
+	 */
+	private void initArtifactCounts() throws TskCoreException, SQLException {
+		CaseDbConnection connection = connections.getConnection();
+		artifactCounts.setTypeCounts(countArtifactsByType(connection));
+	}
+
+	/**
+	 * Count the rows of the blackboard_artifacts table by artifact type. Must
+	 * be called with the shared lock held, except when opening the case.
+	 */
+	private Map<Integer, Long> countArtifactsByType(CaseDbConnection connection) throws SQLException {
+		ResultSet rs = null;
+		try {
+			// SELECT artifact_type_id, COUNT(*) FROM blackboard_artifacts GROUP BY artifact_type_id
+			rs = connection.executeQuery(connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.COUNT_ARTIFACTS_GROUP_BY_TYPE));
+			Map<Integer, Long> counts = new HashMap<Integer, Long>();
+			while (rs.next()) {
+				counts.put(rs.getInt(1), rs.getLong(2));
+			}
+			return counts;
+		} finally {
+			closeResultSet(rs);
+		}
+	}
+
+	/**
+	 * Count the rows of the blackboard_artifacts table of one source object
+	 * by artifact type. Must be called with the shared lock held.
+	 */
+	private Map<Integer, Long> countArtifactsOfSourceByType(CaseDbConnection connection, long objId) throws SQLException {
+		ResultSet rs = null;
+		try {
+			// SELECT artifact_type_id, COUNT(*) FROM blackboard_artifacts WHERE obj_id = ? GROUP BY artifact_type_id
+			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.COUNT_ARTIFACTS_FROM_SOURCE_GROUP_BY_TYPE);
+			statement.clearParameters();
+			statement.setLong(1, objId);
+			rs = connection.executeQuery(statement);
+			Map<Integer, Long> counts = new HashMap<Integer, Long>();
+			while (rs.next()) {
+				counts.put(rs.getInt(1), rs.getLong(2));
+			}
+			return counts;
+		} finally {
+			closeResultSet(rs);
+		}
+	}
+
+	/**
+	 * Get the count of artifacts of a source object by artifact type, from
+	 * the artifact counts if it is cached there, else from the database,
+	 * caching it.
+	 */
+	private Map<Integer, Long> getSourceArtifactCounts(long objId) throws TskCoreException {
+		Map<Integer, Long> counts = artifactCounts.getSourceCounts(objId);
+		if (counts != null) {
+			return counts;
+		}
+		CaseDbConnection connection = connections.getConnection();
+		acquireSharedLock();
+		try {
+			counts = countArtifactsOfSourceByType(connection, objId);
+			//cache before releasing the lock, so no artifact is added in between
+			artifactCounts.putSourceCounts(objId, counts);
+			return counts;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting number of blackboard artifacts by content", ex);
+		} finally {
+			releaseSharedLock();
+		}
+	}
+
+	/**
+	 * Compare the artifact counts kept in memory, which are used by
+	 * getBlackboardArtifactsTypeCount(), getBlackboardArtifactsCount() and
+	 * getBlackboardArtifactTypesInUse(), to counts read from the database.
+	 * For tests and diagnostics; it counts the whole blackboard_artifacts
+	 * table.
+	 *
+	 * @return a description of each difference, empty if the counts match
+	 * @throws TskCoreException
+	 */
+	public List<String> checkArtifactCounts() throws TskCoreException {
+		CaseDbConnection connection = connections.getConnection();
+		acquireSharedLock();
+		try {
+			List<String> differences = new ArrayList<String>();
+			compareArtifactCounts("all content", artifactCounts.getTypeCounts(), countArtifactsByType(connection), differences); //NON-NLS
+			for (long objId : artifactCounts.getCachedSources()) {
+				Map<Integer, Long> cached = artifactCounts.getSourceCounts(objId);
+				if (cached != null) {
+					compareArtifactCounts("obj_id " + objId, cached, countArtifactsOfSourceByType(connection, objId), differences); //NON-NLS
+				}
+			}
+			return differences;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error checking blackboard artifact counts", ex);
+		} finally {
+			releaseSharedLock();
+		}
+	}
+
+	private static void compareArtifactCounts(String scope, Map<Integer, Long> cached, Map<Integer, Long> actual, List<String> differences) {
+		Set<Integer> typeIds = new TreeSet<Integer>(cached.keySet());
+		typeIds.addAll(actual.keySet());
+		for (int typeId : typeIds) {
+			long cachedCount = cached.containsKey(typeId) ? cached.get(typeId) : 0;
+			long actualCount = actual.containsKey(typeId) ? actual.get(typeId) : 0;
+			if (cachedCount != actualCount) {
+				differences.add(scope + ", artifact_type_id " + typeId + ": cached " + cachedCount + ", actual " + actualCount); //NON-NLS
+			}
+		}
+	}
+
 	/**
 	 * Modify the case database to bring it up-to-date with the current version
 	 * of the database schema.
@@ -213,6 +508,7 @@ private void updateDatabaseSchema() throws Exception {
 				//    a. do nothing and return the schema version number unchanged, or
 				//    b. upgrade the database and then increment and return the schema version number.
 				schemaVersionNumber = updateFromSchema2toSchema3(schemaVersionNumber);
+				schemaVersionNumber = updateFromSchema3toSchema4(schemaVersionNumber);
 
 				// Write the updated schema version number to the the tsk_db_info table.
 				connection.executeUpdate(statement, "UPDATE tsk_db_info SET schema_ver = " + schemaVersionNumber); //NON-NLS
@@ -231,41 +527,55 @@ private void updateDatabaseSchema() throws Exception {
 
 	/**
 	 * Make a duplicate / backup copy of the current case database. Makes a new
-	 * copy only, and continues to use the current connection.
+	 * copy only, and continues to use the current connection. The copy is made
+	 * online, see backupCaseDb().
 	 *
 	 * @param newDBPath Path to the copy to be created. File will be overwritten
 	 * if it exists.
 	 * @throws IOException if copying fails.
 	 */
 	public void copyCaseDB(String newDBPath) throws IOException {
-		InputStream in = null;
-		OutputStream out = null;
-		acquireExclusiveLock();
 		try {
-			InputStream inFile = new FileInputStream(dbPath);
-			in = new BufferedInputStream(inFile);
-			OutputStream outFile = new FileOutputStream(newDBPath);
-			out = new BufferedOutputStream(outFile);
-			int bytesRead = 0;
-			while ((bytesRead = in.read()) != -1) {
-				out.write(bytesRead);
-			}
-		} finally {
-			try {
-				if (in != null) {
-					in.close();
-				}
-				if (out != null) {
-					out.flush();
-					out.close();
-				}
-			} catch (IOException e) {
-				logger.log(Level.WARNING, "Could not close streams after db copy", e); //NON-NLS
-			}
-			releaseExclusiveLock();
+			backupCaseDb(newDBPath, null);
+		} catch (TskCoreException ex) {
+			throw new IOException("Error copying case database to " + newDBPath, ex); //NON-NLS
 		}
 	}
 
+	/**
+	 * Back up the case database while it stays in use. The database is copied
+	 * a few thousand pages at a time, so readers are not blocked and writers
+	 * wait for at most one step. If the backup file exists, only the parts
+	 * that changed since it was written are rewritten.
+	 *
+	 * @param destPath path of the backup
+	 * @param listener told about the progress, or null
+	 * @return the finished backup, with the number of bytes written
+	 * @throws TskCoreException if the database can not be read or the backup
+	 * written
+	 */
+	public CaseDbBackup backupCaseDb(String destPath, CaseDbBackup.ProgressListener listener) throws TskCoreException {
+		return backupCaseDb(destPath, CaseDbBackup.DEFAULT_PAGES_PER_STEP, CaseDbBackup.DEFAULT_ONLINE_PASSES, listener);
+	}
+
+	/**
+	 * Back up the case database while it stays in use, see CaseDbBackup.
+	 *
+	 * @param destPath path of the backup
+	 * @param pagesPerStep number of database pages copied per step, at least
+	 * 1
+	 * @param onlinePasses number of passes tried while writers keep changing
+	 * the database before a pass holds the shared lock throughout, at least 0
+	 * @param listener told about the progress, or null
+	 * @return the finished backup, with the number of bytes written
+	 * @throws TskCoreException if the database can not be read or the backup
+	 * written
+	 */
+	public CaseDbBackup backupCaseDb(String destPath, int pagesPerStep, int onlinePasses,
+			CaseDbBackup.ProgressListener listener) throws TskCoreException {
+		return CaseDbBackup.backup(this, dbPath, destPath, pagesPerStep, onlinePasses, listener);
+	}
+
 	/**
 	 * Write some SQLite JDBC driver details to the log file.
 	 */
@@ -415,6 +725,32 @@ private int updateFromSchema2toSchema3(int schemaVersionNumber) throws SQLExcept
 		}
 	}
 
+	/**
+	 * Update a version 3 database schema to a version 4 database schema: add
+	 * the name and path index, the file summary and the MD5 index of the
+	 * tsk_files table, see createFileIndexes().
+	 *
+	 * @param schemaVersionNumber The schema version number of the database.
+	 * @return 4, if the input database schema version number was 3.
+	 * @throws SQLException
+	 * @throws TskCoreException
+	 */
+	private int updateFromSchema3toSchema4(int schemaVersionNumber) throws SQLException, TskCoreException {
+		if (schemaVersionNumber != 3) {
+			return schemaVersionNumber;
+		}
+
+		CaseDbConnection connection = connections.getConnection();
+		Statement statement = null;
+		try {
+			statement = connection.createStatement();
+			createFileIndexes(statement);
+			return 4;
+		} finally {
+			closeStatement(statement);
+		}
+	}
+
 	/**
 	 * Returns case database schema version number.
 	 *
@@ -444,7 +780,7 @@ public String getBackupDatabasePath() {
 	 * @throws TskCoreException
 	 */
 	public CaseDbTransaction beginTransaction() throws TskCoreException {
-		return new CaseDbTransaction(connections.getConnection());
+		return new CaseDbTransaction(connections.getConnection(), eventBus);
 	}
 
 	/**
@@ -462,7 +798,9 @@ public String getDbDirPath() {
 	 * an associated finally block.
 	 */
 	public void acquireExclusiveLock() {
+		long start = System.nanoTime();
 		rwLock.writeLock().lock();
+		exclusiveLockWait.recordSince(start);
 	}
 
 	/**
@@ -480,7 +818,9 @@ public void releaseExclusiveLock() {
 	 * associated finally block.
 	 */
 	public void acquireSharedLock() {
+		long start = System.nanoTime();
 		rwLock.readLock().lock();
+		sharedLockWait.recordSince(start);
 	}
 
 	/**
@@ -492,6 +832,46 @@ public void releaseSharedLock() {
 		rwLock.readLock().unlock();
 	}
 
+	/**
+	 * Get the metrics of the case: the time taken by each prepared statement
+	 * (db.statement.NAME) and by other queries and updates
+	 * (db.statement.adhoc.query and db.statement.adhoc.update), retries of
+	 * statements that found the database busy (db.busy.retries), slow
+	 * statements (db.slow) and the time spent waiting for the case locks
+	 * (lock.shared.wait and lock.exclusive.wait), all in microseconds. The
+	 * statement times cover executing the statement, not reading its results
+	 * past the first row.
+	 *
+	 * The metrics are registered with JMX while the case is open.
+	 *
+	 * @return the metrics
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Set how long a statement may take before it is logged, with its SQL,
+	 * to the org.sleuthkit.datamodel.SleuthkitCase.slowQueries logger at
+	 * WARNING level.
+	 *
+	 * @param millis the threshold, in milliseconds
+	 */
+	public void setSlowQueryThreshold(long millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException("Slow query threshold must not be negative"); //NON-NLS
+		}
+		statementMetrics.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+	/**
+	 * @return time, in milliseconds, a statement may take before it is logged
+	 * as a slow query
+	 */
+	public long getSlowQueryThreshold() {
+		return TimeUnit.NANOSECONDS.toMillis(statementMetrics.slowThresholdNanos);
+	}
+
 	/**
 	 * Open an existing case database.
 	 *
@@ -537,7 +917,28 @@ public static SleuthkitCase newCase(String dbPath) throws TskCoreException {
 	 * SleuthKit native code layer.
 	 */
 	public AddImageProcess makeAddImageProcess(String timezone, boolean processUnallocSpace, boolean noFatFsOrphans) {
-		return this.caseHandle.initAddImageProcess(timezone, processUnallocSpace, noFatFsOrphans);
+		return this.caseHandle.initAddImageProcess(timezone, processUnallocSpace, noFatFsOrphans, eventBus);
+	}
+
+	/**
+	 * Start process of adding a image to the case, with control over how
+	 * unallocated space is broken up into files.
+	 *
+	 * @param timezone TZ time zone string to use for ingest of image.
+	 * @param processUnallocSpace Set to true to process unallocated space in
+	 * the image.
+	 * @param noFatFsOrphans Set to true to skip processing orphan files of FAT
+	 * file systems.
+	 * @param unallocChunkSize Number of bytes to group unallocated file system
+	 * space into. Use 0 for one file per file system, -1 for one file per run
+	 * of consecutive blocks, or SleuthkitJNI.DEFAULT_UNALLOC_CHUNK_SIZE.
+	 * @param parallelUnallocSpace Set to true to find the unallocated space of
+	 * each file system on its own thread.
+	 * @return Object that encapsulates control of adding an image via the
+	 * SleuthKit native code layer.
+	 */
+	public AddImageProcess makeAddImageProcess(String timezone, boolean processUnallocSpace, boolean noFatFsOrphans, long unallocChunkSize, boolean parallelUnallocSpace) {
+		return this.caseHandle.initAddImageProcess(timezone, processUnallocSpace, noFatFsOrphans, unallocChunkSize, parallelUnallocSpace, eventBus);
 	}
 
 	/**
@@ -626,25 +1027,11 @@ public ArrayList<BlackboardArtifact> getBlackboardArtifacts(int artifactTypeID)
 	 * @throws TskCoreException
 	 */
 	public long getBlackboardArtifactsCount(long objId) throws TskCoreException {
-		CaseDbConnection connection = connections.getConnection();
-		acquireSharedLock();
-		ResultSet rs = null;
-		try {
-			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.COUNT_ARTIFACTS_FROM_SOURCE);
-			statement.clearParameters();
-			statement.setLong(1, objId);
-			rs = connection.executeQuery(statement);
-			long count = 0;
-			if (rs.next()) {
-				count = rs.getLong(1);
-			}
-			return count;
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting number of blackboard artifacts by content", ex);
-		} finally {
-			closeResultSet(rs);
-			releaseSharedLock();
+		long count = 0;
+		for (long typeCount : getSourceArtifactCounts(objId).values()) {
+			count += typeCount;
 		}
+		return count;
 	}
 
 	/**
@@ -655,25 +1042,7 @@ public long getBlackboardArtifactsCount(long objId) throws TskCoreException {
 	 * @throws TskCoreException
 	 */
 	public long getBlackboardArtifactsTypeCount(int artifactTypeID) throws TskCoreException {
-		CaseDbConnection connection = connections.getConnection();
-		acquireSharedLock();
-		ResultSet rs = null;
-		try {
-			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.COUNT_ARTIFACTS_OF_TYPE);
-			statement.clearParameters();
-			statement.setInt(1, artifactTypeID);
-			rs = connection.executeQuery(statement);
-			long count = 0;
-			if (rs.next()) {
-				count = rs.getLong(1);
-			}
-			return count;
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting number of blackboard artifacts by type", ex);
-		} finally {
-			closeResultSet(rs);
-			releaseSharedLock();
-		}
+		return artifactCounts.getTypeCount(artifactTypeID);
 	}
 
 	/**
@@ -953,11 +1322,10 @@ public ArrayList<BlackboardArtifact.ARTIFACT_TYPE> getBlackboardArtifactTypes()
 	 * @throws TskCoreException
 	 */
 	public ArrayList<BlackboardArtifact.ARTIFACT_TYPE> getBlackboardArtifactTypesInUse() throws TskCoreException {
-		// @@@ TODO: This should be rewritten as a single query. 		
 		ArrayList<BlackboardArtifact.ARTIFACT_TYPE> allArts = getBlackboardArtifactTypes();
 		ArrayList<BlackboardArtifact.ARTIFACT_TYPE> usedArts = new ArrayList<BlackboardArtifact.ARTIFACT_TYPE>();
 		for (BlackboardArtifact.ARTIFACT_TYPE art : allArts) {
-			if (getBlackboardArtifactsTypeCount(art.getTypeID()) > 0) {
+			if (artifactCounts.getTypeCount(art.getTypeID()) > 0) {
 				usedArts.add(art);
 			}
 		}
@@ -1073,26 +1441,8 @@ private ArrayList<BlackboardArtifact> getArtifactsHelper(int artifactTypeID, Str
 	 * within TSK core
 	 */
 	private long getArtifactsCountHelper(int artifactTypeID, long obj_id) throws TskCoreException {
-		CaseDbConnection connection = connections.getConnection();
-		acquireSharedLock();
-		ResultSet rs = null;
-		try {
-			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.COUNT_ARTIFACTS_BY_SOURCE_AND_TYPE);
-			statement.clearParameters();
-			statement.setLong(1, obj_id);
-			statement.setInt(2, artifactTypeID);
-			rs = connection.executeQuery(statement);
-			long count = 0;
-			if (rs.next()) {
-				count = rs.getLong(1);
-			}
-			return count;
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting blackboard artifact count", ex);
-		} finally {
-			closeResultSet(rs);
-			releaseSharedLock();
-		}
+		Long count = getSourceArtifactCounts(obj_id).get(artifactTypeID);
+		return (count != null) ? count : 0;
 	}
 
 	/**
@@ -1320,6 +1670,7 @@ public void addBlackboardAttribute(BlackboardAttribute attr, int artifactTypeId)
 		acquireExclusiveLock();
 		try {
 			addBlackBoardAttribute(attr, artifactTypeId, connection);
+			eventBus.publish(CaseDbChangeEvent.Type.ATTRIBUTES_ADDED, attr.getArtifactID(), artifactTypeId);
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error adding blackboard attribute " + attr.toString(), ex);
 		} finally {
@@ -1344,6 +1695,9 @@ public void addBlackboardAttributes(Collection<BlackboardAttribute> attributes,
 				addBlackBoardAttribute(attr, artifactTypeId, connection);
 			}
 			connection.commitTransaction();
+			for (final BlackboardAttribute attr : attributes) {
+				eventBus.publish(CaseDbChangeEvent.Type.ATTRIBUTES_ADDED, attr.getArtifactID(), artifactTypeId);
+			}
 		} catch (SQLException ex) {
 			connection.rollbackTransaction();
 			throw new TskCoreException("Error adding blackboard attributes", ex);
@@ -1353,6 +1707,9 @@ public void addBlackboardAttributes(Collection<BlackboardAttribute> attributes,
 	}
 
 	private void addBlackBoardAttribute(BlackboardAttribute attr, int artifactTypeId, CaseDbConnection connection) throws SQLException, TskCoreException {
+		if (artifactTypeId == ARTIFACT_TYPE.TSK_OS_INFO.getTypeID()) {
+			osInfoGeneration.incrementAndGet();
+		}
 		PreparedStatement statement;
 		switch (attr.getValueType()) {
 			case STRING:
@@ -1793,7 +2150,13 @@ private BlackboardArtifact newBlackboardArtifact(int artifact_type_id, long obj_
 			statement.setInt(3, artifact_type_id);
 			connection.executeUpdate(statement);
 			rs = statement.getGeneratedKeys();
-			return new BlackboardArtifact(this, rs.getLong(1), obj_id, artifact_type_id, artifactTypeName, artifactDisplayName);
+			if (artifact_type_id == ARTIFACT_TYPE.TSK_OS_INFO.getTypeID()) {
+				osInfoGeneration.incrementAndGet();
+			}
+			final long artifactId = rs.getLong(1);
+			artifactCounts.artifactAdded(obj_id, artifact_type_id);
+			eventBus.publish(CaseDbChangeEvent.Type.ARTIFACTS_ADDED, artifactId, artifact_type_id);
+			return new BlackboardArtifact(this, artifactId, obj_id, artifact_type_id, artifactTypeName, artifactDisplayName);
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error creating a blackboard artifact", ex);
 		} finally {
@@ -1801,6 +2164,70 @@ private BlackboardArtifact newBlackboardArtifact(int artifact_type_id, long obj_
 			releaseExclusiveLock();
 		}		
 	}
+
+	/**
+	 * Add artifacts of one type, with their attributes, in a single
+	 * transaction. This is much faster than adding them one at a time when
+	 * there are many.
+	 *
+	 * @param artifactType the type of the artifacts
+	 * @param objIds the content object ids the artifacts are associated with
+	 * @param attributes the attributes of each artifact, in the order of
+	 * objIds
+	 * @return the new artifacts, in the order of objIds
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 * within tsk core, in which case none of the artifacts are added
+	 */
+	public List<BlackboardArtifact> newBlackboardArtifacts(ARTIFACT_TYPE artifactType, List<Long> objIds,
+			List<? extends Collection<BlackboardAttribute>> attributes) throws TskCoreException {
+		if (objIds.size() != attributes.size()) {
+			throw new IllegalArgumentException("Need the attributes of each artifact"); //NON-NLS
+		}
+		final int artifactTypeId = artifactType.getTypeID();
+		List<BlackboardArtifact> artifacts = new ArrayList<BlackboardArtifact>(objIds.size());
+		CaseDbConnection connection = connections.getConnection();
+		acquireExclusiveLock();
+		try {
+			connection.beginTransaction();
+			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.INSERT_ARTIFACT);
+			for (int i = 0; i < objIds.size(); ++i) {
+				final long artifactId = this.nextArtifactId++;
+				statement.clearParameters();
+				statement.setLong(1, artifactId);
+				statement.setLong(2, objIds.get(i));
+				statement.setInt(3, artifactTypeId);
+				connection.executeUpdate(statement);
+				for (BlackboardAttribute attr : attributes.get(i)) {
+					attr.setArtifactID(artifactId);
+					attr.setCase(this);
+					addBlackBoardAttribute(attr, artifactTypeId, connection);
+				}
+				artifacts.add(new BlackboardArtifact(this, artifactId, objIds.get(i), artifactTypeId, artifactType.getLabel(), artifactType.getDisplayName()));
+			}
+			connection.commitTransaction();
+			if (artifactType == ARTIFACT_TYPE.TSK_OS_INFO) {
+				osInfoGeneration.incrementAndGet();
+			}
+			for (int i = 0; i < artifacts.size(); ++i) {
+				BlackboardArtifact artifact = artifacts.get(i);
+				artifactCounts.artifactAdded(artifact.getObjectID(), artifactTypeId);
+				eventBus.publish(CaseDbChangeEvent.Type.ARTIFACTS_ADDED, artifact.getArtifactID(), artifactTypeId);
+				if (!attributes.get(i).isEmpty()) {
+					eventBus.publish(CaseDbChangeEvent.Type.ATTRIBUTES_ADDED, artifact.getArtifactID(), artifactTypeId);
+				}
+			}
+			return artifacts;
+		} catch (SQLException ex) {
+			connection.rollbackTransaction();
+			throw new TskCoreException("Error creating blackboard artifacts", ex);
+		} catch (TskCoreException ex) {
+			connection.rollbackTransaction();
+			throw ex;
+		} finally {
+			releaseExclusiveLock();
+		}
+	}
+
 	/**
 	 * Checks if the content object has children. Note: this is generally more
 	 * efficient then preloading all children and checking if the set is empty,
@@ -2458,23 +2885,14 @@ public List<AbstractFile> findFiles(Content dataSource, String fileName) throws
 		List<AbstractFile> files = new ArrayList<AbstractFile>();
 		CaseDbConnection connection = connections.getConnection();
 		acquireSharedLock();
-		ResultSet rs = null;
 		try {
-			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.SELECT_FILES_BY_FILE_SYSTEM_AND_NAME);
-			statement.clearParameters();
 			if (dataSource instanceof Image) {
 				for (FileSystem fileSystem : getFileSystems((Image) dataSource)) {
-					statement.setString(1, fileName.toLowerCase());
-					statement.setLong(2, fileSystem.getId());
-					rs = connection.executeQuery(statement);
-					files.addAll(resultSetToAbstractFiles(rs));
+					files.addAll(findFilesByName(connection, fileSystem.getId(), fileName.toLowerCase(), null));
 				}
 			} else if (dataSource instanceof VirtualDirectory) {
 				//fs_obj_id is special for non-fs files (denotes data source)
-				statement.setString(1, fileName.toLowerCase());
-				statement.setLong(2, dataSource.getId());
-				rs = connection.executeQuery(statement);
-				files = resultSetToAbstractFiles(rs);
+				files = findFilesByName(connection, dataSource.getId(), fileName.toLowerCase(), null);
 			} else {
 				final String msg = MessageFormat.format(bundle.getString("SleuthkitCase.findFiles.exception.msg2.text"), dataSource);
 				logger.log(Level.SEVERE, msg);
@@ -2483,7 +2901,6 @@ public List<AbstractFile> findFiles(Content dataSource, String fileName) throws
 		} catch (SQLException e) {
 			throw new TskCoreException(bundle.getString("SleuthkitCase.findFiles.exception.msg3.text"), e);
 		} finally {
-			closeResultSet(rs);
 			releaseSharedLock();
 		}
 		return files;
@@ -2510,24 +2927,14 @@ public List<AbstractFile> findFiles(Content dataSource, String fileName, String
 		List<AbstractFile> files = new ArrayList<AbstractFile>();
 		CaseDbConnection connection = connections.getConnection();
 		acquireSharedLock();
-		ResultSet rs = null;
 		try {
-			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.SELECT_FILES_BY_FILE_SYSTEM_AND_PATH);
-			statement.clearParameters();
+			String parentPattern = "%" + dirName.toLowerCase() + "%"; //NON-NLS
 			if (dataSource instanceof Image) {
 				for (FileSystem fileSystem : getFileSystems((Image) dataSource)) {
-					statement.setString(1, fileName.toLowerCase());
-					statement.setString(2, "%" + dirName.toLowerCase() + "%"); //NON-NLS
-					statement.setLong(3, fileSystem.getId());
-					rs = connection.executeQuery(statement);
-					files.addAll(resultSetToAbstractFiles(rs));
+					files.addAll(findFilesByName(connection, fileSystem.getId(), fileName.toLowerCase(), parentPattern));
 				}
 			} else if (dataSource instanceof VirtualDirectory) {
-				statement.setString(1, fileName.toLowerCase());
-				statement.setString(2, "%" + dirName.toLowerCase() + "%"); //NON-NLS
-				statement.setLong(3, dataSource.getId());
-				rs = connection.executeQuery(statement);
-				files = resultSetToAbstractFiles(rs);
+				files = findFilesByName(connection, dataSource.getId(), fileName.toLowerCase(), parentPattern);
 			} else {
 				final String msg = MessageFormat.format(bundle.getString("SleuthkitCase.findFiles3.exception.msg2.text"), dataSource);
 				logger.log(Level.SEVERE, msg);
@@ -2536,32 +2943,152 @@ public List<AbstractFile> findFiles(Content dataSource, String fileName, String
 		} catch (SQLException e) {
 			throw new TskCoreException(bundle.getString("SleuthkitCase.findFiles3.exception.msg3.text"), e);
 		} finally {
-			if (rs != null) {
-				try {
-					rs.close();
-				} catch (SQLException ex) {
-					logger.log(Level.WARNING, "Error closing result set after finding files", ex); //NON-NLS
-				}
-			}
 			releaseSharedLock();
 		}
 		return files;
 	}
 
 	/**
-	 * wraps the version of addVirtualDirectory that takes a Transaction in a
-	 * transaction local to this method
+	 * Find the files with an exact name and parent path, using the path index
+	 * of the case.
 	 *
-	 * @param parentId
-	 * @param directoryName
-	 * @return
+	 * @param dataSource the dataSource (Image, parent-less VirtualDirectory) to
+	 * search for the given file
+	 * @param fileName name of the file or directory (case insensitive)
+	 * @param parentPath path of the parent directory, with the leading and
+	 * trailing slash, such as "/windows/system32/" (case insensitive)
+	 * @return the files/directories with the given name and parent path
 	 * @throws TskCoreException
 	 */
-	public VirtualDirectory addVirtualDirectory(long parentId, String directoryName) throws TskCoreException {
-		acquireExclusiveLock();
-		CaseDbTransaction localTrans = beginTransaction();
-		try {
-			VirtualDirectory newVD = addVirtualDirectory(parentId, directoryName, localTrans);
+	public List<AbstractFile> findFilesByPath(Content dataSource, String fileName, String parentPath) throws TskCoreException {
+		if (dataSource.getParent() != null) {
+			final String msg = MessageFormat.format(bundle.getString("SleuthkitCase.findFiles3.exception.msg1.text"), dataSource);
+			logger.log(Level.SEVERE, msg);
+			throw new IllegalArgumentException(msg);
+		}
+
+		List<AbstractFile> files = new ArrayList<AbstractFile>();
+		CaseDbConnection connection = connections.getConnection();
+		acquireSharedLock();
+		try {
+			if (dataSource instanceof Image) {
+				for (FileSystem fileSystem : getFileSystems((Image) dataSource)) {
+					files.addAll(findFilesByExactPath(connection, fileSystem.getId(), fileName.toLowerCase(), parentPath.toLowerCase()));
+				}
+			} else if (dataSource instanceof VirtualDirectory) {
+				files = findFilesByExactPath(connection, dataSource.getId(), fileName.toLowerCase(), parentPath.toLowerCase());
+			} else {
+				final String msg = MessageFormat.format(bundle.getString("SleuthkitCase.findFiles3.exception.msg2.text"), dataSource);
+				logger.log(Level.SEVERE, msg);
+				throw new IllegalArgumentException(msg);
+			}
+		} catch (SQLException e) {
+			throw new TskCoreException(bundle.getString("SleuthkitCase.findFiles3.exception.msg3.text"), e);
+		} finally {
+			releaseSharedLock();
+		}
+		return files;
+	}
+
+	/**
+	 * Find the files of one file system (or non-fs data source) whose name
+	 * matches a LIKE pattern. The literal prefix of the pattern, if any, is
+	 * looked up as a range of the path index, so only a pattern that starts
+	 * with a wildcard scans the index entries of the whole file system. Must
+	 * be called with the shared lock held.
+	 *
+	 * @param fsObjId fs_obj_id of the files
+	 * @param namePattern lower case LIKE pattern of the name
+	 * @param parentPattern lower case LIKE pattern of the parent path, or null
+	 * for any parent
+	 */
+	private List<AbstractFile> findFilesByName(CaseDbConnection connection, long fsObjId, String namePattern, String parentPattern) throws SQLException {
+		String prefix = getLikePrefix(namePattern);
+		PreparedStatement statement;
+		int index = 1;
+		if (prefix.isEmpty()) {
+			statement = connection.getPreparedStatement((parentPattern == null)
+					? CaseDbConnection.PREPARED_STATEMENT.SELECT_FILES_BY_FILE_SYSTEM_AND_NAME
+					: CaseDbConnection.PREPARED_STATEMENT.SELECT_FILES_BY_FILE_SYSTEM_AND_PATH);
+			statement.clearParameters();
+			statement.setLong(index++, fsObjId);
+		} else {
+			statement = connection.getPreparedStatement((parentPattern == null)
+					? CaseDbConnection.PREPARED_STATEMENT.SELECT_FILES_BY_FILE_SYSTEM_AND_NAME_PREFIX
+					: CaseDbConnection.PREPARED_STATEMENT.SELECT_FILES_BY_FILE_SYSTEM_AND_PATH_PREFIX);
+			statement.clearParameters();
+			statement.setLong(index++, fsObjId);
+			statement.setString(index++, prefix);
+			//smallest string greater than all strings with the prefix
+			statement.setString(index++, prefix.substring(0, prefix.length() - 1) + (char) (prefix.charAt(prefix.length() - 1) + 1));
+		}
+		statement.setString(index++, namePattern);
+		if (parentPattern != null) {
+			statement.setString(index++, parentPattern);
+		}
+		ResultSet rs = null;
+		try {
+			rs = connection.executeQuery(statement);
+			return resultSetToAbstractFiles(rs);
+		} finally {
+			closeResultSet(rs);
+		}
+	}
+
+	/**
+	 * Find the files of one file system (or non-fs data source) with an exact
+	 * name and parent path. Must be called with the shared lock held.
+	 *
+	 * @param fsObjId fs_obj_id of the files
+	 * @param fileName lower case name
+	 * @param parentPath lower case parent path
+	 */
+	private List<AbstractFile> findFilesByExactPath(CaseDbConnection connection, long fsObjId, String fileName, String parentPath) throws SQLException {
+		PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.SELECT_FILES_BY_FILE_SYSTEM_AND_EXACT_PATH);
+		statement.clearParameters();
+		statement.setLong(1, fsObjId);
+		statement.setString(2, fileName);
+		statement.setString(3, parentPath);
+		ResultSet rs = null;
+		try {
+			rs = connection.executeQuery(statement);
+			return resultSetToAbstractFiles(rs);
+		} finally {
+			closeResultSet(rs);
+		}
+	}
+
+	/**
+	 * Get the part of a LIKE pattern before its first wildcard, shortened so
+	 * that incrementing its last char gives an upper bound for the range
+	 * lookup.
+	 */
+	private static String getLikePrefix(String pattern) {
+		int end = 0;
+		while (end < pattern.length() && pattern.charAt(end) != '%' && pattern.charAt(end) != '_') {
+			++end;
+		}
+		//keep to chars whose successor sorts the same way in UTF-8
+		while (end > 0 && pattern.charAt(end - 1) >= '\uD7FF') {
+			--end;
+		}
+		return pattern.substring(0, end);
+	}
+
+	/**
+	 * wraps the version of addVirtualDirectory that takes a Transaction in a
+	 * transaction local to this method
+	 *
+	 * @param parentId
+	 * @param directoryName
+	 * @return
+	 * @throws TskCoreException
+	 */
+	public VirtualDirectory addVirtualDirectory(long parentId, String directoryName) throws TskCoreException {
+		acquireExclusiveLock();
+		CaseDbTransaction localTrans = beginTransaction();
+		try {
+			VirtualDirectory newVD = addVirtualDirectory(parentId, directoryName, localTrans);
 			localTrans.commit();
 			return newVD;
 		} catch (TskCoreException ex) {
@@ -2655,6 +3182,7 @@ public VirtualDirectory addVirtualDirectory(long parentId, String directoryName,
 			statement.setString(15, parentPath);
 
 			connection.executeUpdate(statement);
+			trans.publishOnCommit(CaseDbChangeEvent.Type.FILES_ADDED, newObjId, TSK_DB_FILES_TYPE_ENUM.VIRTUAL_DIR.getFileType());
 
 			return new VirtualDirectory(this, newObjId, directoryName, dirType,
 					metaType, dirFlag, metaFlags, size, null, FileKnown.UNKNOWN,
@@ -2899,6 +3427,7 @@ public List<LayoutFile> addCarvedFiles(List<CarvedFileContainer> filesToAdd) thr
 						connection.executeUpdate(statement);
 					}
 
+					localTrans.publishOnCommit(CaseDbChangeEvent.Type.FILES_ADDED, newObjId, type.getFileType());
 					addedFiles.add(new LayoutFile(this, newObjId, itemToAdd.getName(),
 							type, dirType, metaType, dirFlag, metaFlags,
 							itemToAdd.getSize(), null, FileKnown.UNKNOWN, parentPath));
@@ -3020,6 +3549,7 @@ public DerivedFile addDerivedFile(String fileName, String localPath,
 			addFilePath(connection, newObjId, localPath);
 
 			connection.commitTransaction();
+			eventBus.publish(CaseDbChangeEvent.Type.FILES_ADDED, newObjId, TSK_DB_FILES_TYPE_ENUM.DERIVED.getFileType());
 
 			//TODO add derived method to tsk_files_derived and tsk_files_derived_method 
 			return new DerivedFile(this, newObjId, fileName, dirType, metaType, dirFlag, metaFlags,
@@ -3169,6 +3699,7 @@ public LocalFile addLocalFile(String fileName, String localPath,
 
 			//add localPath 
 			addFilePath(connection, newObjId, localPath);
+			trans.publishOnCommit(CaseDbChangeEvent.Type.FILES_ADDED, newObjId, TSK_DB_FILES_TYPE_ENUM.LOCAL.getFileType());
 
 			return new LocalFile(this, newObjId, fileName, dirType, metaType, dirFlag, metaFlags,
 					size, ctime, crtime, atime, mtime, null, null, parentPath, localPath, parentId);
@@ -3254,7 +3785,7 @@ public List<AbstractFile> findAllFilesWhere(String sqlWhereClause) throws TskCor
 		ResultSet rs = null;
 		try {
 			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT * FROM tsk_files WHERE " + sqlWhereClause); //NON-NLS
+			rs = connection.executeQuery(s, "SELECT " + ResultSetHelper.FILE_COLUMNS + " FROM tsk_files WHERE " + sqlWhereClause); //NON-NLS
 			return resultSetToAbstractFiles(rs);
 		} catch (SQLException e) {
 			throw new TskCoreException("SQLException thrown when calling 'SleuthkitCase.findAllFilesWhere(): " + sqlWhereClause, e);
@@ -3265,6 +3796,235 @@ public List<AbstractFile> findAllFilesWhere(String sqlWhereClause) throws TskCor
 		}
 	}
 
+	/**
+	 * Find and return list of all (abstract) files matching the specific Where
+	 * clause, without reading their times, modes, uid and gid. Those are read
+	 * from the database the first time one of the files needs them, with one
+	 * query for the files next to it in the list (see
+	 * AbstractFile.DeferredColumns), so this is faster for listings that do
+	 * not show them.
+	 *
+	 * @param sqlWhereClause a SQL where clause appropriate for the desired
+	 * files (do not begin the WHERE clause with the word WHERE!)
+	 * @return a list of AbstractFile each of which satisfy the given WHERE
+	 * clause
+	 * @throws TskCoreException
+	 */
+	public List<AbstractFile> findAllFilesWhereLight(String sqlWhereClause) throws TskCoreException {
+		CaseDbConnection connection = connections.getConnection();
+		acquireSharedLock();
+		Statement s = null;
+		ResultSet rs = null;
+		try {
+			s = connection.createStatement();
+			rs = connection.executeQuery(s, "SELECT " + ResultSetHelper.FILE_COLUMNS_LIGHT + " FROM tsk_files WHERE " + sqlWhereClause); //NON-NLS
+			return resultSetToAbstractFiles(rs);
+		} catch (SQLException e) {
+			throw new TskCoreException("SQLException thrown when calling 'SleuthkitCase.findAllFilesWhereLight(): " + sqlWhereClause, e);
+		} finally {
+			closeResultSet(rs);
+			closeStatement(s);
+			releaseSharedLock();
+		}
+	}
+
+	/**
+	 * Build a timeline of the MAC times of all of the files in the case, with
+	 * one scan of the tsk_files table. The files are read in pages by object
+	 * id, and the shared lock is held only while a page is read. The timeline
+	 * is a snapshot; build a new one to see files added since.
+	 *
+	 * @return the timeline
+	 * @throws TskCoreException if the files could not be read
+	 */
+	public Timeline buildTimeline() throws TskCoreException {
+		Timeline.Builder builder = new Timeline.Builder();
+		CaseDbConnection connection = connections.getConnection();
+		long lastObjId = Long.MIN_VALUE;
+		int rows;
+		do {
+			rows = 0;
+			acquireSharedLock();
+			ResultSet rs = null;
+			try {
+				// SELECT obj_id, mtime, atime, ctime, crtime FROM tsk_files WHERE obj_id > ? ORDER BY obj_id LIMIT ?
+				PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.SELECT_FILE_TIMES);
+				statement.clearParameters();
+				statement.setLong(1, lastObjId);
+				statement.setInt(2, TIMELINE_PAGE_SIZE);
+				rs = connection.executeQuery(statement);
+				while (rs.next()) {
+					lastObjId = rs.getLong(1);
+					builder.addFile(lastObjId, rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getLong(5));
+					++rows;
+				}
+			} catch (SQLException ex) {
+				throw new TskCoreException("Error reading file times for the timeline", ex);
+			} finally {
+				closeResultSet(rs);
+				releaseSharedLock();
+			}
+		} while (rows == TIMELINE_PAGE_SIZE);
+		//sort without holding the lock
+		return builder.build();
+	}
+
+	/**
+	 * Open a cursor over the files matching the specific Where clause, in
+	 * object id order. The cursor reads the columns of a page of rows at a
+	 * time without creating file objects, so it is suitable for scanning
+	 * millions of files. Rows can be turned into AbstractFile objects as
+	 * needed. The shared lock on the case database is only held while a page
+	 * is read.
+	 *
+	 * @param sqlWhereClause a SQL where clause appropriate for the desired
+	 * files (do not begin the WHERE clause with the word WHERE!), without an
+	 * ORDER BY
+	 * @return cursor positioned before the first file, to be closed by the
+	 * caller
+	 */
+	public FileCursor openFileCursor(String sqlWhereClause) {
+		return new FileCursor(this, sqlWhereClause, null);
+	}
+
+	/**
+	 * Open a cursor over the files matching the specific Where clause, in the
+	 * given order. The object ids of the files are sorted once, into a
+	 * temporary table of the connection of the calling thread, and the rows
+	 * are then read by page in that order like openFileCursor(String). The
+	 * cursor must be used and closed on the thread that opened it.
+	 *
+	 * @param sqlWhereClause a SQL where clause appropriate for the desired
+	 * files (do not begin the WHERE clause with the word WHERE!)
+	 * @param sqlOrderBy the columns to order by, as after ORDER BY; add
+	 * obj_id last for a stable order
+	 * @return cursor positioned before the first file, to be closed by the
+	 * caller
+	 * @throws TskCoreException if the files could not be sorted
+	 */
+	public FileCursor openFileCursor(String sqlWhereClause, String sqlOrderBy) throws TskCoreException {
+		final String orderTable = "file_cursor_" + fileCursorCount.incrementAndGet(); //NON-NLS
+		CaseDbConnection connection = connections.getConnection();
+		acquireSharedLock();
+		Statement s = null;
+		try {
+			s = connection.createStatement();
+			connection.executeUpdate(s, "CREATE TEMP TABLE " + orderTable + " (seq INTEGER PRIMARY KEY, obj_id INTEGER NOT NULL)"); //NON-NLS
+			connection.executeUpdate(s, "INSERT INTO temp." + orderTable + " (obj_id) SELECT obj_id FROM tsk_files WHERE " //NON-NLS
+					+ sqlWhereClause + " ORDER BY " + sqlOrderBy); //NON-NLS
+			return new FileCursor(this, sqlWhereClause, orderTable);
+		} catch (SQLException e) {
+			dropFileCursorOrder(orderTable);
+			throw new TskCoreException("SQLException thrown when calling 'SleuthkitCase.openFileCursor(): " + sqlWhereClause + " ORDER BY " + sqlOrderBy, e);
+		} finally {
+			closeStatement(s);
+			releaseSharedLock();
+		}
+	}
+
+	/**
+	 * Read the next page of a FileCursor, holding the shared lock only while
+	 * it is read.
+	 *
+	 * @param cursor the cursor, which reads the rows
+	 * @param sqlWhereClause the files of the cursor
+	 * @param orderTable the order table of the cursor, or null for object id
+	 * order
+	 * @param lastKey object id, or rank in the order table, of the last row of
+	 * the previous page
+	 * @return number of rows read
+	 */
+	int readFileCursorPage(FileCursor cursor, String sqlWhereClause, String orderTable, long lastKey) throws TskCoreException {
+		StringBuilder columns = new StringBuilder();
+		for (String column : FileCursor.COLUMNS) {
+			columns.append("tsk_files.").append(column).append(", "); //NON-NLS
+		}
+		String query;
+		if (orderTable == null) {
+			query = "SELECT " + columns + "tsk_files.obj_id FROM tsk_files WHERE (" + sqlWhereClause + ") AND obj_id > " + lastKey //NON-NLS
+					+ " ORDER BY obj_id LIMIT " + FileCursor.PAGE_SIZE; //NON-NLS
+		} else {
+			query = "SELECT " + columns + "cursor_order.seq FROM temp." + orderTable + " AS cursor_order " //NON-NLS
+					+ "JOIN tsk_files ON tsk_files.obj_id = cursor_order.obj_id WHERE cursor_order.seq > " + lastKey //NON-NLS
+					+ " ORDER BY cursor_order.seq LIMIT " + FileCursor.PAGE_SIZE; //NON-NLS
+		}
+		CaseDbConnection connection = connections.getConnection();
+		acquireSharedLock();
+		Statement s = null;
+		ResultSet rs = null;
+		try {
+			s = connection.createStatement();
+			rs = connection.executeQuery(s, query);
+			return cursor.readPage(rs);
+		} catch (SQLException e) {
+			throw new TskCoreException("Error reading file cursor page: " + sqlWhereClause, e);
+		} finally {
+			closeResultSet(rs);
+			closeStatement(s);
+			releaseSharedLock();
+		}
+	}
+
+	/**
+	 * Create the file objects of rows of a FileCursor page with one query.
+	 *
+	 * @param ids object ids of the files
+	 * @return the files that were found, by object id
+	 * @throws TskCoreException if the query failed
+	 */
+	Map<Long, AbstractFile> getFileCursorFiles(long[] ids) throws TskCoreException {
+		Map<Long, AbstractFile> files = new HashMap<Long, AbstractFile>();
+		if (ids.length == 0) {
+			return files;
+		}
+		StringBuilder query = new StringBuilder("SELECT " + ResultSetHelper.FILE_COLUMNS + " FROM tsk_files WHERE obj_id IN ("); //NON-NLS
+		for (int i = 0; i < ids.length; ++i) {
+			if (i > 0) {
+				query.append(", "); //NON-NLS
+			}
+			query.append(ids[i]);
+		}
+		query.append(")"); //NON-NLS
+		CaseDbConnection connection = connections.getConnection();
+		acquireSharedLock();
+		Statement s = null;
+		ResultSet rs = null;
+		try {
+			s = connection.createStatement();
+			rs = connection.executeQuery(s, query.toString());
+			for (AbstractFile file : resultSetToAbstractFiles(rs)) {
+				files.put(file.getId(), file);
+			}
+			return files;
+		} catch (SQLException e) {
+			throw new TskCoreException("Error reading the files of a file cursor page", e);
+		} finally {
+			closeResultSet(rs);
+			closeStatement(s);
+			releaseSharedLock();
+		}
+	}
+
+	/**
+	 * Drop the order table of a FileCursor.
+	 */
+	void dropFileCursorOrder(String orderTable) {
+		Statement s = null;
+		acquireSharedLock();
+		try {
+			CaseDbConnection connection = connections.getConnection();
+			s = connection.createStatement();
+			connection.executeUpdate(s, "DROP TABLE IF EXISTS temp." + orderTable); //NON-NLS
+		} catch (SQLException ex) {
+			logger.log(Level.WARNING, "Error dropping file cursor table " + orderTable, ex); //NON-NLS
+		} catch (TskCoreException ex) {
+			logger.log(Level.WARNING, "Error dropping file cursor table " + orderTable, ex); //NON-NLS
+		} finally {
+			closeStatement(s);
+			releaseSharedLock();
+		}
+	}
+
 	/**
 	 * Find and return list of all (abstract) ids of files matching the specific
 	 * Where clause
@@ -3334,23 +4094,32 @@ public List<FsContent> findFilesWhere(String sqlWhereClause) throws TskCoreExcep
 	 */
 	public List<AbstractFile> openFiles(Content dataSource, String filePath) throws TskCoreException {
 
-		// get the non-unique path (strip of image and volume path segments, if
-		// the exist.
-		String path = AbstractFile.createNonUniquePath(filePath).toLowerCase();
+		// split the path into its segments, skipping the image and volume
+		// names, if they exist.
+		List<String> segments = new ArrayList<String>();
+		for (String segment : filePath.split("/")) { //NON-NLS
+			if (!segment.isEmpty()) {
+				segments.add(segment);
+			}
+		}
+		if (!segments.isEmpty() && segments.get(0).startsWith("img_")) { //NON-NLS
+			segments.remove(0);
+		}
+		if (!segments.isEmpty() && segments.get(0).startsWith("vol_")) { //NON-NLS
+			segments.remove(0);
+		}
+		if (segments.isEmpty()) {
+			return new ArrayList<AbstractFile>();
+		}
 
 		// split the file name from the parent path
-		int lastSlash = path.lastIndexOf("/"); //NON-NLS
-
-		// if the last slash is at the end, strip it off
-		if (lastSlash == path.length()) {
-			path = path.substring(0, lastSlash - 1);
-			lastSlash = path.lastIndexOf("/"); //NON-NLS
+		StringBuilder parentPath = new StringBuilder("/"); //NON-NLS
+		for (String segment : segments.subList(0, segments.size() - 1)) {
+			parentPath.append(segment).append('/');
 		}
+		String fileName = segments.get(segments.size() - 1);
 
-		String parentPath = path.substring(0, lastSlash);
-		String fileName = path.substring(lastSlash);
-
-		return findFiles(dataSource, fileName, parentPath);
+		return findFilesByPath(dataSource, fileName, parentPath.toString());
 	}
 
 	/**
@@ -3383,6 +4152,39 @@ public List<TskFileRange> getFileRanges(long id) throws TskCoreException {
 		}
 	}
 
+	/**
+	 * Get the layout ranges of all of the unallocated space files in a file
+	 * system, ordered by their offset in the image. The ranges are read with a
+	 * single query and no LayoutFile objects are created.
+	 *
+	 * @param fs file system to get the unallocated ranges of
+	 * @return list of file ranges, ordered by byte start
+	 * @throws TskCoreException thrown if a critical error occurred within tsk
+	 * core
+	 */
+	public List<TskFileRange> getUnallocatedRanges(FileSystem fs) throws TskCoreException {
+		CaseDbConnection connection = connections.getConnection();
+		acquireSharedLock();
+		ResultSet rs = null;
+		try {
+			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.SELECT_UNALLOC_RANGES_BY_FILE_SYSTEM);
+			statement.clearParameters();
+			statement.setLong(1, fs.getId());
+			statement.setShort(2, TSK_DB_FILES_TYPE_ENUM.UNALLOC_BLOCKS.getFileType());
+			rs = connection.executeQuery(statement);
+			List<TskFileRange> ranges = new ArrayList<TskFileRange>();
+			while (rs.next()) {
+				ranges.add(new TskFileRange(rs.getLong(1), rs.getLong(2), rs.getLong(3)));
+			}
+			return ranges;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting unallocated ranges for file system, id = " + fs.getId(), ex);
+		} finally {
+			closeResultSet(rs);
+			releaseSharedLock();
+		}
+	}
+
 	/**
 	 * Get am image by the image object id
 	 *
@@ -3986,44 +4788,12 @@ public void setImagePaths(long obj_id, List<String> paths) throws TskCoreExcepti
 	private List<AbstractFile> resultSetToAbstractFiles(ResultSet rs) throws SQLException {
 		ArrayList<AbstractFile> results = new ArrayList<AbstractFile>();
 		try {
+			ResultSetHelper.FileColumns cols = new ResultSetHelper.FileColumns(rs);
 			while (rs.next()) {
-				final short type = rs.getShort("type"); //NON-NLS
-				if (type == TSK_DB_FILES_TYPE_ENUM.FS.getFileType()) {
-					FsContent result;
-					if (rs.getShort("meta_type") == TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR.getValue()) { //NON-NLS
-						result = rsHelper.directory(rs, null);
-					} else {
-						result = rsHelper.file(rs, null);
-					}
-					results.add(result);
-				} else if (type == TSK_DB_FILES_TYPE_ENUM.VIRTUAL_DIR.getFileType()) {
-					final VirtualDirectory virtDir = rsHelper.virtualDirectory(rs);
-					results.add(virtDir);
-				} else if (type == TSK_DB_FILES_TYPE_ENUM.UNALLOC_BLOCKS.getFileType()
-						|| type == TSK_DB_FILES_TYPE_ENUM.CARVED.getFileType()) {
-					TSK_DB_FILES_TYPE_ENUM atype = TSK_DB_FILES_TYPE_ENUM.valueOf(type);
-					String parentPath = rs.getString("parent_path"); //NON-NLS
-					if (parentPath == null) {
-						parentPath = ""; //NON-NLS
-					}
-					LayoutFile lf = new LayoutFile(this, rs.getLong("obj_id"), //NON-NLS
-							rs.getString("name"), //NON-NLS
-							atype,
-							TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort("dir_type")), TSK_FS_META_TYPE_ENUM.valueOf(rs.getShort("meta_type")), //NON-NLS
-							TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort("dir_flags")), rs.getShort("meta_flags"), //NON-NLS
-							rs.getLong("size"), //NON-NLS
-							rs.getString("md5"), FileKnown.valueOf(rs.getByte("known")), parentPath); //NON-NLS
-					results.add(lf);
-				} else if (type == TSK_DB_FILES_TYPE_ENUM.DERIVED.getFileType()) {
-					final DerivedFile df;
-					df = rsHelper.derivedFile(rs, AbstractContent.UNKNOWN_ID);
-					results.add(df);
-				} else if (type == TSK_DB_FILES_TYPE_ENUM.LOCAL.getFileType()) {
-					final LocalFile lf;
-					lf = rsHelper.localFile(rs, AbstractContent.UNKNOWN_ID);
-					results.add(lf);
+				AbstractFile file = rsHelper.abstractFile(rs, cols, AbstractContent.UNKNOWN_ID);
+				if (file != null) {
+					results.add(file);
 				}
-
 			} //end for each resultSet
 		} catch (SQLException e) {
 			logger.log(Level.SEVERE, "Error getting abstract files from result set", e); //NON-NLS
@@ -4033,33 +4803,159 @@ private List<AbstractFile> resultSetToAbstractFiles(ResultSet rs) throws SQLExce
 	}
 
 	/**
-	 * Creates FsContent objects from SQL query result set on tsk_files table
+	 * Get an OSInfo object for each TSK_OS_INFO artifact on a file, with its
+	 * attributes and the file system and parent directory of the file. The
+	 * objects are not combined. They are read with a single query and cached
+	 * until a TSK_OS_INFO artifact or an attribute of one is added.
 	 *
-	 * @param rs the result set with the query results
-	 * @return list of fscontent objects matching the query
-	 * @throws SQLException if SQL query result getting failed
+	 * @return list of OSInfo objects, one per artifact, in artifact id order;
+	 * shared, copy an object before changing it
+	 * @throws TskCoreException if the query failed
 	 */
-	private List<FsContent> resultSetToFsContents(ResultSet rs) throws SQLException {
-		List<FsContent> results = new ArrayList<FsContent>();
-		List<AbstractFile> temp = resultSetToAbstractFiles(rs);
-		for (AbstractFile f : temp) {
-			final TSK_DB_FILES_TYPE_ENUM type = f.getType();
-			if (type.equals(TskData.TSK_DB_FILES_TYPE_ENUM.FS)) {
-				results.add((FsContent) f);
+	List<OSInfo> getOSInfoArtifacts() throws TskCoreException {
+		final long generation = osInfoGeneration.get();
+		synchronized (osInfoCacheLock) {
+			if (osInfoCache != null && osInfoCacheGeneration == generation) {
+				return osInfoCache;
 			}
 		}
-		return results;
+		//if artifacts are added during the query the result is cached as stale
+		//and read again on the next call
+		List<OSInfo> infos = Collections.unmodifiableList(readOSInfoArtifacts());
+		synchronized (osInfoCacheLock) {
+			osInfoCache = infos;
+			osInfoCacheGeneration = generation;
+		}
+		return infos;
 	}
 
-	/**
-	 * Process a read-only query on the tsk database, any table Can be used to
-	 * e.g. to find files of a given criteria. resultSetToFsContents() will
-	 * convert the results to useful objects. MUST CALL closeRunQuery() when
-	 * done
-	 *
-	 * @param query the given string query to run
-	 * @return	the resultSet from running the query. Caller MUST CALL
-	 * closeRunQuery(resultSet) as soon as possible, when done with retrieving
+	private List<OSInfo> readOSInfoArtifacts() throws TskCoreException {
+		CaseDbConnection connection = connections.getConnection();
+		acquireSharedLock();
+		ResultSet rs = null;
+		try {
+			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.SELECT_OS_INFO_ARTIFACTS);
+			statement.clearParameters();
+			statement.setInt(1, ARTIFACT_TYPE.TSK_OS_INFO.getTypeID());
+			rs = connection.executeQuery(statement);
+			List<OSInfo> infos = new ArrayList<OSInfo>();
+			long artifactId = -1;
+			BlackboardArtifact artifact = null;
+			boolean isBackup = false, haveFs = false, haveParent = false;
+			long fsId = 0, parentId = 0;
+			Map<Integer, String> attributes = new HashMap<Integer, String>();
+			//one row per attribute, rows of an artifact are together
+			while (rs.next()) {
+				if (rs.getLong(1) != artifactId) {
+					if (artifact != null) {
+						infos.add(new OSInfo(artifact, isBackup, haveFs, fsId, haveParent, parentId, attributes));
+						attributes.clear();
+					}
+					artifactId = rs.getLong(1);
+					artifact = new BlackboardArtifact(this, artifactId, rs.getLong(2), ARTIFACT_TYPE.TSK_OS_INFO.getTypeID(),
+							ARTIFACT_TYPE.TSK_OS_INFO.getLabel(), ARTIFACT_TYPE.TSK_OS_INFO.getDisplayName());
+					haveFs = rs.getShort(3) == TSK_DB_FILES_TYPE_ENUM.FS.getFileType();
+					fsId = rs.getLong(4);
+					String parentPath = rs.getString(5);
+					isBackup = parentPath != null && parentPath.contains("RegBack"); //NON-NLS
+					parentId = rs.getLong(6);
+					haveParent = !rs.wasNull();
+				}
+				int attributeTypeId = rs.getInt(7);
+				if (!rs.wasNull()) {
+					BlackboardAttribute attribute = new BlackboardAttribute(artifactId, attributeTypeId, null, null,
+							BlackboardAttribute.TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.fromType(rs.getInt(8)),
+							rs.getInt(9), rs.getLong(10), rs.getDouble(11), rs.getString(12), rs.getBytes(13), this);
+					attributes.put(attributeTypeId, OSInfo.getValue(attribute));
+				}
+			}
+			if (artifact != null) {
+				infos.add(new OSInfo(artifact, isBackup, haveFs, fsId, haveParent, parentId, attributes));
+			}
+			return infos;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting OS info artifacts", ex);
+		} finally {
+			closeResultSet(rs);
+			releaseSharedLock();
+		}
+	}
+
+	/**
+	 * Read the times, modes, uid and gid of files that were created from a
+	 * query that left them out (see ResultSetHelper.FILE_COLUMNS_LIGHT).
+	 *
+	 * @param files the files to fill in
+	 * @throws TskCoreException if the columns could not be read; the files
+	 * of batches read before that are filled in
+	 */
+	void loadDeferredFileColumns(List<AbstractFile> files) throws TskCoreException {
+		CaseDbConnection connection = connections.getConnection();
+		acquireSharedLock();
+		Statement s = null;
+		ResultSet rs = null;
+		try {
+			s = connection.createStatement();
+			Map<Long, AbstractFile> byId = new HashMap<Long, AbstractFile>();
+			for (int start = 0; start < files.size(); start += DEFERRED_COLUMNS_BATCH_SIZE) {
+				StringBuilder query = new StringBuilder("SELECT obj_id, ctime, crtime, atime, mtime, mode, uid, gid FROM tsk_files WHERE obj_id IN ("); //NON-NLS
+				byId.clear();
+				for (AbstractFile file : files.subList(start, Math.min(files.size(), start + DEFERRED_COLUMNS_BATCH_SIZE))) {
+					if (!byId.isEmpty()) {
+						query.append(',');
+					}
+					query.append(file.getId());
+					byId.put(file.getId(), file);
+				}
+				query.append(')');
+				rs = connection.executeQuery(s, query.toString());
+				while (rs.next()) {
+					AbstractFile file = byId.get(rs.getLong(1));
+					if (file != null) {
+						file.setDeferredColumns(rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getLong(5),
+								rs.getShort(6), rs.getInt(7), rs.getInt(8));
+					}
+				}
+				rs.close();
+				rs = null;
+			}
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting times and modes of files", ex);
+		} finally {
+			closeResultSet(rs);
+			closeStatement(s);
+			releaseSharedLock();
+		}
+	}
+
+	/**
+	 * Creates FsContent objects from SQL query result set on tsk_files table
+	 *
+	 * @param rs the result set with the query results
+	 * @return list of fscontent objects matching the query
+	 * @throws SQLException if SQL query result getting failed
+	 */
+	private List<FsContent> resultSetToFsContents(ResultSet rs) throws SQLException {
+		List<FsContent> results = new ArrayList<FsContent>();
+		List<AbstractFile> temp = resultSetToAbstractFiles(rs);
+		for (AbstractFile f : temp) {
+			final TSK_DB_FILES_TYPE_ENUM type = f.getType();
+			if (type.equals(TskData.TSK_DB_FILES_TYPE_ENUM.FS)) {
+				results.add((FsContent) f);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Process a read-only query on the tsk database, any table Can be used to
+	 * e.g. to find files of a given criteria. resultSetToFsContents() will
+	 * convert the results to useful objects. MUST CALL closeRunQuery() when
+	 * done
+	 *
+	 * @param query the given string query to run
+	 * @return	the resultSet from running the query. Caller MUST CALL
+	 * closeRunQuery(resultSet) as soon as possible, when done with retrieving
 	 * data from the resultSet
 	 * @throws SQLException if error occurred during the query
 	 * @deprecated use specific datamodel methods that encapsulate SQL layer
@@ -4116,6 +5012,10 @@ public void close() {
 		System.err.flush();
 		connections.close();
 		fileSystemIdMap.clear();
+		eventBus.close();
+		metrics.close();
+		// The cache is shared by all cases, others reopen their files as needed
+		LocalFileChannelCache.getInstance().closeAll();
 
 		try {
 			if (this.caseHandle != null) {
@@ -4156,6 +5056,7 @@ public boolean setKnown(AbstractFile file, FileKnown fileKnown) throws TskCoreEx
 					+ "SET known='" + fileKnown.getFileKnownValue() + "' " //NON-NLS
 					+ "WHERE obj_id=" + id); //NON-NLS
 			file.setKnown(fileKnown);
+			eventBus.publish(CaseDbChangeEvent.Type.FILES_KNOWN_CHANGED, id, fileKnown.getFileKnownValue());
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error setting Known status.", ex);
 		} finally {
@@ -4187,6 +5088,7 @@ void setMd5Hash(AbstractFile file, String md5Hash) throws TskCoreException {
 			statement.setLong(2, id);
 			connection.executeUpdate(statement);
 			file.setMd5Hash(md5Hash.toLowerCase());
+			eventBus.publish(CaseDbChangeEvent.Type.FILES_MD5_CHANGED, id, -1);
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error setting MD5 hash", ex);
 		} finally {
@@ -4205,12 +5107,13 @@ void setMd5Hash(AbstractFile file, String md5Hash) throws TskCoreException {
 	public int countFsContentType(TskData.TSK_FS_META_TYPE_ENUM contentType) throws TskCoreException {
 		CaseDbConnection connection = connections.getConnection();
 		acquireSharedLock();
-		Statement s = null;
 		ResultSet rs = null;
 		try {
-			s = connection.createStatement();
-			Short contentShort = contentType.getValue();
-			rs = connection.executeQuery(s, "SELECT COUNT(*) FROM tsk_files WHERE meta_type = '" + contentShort.toString() + "'"); //NON-NLS
+			// SELECT SUM(file_count) FROM tsk_files_summary WHERE meta_type = ?
+			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.COUNT_FILES_BY_META_TYPE);
+			statement.clearParameters();
+			statement.setShort(1, contentType.getValue());
+			rs = connection.executeQuery(statement);
 			int count = 0;
 			if (rs.next()) {
 				count = rs.getInt(1);
@@ -4220,7 +5123,6 @@ public int countFsContentType(TskData.TSK_FS_META_TYPE_ENUM contentType) throws
 			throw new TskCoreException("Error getting number of objects.", ex);
 		} finally {
 			closeResultSet(rs);
-			closeStatement(s);
 			releaseSharedLock();
 		}
 	}
@@ -4257,17 +5159,109 @@ public List<AbstractFile> findFilesByMd5(String md5Hash) {
 			return Collections.<AbstractFile>emptyList();
 		}
 		acquireSharedLock();
-		Statement s = null;
 		ResultSet rs = null;
 		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT * FROM tsk_files WHERE " //NON-NLS
-					+ " md5 = '" + md5Hash.toLowerCase() + "' " //NON-NLS
-					+ "AND size > 0"); //NON-NLS
+			// SELECT * FROM tsk_files WHERE md5 = ? AND size > 0
+			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.SELECT_FILES_BY_MD5);
+			statement.clearParameters();
+			statement.setString(1, md5Hash.toLowerCase());
+			rs = connection.executeQuery(statement);
 			return resultSetToAbstractFiles(rs);
 		} catch (SQLException ex) {
 			logger.log(Level.WARNING, "Error querying database.", ex); //NON-NLS
 			return Collections.<AbstractFile>emptyList();
+		} finally {
+			closeResultSet(rs);
+			releaseSharedLock();
+		}
+	}
+
+	/**
+	 * Find the groups of files that have the same MD5 hash. Only files that
+	 * have been hashed are considered.
+	 *
+	 * @param minSize only files larger than this many bytes are considered; 0
+	 * for all non-empty files
+	 * @return the groups of two or more files, by hash
+	 * @throws TskCoreException thrown if a critical error occurred within tsk
+	 * core
+	 */
+	public List<DuplicateFileGroup> findDuplicateFiles(long minSize) throws TskCoreException {
+		List<DuplicateFileGroup> groups = new ArrayList<DuplicateFileGroup>();
+		CaseDbConnection connection = connections.getConnection();
+		acquireSharedLock();
+		ResultSet rs = null;
+		try {
+			// SELECT md5, size, obj_id FROM tsk_files WHERE md5 IS NOT NULL AND size > ? ORDER BY md5
+			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.SELECT_HASHED_FILES);
+			statement.clearParameters();
+			statement.setLong(1, Math.max(0, minSize));
+			rs = connection.executeQuery(statement);
+			//the rows come in hash order from the MD5 index, so each group is a
+			//run of rows
+			String groupMd5 = null;
+			long groupSize = 0;
+			long[] groupIds = new long[8];
+			int groupCount = 0;
+			while (true) {
+				boolean more = rs.next();
+				String md5 = more ? rs.getString(1) : null;
+				if (groupMd5 != null && !groupMd5.equals(md5)) {
+					if (groupCount > 1) {
+						long[] objIds = Arrays.copyOf(groupIds, groupCount);
+						Arrays.sort(objIds);
+						groups.add(new DuplicateFileGroup(groupMd5, groupSize, objIds));
+					}
+					groupCount = 0;
+				}
+				if (!more) {
+					break;
+				}
+				if (groupCount == groupIds.length) {
+					groupIds = Arrays.copyOf(groupIds, groupCount * 2);
+				}
+				groupMd5 = md5;
+				groupSize = rs.getLong(2);
+				groupIds[groupCount++] = rs.getLong(3);
+			}
+			return groups;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error finding duplicate files", ex);
+		} finally {
+			closeResultSet(rs);
+			releaseSharedLock();
+		}
+	}
+
+	/**
+	 * Find the hashed files of an image whose MD5 hash is not the hash of any
+	 * file of another image. Files are matched to images by their file
+	 * system, so local and derived files are not considered.
+	 *
+	 * @param image the image to find files of
+	 * @param otherImage the image to compare with
+	 * @return the non-empty files of image with hashes not in otherImage
+	 * @throws TskCoreException thrown if a critical error occurred within tsk
+	 * core
+	 */
+	public List<AbstractFile> findFilesNotInImage(Image image, Image otherImage) throws TskCoreException {
+		Collection<FileSystem> fileSystems = getFileSystems(image);
+		if (fileSystems.isEmpty()) {
+			return Collections.<AbstractFile>emptyList();
+		}
+		CaseDbConnection connection = connections.getConnection();
+		acquireSharedLock();
+		Statement s = null;
+		ResultSet rs = null;
+		try {
+			s = connection.createStatement();
+			rs = connection.executeQuery(s, "SELECT * FROM tsk_files WHERE fs_obj_id IN (" + getObjIdList(fileSystems) + ") " //NON-NLS
+					+ "AND md5 IS NOT NULL AND size > 0 " //NON-NLS
+					+ "AND NOT EXISTS (SELECT 1 FROM tsk_files AS other WHERE other.md5 = tsk_files.md5 " //NON-NLS
+					+ "AND other.fs_obj_id IN (" + getObjIdList(getFileSystems(otherImage)) + "))"); //NON-NLS
+			return resultSetToAbstractFiles(rs);
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error finding files of image " + image.getId() + " not in image " + otherImage.getId(), ex);
 		} finally {
 			closeResultSet(rs);
 			closeStatement(s);
@@ -4275,6 +5269,24 @@ public List<AbstractFile> findFilesByMd5(String md5Hash) {
 		}
 	}
 
+	/**
+	 * @return the object ids of the content, separated by commas, or -1 if
+	 * there is none so that the list can always be used with IN
+	 */
+	private static String getObjIdList(Collection<? extends Content> contents) {
+		if (contents.isEmpty()) {
+			return "-1"; //NON-NLS
+		}
+		StringBuilder ids = new StringBuilder();
+		for (Content content : contents) {
+			if (ids.length() > 0) {
+				ids.append(',');
+			}
+			ids.append(content.getId());
+		}
+		return ids.toString();
+	}
+
 	/**
 	 * Query all the files to verify if they have an MD5 hash associated with
 	 * them.
@@ -4291,14 +5303,13 @@ public boolean allFilesMd5Hashed() {
 		}
 		boolean allFilesAreHashed = false;
 		acquireSharedLock();
-		Statement s = null;
 		ResultSet rs = null;
 		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT COUNT(*) FROM tsk_files " //NON-NLS
-					+ "WHERE dir_type = '" + TskData.TSK_FS_NAME_TYPE_ENUM.REG.getValue() + "' " //NON-NLS
-					+ "AND md5 IS NULL " //NON-NLS
-					+ "AND size > '0'"); //NON-NLS
+			// SELECT SUM(file_count) FROM tsk_files_summary WHERE dir_type = ? AND hashed = 0 AND size_class > 0
+			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.COUNT_MD5_UNHASHED_FILES);
+			statement.clearParameters();
+			statement.setShort(1, TskData.TSK_FS_NAME_TYPE_ENUM.REG.getValue());
+			rs = connection.executeQuery(statement);
 			if (rs.next() && rs.getInt(1) == 0) {
 				allFilesAreHashed = true;
 			}
@@ -4306,7 +5317,6 @@ public boolean allFilesMd5Hashed() {
 			logger.log(Level.WARNING, "Failed to query whether all files have MD5 hashes", ex); //NON-NLS
 		} finally {
 			closeResultSet(rs);
-			closeStatement(s);
 			releaseSharedLock();
 		}
 		return allFilesAreHashed;
@@ -4327,13 +5337,10 @@ public int countFilesMd5Hashed() {
 		}
 		int count = 0;
 		acquireSharedLock();
-		Statement s = null;
 		ResultSet rs = null;
 		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT COUNT(*) FROM tsk_files " //NON-NLS
-					+ "WHERE md5 IS NOT NULL " //NON-NLS
-					+ "AND size > '0'"); //NON-NLS
+			// SELECT SUM(file_count) FROM tsk_files_summary WHERE hashed = 1 AND size_class > 0
+			rs = connection.executeQuery(connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.COUNT_MD5_HASHED_FILES));
 			if (rs.next()) {
 				count = rs.getInt(1);
 			}
@@ -4341,12 +5348,53 @@ public int countFilesMd5Hashed() {
 			logger.log(Level.WARNING, "Failed to query for all the files.", ex); //NON-NLS
 		} finally {
 			closeResultSet(rs);
-			closeStatement(s);
 			releaseSharedLock();
 		}
 		return count;
 	}
 
+	/**
+	 * Get a summary of the case: file counts by type, meta type, known status
+	 * and size for the case, each file system and each image, and the counts
+	 * of artifacts and tags. The file counts are kept up to date in the case
+	 * database as files are added and changed, so this does not scan the
+	 * files.
+	 *
+	 * @return the summary
+	 * @throws TskCoreException thrown if a critical error occurred within tsk
+	 * core
+	 */
+	public CaseSummary getCaseSummary() throws TskCoreException {
+		//the image of each file system
+		Map<Long, Long> fsDataSources = new HashMap<Long, Long>();
+		for (Image image : getImages()) {
+			for (FileSystem fs : getFileSystems(image)) {
+				fsDataSources.put(fs.getId(), image.getId());
+			}
+		}
+		CaseSummary summary = new CaseSummary(artifactCounts.getTypeCounts(), getTagNamesInUse());
+		CaseDbConnection connection = connections.getConnection();
+		acquireSharedLock();
+		ResultSet rs = null;
+		try {
+			// SELECT fs_obj_id, type, meta_type, dir_type, known, hashed, size_class, file_count, total_size FROM tsk_files_summary WHERE file_count > 0
+			rs = connection.executeQuery(connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.SELECT_FILE_SUMMARY));
+			while (rs.next()) {
+				long fsObjId = rs.getLong(1);
+				Long dataSourceObjId = fsDataSources.get(fsObjId);
+				summary.addFiles(fsObjId, (dataSourceObjId != null) ? dataSourceObjId : CaseSummary.NO_ID,
+						rs.getShort(2), rs.getShort(3), rs.getShort(4), rs.getByte(5), rs.getBoolean(6),
+						rs.getInt(7), rs.getLong(8), rs.getLong(9));
+			}
+			return summary;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error reading the file summary of the case", ex);
+		} finally {
+			closeResultSet(rs);
+			releaseSharedLock();
+		}
+	}
+
 	/**
 	 * This is a temporary workaround to avoid an API change.
 	 *
@@ -4383,6 +5431,27 @@ public void removerErrorObserver(ErrorObserver observer) {
 		}
 	}
 
+	/**
+	 * Add a listener to be told about changes committed to the case database
+	 * by this SleuthkitCase: new artifacts, attributes and files, known status
+	 * and md5 hash updates, tag changes and added images. The changes are
+	 * delivered in batches on a background thread, see CaseDbChangeEvent.
+	 *
+	 * @param listener The listener to add.
+	 */
+	public void addChangeListener(CaseDbChangeEvent.Listener listener) {
+		eventBus.addListener(listener);
+	}
+
+	/**
+	 * Remove a listener added with addChangeListener().
+	 *
+	 * @param listener The listener to remove.
+	 */
+	public void removeChangeListener(CaseDbChangeEvent.Listener listener) {
+		eventBus.removeListener(listener);
+	}
+
 	/**
 	 * This is a temporary workaround to avoid an API change.
 	 *
@@ -4439,11 +5508,18 @@ public List<TagName> getTagNamesInUse() throws TskCoreException {
 		acquireSharedLock();
 		ResultSet resultSet = null;
 		try {
-			// SELECT * FROM tag_names WHERE tag_name_id IN (SELECT tag_name_id from content_tags UNION SELECT tag_name_id FROM blackboard_artifact_tags)
-			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.SELECT_TAG_NAMES_IN_USE);
+			Map<Long, long[]> counts = getTagCounts(connection);
+			// SELECT * FROM tag_names
+			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.SELECT_TAG_NAMES);
 			resultSet = connection.executeQuery(statement);
 			ArrayList<TagName> tagNames = new ArrayList<TagName>();
 			while (resultSet.next()) {
+				synchronized (tagCountsLock) {
+					long[] count = counts.get(resultSet.getLong("tag_name_id")); //NON-NLS
+					if (count == null || count[CONTENT_TAG_COUNT] + count[ARTIFACT_TAG_COUNT] == 0) {
+						continue;
+					}
+				}
 				tagNames.add(new TagName(resultSet.getLong("tag_name_id"), resultSet.getString("display_name"), resultSet.getString("description"), TagName.HTML_COLOR.getColorByName(resultSet.getString("color")))); //NON-NLS
 			}
 			return tagNames;
@@ -4512,7 +5588,10 @@ public ContentTag addContentTag(Content content, TagName tagName, String comment
 			statement.setLong(5, endByteOffset);
 			connection.executeUpdate(statement);
 			resultSet = statement.getGeneratedKeys();
-			return new ContentTag(resultSet.getLong(1), content, tagName, comment, beginByteOffset, endByteOffset);
+			adjustTagCount(tagName.getId(), CONTENT_TAG_COUNT, 1);
+			final long tagId = resultSet.getLong(1);
+			eventBus.publish(CaseDbChangeEvent.Type.CONTENT_TAGS_ADDED, tagId, tagName.getId());
+			return new ContentTag(tagId, content, tagName, comment, beginByteOffset, endByteOffset);
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error adding row to content_tags table (obj_id = " + content.getId() + ", tag_name_id = " + tagName.getId() + ")", ex);
 		} finally {
@@ -4534,7 +5613,10 @@ public void deleteContentTag(ContentTag tag) throws TskCoreException {
 			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.DELETE_CONTENT_TAG);
 			statement.clearParameters();
 			statement.setLong(1, tag.getId());
-			connection.executeUpdate(statement);
+			if (connection.executeUpdate(statement) > 0) {
+				adjustTagCount(tag.getName().getId(), CONTENT_TAG_COUNT, -1);
+				eventBus.publish(CaseDbChangeEvent.Type.CONTENT_TAGS_DELETED, tag.getId(), tag.getName().getId());
+			}
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error deleting row from content_tags table (id = " + tag.getId() + ")", ex);
 		} finally {
@@ -4542,6 +5624,100 @@ public void deleteContentTag(ContentTag tag) throws TskCoreException {
 		}
 	}
 
+	/**
+	 * Inserts a row into the content_tags table in the case database for each
+	 * of the given contents, tagging all of the content, in one transaction.
+	 * Either all of the rows are added or none are.
+	 *
+	 * @param contents The contents to tag.
+	 * @param tagName The name to use for the tags.
+	 * @param comment A comment to store with each tag.
+	 * @return A list of ContentTag data transfer objects (DTOs) for the new
+	 * rows, in the order of contents.
+	 * @throws TskCoreException
+	 */
+	public List<ContentTag> addContentTags(List<? extends Content> contents, TagName tagName, String comment) throws TskCoreException {
+		if (tagName.getId() == Tag.ID_NOT_SET) {
+			throw new TskCoreException("TagName object is invalid, id not set");
+		}
+		CaseDbConnection connection = connections.getConnection();
+		acquireExclusiveLock();
+		ResultSet resultSet = null;
+		try {
+			connection.beginTransaction();
+			// INSERT INTO content_tags (obj_id, tag_name_id, comment, begin_byte_offset, end_byte_offset) VALUES (?, ?, ?, ?, ?)
+			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.INSERT_CONTENT_TAG);
+			ArrayList<ContentTag> tags = new ArrayList<ContentTag>(contents.size());
+			for (Content content : contents) {
+				final long endByteOffset = content.getSize() - 1;
+				statement.clearParameters();
+				statement.setLong(1, content.getId());
+				statement.setLong(2, tagName.getId());
+				statement.setString(3, comment);
+				statement.setLong(4, 0);
+				statement.setLong(5, endByteOffset);
+				connection.executeUpdate(statement);
+				resultSet = statement.getGeneratedKeys();
+				tags.add(new ContentTag(resultSet.getLong(1), content, tagName, comment, 0, endByteOffset));
+				resultSet.close();
+				resultSet = null;
+			}
+			connection.commitTransaction();
+			adjustTagCount(tagName.getId(), CONTENT_TAG_COUNT, tags.size());
+			for (ContentTag tag : tags) {
+				eventBus.publish(CaseDbChangeEvent.Type.CONTENT_TAGS_ADDED, tag.getId(), tagName.getId());
+			}
+			return tags;
+		} catch (SQLException ex) {
+			connection.rollbackTransaction();
+			throw new TskCoreException("Error adding rows to content_tags table (tag_name_id = " + tagName.getId() + ")", ex);
+		} finally {
+			closeResultSet(resultSet);
+			releaseExclusiveLock();
+		}
+	}
+
+	/**
+	 * Deletes rows from the content_tags table in the case database in one
+	 * transaction. Either all of the rows are deleted or none are.
+	 *
+	 * @param tags ContentTag data transfer objects (DTOs) for the rows to
+	 * delete.
+	 * @throws TskCoreException
+	 */
+	public void deleteContentTags(Collection<ContentTag> tags) throws TskCoreException {
+		CaseDbConnection connection = connections.getConnection();
+		acquireExclusiveLock();
+		try {
+			connection.beginTransaction();
+			// DELETE FROM content_tags WHERE tag_id = ?
+			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.DELETE_CONTENT_TAG);
+			Map<Long, Long> deletedByTagName = new HashMap<Long, Long>();
+			List<ContentTag> deletedTags = new ArrayList<ContentTag>();
+			for (ContentTag tag : tags) {
+				statement.clearParameters();
+				statement.setLong(1, tag.getId());
+				if (connection.executeUpdate(statement) > 0) {
+					deletedTags.add(tag);
+					Long deleted = deletedByTagName.get(tag.getName().getId());
+					deletedByTagName.put(tag.getName().getId(), (deleted == null) ? 1 : deleted + 1);
+				}
+			}
+			connection.commitTransaction();
+			for (Map.Entry<Long, Long> deleted : deletedByTagName.entrySet()) {
+				adjustTagCount(deleted.getKey(), CONTENT_TAG_COUNT, -deleted.getValue());
+			}
+			for (ContentTag tag : deletedTags) {
+				eventBus.publish(CaseDbChangeEvent.Type.CONTENT_TAGS_DELETED, tag.getId(), tag.getName().getId());
+			}
+		} catch (SQLException ex) {
+			connection.rollbackTransaction();
+			throw new TskCoreException("Error deleting rows from content_tags table", ex);
+		} finally {
+			releaseExclusiveLock();
+		}
+	}
+
 	/**
 	 * Selects all of the rows from the content_tags table in the case database.
 	 *
@@ -4586,22 +5762,11 @@ public long getContentTagsCountByTagName(TagName tagName) throws TskCoreExceptio
 		}
 		CaseDbConnection connection = connections.getConnection();
 		acquireSharedLock();
-		ResultSet resultSet = null;
 		try {
-			// SELECT COUNT(*) FROM content_tags WHERE tag_name_id = ?
-			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.COUNT_CONTENT_TAGS_BY_TAG_NAME);
-			statement.clearParameters();
-			statement.setLong(1, tagName.getId());
-			resultSet = connection.executeQuery(statement);
-			if (resultSet.next()) {
-				return resultSet.getLong(1);
-			} else {
-				throw new TskCoreException("Error getting content_tags row count for tag name (tag_name_id = " + tagName.getId() + ")");
-			}
+			return getTagCount(connection, tagName.getId(), CONTENT_TAG_COUNT);
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting content_tags row count for tag name (tag_name_id = " + tagName.getId() + ")", ex);
 		} finally {
-			closeResultSet(resultSet);
 			releaseSharedLock();
 		}
 	}
@@ -4701,7 +5866,10 @@ public BlackboardArtifactTag addBlackboardArtifactTag(BlackboardArtifact artifac
 			statement.setString(3, comment);
 			connection.executeUpdate(statement);
 			resultSet = statement.getGeneratedKeys();
-			return new BlackboardArtifactTag(resultSet.getLong(1), artifact, getContentById(artifact.getObjectID()), tagName, comment);
+			adjustTagCount(tagName.getId(), ARTIFACT_TAG_COUNT, 1);
+			final long tagId = resultSet.getLong(1);
+			eventBus.publish(CaseDbChangeEvent.Type.ARTIFACT_TAGS_ADDED, tagId, tagName.getId());
+			return new BlackboardArtifactTag(tagId, artifact, getContentById(artifact.getObjectID()), tagName, comment);
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error adding row to blackboard_artifact_tags table (obj_id = " + artifact.getArtifactID() + ", tag_name_id = " + tagName.getId() + ")", ex);
 		} finally {
@@ -4723,7 +5891,10 @@ public void deleteBlackboardArtifactTag(BlackboardArtifactTag tag) throws TskCor
 			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.DELETE_ARTIFACT_TAG);
 			statement.clearParameters();
 			statement.setLong(1, tag.getId());
-			connection.executeUpdate(statement);
+			if (connection.executeUpdate(statement) > 0) {
+				adjustTagCount(tag.getName().getId(), ARTIFACT_TAG_COUNT, -1);
+				eventBus.publish(CaseDbChangeEvent.Type.ARTIFACT_TAGS_DELETED, tag.getId(), tag.getName().getId());
+			}
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error deleting row from blackboard_artifact_tags table (id = " + tag.getId() + ")", ex);
 		} finally {
@@ -4731,6 +5902,106 @@ public void deleteBlackboardArtifactTag(BlackboardArtifactTag tag) throws TskCor
 		}
 	}
 
+	/**
+	 * Inserts a row into the blackboard_artifact_tags table in the case
+	 * database for each of the given artifacts, in one transaction. Either all
+	 * of the rows are added or none are.
+	 *
+	 * @param artifacts The blackboard artifacts to tag.
+	 * @param tagName The name to use for the tags.
+	 * @param comment A comment to store with each tag.
+	 * @return A list of BlackboardArtifactTag data transfer objects (DTOs) for
+	 * the new rows, in the order of artifacts.
+	 * @throws TskCoreException
+	 */
+	public List<BlackboardArtifactTag> addBlackboardArtifactTags(List<BlackboardArtifact> artifacts, TagName tagName, String comment) throws TskCoreException {
+		if (tagName.getId() == Tag.ID_NOT_SET) {
+			throw new TskCoreException("TagName object is invalid, id not set");
+		}
+		// Look up the tagged contents first, so the exclusive lock is only
+		// held for the inserts
+		Map<Long, Content> contents = new HashMap<Long, Content>();
+		for (BlackboardArtifact artifact : artifacts) {
+			if (!contents.containsKey(artifact.getObjectID())) {
+				contents.put(artifact.getObjectID(), getContentById(artifact.getObjectID()));
+			}
+		}
+		CaseDbConnection connection = connections.getConnection();
+		acquireExclusiveLock();
+		ResultSet resultSet = null;
+		try {
+			connection.beginTransaction();
+			// INSERT INTO blackboard_artifact_tags (artifact_id, tag_name_id, comment) VALUES (?, ?, ?)
+			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.INSERT_ARTIFACT_TAG);
+			ArrayList<BlackboardArtifactTag> tags = new ArrayList<BlackboardArtifactTag>(artifacts.size());
+			for (BlackboardArtifact artifact : artifacts) {
+				statement.clearParameters();
+				statement.setLong(1, artifact.getArtifactID());
+				statement.setLong(2, tagName.getId());
+				statement.setString(3, comment);
+				connection.executeUpdate(statement);
+				resultSet = statement.getGeneratedKeys();
+				tags.add(new BlackboardArtifactTag(resultSet.getLong(1), artifact, contents.get(artifact.getObjectID()), tagName, comment));
+				resultSet.close();
+				resultSet = null;
+			}
+			connection.commitTransaction();
+			adjustTagCount(tagName.getId(), ARTIFACT_TAG_COUNT, tags.size());
+			for (BlackboardArtifactTag tag : tags) {
+				eventBus.publish(CaseDbChangeEvent.Type.ARTIFACT_TAGS_ADDED, tag.getId(), tagName.getId());
+			}
+			return tags;
+		} catch (SQLException ex) {
+			connection.rollbackTransaction();
+			throw new TskCoreException("Error adding rows to blackboard_artifact_tags table (tag_name_id = " + tagName.getId() + ")", ex);
+		} finally {
+			closeResultSet(resultSet);
+			releaseExclusiveLock();
+		}
+	}
+
+	/**
+	 * Deletes rows from the blackboard_artifact_tags table in the case
+	 * database in one transaction. Either all of the rows are deleted or none
+	 * are.
+	 *
+	 * @param tags BlackboardArtifactTag data transfer objects (DTOs) for the
+	 * rows to delete.
+	 * @throws TskCoreException
+	 */
+	public void deleteBlackboardArtifactTags(Collection<BlackboardArtifactTag> tags) throws TskCoreException {
+		CaseDbConnection connection = connections.getConnection();
+		acquireExclusiveLock();
+		try {
+			connection.beginTransaction();
+			// DELETE FROM blackboard_artifact_tags WHERE tag_id = ?
+			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.DELETE_ARTIFACT_TAG);
+			Map<Long, Long> deletedByTagName = new HashMap<Long, Long>();
+			List<BlackboardArtifactTag> deletedTags = new ArrayList<BlackboardArtifactTag>();
+			for (BlackboardArtifactTag tag : tags) {
+				statement.clearParameters();
+				statement.setLong(1, tag.getId());
+				if (connection.executeUpdate(statement) > 0) {
+					deletedTags.add(tag);
+					Long deleted = deletedByTagName.get(tag.getName().getId());
+					deletedByTagName.put(tag.getName().getId(), (deleted == null) ? 1 : deleted + 1);
+				}
+			}
+			connection.commitTransaction();
+			for (Map.Entry<Long, Long> deleted : deletedByTagName.entrySet()) {
+				adjustTagCount(deleted.getKey(), ARTIFACT_TAG_COUNT, -deleted.getValue());
+			}
+			for (BlackboardArtifactTag tag : deletedTags) {
+				eventBus.publish(CaseDbChangeEvent.Type.ARTIFACT_TAGS_DELETED, tag.getId(), tag.getName().getId());
+			}
+		} catch (SQLException ex) {
+			connection.rollbackTransaction();
+			throw new TskCoreException("Error deleting rows from blackboard_artifact_tags table", ex);
+		} finally {
+			releaseExclusiveLock();
+		}
+	}
+
 	/**
 	 * Selects all of the rows from the blackboard_artifacts_tags table in the
 	 * case database.
@@ -4778,26 +6049,92 @@ public long getBlackboardArtifactTagsCountByTagName(TagName tagName) throws TskC
 		}
 		CaseDbConnection connection = connections.getConnection();
 		acquireSharedLock();
-		ResultSet resultSet = null;
 		try {
-			// SELECT COUNT(*) FROM blackboard_artifact_tags WHERE tag_name_id = ?
-			PreparedStatement statement = connection.getPreparedStatement(CaseDbConnection.PREPARED_STATEMENT.COUNT_ARTIFACTS_BY_TAG_NAME);
-			statement.clearParameters();
-			statement.setLong(1, tagName.getId());
-			resultSet = connection.executeQuery(statement);
-			if (resultSet.next()) {
-				return resultSet.getLong(1);
-			} else {
-				throw new TskCoreException("Error getting blackboard_artifact_tags row count for tag name (tag_name_id = " + tagName.getId() + ")");
-			}
+			return getTagCount(connection, tagName.getId(), ARTIFACT_TAG_COUNT);
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting blackboard artifact_content_tags row count for tag name (tag_name_id = " + tagName.getId() + ")", ex);
 		} finally {
-			closeResultSet(resultSet);
 			releaseSharedLock();
 		}
 	}
 
+	/**
+	 * Get the tag counts by tag name, counting the rows of both tag tables
+	 * with one query each the first time. Must be called with the shared or
+	 * exclusive lock held, so that no tag write can happen while the counts
+	 * are loaded.
+	 *
+	 * @param connection connection to query with
+	 * @return map of tag_name_id to {content tag count, artifact tag count};
+	 * only use it while holding tagCountsLock
+	 * @throws SQLException
+	 */
+	private Map<Long, long[]> getTagCounts(CaseDbConnection connection) throws SQLException {
+		synchronized (tagCountsLock) {
+			if (tagCounts != null) {
+				return tagCounts;
+			}
+		}
+		Map<Long, long[]> counts = new HashMap<Long, long[]>();
+		countTagsByTagName(connection, CaseDbConnection.PREPARED_STATEMENT.COUNT_CONTENT_TAGS_GROUP_BY_TAG_NAME, counts, CONTENT_TAG_COUNT);
+		countTagsByTagName(connection, CaseDbConnection.PREPARED_STATEMENT.COUNT_ARTIFACT_TAGS_GROUP_BY_TAG_NAME, counts, ARTIFACT_TAG_COUNT);
+		synchronized (tagCountsLock) {
+			if (tagCounts == null) {
+				tagCounts = counts;
+			}
+			return tagCounts;
+		}
+	}
+
+	private void countTagsByTagName(CaseDbConnection connection, CaseDbConnection.PREPARED_STATEMENT query,
+			Map<Long, long[]> counts, int table) throws SQLException {
+		ResultSet resultSet = null;
+		try {
+			resultSet = connection.executeQuery(connection.getPreparedStatement(query));
+			while (resultSet.next()) {
+				long tagNameId = resultSet.getLong(1);
+				long[] count = counts.get(tagNameId);
+				if (count == null) {
+					count = new long[2];
+					counts.put(tagNameId, count);
+				}
+				count[table] = resultSet.getLong(2);
+			}
+		} finally {
+			closeResultSet(resultSet);
+		}
+	}
+
+	private long getTagCount(CaseDbConnection connection, long tagNameId, int table) throws SQLException {
+		Map<Long, long[]> counts = getTagCounts(connection);
+		synchronized (tagCountsLock) {
+			long[] count = counts.get(tagNameId);
+			return (count != null) ? count[table] : 0;
+		}
+	}
+
+	/**
+	 * Update the tag counts after tags were added or deleted. Must be called
+	 * with the exclusive lock held, after the change is committed.
+	 *
+	 * @param tagNameId tag_name_id of the tags
+	 * @param table CONTENT_TAG_COUNT or ARTIFACT_TAG_COUNT
+	 * @param delta number of tags added, negative for deleted
+	 */
+	private void adjustTagCount(long tagNameId, int table, long delta) {
+		synchronized (tagCountsLock) {
+			if (tagCounts == null) {
+				return; //counted when first used
+			}
+			long[] count = tagCounts.get(tagNameId);
+			if (count == null) {
+				count = new long[2];
+				tagCounts.put(tagNameId, count);
+			}
+			count[table] = Math.max(0, count[table] + delta);
+		}
+	}
+
 	/**
 	 * Selects the rows in the blackboard_artifacts_tags table in the case
 	 * database with a specified foreign key into the tag_names table.
@@ -5002,9 +6339,68 @@ public synchronized void close() {
 			databaseConnections.clear();
 		}
 
+		synchronized int getOpenConnectionCount() {
+			return databaseConnections.size();
+		}
+
 		@Override
 		public CaseDbConnection initialValue() {
-			return new CaseDbConnection(dbPath);
+			return new CaseDbConnection(dbPath, statementMetrics);
+		}
+	}
+
+	/**
+	 * The statement metrics of a case, shared by its connections, and the
+	 * slow query log.
+	 */
+	private static final class StatementMetrics {
+
+		private static final Logger slowQueryLogger = Logger.getLogger(SleuthkitCase.class.getName() + ".slowQueries"); //NON-NLS
+		//by PREPARED_STATEMENT ordinal
+		private final Metrics.Histogram[] preparedStatements;
+		private final Metrics.Histogram otherPreparedStatements;
+		private final Metrics.Histogram adHocQueries;
+		private final Metrics.Histogram adHocUpdates;
+		private final Metrics.Histogram allStatements;
+		private final Metrics.Counter busyRetries;
+		private final Metrics.Counter slowStatements;
+		private volatile long slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_QUERY_MILLIS);
+
+		StatementMetrics(Metrics metrics) {
+			CaseDbConnection.PREPARED_STATEMENT[] keys = CaseDbConnection.PREPARED_STATEMENT.values();
+			preparedStatements = new Metrics.Histogram[keys.length];
+			for (CaseDbConnection.PREPARED_STATEMENT key : keys) {
+				preparedStatements[key.ordinal()] = metrics.histogram("db.statement." + key.name()); //NON-NLS
+			}
+			otherPreparedStatements = metrics.histogram("db.statement.other"); //NON-NLS
+			adHocQueries = metrics.histogram("db.statement.adhoc.query"); //NON-NLS
+			adHocUpdates = metrics.histogram("db.statement.adhoc.update"); //NON-NLS
+			allStatements = metrics.histogram("db.statements"); //NON-NLS
+			busyRetries = metrics.counter("db.busy.retries"); //NON-NLS
+			slowStatements = metrics.counter("db.slow"); //NON-NLS
+		}
+
+		/**
+		 * Record the time taken by a statement, and log it if it was slow.
+		 *
+		 * @param histogram histogram of the statement
+		 * @param key the prepared statement, or null
+		 * @param sql the SQL of the statement if it is not a known prepared
+		 * statement, or null
+		 * @param startNanos start of the statement, from System.nanoTime()
+		 */
+		void record(Metrics.Histogram histogram, CaseDbConnection.PREPARED_STATEMENT key, String sql, long startNanos) {
+			final long elapsed = System.nanoTime() - startNanos;
+			histogram.record(elapsed / 1000);
+			allStatements.record(elapsed / 1000);
+			if (elapsed >= slowThresholdNanos) {
+				slowStatements.increment();
+				if (slowQueryLogger.isLoggable(Level.WARNING)) {
+					String text = (key != null) ? key.name() + ": " + key.getSQL() : String.valueOf(sql); //NON-NLS
+					slowQueryLogger.log(Level.WARNING, "Statement took {0} ms: {1}", //NON-NLS
+							new Object[]{TimeUnit.NANOSECONDS.toMillis(elapsed), text});
+				}
+			}
 		}
 	}
 
@@ -5022,10 +6418,9 @@ enum PREPARED_STATEMENT {
 			SELECT_ARTIFACT_BY_ID("SELECT obj_id, artifact_type_id FROM blackboard_artifacts WHERE artifact_id = ?"), //NON-NLS
 			SELECT_ARTIFACTS_BY_TYPE("SELECT artifact_id, obj_id FROM blackboard_artifacts " //NON-NLS
 					+ "WHERE artifact_type_id = ?"), //NON-NLS
-			COUNT_ARTIFACTS_OF_TYPE("SELECT COUNT(*) FROM blackboard_artifacts WHERE artifact_type_id = ?"), //NON-NLS
-			COUNT_ARTIFACTS_FROM_SOURCE("SELECT COUNT(*) FROM blackboard_artifacts WHERE obj_id = ?"), //NON-NLS
+			COUNT_ARTIFACTS_GROUP_BY_TYPE("SELECT artifact_type_id, COUNT(*) FROM blackboard_artifacts GROUP BY artifact_type_id"), //NON-NLS
+			COUNT_ARTIFACTS_FROM_SOURCE_GROUP_BY_TYPE("SELECT artifact_type_id, COUNT(*) FROM blackboard_artifacts WHERE obj_id = ? GROUP BY artifact_type_id"), //NON-NLS
 			SELECT_ARTIFACTS_BY_SOURCE_AND_TYPE("SELECT artifact_id FROM blackboard_artifacts WHERE obj_id = ? AND artifact_type_id = ?"), //NON-NLS
-			COUNT_ARTIFACTS_BY_SOURCE_AND_TYPE("SELECT COUNT(*) FROM blackboard_artifacts WHERE obj_id = ? AND artifact_type_id = ?"), //NON-NLS
 			SELECT_FILES_BY_PARENT("SELECT tsk_files.* " //NON-NLS
 					+ "FROM tsk_objects INNER JOIN tsk_files " //NON-NLS
 					+ "ON tsk_objects.obj_id=tsk_files.obj_id " //NON-NLS
@@ -5056,8 +6451,18 @@ enum PREPARED_STATEMENT {
 					+ "VALUES (?,?,?,?,?,?,?)"), //NON-NLS
 			INSERT_DOUBLE_ATTRIBUTE("INSERT INTO blackboard_attributes (artifact_id, artifact_type_id, source, context, attribute_type_id, value_type, value_double) " //NON-NLS
 					+ "VALUES (?,?,?,?,?,?,?)"), //NON-NLS
-			SELECT_FILES_BY_FILE_SYSTEM_AND_NAME("SELECT * FROM tsk_files WHERE LOWER(name) LIKE ? and LOWER(name) NOT LIKE '%journal%' AND fs_obj_id = ?"), //NON-NLS
-			SELECT_FILES_BY_FILE_SYSTEM_AND_PATH("SELECT * FROM tsk_files WHERE LOWER(name) LIKE ? AND LOWER(name) NOT LIKE '%journal%' AND LOWER(parent_path) LIKE ? AND fs_obj_id = ?"), //NON-NLS
+			SELECT_FILES_BY_MD5("SELECT * FROM tsk_files WHERE md5 = ? AND size > 0"), //NON-NLS
+			SELECT_HASHED_FILES("SELECT md5, size, obj_id FROM tsk_files WHERE md5 IS NOT NULL AND size > ? ORDER BY md5"), //NON-NLS
+			SELECT_FILE_SUMMARY("SELECT fs_obj_id, type, meta_type, dir_type, known, hashed, size_class, file_count, total_size FROM tsk_files_summary WHERE file_count > 0"), //NON-NLS
+			COUNT_FILES_BY_META_TYPE("SELECT SUM(file_count) FROM tsk_files_summary WHERE meta_type = ?"), //NON-NLS
+			COUNT_MD5_HASHED_FILES("SELECT SUM(file_count) FROM tsk_files_summary WHERE hashed = 1 AND size_class > 0"), //NON-NLS
+			COUNT_MD5_UNHASHED_FILES("SELECT SUM(file_count) FROM tsk_files_summary WHERE dir_type = ? AND hashed = 0 AND size_class > 0"), //NON-NLS
+			SELECT_FILE_TIMES("SELECT obj_id, mtime, atime, ctime, crtime FROM tsk_files WHERE obj_id > ? ORDER BY obj_id LIMIT ?"), //NON-NLS
+			SELECT_FILES_BY_FILE_SYSTEM_AND_NAME("SELECT tsk_files.* FROM tsk_files_path_index AS idx JOIN tsk_files ON tsk_files.obj_id = idx.obj_id WHERE idx.fs_obj_id = ? AND idx.name_lower LIKE ? AND idx.name_lower NOT LIKE '%journal%'"), //NON-NLS
+			SELECT_FILES_BY_FILE_SYSTEM_AND_NAME_PREFIX("SELECT tsk_files.* FROM tsk_files_path_index AS idx JOIN tsk_files ON tsk_files.obj_id = idx.obj_id WHERE idx.fs_obj_id = ? AND idx.name_lower >= ? AND idx.name_lower < ? AND idx.name_lower LIKE ? AND idx.name_lower NOT LIKE '%journal%'"), //NON-NLS
+			SELECT_FILES_BY_FILE_SYSTEM_AND_PATH("SELECT tsk_files.* FROM tsk_files_path_index AS idx JOIN tsk_files ON tsk_files.obj_id = idx.obj_id WHERE idx.fs_obj_id = ? AND idx.name_lower LIKE ? AND idx.name_lower NOT LIKE '%journal%' AND idx.parent_path_lower LIKE ?"), //NON-NLS
+			SELECT_FILES_BY_FILE_SYSTEM_AND_PATH_PREFIX("SELECT tsk_files.* FROM tsk_files_path_index AS idx JOIN tsk_files ON tsk_files.obj_id = idx.obj_id WHERE idx.fs_obj_id = ? AND idx.name_lower >= ? AND idx.name_lower < ? AND idx.name_lower LIKE ? AND idx.name_lower NOT LIKE '%journal%' AND idx.parent_path_lower LIKE ?"), //NON-NLS
+			SELECT_FILES_BY_FILE_SYSTEM_AND_EXACT_PATH("SELECT tsk_files.* FROM tsk_files_path_index AS idx JOIN tsk_files ON tsk_files.obj_id = idx.obj_id WHERE idx.fs_obj_id = ? AND idx.name_lower = ? AND idx.name_lower NOT LIKE '%journal%' AND idx.parent_path_lower = ?"), //NON-NLS
 			UPDATE_FILE_MD5("UPDATE tsk_files SET md5 = ? WHERE obj_id = ?"), //NON-NLS
 			SELECT_LOCAL_PATH_FOR_FILE("SELECT path FROM tsk_files_path WHERE obj_id = ?"), //NON-NLS
 			SELECT_PATH_FOR_FILE("SELECT parent_path FROM tsk_files WHERE obj_id = ?"), //NON-NLS
@@ -5073,21 +6478,33 @@ enum PREPARED_STATEMENT {
 			INSERT_LOCAL_PATH("INSERT INTO tsk_files_path (obj_id, path) VALUES (?, ?)"), //NON-NLS
 			COUNT_CHILD_OBJECTS_BY_PARENT("SELECT COUNT(obj_id) FROM tsk_objects WHERE par_obj_id = ?"), //NON-NLS
 			SELECT_FILE_SYSTEM_BY_OBJECT("SELECT fs_obj_id from tsk_files WHERE obj_id=?"), //NON-NLS
+			SELECT_UNALLOC_RANGES_BY_FILE_SYSTEM("SELECT tsk_file_layout.byte_start, tsk_file_layout.byte_len, tsk_file_layout.sequence " //NON-NLS
+					+ "FROM tsk_files INNER JOIN tsk_file_layout ON tsk_files.obj_id = tsk_file_layout.obj_id " //NON-NLS
+					+ "WHERE tsk_files.fs_obj_id = ? AND tsk_files.type = ? " //NON-NLS
+					+ "ORDER BY tsk_file_layout.byte_start"), //NON-NLS
+			SELECT_OS_INFO_ARTIFACTS("SELECT blackboard_artifacts.artifact_id, blackboard_artifacts.obj_id, " //NON-NLS
+					+ "tsk_files.type, tsk_files.fs_obj_id, tsk_files.parent_path, tsk_objects.par_obj_id, " //NON-NLS
+					+ "blackboard_attributes.attribute_type_id, blackboard_attributes.value_type, " //NON-NLS
+					+ "blackboard_attributes.value_int32, blackboard_attributes.value_int64, blackboard_attributes.value_double, " //NON-NLS
+					+ "blackboard_attributes.value_text, blackboard_attributes.value_byte " //NON-NLS
+					+ "FROM blackboard_artifacts " //NON-NLS
+					+ "INNER JOIN tsk_files ON tsk_files.obj_id = blackboard_artifacts.obj_id " //NON-NLS
+					+ "INNER JOIN tsk_objects ON tsk_objects.obj_id = blackboard_artifacts.obj_id " //NON-NLS
+					+ "LEFT OUTER JOIN blackboard_attributes ON blackboard_attributes.artifact_id = blackboard_artifacts.artifact_id " //NON-NLS
+					+ "WHERE blackboard_artifacts.artifact_type_id = ? " //NON-NLS
+					+ "ORDER BY blackboard_artifacts.artifact_id"), //NON-NLS
 			SELECT_TAG_NAMES("SELECT * FROM tag_names"), //NON-NLS
-			SELECT_TAG_NAMES_IN_USE("SELECT * FROM tag_names " //NON-NLS
-					+ "WHERE tag_name_id IN " //NON-NLS
-					+ "(SELECT tag_name_id from content_tags UNION SELECT tag_name_id FROM blackboard_artifact_tags)"), //NON-NLS
 			INSERT_TAG_NAME("INSERT INTO tag_names (display_name, description, color) VALUES (?, ?, ?)"), //NON-NLS
 			INSERT_CONTENT_TAG("INSERT INTO content_tags (obj_id, tag_name_id, comment, begin_byte_offset, end_byte_offset) VALUES (?, ?, ?, ?, ?)"), //NON-NLS
 			DELETE_CONTENT_TAG("DELETE FROM content_tags WHERE tag_id = ?"), //NON-NLS
-			COUNT_CONTENT_TAGS_BY_TAG_NAME("SELECT COUNT(*) FROM content_tags WHERE tag_name_id = ?"), //NON-NLS
+			COUNT_CONTENT_TAGS_GROUP_BY_TAG_NAME("SELECT tag_name_id, COUNT(*) FROM content_tags GROUP BY tag_name_id"), //NON-NLS
 			SELECT_CONTENT_TAGS("SELECT * FROM content_tags INNER JOIN tag_names ON content_tags.tag_name_id = tag_names.tag_name_id"), //NON-NLS
 			SELECT_CONTENT_TAGS_BY_TAG_NAME("SELECT * FROM content_tags WHERE tag_name_id = ?"), //NON-NLS
 			SELECT_CONTENT_TAGS_BY_CONTENT("SELECT * FROM content_tags INNER JOIN tag_names ON content_tags.tag_name_id = tag_names.tag_name_id WHERE content_tags.obj_id = ?"), //NON-NLS
 			INSERT_ARTIFACT_TAG("INSERT INTO blackboard_artifact_tags (artifact_id, tag_name_id, comment) VALUES (?, ?, ?)"), //NON-NLS
 			DELETE_ARTIFACT_TAG("DELETE FROM blackboard_artifact_tags WHERE tag_id = ?"), //NON-NLS
 			SELECT_ARTIFACT_TAGS("SELECT * FROM blackboard_artifact_tags INNER JOIN tag_names ON blackboard_artifact_tags.tag_name_id = tag_names.tag_name_id"), //NON-NLS
-			COUNT_ARTIFACTS_BY_TAG_NAME("SELECT COUNT(*) FROM blackboard_artifact_tags WHERE tag_name_id = ?"), //NON-NLS
+			COUNT_ARTIFACT_TAGS_GROUP_BY_TAG_NAME("SELECT tag_name_id, COUNT(*) FROM blackboard_artifact_tags GROUP BY tag_name_id"), //NON-NLS
 			SELECT_ARTIFACT_TAGS_BY_TAG_NAME("SELECT * FROM blackboard_artifact_tags WHERE tag_name_id = ?"), //NON-NLS
 			SELECT_ARTIFACT_TAGS_BY_ARTIFACT("SELECT * FROM blackboard_artifact_tags INNER JOIN tag_names ON blackboard_artifact_tags.tag_name_id = tag_names.tag_name_id WHERE blackboard_artifact_tags.artifact_id = ?"), //NON-NLS
 			SELECT_REPORTS("SELECT * FROM reports"), //NON-NLS
@@ -5104,10 +6521,14 @@ String getSQL() {
 			}
 		}
 		private final Map<PREPARED_STATEMENT, PreparedStatement> preparedStatements;
+		//the key of each prepared statement, to time it by key
+		private final Map<PreparedStatement, PREPARED_STATEMENT> statementKeys = new IdentityHashMap<PreparedStatement, PREPARED_STATEMENT>();
+		private final StatementMetrics metrics;
 		private Connection connection;
 
-		CaseDbConnection(String dbPath) {
+		CaseDbConnection(String dbPath, StatementMetrics metrics) {
 			this.preparedStatements = new EnumMap<PREPARED_STATEMENT, PreparedStatement>(PREPARED_STATEMENT.class);
+			this.metrics = metrics;
 			Statement statement = null;
 			try {
 				this.connection = DriverManager.getConnection("jdbc:sqlite:" + dbPath); //NON-NLS
@@ -5148,6 +6569,7 @@ PreparedStatement getPreparedStatement(PREPARED_STATEMENT statementKey) throws S
 			} else {
 				statement = prepareStatement(statementKey.getSQL());
 				this.preparedStatements.put(statementKey, statement);
+				this.statementKeys.put(statement, statementKey);
 			}
 			return statement;
 		}
@@ -5242,6 +6664,7 @@ void rollbackTransactionWithThrow() throws SQLException {
 		private ResultSet executeQuery(Statement statement, String query) throws SQLException {
 			ResultSet resultSet = null;
 			boolean locked = true;
+			final long start = System.nanoTime();
 			while (locked) {
 				try {
 					resultSet = statement.executeQuery(query);
@@ -5250,14 +6673,17 @@ private ResultSet executeQuery(Statement statement, String query) throws SQLExce
 					if (ex.getErrorCode() != SQLITE_BUSY_ERROR && ex.getErrorCode() != DATABASE_LOCKED_ERROR) {
 						throw ex;
 					}
+					metrics.busyRetries.increment();
 				}
 			}
+			metrics.record(metrics.adHocQueries, null, query, start);
 			return resultSet;
 		}
 
 		private ResultSet executeQuery(PreparedStatement statement) throws SQLException {
 			ResultSet resultSet = null;
 			boolean locked = true;
+			final long start = System.nanoTime();
 			while (locked) {
 				try {
 					resultSet = statement.executeQuery();
@@ -5266,13 +6692,16 @@ private ResultSet executeQuery(PreparedStatement statement) throws SQLException
 					if (ex.getErrorCode() != SQLITE_BUSY_ERROR && ex.getErrorCode() != DATABASE_LOCKED_ERROR) {
 						throw ex;
 					}
+					metrics.busyRetries.increment();
 				}
 			}
+			recordPrepared(statement, start);
 			return resultSet;
 		}
 
 		void executeUpdate(Statement statement, String update) throws SQLException {
 			boolean locked = true;
+			final long start = System.nanoTime();
 			while (locked) {
 				try {
 					statement.executeUpdate(update);
@@ -5281,24 +6710,37 @@ void executeUpdate(Statement statement, String update) throws SQLException {
 					if (ex.getErrorCode() != SQLITE_BUSY_ERROR && ex.getErrorCode() != DATABASE_LOCKED_ERROR) {
 						throw ex;
 					}
+					metrics.busyRetries.increment();
 				}
 			}
+			metrics.record(metrics.adHocUpdates, null, update, start);
 		}
 
-		void executeUpdate(PreparedStatement statement) throws SQLException {
-			boolean locked = true;
-			while (locked) {
+		int executeUpdate(PreparedStatement statement) throws SQLException {
+			final long start = System.nanoTime();
+			while (true) {
 				try {
-					statement.executeUpdate();
-					locked = false;
+					int count = statement.executeUpdate();
+					recordPrepared(statement, start);
+					return count;
 				} catch (SQLException ex) {
 					if (ex.getErrorCode() != SQLITE_BUSY_ERROR && ex.getErrorCode() != DATABASE_LOCKED_ERROR) {
 						throw ex;
 					}
+					metrics.busyRetries.increment();
 				}
 			}
 		}
 
+		private void recordPrepared(PreparedStatement statement, long start) {
+			PREPARED_STATEMENT key = statementKeys.get(statement);
+			if (key != null) {
+				metrics.record(metrics.preparedStatements[key.ordinal()], key, null, start);
+			} else {
+				metrics.record(metrics.otherPreparedStatements, null, "prepared statement", start); //NON-NLS
+			}
+		}
+
 		/**
 		 * ****************
 		 * Close the connection to the database, thereby releasing the file
@@ -5324,9 +6766,12 @@ private void close() {
 	public static final class CaseDbTransaction {
 
 		private final CaseDbConnection connection;
+		private final CaseDbEventBus eventBus;
+		private final CaseDbEventBus.Deferred changes = new CaseDbEventBus.Deferred();
 
-		private CaseDbTransaction(CaseDbConnection connection) throws TskCoreException {
+		private CaseDbTransaction(CaseDbConnection connection, CaseDbEventBus eventBus) throws TskCoreException {
 			this.connection = connection;
+			this.eventBus = eventBus;
 			try {
 				this.connection.beginTransaction();
 			} catch (SQLException ex) {
@@ -5345,6 +6790,14 @@ private CaseDbConnection getConnection() {
 			return this.connection;
 		}
 
+		/**
+		 * Record a change made in this transaction, to be published to the
+		 * change listeners of the case if the transaction is committed.
+		 */
+		private void publishOnCommit(CaseDbChangeEvent.Type type, long id, long typeId) {
+			changes.add(type, id, typeId);
+		}
+
 		/**
 		 * Commits the transaction on the case database that was begun when this
 		 * object was constructed.
@@ -5357,6 +6810,7 @@ public void commit() throws TskCoreException {
 			} catch (SQLException ex) {
 				throw new TskCoreException("Failed to commit transaction on case database", ex);
 			}
+			changes.publishTo(eventBus);
 		}
 
 		/**
@@ -5366,6 +6820,7 @@ public void commit() throws TskCoreException {
 		 * @throws TskCoreException
 		 */
 		public void rollback() throws TskCoreException {
+			changes.clear();
 			try {
 				this.connection.rollbackTransactionWithThrow();
 			} catch (SQLException ex) {
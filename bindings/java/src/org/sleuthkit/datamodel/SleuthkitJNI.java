@@ -18,16 +18,14 @@
  */
 package org.sleuthkit.datamodel;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.GregorianCalendar;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.TimeZone;
 import org.sleuthkit.datamodel.TskData.TSK_FS_ATTR_TYPE_ENUM;
 
@@ -93,7 +91,7 @@ public class SleuthkitJNI {
     private static native HashHitInfo hashDbLookupVerbose(String hash, int dbHandle) throws TskCoreException;
 
 	//load image
-	private static native long initAddImgNat(long db, String timezone, boolean processUnallocSpace, boolean noFatFsOrphans) throws TskCoreException;
+	private static native long initAddImgNat(long db, String timezone, boolean processUnallocSpace, boolean noFatFsOrphans, long unallocChunkSize, boolean parallelUnallocSpace) throws TskCoreException;
 
 	private static native void runAddImgNat(long process, String[] imgPath, int splits, String timezone) throws TskCoreException, TskDataException; // if runAddImg finishes without being stopped, revertAddImg or commitAddImg MUST be called
 
@@ -104,18 +102,20 @@ public class SleuthkitJNI {
 	private static native long commitAddImgNat(long process) throws TskCoreException;
 
 	//open functions
-	private static native long openImgNat(String[] imgPath, int splits) throws TskCoreException;
+	static native long openImgNat(String[] imgPath, int splits) throws TskCoreException;
 
 	private static native long openVsNat(long imgHandle, long vsOffset) throws TskCoreException;
 
 	private static native long openVolNat(long vsHandle, long volId) throws TskCoreException;
 
-	private static native long openFsNat(long imgHandle, long fsId) throws TskCoreException;
+	static native long openFsNat(long imgHandle, long fsId) throws TskCoreException;
 
 	private static native long openFileNat(long fsHandle, long fileId, int attrType, int attrId) throws TskCoreException;
 
 	//read functions
-	private static native int readImgNat(long imgHandle, byte[] readBuffer, long offset, long len) throws TskCoreException;
+	static native int readImgNat(long imgHandle, byte[] readBuffer, long offset, long len) throws TskCoreException;
+
+	static native int readImgRangesNat(long imgHandle, byte[] readBuffer, long[] imgOffsets, long[] lens, int[] bufOffsets) throws TskCoreException;
 
 	private static native int readVsNat(long vsHandle, byte[] readBuffer, long offset, long len) throws TskCoreException;
 
@@ -125,10 +125,14 @@ public class SleuthkitJNI {
 
 	private static native int readFileNat(long fileHandle, byte[] readBuffer, long offset, long len) throws TskCoreException;
 
-	private static native int saveFileMetaDataTextNat(long fileHandle, String fileName) throws TskCoreException;
+	private static native byte[] getFileMetaDataTextNat(long fileHandle) throws TskCoreException;
+
+	private static native FileMetaData getFileMetaDataNat(long fileHandle) throws TskCoreException;
+
+	private static native int walkFsNat(long fsHandle, long dirAddr, boolean recurse, boolean includeUnalloc, ByteBuffer buffer, FsWalkRecord.Decoder decoder) throws TskCoreException;
 	
 	//close functions
-	private static native void closeImgNat(long imgHandle);
+	static native void closeImgNat(long imgHandle);
 
 	private static native void closeVsNat(long vsHandle);
 
@@ -147,6 +151,36 @@ public class SleuthkitJNI {
 		LibraryUtils.loadSleuthkitJNI();
     }
 
+	/**
+	 * Default size, in bytes, that unallocated file system space is grouped
+	 * into when adding an image.
+	 */
+	public static final long DEFAULT_UNALLOC_CHUNK_SIZE = 500L * 1024 * 1024;
+	//metrics of the native calls and of the handle caches
+	private static final Metrics metrics = new Metrics("SleuthkitJNI"); //NON-NLS
+	//cache of open image, fs and file handles
+	private static final NativeHandleManager handleManager = new NativeHandleManager(metrics);
+	private static final Charset UTF8 = Charset.forName("UTF-8"); //NON-NLS
+	private static final Metrics.Histogram vsOpenTime = metrics.histogram("jni.open.vs"); //NON-NLS
+	private static final Metrics.Histogram volOpenTime = metrics.histogram("jni.open.vol"); //NON-NLS
+	private static final Metrics.Histogram fileOpenTime = metrics.histogram("jni.open.file"); //NON-NLS
+	private static final Metrics.Histogram imgReadTime = metrics.histogram("jni.read.img"); //NON-NLS
+	private static final Metrics.Counter imgReadBytes = metrics.counter("jni.read.img.bytes"); //NON-NLS
+	private static final Metrics.Histogram imgRangesReadTime = metrics.histogram("jni.read.imgRanges"); //NON-NLS
+	private static final Metrics.Counter imgRangesReadBytes = metrics.counter("jni.read.imgRanges.bytes"); //NON-NLS
+	private static final Metrics.Histogram vsReadTime = metrics.histogram("jni.read.vs"); //NON-NLS
+	private static final Metrics.Counter vsReadBytes = metrics.counter("jni.read.vs.bytes"); //NON-NLS
+	private static final Metrics.Histogram volReadTime = metrics.histogram("jni.read.vol"); //NON-NLS
+	private static final Metrics.Counter volReadBytes = metrics.counter("jni.read.vol.bytes"); //NON-NLS
+	private static final Metrics.Histogram fsReadTime = metrics.histogram("jni.read.fs"); //NON-NLS
+	private static final Metrics.Counter fsReadBytes = metrics.counter("jni.read.fs.bytes"); //NON-NLS
+	private static final Metrics.Histogram fileReadTime = metrics.histogram("jni.read.file"); //NON-NLS
+	private static final Metrics.Counter fileReadBytes = metrics.counter("jni.read.file.bytes"); //NON-NLS
+
+	static {
+		metrics.registerMBean();
+	}
+
 	private SleuthkitJNI() {
 	
 	}
@@ -157,10 +191,6 @@ private SleuthkitJNI() {
 	public static class CaseDbHandle {
 
 		private long caseDbPointer;
-		//map concat. image paths to cached image handle
-		private static final Map<String, Long> imageHandleCache = new HashMap<String, Long>();
-		//map image and offsets to cached fs handle
-		private static final Map<Long, Map<Long, Long>> fsHandleCache = new HashMap<Long, Map<Long, Long>>();
 
 		private CaseDbHandle(long pointer) {
 			this.caseDbPointer = pointer;
@@ -187,11 +217,35 @@ void free() throws TskCoreException {
 		 * the image
 		 * @param noFatFsOrphans true if to skip processing of orphans on FAT
 		 * filesystems
+		 * @param eventBus change events of the case, told about the image
+		 * when it is committed
+		 *
+		 * @return Object that can be used to manage the process.
+		 */
+		AddImageProcess initAddImageProcess(String timezone, boolean processUnallocSpace, boolean noFatFsOrphans, CaseDbEventBus eventBus) {
+			return new AddImageProcess(timezone, processUnallocSpace, noFatFsOrphans, DEFAULT_UNALLOC_CHUNK_SIZE, false, eventBus);
+		}
+
+		/**
+		 * Start the process of adding a disk image to the case
+		 *
+		 * @param timezone Timezone that image was from
+		 * @param processUnallocSpace true if to process unallocated space in
+		 * the image
+		 * @param noFatFsOrphans true if to skip processing of orphans on FAT
+		 * filesystems
+		 * @param unallocChunkSize number of bytes to group unallocated file
+		 * system space into. 0 creates one file per file system and -1 creates
+		 * one file per run of consecutive blocks.
+		 * @param parallelUnallocSpace true if to walk the unallocated space of
+		 * each file system on its own thread
+		 * @param eventBus change events of the case, told about the image
+		 * when it is committed
 		 *
 		 * @return Object that can be used to manage the process.
 		 */
-		AddImageProcess initAddImageProcess(String timezone, boolean processUnallocSpace, boolean noFatFsOrphans) {
-			return new AddImageProcess(timezone, processUnallocSpace, noFatFsOrphans);
+		AddImageProcess initAddImageProcess(String timezone, boolean processUnallocSpace, boolean noFatFsOrphans, long unallocChunkSize, boolean parallelUnallocSpace, CaseDbEventBus eventBus) {
+			return new AddImageProcess(timezone, processUnallocSpace, noFatFsOrphans, unallocChunkSize, parallelUnallocSpace, eventBus);
 		}
 
 		/**
@@ -204,12 +258,18 @@ public class AddImageProcess {
 			private String timezone;
 			private boolean processUnallocSpace;
 			private boolean noFatFsOrphans;
+			private long unallocChunkSize;
+			private boolean parallelUnallocSpace;
 			private volatile long autoDbPointer;
+			private final CaseDbEventBus eventBus;
 
-			private AddImageProcess(String timezone, boolean processUnallocSpace, boolean noFatFsOrphans) {
+			private AddImageProcess(String timezone, boolean processUnallocSpace, boolean noFatFsOrphans, long unallocChunkSize, boolean parallelUnallocSpace, CaseDbEventBus eventBus) {
 				this.timezone = timezone;
 				this.processUnallocSpace = processUnallocSpace;
 				this.noFatFsOrphans = noFatFsOrphans;
+				this.unallocChunkSize = unallocChunkSize;
+				this.parallelUnallocSpace = parallelUnallocSpace;
+				this.eventBus = eventBus;
 				autoDbPointer = 0;
 			}
 
@@ -229,7 +289,7 @@ public void run(String[] imgPath) throws TskCoreException, TskDataException {
 				}
 
 				synchronized (this) {
-					autoDbPointer = initAddImgNat(caseDbPointer, timezoneLongToShort(timezone), processUnallocSpace, noFatFsOrphans);
+					autoDbPointer = initAddImgNat(caseDbPointer, timezoneLongToShort(timezone), processUnallocSpace, noFatFsOrphans, unallocChunkSize, parallelUnallocSpace);
 				}
 				if (autoDbPointer == 0) {
 					//additional check in case initAddImgNat didn't throw exception
@@ -291,6 +351,7 @@ public synchronized long commit() throws TskCoreException {
 				long id = commitAddImgNat(autoDbPointer);
 				// the native code deleted the object
 				autoDbPointer = 0;
+				eventBus.publish(CaseDbChangeEvent.Type.IMAGES_ADDED, id, -1);
 				return id;
 			}
 
@@ -356,27 +417,8 @@ public static void startVerboseLogging(String logPath) {
 	 * @throws TskCoreException exception thrown if critical error occurs within
 	 * TSK
 	 */
-	public synchronized static long openImage(String[] imageFiles) throws TskCoreException {
-		long imageHandle = 0;
-
-		StringBuilder keyBuilder = new StringBuilder();
-		for (int i = 0; i < imageFiles.length; ++i) {
-			keyBuilder.append(imageFiles[i]);
-		}
-		final String imageKey = keyBuilder.toString();
-
-		if (CaseDbHandle.imageHandleCache.containsKey(imageKey)) //get from cache
-		{
-			imageHandle = CaseDbHandle.imageHandleCache.get(imageKey);
-		} else {
-			//open new handle and cache it
-			imageHandle = openImgNat(imageFiles, imageFiles.length);
-			CaseDbHandle.fsHandleCache.put(imageHandle, new HashMap<Long, Long>());
-			CaseDbHandle.imageHandleCache.put(imageKey, imageHandle);
-		}
-
-		return imageHandle;
-
+	public static long openImage(String[] imageFiles) throws TskCoreException {
+		return handleManager.openImage(imageFiles);
 	}
 
 	/**
@@ -389,7 +431,10 @@ public synchronized static long openImage(String[] imageFiles) throws TskCoreExc
 	 * TSK
 	 */
 	public static long openVs(long imgHandle, long vsOffset) throws TskCoreException {
-		return openVsNat(imgHandle, vsOffset);
+		long start = System.nanoTime();
+		long vsHandle = openVsNat(imgHandle, vsOffset);
+		vsOpenTime.recordSince(start);
+		return vsHandle;
 	}
 
 	//get pointers
@@ -404,7 +449,10 @@ public static long openVs(long imgHandle, long vsOffset) throws TskCoreException
 	 */
 	public static long openVsPart(long vsHandle, long volId) throws TskCoreException {
 		//returned long is ptr to vs Handle object in tsk
-		return openVolNat(vsHandle, volId);
+		long start = System.nanoTime();
+		long volHandle = openVolNat(vsHandle, volId);
+		volOpenTime.recordSince(start);
+		return volHandle;
 	}
 
 	/**
@@ -417,18 +465,69 @@ public static long openVsPart(long vsHandle, long volId) throws TskCoreException
 	 * @throws TskCoreException exception thrown if critical error occurs within
 	 * TSK
 	 */
-	public synchronized static long openFs(long imgHandle, long fsOffset) throws TskCoreException {
-		long fsHandle = 0;
-		final Map<Long, Long> imgOffSetToFsHandle = CaseDbHandle.fsHandleCache.get(imgHandle);
-		if (imgOffSetToFsHandle.containsKey(fsOffset)) {
-			//return cached
-			fsHandle = imgOffSetToFsHandle.get(fsOffset);
-		} else {
-			fsHandle = openFsNat(imgHandle, fsOffset);
-			//cache it
-			imgOffSetToFsHandle.put(fsOffset, fsHandle);
+	public static long openFs(long imgHandle, long fsOffset) throws TskCoreException {
+		return handleManager.openFs(imgHandle, fsOffset);
+	}
+
+	/**
+	 * Walk all of the names in a file system, without a case database. The
+	 * walk writes packed records into the given buffer and hands each one to
+	 * the handler as an FsWalkRecord, in directory order.
+	 *
+	 * @param fsHandle handle of the file system, from openFs()
+	 * @param includeUnalloc true to include deleted names
+	 * @param buffer reusable buffer from FsWalkRecord.allocateBuffer()
+	 * @param handler gets each record
+	 * @return false if the handler stopped the walk
+	 * @throws TskCoreException if the walk could not be done
+	 */
+	public static boolean walkFileSystem(long fsHandle, boolean includeUnalloc, ByteBuffer buffer, FsWalkRecord.Handler handler) throws TskCoreException {
+		return walkDirectory(fsHandle, -1, true, includeUnalloc, buffer, handler);
+	}
+
+	/**
+	 * Walk the names in one directory of a file system, and optionally in its
+	 * sub-directories, without a case database. See walkFileSystem().
+	 *
+	 * @param fsHandle handle of the file system, from openFs()
+	 * @param dirMetaAddr meta data address of the directory, or -1 for the
+	 * root directory
+	 * @param recurse true to walk into sub-directories
+	 * @param includeUnalloc true to include deleted names
+	 * @param buffer reusable buffer from FsWalkRecord.allocateBuffer()
+	 * @param handler gets each record
+	 * @return false if the handler stopped the walk
+	 * @throws TskCoreException if the walk could not be done
+	 */
+	public static boolean walkDirectory(long fsHandle, long dirMetaAddr, boolean recurse, boolean includeUnalloc, ByteBuffer buffer, FsWalkRecord.Handler handler) throws TskCoreException {
+		if (!buffer.isDirect() || buffer.capacity() < FsWalkRecord.MIN_BUFFER_SIZE) {
+			throw new IllegalArgumentException("Walk buffer must be a direct buffer from FsWalkRecord.allocateBuffer()"); //NON-NLS
 		}
-		return fsHandle;
+		return walkFsNat(fsHandle, dirMetaAddr, recurse, includeUnalloc, buffer, new FsWalkRecord.Decoder(buffer, handler)) == 0;
+	}
+
+	/**
+	 * Get the manager of the cached image, file system and file handles. It
+	 * can be used to tune the file handle cache and to get metrics on the
+	 * open handles.
+	 *
+	 * @return the handle manager
+	 */
+	public static NativeHandleManager getHandleManager() {
+		return handleManager;
+	}
+
+	/**
+	 * Get the metrics of the native calls, shared by all cases: the time
+	 * taken by opens (jni.open.TYPE) and reads (jni.read.TYPE), in
+	 * microseconds, the bytes read (jni.read.TYPE.bytes), and the hits,
+	 * misses and sizes of the image, file system and file handle caches
+	 * (cache.*). They are registered with JMX when this class is loaded.
+	 *
+	 * @return the metrics
+	 */
+	public static Metrics getMetrics() {
+		return metrics;
 	}
 
 	/**
@@ -443,7 +542,10 @@ public synchronized static long openFs(long imgHandle, long fsOffset) throws Tsk
 	 * TSK
 	 */
 	public static long openFile(long fsHandle, long fileId, TSK_FS_ATTR_TYPE_ENUM attrType, int attrId) throws TskCoreException {
-		return openFileNat(fsHandle, fileId, attrType.getValue(), attrId);
+		long start = System.nanoTime();
+		long fileHandle = openFileNat(fsHandle, fileId, attrType.getValue(), attrId);
+		fileOpenTime.recordSince(start);
+		return fileHandle;
 	}
 
 	//do reads
@@ -461,7 +563,29 @@ public static long openFile(long fsHandle, long fileId, TSK_FS_ATTR_TYPE_ENUM at
 	 */
 	public static int readImg(long imgHandle, byte[] readBuffer, long offset, long len) throws TskCoreException {
 		//returned byte[] is the data buffer
-		return readImgNat(imgHandle, readBuffer, offset, len);
+		long start = System.nanoTime();
+		return recordRead(imgReadTime, imgReadBytes, start, handleManager.readImg(imgHandle, readBuffer, offset, len));
+	}
+
+	/**
+	 * reads a list of byte ranges from an image into one buffer with a single
+	 * native call. The ranges are read in image offset order and ranges that
+	 * are next to each other in both the image and the buffer are read
+	 * together.
+	 *
+	 * @param imgHandle
+	 * @param readBuffer buffer to read to
+	 * @param imgOffsets byte offset in the image of each range
+	 * @param lens length in bytes of each range
+	 * @param bufOffsets offset in readBuffer to read each range to
+	 * @return the number of bytes read, counting the ranges in the order given
+	 * and stopping at the first one that could not be read in full
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 * TSK
+	 */
+	public static int readImgRanges(long imgHandle, byte[] readBuffer, long[] imgOffsets, long[] lens, int[] bufOffsets) throws TskCoreException {
+		long start = System.nanoTime();
+		return recordRead(imgRangesReadTime, imgRangesReadBytes, start, handleManager.readImgRanges(imgHandle, readBuffer, imgOffsets, lens, bufOffsets));
 	}
 
 	/**
@@ -477,7 +601,8 @@ public static int readImg(long imgHandle, byte[] readBuffer, long offset, long l
 	 * TSK
 	 */
 	public static int readVs(long vsHandle, byte[] readBuffer, long offset, long len) throws TskCoreException {
-		return readVsNat(vsHandle, readBuffer, offset, len);
+		long start = System.nanoTime();
+		return recordRead(vsReadTime, vsReadBytes, start, readVsNat(vsHandle, readBuffer, offset, len));
 	}
 
 	/**
@@ -494,7 +619,8 @@ public static int readVs(long vsHandle, byte[] readBuffer, long offset, long len
 	 */
 	public static int readVsPart(long volHandle, byte[] readBuffer, long offset, long len) throws TskCoreException {
 		//returned byte[] is the data buffer
-		return readVolNat(volHandle, readBuffer, offset, len);
+		long start = System.nanoTime();
+		return recordRead(volReadTime, volReadBytes, start, readVolNat(volHandle, readBuffer, offset, len));
 	}
 
 	/**
@@ -511,7 +637,8 @@ public static int readVsPart(long volHandle, byte[] readBuffer, long offset, lon
 	 */
 	public static int readFs(long fsHandle, byte[] readBuffer, long offset, long len) throws TskCoreException {
 		//returned byte[] is the data buffer
-		return readFsNat(fsHandle, readBuffer, offset, len);
+		long start = System.nanoTime();
+		return recordRead(fsReadTime, fsReadBytes, start, readFsNat(fsHandle, readBuffer, offset, len));
 	}
 
 	/**
@@ -527,7 +654,21 @@ public static int readFs(long fsHandle, byte[] readBuffer, long offset, long len
 	 * TSK
 	 */
 	public static int readFile(long fileHandle, byte[] readBuffer, long offset, long len) throws TskCoreException {
-		return readFileNat(fileHandle, readBuffer, offset, len);
+		long start = System.nanoTime();
+		return recordRead(fileReadTime, fileReadBytes, start, readFileNat(fileHandle, readBuffer, offset, len));
+	}
+
+	/**
+	 * Record the time and bytes of a read.
+	 *
+	 * @return the number of bytes read, as given
+	 */
+	private static int recordRead(Metrics.Histogram time, Metrics.Counter bytes, long start, int bytesRead) {
+		time.recordSince(start);
+		if (bytesRead > 0) {
+			bytes.add(bytesRead);
+		}
+		return bytesRead;
 	}
 	
 	
@@ -538,29 +679,48 @@ public static int readFile(long fileHandle, byte[] readBuffer, long offset, long
 	 * @throws TskCoreException if errors occurred
 	 */
 	public static List<String> getFileMetaDataText(long fileHandle) throws TskCoreException {
-		try {
-			java.io.File tmp = java.io.File.createTempFile("tsk", ".txt");
-			
-			saveFileMetaDataTextNat(fileHandle, tmp.getAbsolutePath());
-			
-			FileReader fr = new FileReader(tmp.getAbsolutePath());
-			BufferedReader textReader = new BufferedReader(fr);
-			
-			List<String> lines = new ArrayList<String>();
-			while (true) {
-				String line = textReader.readLine();
-				if (line == null) {
-					break;
-				}
-				lines.add(line);
+		String text = decodeMetaDataText(getFileMetaDataTextNat(fileHandle));
+		List<String> lines = new ArrayList<String>();
+		int start = 0;
+		while (start < text.length()) {
+			int end = text.indexOf('\n', start);
+			if (end < 0) {
+				end = text.length();
 			}
-			textReader.close();
-			fr.close();
-			tmp.delete();
-			return lines;
-		} catch (IOException ex) {
-			throw new TskCoreException("Error reading istat output: " + ex.getLocalizedMessage());
+			int lineEnd = (end > start && text.charAt(end - 1) == '\r') ? end - 1 : end;
+			lines.add(text.substring(start, lineEnd));
+			start = end + 1;
 		}
+		return lines;
+	}
+
+	/**
+	 * Get the text meta data of the file (same as 'istat') and append it to
+	 * the given output, without splitting it into lines.
+	 *
+	 * @param fileHandle handle of the file
+	 * @param out where to write the text
+	 * @throws TskCoreException if the meta data could not be read
+	 * @throws IOException if out could not be written to
+	 */
+	public static void appendFileMetaDataText(long fileHandle, Appendable out) throws TskCoreException, IOException {
+		out.append(decodeMetaDataText(getFileMetaDataTextNat(fileHandle)));
+	}
+
+	/**
+	 * Get the meta data of the file, its attributes and their runs as values,
+	 * rather than as 'istat' text.
+	 *
+	 * @param fileHandle handle of the file
+	 * @return the meta data of the file
+	 * @throws TskCoreException if the meta data could not be read
+	 */
+	public static FileMetaData getFileMetaData(long fileHandle) throws TskCoreException {
+		return getFileMetaDataNat(fileHandle);
+	}
+
+	private static String decodeMetaDataText(byte[] text) {
+		return new String(text, UTF8);
 	}
 	
 
@@ -0,0 +1,413 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2014 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The MAC times of the files of a case as a sorted list of events, from
+ * SleuthkitCase.buildTimeline().
+ *
+ * There is one event per file and non-zero time, like the lines of a body
+ * file. The events are kept sorted by time in parallel primitive arrays, about
+ * 17 bytes per event, so range queries are binary searches and pages are
+ * array slices. The number of events per minute, hour and day is counted when
+ * the timeline is built, so histograms do not look at the events at all.
+ * Buckets are aligned to UTC.
+ *
+ * A timeline is a snapshot of the case when it was built and is immutable, so
+ * it can be shared by threads.
+ */
+public final class Timeline {
+
+	/**
+	 * The time stamps of a file, in the order of the "macb" column of a body
+	 * file.
+	 */
+	public enum EventType {
+
+		MODIFIED,
+		ACCESSED,
+		CHANGED,
+		CREATED
+	}
+
+	/**
+	 * Sizes of the histogram buckets.
+	 */
+	public enum Granularity {
+
+		MINUTE(60),
+		HOUR(60 * 60),
+		DAY(24 * 60 * 60);
+		private final long seconds;
+
+		private Granularity(long seconds) {
+			this.seconds = seconds;
+		}
+
+		/**
+		 * @return length of a bucket, in seconds
+		 */
+		public long getSeconds() {
+			return seconds;
+		}
+	}
+
+	/**
+	 * One time stamp of one file.
+	 */
+	public static final class Event {
+
+		private final long objId;
+		private final long time;
+		private final EventType type;
+
+		private Event(long objId, long time, EventType type) {
+			this.objId = objId;
+			this.time = time;
+			this.type = type;
+		}
+
+		/**
+		 * @return object id of the file
+		 */
+		public long getObjId() {
+			return objId;
+		}
+
+		/**
+		 * @return the time, in seconds since the epoch
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		public EventType getType() {
+			return type;
+		}
+	}
+
+	/**
+	 * The number of events of each type in one bucket of a histogram.
+	 */
+	public static final class Bucket {
+
+		private final long startTime;
+		private final Granularity granularity;
+		private final Map<EventType, Integer> counts;
+
+		private Bucket(long startTime, Granularity granularity, int[] counts, int offset) {
+			this.startTime = startTime;
+			this.granularity = granularity;
+			this.counts = new EnumMap<EventType, Integer>(EventType.class);
+			for (EventType type : EVENT_TYPES) {
+				this.counts.put(type, counts[offset + type.ordinal()]);
+			}
+		}
+
+		/**
+		 * @return start of the bucket, in seconds since the epoch
+		 */
+		public long getStartTime() {
+			return startTime;
+		}
+
+		public Granularity getGranularity() {
+			return granularity;
+		}
+
+		public int getCount(EventType type) {
+			return counts.get(type);
+		}
+
+		public int getTotal() {
+			int total = 0;
+			for (int count : counts.values()) {
+				total += count;
+			}
+			return total;
+		}
+	}
+	private static final EventType[] EVENT_TYPES = EventType.values();
+	private static final int TYPE_COUNT = EVENT_TYPES.length;
+	//the events, sorted by time and then object id
+	private final long[] times;
+	private final long[] objIds;
+	private final byte[] types;
+	//per granularity: sorted bucket start times, and counts by type
+	private final Map<Granularity, long[]> bucketStarts = new EnumMap<Granularity, long[]>(Granularity.class);
+	private final Map<Granularity, int[]> bucketCounts = new EnumMap<Granularity, int[]>(Granularity.class);
+
+	private Timeline(long[] times, long[] objIds, byte[] types) {
+		this.times = times;
+		this.objIds = objIds;
+		this.types = types;
+		for (Granularity granularity : Granularity.values()) {
+			aggregate(granularity);
+		}
+	}
+
+	/**
+	 * @return number of events
+	 */
+	public int getEventCount() {
+		return times.length;
+	}
+
+	/**
+	 * @return time of the first event, or 0 if there are none
+	 */
+	public long getStartTime() {
+		return (times.length > 0) ? times[0] : 0;
+	}
+
+	/**
+	 * @return time of the last event, or 0 if there are none
+	 */
+	public long getEndTime() {
+		return (times.length > 0) ? times[times.length - 1] : 0;
+	}
+
+	/**
+	 * Count the events in a range of time.
+	 *
+	 * @param start start of the range, in seconds since the epoch, inclusive
+	 * @param end end of the range, exclusive
+	 * @return number of events
+	 */
+	public int countEvents(long start, long end) {
+		return Math.max(0, lowerBound(times, end) - lowerBound(times, start));
+	}
+
+	/**
+	 * Get one page of the events in a range of time.
+	 *
+	 * @param start start of the range, in seconds since the epoch, inclusive
+	 * @param end end of the range, exclusive
+	 * @param offset number of events of the range to skip
+	 * @param limit most events to return
+	 * @return the events, sorted by time and then object id
+	 */
+	public List<Event> getEvents(long start, long end, int offset, int limit) {
+		if (offset < 0 || limit < 0) {
+			throw new IllegalArgumentException("Offset and limit must not be negative"); //NON-NLS
+		}
+		int from = lowerBound(times, start);
+		int to = lowerBound(times, end);
+		if (from >= to || offset >= to - from) {
+			return Collections.<Event>emptyList();
+		}
+		from += offset;
+		to = (int) Math.min(to, (long) from + limit);
+		List<Event> events = new ArrayList<Event>(to - from);
+		for (int i = from; i < to; ++i) {
+			events.add(new Event(objIds[i], times[i], EVENT_TYPES[types[i]]));
+		}
+		return events;
+	}
+
+	/**
+	 * Get the histogram of a range of time. Only buckets with events are
+	 * returned.
+	 *
+	 * @param start start of the range, in seconds since the epoch; the bucket
+	 * that holds it is the first one
+	 * @param end end of the range, exclusive
+	 * @param granularity size of the buckets
+	 * @return the buckets with events, by start time
+	 */
+	public List<Bucket> getHistogram(long start, long end, Granularity granularity) {
+		long[] starts = bucketStarts.get(granularity);
+		int[] counts = bucketCounts.get(granularity);
+		int from = lowerBound(starts, bucketStart(start, granularity));
+		int to = lowerBound(starts, end);
+		List<Bucket> buckets = new ArrayList<Bucket>(Math.max(0, to - from));
+		for (int i = from; i < to; ++i) {
+			buckets.add(new Bucket(starts[i], granularity, counts, i * TYPE_COUNT));
+		}
+		return buckets;
+	}
+
+	/**
+	 * Count the events per bucket, in one pass over the sorted events.
+	 */
+	private void aggregate(Granularity granularity) {
+		int bucketCount = 0;
+		long last = 0;
+		for (int i = 0; i < times.length; ++i) {
+			long bucket = bucketStart(times[i], granularity);
+			if (i == 0 || bucket != last) {
+				++bucketCount;
+				last = bucket;
+			}
+		}
+		long[] starts = new long[bucketCount];
+		int[] counts = new int[bucketCount * TYPE_COUNT];
+		int b = -1;
+		for (int i = 0; i < times.length; ++i) {
+			long bucket = bucketStart(times[i], granularity);
+			if (b < 0 || bucket != starts[b]) {
+				starts[++b] = bucket;
+			}
+			++counts[b * TYPE_COUNT + types[i]];
+		}
+		bucketStarts.put(granularity, starts);
+		bucketCounts.put(granularity, counts);
+	}
+
+	private static long bucketStart(long time, Granularity granularity) {
+		long seconds = granularity.getSeconds();
+		long remainder = time % seconds;
+		return time - ((remainder < 0) ? remainder + seconds : remainder);
+	}
+
+	/**
+	 * @return index of the first value not less than key
+	 */
+	private static int lowerBound(long[] values, long key) {
+		int low = 0;
+		int high = values.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (values[mid] < key) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Collects the time stamps of the files for a timeline.
+	 */
+	static final class Builder {
+
+		private long[] times = new long[1024];
+		private long[] objIds = new long[1024];
+		private byte[] types = new byte[1024];
+		private int size = 0;
+
+		/**
+		 * Add the events of a file. Files should be added in object id order
+		 * so that events at the same time are in object id order.
+		 */
+		void addFile(long objId, long mtime, long atime, long ctime, long crtime) {
+			add(objId, mtime, EventType.MODIFIED);
+			add(objId, atime, EventType.ACCESSED);
+			add(objId, ctime, EventType.CHANGED);
+			add(objId, crtime, EventType.CREATED);
+		}
+
+		private void add(long objId, long time, EventType type) {
+			if (time == 0) {
+				return;
+			}
+			if (size == times.length) {
+				int capacity = size + (size >> 1);
+				times = Arrays.copyOf(times, capacity);
+				objIds = Arrays.copyOf(objIds, capacity);
+				types = Arrays.copyOf(types, capacity);
+			}
+			times[size] = time;
+			objIds[size] = objId;
+			types[size] = (byte) type.ordinal();
+			++size;
+		}
+
+		/**
+		 * Sort the events and build the timeline.
+		 */
+		Timeline build() {
+			int[] order = sortByTime();
+			long[] sortedTimes = new long[size];
+			long[] sortedObjIds = new long[size];
+			byte[] sortedTypes = new byte[size];
+			for (int i = 0; i < size; ++i) {
+				sortedTimes[i] = times[order[i]];
+				sortedObjIds[i] = objIds[order[i]];
+				sortedTypes[i] = types[order[i]];
+			}
+			return new Timeline(sortedTimes, sortedObjIds, sortedTypes);
+		}
+
+		/**
+		 * @return the event indexes, sorted by time and then index
+		 */
+		private int[] sortByTime() {
+			int[] order = new int[size];
+			if (size == 0) {
+				return order;
+			}
+			long min = Long.MAX_VALUE;
+			long max = Long.MIN_VALUE;
+			for (int i = 0; i < size; ++i) {
+				min = Math.min(min, times[i]);
+				max = Math.max(max, times[i]);
+			}
+			final int indexBits = 32 - Integer.numberOfLeadingZeros(size);
+			if (max - min >= 0 && (max - min) < (1L << (63 - indexBits))) {
+				//usual case: sort time and index packed into one long
+				long[] keys = new long[size];
+				for (int i = 0; i < size; ++i) {
+					keys[i] = ((times[i] - min) << indexBits) | i;
+				}
+				Arrays.sort(keys);
+				final long indexMask = (1L << indexBits) - 1;
+				for (int i = 0; i < size; ++i) {
+					order[i] = (int) (keys[i] & indexMask);
+				}
+				return order;
+			}
+			//times too far apart to pack, stable merge sort of the indexes
+			for (int i = 0; i < size; ++i) {
+				order[i] = i;
+			}
+			int[] scratch = new int[size];
+			for (int width = 1; width < size; width *= 2) {
+				for (int low = 0; low < size - width; low += 2 * width) {
+					merge(order, scratch, low, low + width, Math.min(low + 2 * width, size));
+				}
+			}
+			return order;
+		}
+
+		private void merge(int[] order, int[] scratch, int low, int mid, int high) {
+			if (times[order[mid - 1]] <= times[order[mid]]) {
+				return; //already in order
+			}
+			System.arraycopy(order, low, scratch, low, high - low);
+			int i = low;
+			int j = mid;
+			for (int k = low; k < high; ++k) {
+				if (j >= high || (i < mid && times[scratch[i]] <= times[scratch[j]])) {
+					order[k] = scratch[i++];
+				} else {
+					order[k] = scratch[j++];
+				}
+			}
+		}
+	}
+}
@@ -20,6 +20,9 @@
 package org.sleuthkit.datamodel;
 
 import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.EnumSet;
 import java.util.Set;
@@ -32,6 +35,72 @@ public class TskData {
 
     private static ResourceBundle bundle = ResourceBundle.getBundle("org.sleuthkit.datamodel.Bundle");
 
+	/*
+	 * The enums below are decoded for every row read from the case database,
+	 * so each one builds a lookup table once rather than scanning values() 
+	 * (which copies the array) on every call. Where two constants share a 
+	 * value, the first one declared wins, as it did with the scans.
+	 */
+
+	/**
+	 * Build a lookup table, indexed by code, for small non-negative codes.
+	 *
+	 * @param values the enum constants, in declaration order
+	 * @param codes the code of each constant
+	 * @return table of size max code + 1, null where no constant has the code
+	 */
+	private static <E> E[] denseTable(E[] values, int[] codes) {
+		int max = 0;
+		for (int code : codes) {
+			max = Math.max(max, code);
+		}
+		E[] table = Arrays.copyOf(values, max + 1);
+		Arrays.fill(table, null);
+		for (int i = 0; i < values.length; ++i) {
+			if (table[codes[i]] == null) {
+				table[codes[i]] = values[i];
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Build a lookup map for sparse codes.
+	 */
+	private static <E> Map<Long, E> sparseTable(E[] values, long[] codes) {
+		Map<Long, E> table = new HashMap<Long, E>(values.length * 2);
+		for (int i = 0; i < values.length; ++i) {
+			if (!table.containsKey(codes[i])) {
+				table.put(codes[i], values[i]);
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Build the set of flags for every combination of a range of flag bits.
+	 *
+	 * @param values the flag constants
+	 * @param masks the bit mask of each constant
+	 * @param shift lowest bit of the range
+	 * @param bits number of bits in the range
+	 * @return sets indexed by the value of the bits in the range
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static <E extends Enum<E>> EnumSet<E>[] flagSets(E[] values, int[] masks, int shift, int bits) {
+		EnumSet<E>[] sets = new EnumSet[1 << bits];
+		for (int combination = 0; combination < sets.length; ++combination) {
+			final int flags = combination << shift;
+			sets[combination] = EnumSet.noneOf(values[0].getDeclaringClass());
+			for (int i = 0; i < values.length; ++i) {
+				if ((flags & masks[i]) == masks[i]) {
+					sets[combination].add(values[i]);
+				}
+			}
+		}
+		return sets;
+	}
+
 	// Enum for Directory Type
 	public enum TSK_FS_NAME_TYPE_ENUM {
 		UNDEF(0, "-"),     ///< Unknown type
@@ -48,6 +117,16 @@ public enum TSK_FS_NAME_TYPE_ENUM {
 
 		private short dirType;
 		String label;
+		private static final TSK_FS_NAME_TYPE_ENUM[] byDirType;
+
+		static {
+			TSK_FS_NAME_TYPE_ENUM[] all = values();
+			int[] codes = new int[all.length];
+			for (int i = 0; i < all.length; ++i) {
+				codes[i] = all[i].dirType;
+			}
+			byDirType = denseTable(all, codes);
+		}
 
 		private TSK_FS_NAME_TYPE_ENUM(int type, String label){
 			this.dirType = (short)type;
@@ -76,10 +155,8 @@ public String getLabel() {
 		 * @return converted long value
 		 */
 		static public TSK_FS_NAME_TYPE_ENUM valueOf(short dir_type) {
-			for (TSK_FS_NAME_TYPE_ENUM v : TSK_FS_NAME_TYPE_ENUM.values()) {
-				if (v.dirType == dir_type) {
-					return v;
-				}
+			if (dir_type >= 0 && dir_type < byDirType.length && byDirType[dir_type] != null) {
+				return byDirType[dir_type];
 			}
 			throw new IllegalArgumentException(
                     MessageFormat.format(bundle.getString("TskData.tskFsNameTypeEnum.exception.msg1.text"), dir_type));
@@ -104,6 +181,16 @@ public enum TSK_FS_META_TYPE_ENUM {
 
 		private short metaType;
 		private String metaTypeStr;
+		private static final TSK_FS_META_TYPE_ENUM[] byMetaType;
+
+		static {
+			TSK_FS_META_TYPE_ENUM[] all = values();
+			int[] codes = new int[all.length];
+			for (int i = 0; i < all.length; ++i) {
+				codes[i] = all[i].metaType;
+			}
+			byMetaType = denseTable(all, codes);
+		}
 
 		private TSK_FS_META_TYPE_ENUM(int type, String metaTypeStr) {
 			this.metaType = (short)type;
@@ -124,10 +211,8 @@ public String toString() {
 		}
 		
 		public static TSK_FS_META_TYPE_ENUM valueOf(short metaType) {
-			for (TSK_FS_META_TYPE_ENUM type : TSK_FS_META_TYPE_ENUM.values()) {
-				if (type.getValue() == metaType) {
-					return type;
-				}
+			if (metaType >= 0 && metaType < byMetaType.length && byMetaType[metaType] != null) {
+				return byMetaType[metaType];
 			}
 			throw new IllegalArgumentException(
                     MessageFormat.format(bundle.getString("TskData.tskFsMetaTypeEnum.exception.msg1.text"), metaType));
@@ -143,6 +228,16 @@ public enum TSK_FS_NAME_FLAG_ENUM {
 
 		private short dirFlag;
 		private String dirFlagStr;
+		private static final TSK_FS_NAME_FLAG_ENUM[] byDirFlag;
+
+		static {
+			TSK_FS_NAME_FLAG_ENUM[] all = values();
+			int[] codes = new int[all.length];
+			for (int i = 0; i < all.length; ++i) {
+				codes[i] = all[i].dirFlag;
+			}
+			byDirFlag = denseTable(all, codes);
+		}
 
 		private TSK_FS_NAME_FLAG_ENUM(int flag, String dirFlagStr){
 			this.dirFlag = (short)flag;
@@ -168,10 +263,8 @@ public String toString() {
 		 * @return the enum type corresponding to dirFlag
 		 */
 		public static TSK_FS_NAME_FLAG_ENUM valueOf(int dirFlag) {
-			for(TSK_FS_NAME_FLAG_ENUM flag : TSK_FS_NAME_FLAG_ENUM.values()) {
-				if(flag.dirFlag == dirFlag) {
-					return flag;
-				}
+			if (dirFlag >= 0 && dirFlag < byDirFlag.length && byDirFlag[dirFlag] != null) {
+				return byDirFlag[dirFlag];
 			}
 			throw new IllegalArgumentException(
                     MessageFormat.format(bundle.getString("TskData.tskFsNameFlagEnum.exception.msg1.text"), dirFlag));
@@ -193,6 +286,19 @@ public enum TSK_FS_META_FLAG_ENUM {
 
 		private short meta_flag;
 		private String label;
+		//set of flags for every combination of the flag bits
+		private static final EnumSet<TSK_FS_META_FLAG_ENUM>[] byMask;
+
+		static {
+			TSK_FS_META_FLAG_ENUM[] all = values();
+			int[] masks = new int[all.length];
+			int bits = 0;
+			for (int i = 0; i < all.length; ++i) {
+				masks[i] = all[i].meta_flag;
+				bits = Math.max(bits, 32 - Integer.numberOfLeadingZeros(masks[i]));
+			}
+			byMask = flagSets(all, masks, 0, bits);
+		}
 
 		private TSK_FS_META_FLAG_ENUM(int flag, String label){
 			this.meta_flag = (short)flag;
@@ -224,17 +330,7 @@ public String toString(){
 		 * @return matching TSK_FS_META_FLAG_ENUM elements
 		 */
 		public static Set<TSK_FS_META_FLAG_ENUM> valuesOf(short metaFlags) {
-			Set<TSK_FS_META_FLAG_ENUM> matchedFlags = EnumSet.noneOf(TSK_FS_META_FLAG_ENUM.class);
-			
-			for (TSK_FS_META_FLAG_ENUM v : TSK_FS_META_FLAG_ENUM.values()) {
-				long flag = v.getValue();
-
-				if((metaFlags & flag) == flag){
-					matchedFlags.add(v);
-				}
-			}
-		
-			return matchedFlags;
+			return byMask[metaFlags & (byMask.length - 1)].clone();
 		}
 		
 		public static short toInt(Set<TSK_FS_META_FLAG_ENUM> metaFlags) {
@@ -282,6 +378,16 @@ public enum TSK_FS_ATTR_TYPE_ENUM {
         TSK_FS_ATTR_TYPE_HFS_COMP_REC(0x1103); // 4355 Compression records
 		
 		private int val;
+		private static final Map<Long, TSK_FS_ATTR_TYPE_ENUM> byValue;
+
+		static {
+			TSK_FS_ATTR_TYPE_ENUM[] all = values();
+			long[] codes = new long[all.length];
+			for (int i = 0; i < all.length; ++i) {
+				codes[i] = all[i].val;
+			}
+			byValue = sparseTable(all, codes);
+		}
 		
 		private TSK_FS_ATTR_TYPE_ENUM(int val) {
 			this.val = val;
@@ -292,10 +398,9 @@ public int getValue() {
 		}
 		
 		public static TSK_FS_ATTR_TYPE_ENUM valueOf(int val) {
-			for(TSK_FS_ATTR_TYPE_ENUM type : TSK_FS_ATTR_TYPE_ENUM.values()) {
-				if(type.val == val) {
-					return type;
-				}
+			TSK_FS_ATTR_TYPE_ENUM type = byValue.get((long) val);
+			if (type != null) {
+				return type;
 			}
 			throw new IllegalArgumentException(
                     MessageFormat.format(bundle.getString("TskData.tskFsAttrTypeEnum.exception.msg1.text"), val));
@@ -349,6 +454,21 @@ public enum TSK_FS_META_MODE_ENUM {
 		TSK_FS_META_MODE_IXOTH(0000001);       ///< X for other
 
 		private short mode;
+		//sets of modes for each 4 bits of the mode: bits 0-3, 4-7 and 8-11
+		private static final EnumSet<TSK_FS_META_MODE_ENUM>[] byLowBits;
+		private static final EnumSet<TSK_FS_META_MODE_ENUM>[] byMidBits;
+		private static final EnumSet<TSK_FS_META_MODE_ENUM>[] byHighBits;
+
+		static {
+			TSK_FS_META_MODE_ENUM[] all = values();
+			int[] masks = new int[all.length];
+			for (int i = 0; i < all.length; ++i) {
+				masks[i] = all[i].mode;
+			}
+			byLowBits = flagSets(all, masks, 0, 4);
+			byMidBits = flagSets(all, masks, 4, 4);
+			byHighBits = flagSets(all, masks, 8, 4);
+		}
 
 		private TSK_FS_META_MODE_ENUM(int mode){
 			this.mode = (short)mode;
@@ -368,16 +488,9 @@ public short getMode(){
 		 * @return matching TSK_FS_META_MODE_ENUM elements
 		 */
 		public static Set<TSK_FS_META_MODE_ENUM> valuesOf(short modes) {
-			Set<TSK_FS_META_MODE_ENUM> matchedFlags = EnumSet.noneOf(TSK_FS_META_MODE_ENUM.class);
-			
-			for (TSK_FS_META_MODE_ENUM v : TSK_FS_META_MODE_ENUM.values()) {
-				long flag = v.getMode();
-
-				if((modes & flag) == flag){
-					matchedFlags.add(v);
-				}
-			}
-		
+			EnumSet<TSK_FS_META_MODE_ENUM> matchedFlags = byLowBits[modes & 0xF].clone();
+			matchedFlags.addAll(byMidBits[(modes >> 4) & 0xF]);
+			matchedFlags.addAll(byHighBits[(modes >> 8) & 0xF]);
 			return matchedFlags;
 		}
 		
@@ -427,6 +540,16 @@ public enum TSK_FS_TYPE_ENUM {
         TSK_FS_TYPE_UNSUPP (0xffffffff);        ///< Unsupported file system
 		
 		private int value;
+		private static final Map<Long, TSK_FS_TYPE_ENUM> byValue;
+
+		static {
+			TSK_FS_TYPE_ENUM[] all = values();
+			long[] codes = new long[all.length];
+			for (int i = 0; i < all.length; ++i) {
+				codes[i] = all[i].value;
+			}
+			byValue = sparseTable(all, codes);
+		}
 		private TSK_FS_TYPE_ENUM(int value) {
 			this.value = value;
 		}
@@ -445,10 +568,9 @@ public int getValue() {
 		 * @return the enum type - first enum type matching the fsTypeValue
 		 */
 		public static TSK_FS_TYPE_ENUM valueOf(int fsTypeValue) {
-			for(TSK_FS_TYPE_ENUM type : TSK_FS_TYPE_ENUM.values()) {
-				if(type.value == fsTypeValue) {
-					return type;
-				}
+			TSK_FS_TYPE_ENUM type = byValue.get((long) fsTypeValue);
+			if (type != null) {
+				return type;
 			}
 			throw new IllegalArgumentException(
                     MessageFormat.format(bundle.getString("TskData.tskFsTypeEnum.exception.msg1.text"), fsTypeValue));
@@ -473,6 +595,16 @@ public enum TSK_IMG_TYPE_ENUM {
 
 		private long imgType;
 		private String name;
+		private static final Map<Long, TSK_IMG_TYPE_ENUM> byImgType;
+
+		static {
+			TSK_IMG_TYPE_ENUM[] all = values();
+			long[] codes = new long[all.length];
+			for (int i = 0; i < all.length; ++i) {
+				codes[i] = all[i].imgType;
+			}
+			byImgType = sparseTable(all, codes);
+		}
 
 		private TSK_IMG_TYPE_ENUM (long type, String name){
 			this.imgType = type;
@@ -480,10 +612,9 @@ private TSK_IMG_TYPE_ENUM (long type, String name){
 		}
 
 		public static TSK_IMG_TYPE_ENUM valueOf(long imgType) {
-			for (TSK_IMG_TYPE_ENUM type : TSK_IMG_TYPE_ENUM.values()) {
-				if (type.getValue() == imgType) {
-					return type;
-				}
+			TSK_IMG_TYPE_ENUM type = byImgType.get(imgType);
+			if (type != null) {
+				return type;
 			}
 			throw new IllegalArgumentException(
                     MessageFormat.format(bundle.getString("TskData.tskImgTypeEnum.exception.msg1.text"), imgType));
@@ -521,16 +652,25 @@ public enum TSK_VS_TYPE_ENUM {
         
         private long vsType;
 		private String name;
+		private static final Map<Long, TSK_VS_TYPE_ENUM> byVsType;
+
+		static {
+			TSK_VS_TYPE_ENUM[] all = values();
+			long[] codes = new long[all.length];
+			for (int i = 0; i < all.length; ++i) {
+				codes[i] = all[i].vsType;
+			}
+			byVsType = sparseTable(all, codes);
+		}
         private TSK_VS_TYPE_ENUM(long type, String name){
             this.vsType = type;
 			this.name = name;
         }
 		
 		public static TSK_VS_TYPE_ENUM valueOf(long vsType) {
-			for (TSK_VS_TYPE_ENUM type : TSK_VS_TYPE_ENUM.values()) {
-				if (type.getVsType() == vsType) {
-					return type;
-				}
+			TSK_VS_TYPE_ENUM type = byVsType.get(vsType);
+			if (type != null) {
+				return type;
 			}
 			throw new IllegalArgumentException(
                     MessageFormat.format(bundle.getString("TskData.tskVSTypeEnum.exception.msg1.text"), vsType));
@@ -568,6 +708,16 @@ public enum ObjectType {
 		
 		private short objectType;
 		
+		private static final ObjectType[] byObjectType;
+
+		static {
+			ObjectType[] all = values();
+			int[] codes = new int[all.length];
+			for (int i = 0; i < all.length; ++i) {
+				codes[i] = all[i].objectType;
+			}
+			byObjectType = denseTable(all, codes);
+		}
 		private ObjectType(int objectType) {
 			this.objectType = (short)objectType;
 		}
@@ -587,10 +737,8 @@ public short getObjectType(){
 		 * @return the enum type
 		 */
 		public static ObjectType valueOf(short objectType) {
-			for (ObjectType v : ObjectType.values()) {
-				if (v.objectType == objectType) {
-					return v;
-				}
+			if (objectType >= 0 && objectType < byObjectType.length && byObjectType[objectType] != null) {
+				return byObjectType[objectType];
 			}
 			throw new IllegalArgumentException(
                     MessageFormat.format(bundle.getString("TskData.objectTypeEnum.exception.msg1.text"), objectType));
@@ -613,6 +761,16 @@ public enum TSK_DB_FILES_TYPE_ENUM {
 		
 		private final short fileType;
 		private final String name;
+		private static final TSK_DB_FILES_TYPE_ENUM[] byFileType;
+
+		static {
+			TSK_DB_FILES_TYPE_ENUM[] all = values();
+			int[] codes = new int[all.length];
+			for (int i = 0; i < all.length; ++i) {
+				codes[i] = all[i].fileType;
+			}
+			byFileType = denseTable(all, codes);
+		}
 		
 		private TSK_DB_FILES_TYPE_ENUM(int fileType, String name) {
 			this.fileType = (short)fileType;
@@ -626,10 +784,8 @@ private TSK_DB_FILES_TYPE_ENUM(int fileType, String name) {
 		 * @return the enum type
 		 */
 		public static TSK_DB_FILES_TYPE_ENUM valueOf(short fileType) {
-			for(TSK_DB_FILES_TYPE_ENUM type : TSK_DB_FILES_TYPE_ENUM.values()) {
-				if(type.fileType == fileType) {
-					return type;
-				}
+			if (fileType >= 0 && fileType < byFileType.length && byFileType[fileType] != null) {
+				return byFileType[fileType];
 			}
 			throw new IllegalArgumentException(
                     MessageFormat.format(bundle.getString("TskData.tskDbFilesTypeEnum.exception.msg1.text"), fileType));
@@ -660,6 +816,16 @@ public enum FileKnown {
 		
 		private byte known;
 		private String name;
+		private static final FileKnown[] byKnown;
+
+		static {
+			FileKnown[] all = values();
+			int[] codes = new int[all.length];
+			for (int i = 0; i < all.length; ++i) {
+				codes[i] = all[i].known;
+			}
+			byKnown = denseTable(all, codes);
+		}
 		
 		private FileKnown(int known, String name) {
 			this.known = (byte)known;
@@ -673,10 +839,8 @@ private FileKnown(int known, String name) {
 		 * @return the enum type
 		 */
 		public static FileKnown valueOf(byte known) {
-			for (FileKnown v : FileKnown.values()) {
-				if (v.known == known) {
-					return v;
-				}
+			if (known >= 0 && known < byKnown.length && byKnown[known] != null) {
+				return byKnown[known];
 			}
 			throw new IllegalArgumentException(
                     MessageFormat.format(bundle.getString("TskData.fileKnown.exception.msg1.text"), known));
@@ -0,0 +1,160 @@
+/*
+ * Sleuth Kit Data Model
+ * 
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests AhoCorasickMatcher against a naive search, including scans that are
+ * split across buffers.
+ */
+public class AhoCorasickMatcherTest {
+
+	/**
+	 * Scan data in buffers that end at the given offsets.
+	 *
+	 * @return the matches as "pattern@end", sorted
+	 */
+	private static List<String> scan(AhoCorasickMatcher matcher, byte[] data, int... splits) {
+		final List<String> matches = new ArrayList<String>();
+		AhoCorasickMatcher.MatchHandler handler = new AhoCorasickMatcher.MatchHandler() {
+			@Override
+			public void match(int pattern, long end) {
+				matches.add(pattern + "@" + end);
+			}
+		};
+		int state = 0;
+		int from = 0;
+		for (int split : splits) {
+			state = matcher.scan(state, data, from, split - from, from, handler);
+			from = split;
+		}
+		matcher.scan(state, data, from, data.length - from, from, handler);
+		return sorted(matches);
+	}
+
+	private static List<String> naiveScan(List<byte[]> patterns, byte[] data) {
+		List<String> matches = new ArrayList<String>();
+		for (int p = 0; p < patterns.size(); ++p) {
+			byte[] pattern = patterns.get(p);
+			for (int start = 0; start + pattern.length <= data.length; ++start) {
+				int i = 0;
+				while (i < pattern.length && fold(data[start + i]) == fold(pattern[i])) {
+					++i;
+				}
+				if (i == pattern.length) {
+					matches.add(p + "@" + (start + pattern.length));
+				}
+			}
+		}
+		return sorted(matches);
+	}
+
+	private static byte fold(byte b) {
+		return (b >= 'A' && b <= 'Z') ? (byte) (b + ('a' - 'A')) : b;
+	}
+
+	private static List<String> sorted(List<String> matches) {
+		String[] array = matches.toArray(new String[matches.size()]);
+		Arrays.sort(array);
+		return Arrays.asList(array);
+	}
+
+	private static List<byte[]> patterns(String... terms) {
+		List<byte[]> patterns = new ArrayList<byte[]>();
+		for (String term : terms) {
+			patterns.add(term.getBytes());
+		}
+		return patterns;
+	}
+
+	@Test
+	public void testOverlappingPatterns() {
+		AhoCorasickMatcher matcher = new AhoCorasickMatcher(patterns("he", "she", "his", "hers")); //NON-NLS
+		assertEquals(Arrays.asList("0@4", "1@4", "3@6"), scan(matcher, "ushers".getBytes())); //NON-NLS
+	}
+
+	@Test
+	public void testCaseInsensitive() {
+		AhoCorasickMatcher matcher = new AhoCorasickMatcher(patterns("Secret", "KEY")); //NON-NLS
+		assertEquals(Arrays.asList("0@6", "1@12", "1@16"), scan(matcher, "sEcReT a key Key".getBytes())); //NON-NLS
+	}
+
+	@Test
+	public void testSamePatternTwice() {
+		AhoCorasickMatcher matcher = new AhoCorasickMatcher(patterns("abc", "abc")); //NON-NLS
+		assertEquals(Arrays.asList("0@5", "1@5"), scan(matcher, "xxabc".getBytes())); //NON-NLS
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEmptyPattern() {
+		new AhoCorasickMatcher(patterns("a", "")); //NON-NLS
+	}
+
+	/**
+	 * Matches that span the buffers of consecutive scans are found once, at
+	 * the offsets of the whole data.
+	 */
+	@Test
+	public void testMatchesAcrossBuffers() {
+		List<byte[]> patterns = patterns("boundary", "dary", "ry b", "y"); //NON-NLS
+		AhoCorasickMatcher matcher = new AhoCorasickMatcher(patterns);
+		byte[] data = "a boundary boundary".getBytes(); //NON-NLS
+		List<String> expected = naiveScan(patterns, data);
+		for (int split = 0; split <= data.length; ++split) {
+			assertEquals("split at " + split, expected, scan(matcher, data, split)); //NON-NLS
+		}
+		for (int split = 1; split < data.length; ++split) {
+			assertEquals("split at " + split + " and " + (split + 1), expected, scan(matcher, data, split, split + 1)); //NON-NLS
+		}
+	}
+
+	@Test
+	public void testRandomData() {
+		Random random = new Random(42);
+		for (int round = 0; round < 200; ++round) {
+			List<byte[]> patterns = new ArrayList<byte[]>();
+			for (int p = 0; p < 1 + random.nextInt(10); ++p) {
+				patterns.add(randomBytes(random, 1 + random.nextInt(5)));
+			}
+			byte[] data = randomBytes(random, random.nextInt(500));
+			int split1 = random.nextInt(data.length + 1);
+			int split2 = split1 + random.nextInt(data.length - split1 + 1);
+			assertEquals(naiveScan(patterns, data), scan(new AhoCorasickMatcher(patterns), data, split1, split2));
+		}
+	}
+
+	/**
+	 * Bytes from a small alphabet, including both cases and bytes with the
+	 * top bit set, so that matches and partial matches are common.
+	 */
+	private static byte[] randomBytes(Random random, int length) {
+		final byte[] alphabet = {'a', 'b', 'A', 'B', 0, (byte) 0xe9};
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; ++i) {
+			bytes[i] = alphabet[random.nextInt(alphabet.length)];
+		}
+		return bytes;
+	}
+}
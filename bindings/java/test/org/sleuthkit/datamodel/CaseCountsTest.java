@@ -0,0 +1,193 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2014 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.AfterClass;
+import static org.junit.Assert.*;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
+import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
+
+/**
+ * Tests that the artifact and tag counts SleuthkitCase keeps in memory match
+ * the tables after artifacts and tags are written, on a case made by
+ * CaseGenerator that already has some of each.
+ */
+public class CaseCountsTest {
+
+	private static final String MODULE_NAME = "CaseCountsTest"; //NON-NLS
+	private static File folder;
+	private static CaseGenerator generator;
+	private static CaseGenerator.Result result;
+	private static SleuthkitCase skCase;
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		folder = File.createTempFile("tskcounts", ""); //NON-NLS
+		if (!folder.delete() || !folder.mkdir()) {
+			throw new IOException("Could not create directory " + folder); //NON-NLS
+		}
+		generator = new CaseGenerator(new CaseGenerator.Config()
+				.setFileCount(2000)
+				.setArtifacts(1.0)
+				.setTags(3, 0.05, 0.05)
+				.setImageSize(1024 * 1024)
+				.setLayout(4, 2, 4096)
+				.setThreads(2));
+		result = generator.generate(folder);
+		skCase = SleuthkitCase.openCase(result.getDbPath());
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		if (skCase != null) {
+			skCase.close();
+		}
+		File[] files = folder.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		folder.delete();
+	}
+
+	/**
+	 * Read the counts of some files and types so they are cached, add
+	 * artifacts one at a time and in a batch, and compare all the cached
+	 * counts with the table.
+	 */
+	@Test
+	public void testArtifactCounts() throws TskCoreException {
+		List<Long> objIds = new ArrayList<Long>();
+		for (int i = 0; i < 20; ++i) {
+			objIds.add(generator.getFileId(i * 97));
+		}
+		for (long objId : objIds) {
+			skCase.getBlackboardArtifactsCount(objId);
+		}
+		long keywordHits = skCase.getBlackboardArtifactsTypeCount(ARTIFACT_TYPE.TSK_KEYWORD_HIT.getTypeID());
+
+		for (int i = 0; i < 10; ++i) {
+			BlackboardArtifact artifact = skCase.newBlackboardArtifact(ARTIFACT_TYPE.TSK_KEYWORD_HIT, objIds.get(i));
+			artifact.addAttribute(keyword(i));
+		}
+		List<List<BlackboardAttribute>> attributes = new ArrayList<List<BlackboardAttribute>>();
+		for (int i = 0; i < objIds.size(); ++i) {
+			attributes.add(Collections.singletonList(keyword(i)));
+		}
+		skCase.newBlackboardArtifacts(ARTIFACT_TYPE.TSK_KEYWORD_HIT, objIds, attributes);
+		skCase.newBlackboardArtifact(ARTIFACT_TYPE.TSK_WEB_BOOKMARK, objIds.get(0));
+
+		assertEquals(keywordHits + 10 + objIds.size(), skCase.getBlackboardArtifactsTypeCount(ARTIFACT_TYPE.TSK_KEYWORD_HIT.getTypeID()));
+		assertEquals(Collections.<String>emptyList(), skCase.checkArtifactCounts());
+	}
+
+	/**
+	 * Read the tag counts so they are cached, add and delete content and
+	 * artifact tags one at a time and in batches, and compare the counts of
+	 * each tag name with COUNT(*) of the tag tables.
+	 */
+	@Test
+	public void testTagCounts() throws TskCoreException, SQLException {
+		List<TagName> tagNames = skCase.getAllTagNames();
+		assertFalse(tagNames.isEmpty());
+		for (TagName tagName : tagNames) {
+			skCase.getContentTagsCountByTagName(tagName);
+			skCase.getBlackboardArtifactTagsCountByTagName(tagName);
+		}
+		TagName tagName = tagNames.get(0);
+		TagName newTagName = skCase.addTagName("Count Test", "", TagName.HTML_COLOR.NONE); //NON-NLS
+
+		List<AbstractFile> files = new ArrayList<AbstractFile>();
+		for (int i = 0; i < 10; ++i) {
+			files.add(skCase.getAbstractFileById(generator.getFileId(1000 + i)));
+		}
+		ContentTag contentTag = skCase.addContentTag(files.get(0), tagName, "", 0, 0);
+		skCase.addContentTag(files.get(1), newTagName, "", 0, 0);
+		List<ContentTag> contentTags = skCase.addContentTags(files, newTagName, "");
+		skCase.deleteContentTag(contentTag);
+		skCase.deleteContentTags(contentTags.subList(0, 3));
+
+		List<Long> objIds = new ArrayList<Long>();
+		List<List<BlackboardAttribute>> attributes = new ArrayList<List<BlackboardAttribute>>();
+		for (AbstractFile file : files) {
+			objIds.add(file.getId());
+			attributes.add(Collections.singletonList(keyword(objIds.size())));
+		}
+		List<BlackboardArtifact> artifacts = skCase.newBlackboardArtifacts(ARTIFACT_TYPE.TSK_KEYWORD_HIT, objIds, attributes);
+		BlackboardArtifactTag artifactTag = skCase.addBlackboardArtifactTag(artifacts.get(0), tagName, "");
+		skCase.addBlackboardArtifactTag(artifacts.get(1), tagName, "");
+		List<BlackboardArtifactTag> artifactTags = skCase.addBlackboardArtifactTags(artifacts, newTagName, "");
+		skCase.deleteBlackboardArtifactTag(artifactTag);
+		skCase.deleteBlackboardArtifactTags(artifactTags.subList(5, 10));
+
+		long addedContentTags = 2 + files.size() - 1 - 3;
+		long addedArtifactTags = 2 + artifacts.size() - 1 - 5;
+		assertEquals(result.getTagCount() + addedContentTags + addedArtifactTags,
+				countRows("content_tags", null) + countRows("blackboard_artifact_tags", null)); //NON-NLS
+		for (TagName name : skCase.getAllTagNames()) {
+			assertEquals(name.getDisplayName(), countRows("content_tags", name), skCase.getContentTagsCountByTagName(name)); //NON-NLS
+			assertEquals(name.getDisplayName(), countRows("blackboard_artifact_tags", name), skCase.getBlackboardArtifactTagsCountByTagName(name)); //NON-NLS
+		}
+	}
+
+	private static BlackboardAttribute keyword(int i) {
+		return new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_KEYWORD.getTypeID(), MODULE_NAME, "keyword" + i); //NON-NLS
+	}
+
+	/**
+	 * @return COUNT(*) of a tag table, for one tag name or, if it is null,
+	 * for all of them, read with a connection of its own
+	 */
+	private static long countRows(String table, TagName tagName) throws SQLException {
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + result.getDbPath()); //NON-NLS
+		try {
+			String query = "SELECT COUNT(*) FROM " + table; //NON-NLS
+			if (tagName != null) {
+				query += " WHERE tag_name_id = ?"; //NON-NLS
+			}
+			PreparedStatement statement = connection.prepareStatement(query);
+			if (tagName != null) {
+				statement.setLong(1, tagName.getId());
+			}
+			ResultSet rs = statement.executeQuery();
+			try {
+				rs.next();
+				return rs.getLong(1);
+			} finally {
+				rs.close();
+				statement.close();
+			}
+		} finally {
+			connection.close();
+		}
+	}
+}
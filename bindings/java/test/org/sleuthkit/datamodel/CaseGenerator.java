@@ -0,0 +1,1139 @@
+/*
+ * Sleuth Kit Data Model
+ * 
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
+import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
+import org.sleuthkit.datamodel.BlackboardAttribute.TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE;
+import org.sleuthkit.datamodel.TskData.FileKnown;
+import org.sleuthkit.datamodel.TskData.ObjectType;
+import org.sleuthkit.datamodel.TskData.TSK_DB_FILES_TYPE_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_META_FLAG_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_META_TYPE_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_NAME_FLAG_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_NAME_TYPE_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_TYPE_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_IMG_TYPE_ENUM;
+
+/**
+ * Writes large synthetic cases for load and scale testing, without evidence
+ * images. Not part of the test suite; run it by hand:
+ *
+ * java org.sleuthkit.datamodel.CaseGenerator folder [option=value ...]
+ *
+ * The options are listed in usage(), for example files=10000000
+ * artifactsPerFile=5 threads=8.
+ *
+ * The case database is created by SleuthkitCase.newCase(), so it has the
+ * schema of the native code, and the rows are then written with JDBC. The
+ * case has one raw image of pseudo random bytes holding one file system. The
+ * file system has a tree of directories with the files, or directories of
+ * given sizes in its root, and the image also has unallocated space layout
+ * files whose ranges are spread over it and can be read; their MD5 hashes are
+ * set from the image. The file system files have no content, since the image
+ * holds no real file system.
+ *
+ * The files are generated in chunks by a pool of threads, while another
+ * thread writes the image. SQLite has one writer, so the rows of each chunk
+ * are written in order with batched prepared statements, one transaction per
+ * chunk. Each chunk has its own random number generator seeded from the seed
+ * and the chunk number, so the same configuration always gives the same case
+ * whatever the number of threads. The tables that SleuthkitCase keeps with
+ * triggers on tsk_files are dropped before the files are written and are
+ * rebuilt in one pass by SleuthkitCase.createFileIndexes() at the end.
+ */
+public class CaseGenerator {
+
+	/**
+	 * Number of files generated by one task.
+	 */
+	static final int CHUNK_SIZE = 10000;
+	/**
+	 * Number of distinct hashes, and sizes, shared by duplicate files.
+	 */
+	static final int DUPLICATE_POOL_SIZE = 1000;
+	/**
+	 * Number of distinct values of string attributes.
+	 */
+	static final int STRING_VALUE_POOL_SIZE = 10000;
+	private static final String MODULE_NAME = "CaseGenerator"; //NON-NLS
+	private static final long START_TIME = 1262304000L; //2010-01-01
+	private static final long TIME_RANGE = 4L * 365 * 24 * 60 * 60;
+	private static final char[] NAME_CHARS = "abcdefghijklmnopqrstuvwxyz0123456789_-".toCharArray(); //NON-NLS
+	private static final char[] HEX = "0123456789abcdef".toCharArray(); //NON-NLS
+
+	/**
+	 * What to generate. The defaults give a small case of 100000 files.
+	 */
+	public static final class Config {
+
+		private long fileCount = 100000;
+		private int filesPerDirectory = 100;
+		private int directoryFanout = 10;
+		private int[] directorySizes = null;
+		private int minNameLength = 4;
+		private int maxNameLength = 16;
+		private int namePoolSize = 0;
+		//repeat an extension to make it more likely
+		private String[] extensions = {"txt", "txt", "jpg", "jpg", "jpg", "png", "html", "htm", "doc", "pdf", "exe", "dll", "dll", "dat", ""}; //NON-NLS
+		private long minFileSize = 0;
+		private long maxFileSize = 16L * 1024 * 1024;
+		private double hashedFraction = 0.5;
+		private double duplicateFraction = 0.1;
+		private double artifactsPerFile = 1.0;
+		private ARTIFACT_TYPE[] artifactTypes = {ARTIFACT_TYPE.TSK_KEYWORD_HIT, ARTIFACT_TYPE.TSK_KEYWORD_HIT,
+			ARTIFACT_TYPE.TSK_HASHSET_HIT, ARTIFACT_TYPE.TSK_INTERESTING_FILE_HIT, ARTIFACT_TYPE.TSK_WEB_BOOKMARK};
+		private int attributesPerArtifact = 3;
+		private ATTRIBUTE_TYPE[] attributeTypes = {ATTRIBUTE_TYPE.TSK_KEYWORD, ATTRIBUTE_TYPE.TSK_SET_NAME,
+			ATTRIBUTE_TYPE.TSK_URL, ATTRIBUTE_TYPE.TSK_DATETIME, ATTRIBUTE_TYPE.TSK_COUNT, ATTRIBUTE_TYPE.TSK_GEO_LATITUDE,
+			ATTRIBUTE_TYPE.TSK_VALUE};
+		private TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE[] attributeValueTypes = {TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.STRING,
+			TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.STRING, TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.STRING,
+			TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.LONG, TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.INTEGER,
+			TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.DOUBLE, TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.BYTE};
+		private int tagNameCount = 5;
+		private double taggedFileFraction = 0.01;
+		private double taggedArtifactFraction = 0.01;
+		private long imageSize = 256L * 1024 * 1024;
+		private int layoutFileCount = 64;
+		private int rangesPerLayoutFile = 8;
+		private int rangeSize = 64 * 1024;
+		private int threads = Runtime.getRuntime().availableProcessors();
+		private long seed = 0;
+
+		/**
+		 * @param fileCount number of file system files, not counting the
+		 * directories
+		 */
+		public Config setFileCount(long fileCount) {
+			this.fileCount = fileCount;
+			return this;
+		}
+
+		/**
+		 * @param filesPerDirectory number of files in each directory but the
+		 * root, which has none
+		 */
+		public Config setFilesPerDirectory(int filesPerDirectory) {
+			this.filesPerDirectory = filesPerDirectory;
+			return this;
+		}
+
+		/**
+		 * @param directoryFanout number of subdirectories of each directory,
+		 * until there are enough directories for the files
+		 */
+		public Config setDirectoryFanout(int directoryFanout) {
+			this.directoryFanout = directoryFanout;
+			return this;
+		}
+
+		/**
+		 * @param sizes number of files in each directory, all of them in the
+		 * root, instead of a tree of directories of filesPerDirectory files;
+		 * this also sets the file count to the sum of the sizes
+		 */
+		public Config setDirectorySizes(int... sizes) {
+			this.directorySizes = sizes.clone();
+			this.fileCount = 0;
+			for (int size : sizes) {
+				this.fileCount += size;
+			}
+			return this;
+		}
+
+		/**
+		 * @param minNameLength shortest file name, without the extension
+		 * @param maxNameLength longest file name, without the extension
+		 */
+		public Config setNameLengths(int minNameLength, int maxNameLength) {
+			this.minNameLength = minNameLength;
+			this.maxNameLength = maxNameLength;
+			return this;
+		}
+
+		/**
+		 * @param namePoolSize 0 for random names, or the number of distinct
+		 * names to draw from, the first ones more often than the last, so
+		 * that common names repeat across directories
+		 */
+		public Config setNamePoolSize(int namePoolSize) {
+			this.namePoolSize = namePoolSize;
+			return this;
+		}
+
+		/**
+		 * @param extensions the extensions to draw from, without the dot; an
+		 * extension given more than once is drawn more often, and "" gives
+		 * names without one
+		 */
+		public Config setExtensions(String... extensions) {
+			this.extensions = extensions.clone();
+			return this;
+		}
+
+		/**
+		 * @param minFileSize smallest file size, in bytes
+		 * @param maxFileSize largest file size; sizes are spread evenly on a
+		 * log scale between the two
+		 */
+		public Config setFileSizes(long minFileSize, long maxFileSize) {
+			this.minFileSize = minFileSize;
+			this.maxFileSize = maxFileSize;
+			return this;
+		}
+
+		/**
+		 * @param hashedFraction fraction of the files with an MD5 hash
+		 * @param duplicateFraction fraction of the hashed files that share
+		 * their hash, and size, with other files
+		 */
+		public Config setHashes(double hashedFraction, double duplicateFraction) {
+			this.hashedFraction = hashedFraction;
+			this.duplicateFraction = duplicateFraction;
+			return this;
+		}
+
+		/**
+		 * @param artifactsPerFile average number of artifacts per file
+		 * @param types the artifact types to draw from; a type given more
+		 * than once is drawn more often
+		 */
+		public Config setArtifacts(double artifactsPerFile, ARTIFACT_TYPE... types) {
+			this.artifactsPerFile = artifactsPerFile;
+			if (types.length > 0) {
+				this.artifactTypes = types.clone();
+			}
+			return this;
+		}
+
+		/**
+		 * @param attributesPerArtifact number of attributes of each artifact
+		 * @param types the attribute types to draw from
+		 * @param valueTypes the value type of each of types
+		 */
+		public Config setAttributes(int attributesPerArtifact, ATTRIBUTE_TYPE[] types, TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE[] valueTypes) {
+			if (types.length != valueTypes.length) {
+				throw new IllegalArgumentException("Need one value type per attribute type"); //NON-NLS
+			}
+			this.attributesPerArtifact = attributesPerArtifact;
+			this.attributeTypes = types.clone();
+			this.attributeValueTypes = valueTypes.clone();
+			return this;
+		}
+
+		/**
+		 * @param attributesPerArtifact number of attributes of each artifact,
+		 * of the configured types
+		 */
+		public Config setAttributesPerArtifact(int attributesPerArtifact) {
+			this.attributesPerArtifact = attributesPerArtifact;
+			return this;
+		}
+
+		/**
+		 * @param tagNameCount number of tag names
+		 * @param taggedFileFraction fraction of the files with a tag
+		 * @param taggedArtifactFraction fraction of the artifacts with a tag
+		 */
+		public Config setTags(int tagNameCount, double taggedFileFraction, double taggedArtifactFraction) {
+			this.tagNameCount = tagNameCount;
+			this.taggedFileFraction = taggedFileFraction;
+			this.taggedArtifactFraction = taggedArtifactFraction;
+			return this;
+		}
+
+		/**
+		 * @param imageSize size of the raw image, in bytes
+		 */
+		public Config setImageSize(long imageSize) {
+			this.imageSize = imageSize;
+			return this;
+		}
+
+		/**
+		 * @param layoutFileCount number of unallocated space files
+		 * @param rangesPerLayoutFile number of ranges of each of them
+		 * @param rangeSize size of each range, in bytes; all of the ranges
+		 * must fit in the image
+		 */
+		public Config setLayout(int layoutFileCount, int rangesPerLayoutFile, int rangeSize) {
+			this.layoutFileCount = layoutFileCount;
+			this.rangesPerLayoutFile = rangesPerLayoutFile;
+			this.rangeSize = rangeSize;
+			return this;
+		}
+
+		/**
+		 * @param threads number of threads generating files
+		 */
+		public Config setThreads(int threads) {
+			this.threads = threads;
+			return this;
+		}
+
+		public Config setSeed(long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		private void validate() {
+			if (fileCount < 0 || filesPerDirectory < 1 || directoryFanout < 1 || threads < 1
+					|| minNameLength < 1 || maxNameLength < minNameLength || extensions.length == 0
+					|| minFileSize < 0 || maxFileSize < minFileSize || artifactsPerFile < 0
+					|| (artifactsPerFile > 0 && artifactTypes.length == 0)
+					|| attributesPerArtifact < 0 || (attributesPerArtifact > 0 && attributeTypes.length == 0)
+					|| tagNameCount < 0 || layoutFileCount < 0 || rangesPerLayoutFile < 1 || rangeSize < 1) {
+				throw new IllegalArgumentException("Invalid case generator configuration"); //NON-NLS
+			}
+			if (directorySizes != null) {
+				long sum = 0;
+				for (int size : directorySizes) {
+					if (size < 0) {
+						throw new IllegalArgumentException("Invalid directory size " + size); //NON-NLS
+					}
+					sum += size;
+				}
+				if (sum != fileCount) {
+					throw new IllegalArgumentException("The file count is not the sum of the directory sizes"); //NON-NLS
+				}
+			}
+			if ((long) layoutFileCount * rangesPerLayoutFile * rangeSize > imageSize) {
+				throw new IllegalArgumentException("The layout file ranges do not fit in the image"); //NON-NLS
+			}
+		}
+	}
+
+	/**
+	 * What was generated.
+	 */
+	public static final class Result {
+
+		private String dbPath;
+		private String imagePath;
+		private long fileCount;
+		private long directoryCount;
+		private long artifactCount;
+		private long attributeCount;
+		private long tagCount;
+		private long generateMillis;
+		private long openMillis;
+
+		public String getDbPath() {
+			return dbPath;
+		}
+
+		public String getImagePath() {
+			return imagePath;
+		}
+
+		/**
+		 * @return number of file system files, layout files and directories
+		 */
+		public long getFileCount() {
+			return fileCount;
+		}
+
+		public long getDirectoryCount() {
+			return directoryCount;
+		}
+
+		public long getArtifactCount() {
+			return artifactCount;
+		}
+
+		public long getAttributeCount() {
+			return attributeCount;
+		}
+
+		/**
+		 * @return number of content and artifact tags
+		 */
+		public long getTagCount() {
+			return tagCount;
+		}
+
+		/**
+		 * @return time taken to write the image and rows
+		 */
+		public long getGenerateMillis() {
+			return generateMillis;
+		}
+
+		/**
+		 * @return time taken by the first SleuthkitCase.openCase()
+		 */
+		public long getOpenMillis() {
+			return openMillis;
+		}
+
+		@Override
+		public String toString() {
+			return "files: " + fileCount + ", directories: " + directoryCount //NON-NLS
+					+ ", artifacts: " + artifactCount + ", attributes: " + attributeCount + ", tags: " + tagCount //NON-NLS
+					+ ", generated in " + generateMillis + " ms, first opened in " + openMillis + " ms"; //NON-NLS
+		}
+	}
+
+	/**
+	 * The rows of one chunk of files.
+	 */
+	private static final class Chunk {
+
+		final List<FileRow> files = new ArrayList<FileRow>(CHUNK_SIZE);
+		final List<ArtifactRow> artifacts = new ArrayList<ArtifactRow>();
+	}
+
+	private static final class FileRow {
+
+		long objId;
+		long parentId;
+		String name;
+		String parentPath;
+		long size;
+		long crtime;
+		long mtime;
+		long atime;
+		String md5;
+		int tagNameIndex = -1;
+	}
+
+	private static final class ArtifactRow {
+
+		long objId;
+		ARTIFACT_TYPE type;
+		final List<BlackboardAttribute> attributes = new ArrayList<BlackboardAttribute>();
+		int tagNameIndex = -1;
+	}
+	private final Config config;
+	private final String[] namePool;
+	private final String[] duplicateHashes = new String[DUPLICATE_POOL_SIZE];
+	private final long[] duplicateSizes = new long[DUPLICATE_POOL_SIZE];
+	//tree of directories, in breadth first order; 0 is the root
+	private final int directoryCount;
+	private final String[] directoryPaths;
+	//index of the first file after each directory
+	private final long[] directoryEnds;
+	private final long firstDirectoryId;
+	private final long firstFileId;
+	private long nextArtifactId = Long.MIN_VALUE; //like SleuthkitCase
+	private final Result result = new Result();
+
+	public CaseGenerator(Config config) {
+		config.validate();
+		this.config = config;
+		Random random = new Random(config.seed);
+		namePool = new String[config.namePoolSize];
+		for (int i = 0; i < namePool.length; ++i) {
+			namePool[i] = randomName(random);
+		}
+		for (int i = 0; i < DUPLICATE_POOL_SIZE; ++i) {
+			duplicateHashes[i] = randomHash(random);
+			duplicateSizes[i] = randomSize(random);
+		}
+		if (config.directorySizes != null) {
+			directoryCount = config.directorySizes.length;
+		} else {
+			directoryCount = (int) ((config.fileCount + config.filesPerDirectory - 1) / config.filesPerDirectory);
+		}
+		directoryPaths = new String[directoryCount + 1];
+		directoryEnds = new long[directoryCount + 1];
+		directoryPaths[0] = "/"; //NON-NLS
+		for (int d = 1; d <= directoryCount; ++d) {
+			directoryPaths[d] = directoryPaths[getParentDirectory(d)] + getDirectoryName(d) + "/"; //NON-NLS
+			if (config.directorySizes != null) {
+				directoryEnds[d] = directoryEnds[d - 1] + config.directorySizes[d - 1];
+			} else {
+				directoryEnds[d] = Math.min(config.fileCount, (long) d * config.filesPerDirectory);
+			}
+		}
+		//object ids: the image, the file system, the directories, the files
+		//and the layout files
+		firstDirectoryId = 3;
+		firstFileId = firstDirectoryId + directoryCount + 1;
+	}
+
+	/**
+	 * @param directory 0 for the root, or 1 to the number of directories
+	 * @return object id of the directory
+	 */
+	public long getDirectoryId(int directory) {
+		return firstDirectoryId + directory;
+	}
+
+	/**
+	 * @param directory 0 for the root, or 1 to the number of directories
+	 * @return parent path of the files in the directory
+	 */
+	public String getDirectoryPath(int directory) {
+		return directoryPaths[directory];
+	}
+
+	/**
+	 * @param file 0 to the file count
+	 * @return object id of the file system file
+	 */
+	public long getFileId(long file) {
+		return firstFileId + file;
+	}
+
+	/**
+	 * @param layoutFile 0 to the number of layout files
+	 * @return object id of the unallocated space file
+	 */
+	public long getLayoutFileId(int layoutFile) {
+		return firstFileId + config.fileCount + layoutFile;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			usage();
+			return;
+		}
+		Config config = new Config();
+		for (int i = 1; i < args.length; ++i) {
+			int equals = args[i].indexOf('=');
+			if (equals < 0 || !setOption(config, args[i].substring(0, equals), args[i].substring(equals + 1))) {
+				usage();
+				return;
+			}
+		}
+		System.out.println(new CaseGenerator(config).generate(new File(args[0])));
+	}
+
+	private static void usage() {
+		System.out.println("Usage: CaseGenerator <folder> [option=value ...]"); //NON-NLS
+		System.out.println("Options: files, filesPerDirectory, fanout, namePool, artifactsPerFile, attributesPerArtifact,"); //NON-NLS
+		System.out.println("hashed, duplicates, tagNames, taggedFiles, taggedArtifacts, imageSize, layoutFiles,"); //NON-NLS
+		System.out.println("rangesPerLayoutFile, rangeSize, threads, seed"); //NON-NLS
+	}
+
+	private static boolean setOption(Config config, String name, String value) {
+		if (name.equals("files")) { //NON-NLS
+			config.setFileCount(Long.parseLong(value));
+		} else if (name.equals("filesPerDirectory")) { //NON-NLS
+			config.setFilesPerDirectory(Integer.parseInt(value));
+		} else if (name.equals("fanout")) { //NON-NLS
+			config.setDirectoryFanout(Integer.parseInt(value));
+		} else if (name.equals("namePool")) { //NON-NLS
+			config.setNamePoolSize(Integer.parseInt(value));
+		} else if (name.equals("artifactsPerFile")) { //NON-NLS
+			config.artifactsPerFile = Double.parseDouble(value);
+		} else if (name.equals("attributesPerArtifact")) { //NON-NLS
+			config.setAttributesPerArtifact(Integer.parseInt(value));
+		} else if (name.equals("hashed")) { //NON-NLS
+			config.hashedFraction = Double.parseDouble(value);
+		} else if (name.equals("duplicates")) { //NON-NLS
+			config.duplicateFraction = Double.parseDouble(value);
+		} else if (name.equals("tagNames")) { //NON-NLS
+			config.tagNameCount = Integer.parseInt(value);
+		} else if (name.equals("taggedFiles")) { //NON-NLS
+			config.taggedFileFraction = Double.parseDouble(value);
+		} else if (name.equals("taggedArtifacts")) { //NON-NLS
+			config.taggedArtifactFraction = Double.parseDouble(value);
+		} else if (name.equals("imageSize")) { //NON-NLS
+			config.setImageSize(Long.parseLong(value));
+		} else if (name.equals("layoutFiles")) { //NON-NLS
+			config.layoutFileCount = Integer.parseInt(value);
+		} else if (name.equals("rangesPerLayoutFile")) { //NON-NLS
+			config.rangesPerLayoutFile = Integer.parseInt(value);
+		} else if (name.equals("rangeSize")) { //NON-NLS
+			config.rangeSize = Integer.parseInt(value);
+		} else if (name.equals("threads")) { //NON-NLS
+			config.setThreads(Integer.parseInt(value));
+		} else if (name.equals("seed")) { //NON-NLS
+			config.setSeed(Long.parseLong(value));
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Generate the case, then open it once with SleuthkitCase so the tables
+	 * it keeps are built.
+	 *
+	 * @param folder folder for the case database and image, created if
+	 * needed; they must not exist yet
+	 * @return what was generated
+	 */
+	public Result generate(File folder) throws IOException, SQLException, TskCoreException, InterruptedException {
+		if (!folder.isDirectory() && !folder.mkdirs()) {
+			throw new IOException("Could not create folder " + folder); //NON-NLS
+		}
+		result.dbPath = new File(folder, "case.db").getPath(); //NON-NLS
+		result.imagePath = new File(folder, "image.raw").getPath(); //NON-NLS
+		if (new File(result.dbPath).exists() || new File(result.imagePath).exists()) {
+			throw new IOException("There already is a case in " + folder); //NON-NLS
+		}
+		long start = System.currentTimeMillis();
+		SleuthkitCase.newCase(result.dbPath).close();
+
+		final String[] layoutHashes = new String[config.layoutFileCount];
+		final IOException[] imageError = new IOException[1];
+		Thread imageWriter = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					writeImage(layoutHashes);
+				} catch (IOException ex) {
+					imageError[0] = ex;
+				}
+			}
+		}, "CaseGenerator-image"); //NON-NLS
+		imageWriter.start();
+
+		try {
+			Class.forName("org.sqlite.JDBC"); //NON-NLS
+		} catch (ClassNotFoundException ex) {
+			throw new SQLException("SQLite JDBC driver not found", ex); //NON-NLS
+		}
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + result.dbPath); //NON-NLS
+		try {
+			Statement statement = connection.createStatement();
+			statement.execute("PRAGMA synchronous = OFF"); //NON-NLS
+			statement.execute("PRAGMA journal_mode = MEMORY"); //NON-NLS
+			statement.execute("PRAGMA cache_size = 100000"); //NON-NLS
+			dropTriggerTables(statement);
+			statement.close();
+			connection.setAutoCommit(false);
+			Writer writer = new Writer(connection);
+			writer.writeVolume();
+			connection.commit();
+			writeFiles(writer, connection);
+			writer.writeLayoutFiles();
+			imageWriter.join();
+			if (imageError[0] != null) {
+				throw imageError[0];
+			}
+			writer.setLayoutHashes(layoutHashes);
+			connection.commit();
+			writer.close();
+			statement = connection.createStatement();
+			SleuthkitCase.createFileIndexes(statement);
+			statement.close();
+			connection.commit();
+		} finally {
+			connection.close();
+		}
+		result.generateMillis = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		SleuthkitCase.openCase(result.dbPath).close();
+		result.openMillis = System.currentTimeMillis() - start;
+		return result;
+	}
+
+	/**
+	 * Drop the tables that SleuthkitCase keeps up to date with triggers on
+	 * tsk_files, with their triggers, and the MD5 index, so the files are
+	 * written without them.
+	 */
+	private static void dropTriggerTables(Statement statement) throws SQLException {
+		List<String> triggers = new ArrayList<String>();
+		ResultSet rs = statement.executeQuery("SELECT name FROM sqlite_master WHERE type = 'trigger' AND tbl_name = 'tsk_files'"); //NON-NLS
+		while (rs.next()) {
+			triggers.add(rs.getString(1));
+		}
+		rs.close();
+		for (String trigger : triggers) {
+			statement.execute("DROP TRIGGER " + trigger); //NON-NLS
+		}
+		statement.execute("DROP TABLE IF EXISTS tsk_files_path_index"); //NON-NLS
+		statement.execute("DROP TABLE IF EXISTS tsk_files_summary"); //NON-NLS
+		statement.execute("DROP INDEX IF EXISTS tsk_files_md5"); //NON-NLS
+	}
+
+	/**
+	 * Generate the chunks of files on the pool, and write them in order.
+	 */
+	private void writeFiles(Writer writer, Connection connection) throws SQLException, InterruptedException {
+		final long chunkCount = (config.fileCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		ExecutorService pool = Executors.newFixedThreadPool(config.threads);
+		try {
+			LinkedList<Future<Chunk>> pending = new LinkedList<Future<Chunk>>();
+			long submitted = 0;
+			for (long c = 0; c < chunkCount; ++c) {
+				//keep the pool busy, but only a few chunks in memory
+				while (submitted < chunkCount && pending.size() < 2 * config.threads) {
+					final long chunk = submitted++;
+					pending.add(pool.submit(new Callable<Chunk>() {
+						@Override
+						public Chunk call() {
+							return generateChunk(chunk);
+						}
+					}));
+				}
+				try {
+					writer.writeChunk(pending.removeFirst().get());
+				} catch (ExecutionException ex) {
+					throw new IllegalStateException("Error generating files", ex.getCause()); //NON-NLS
+				}
+				connection.commit();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private Chunk generateChunk(long chunkIndex) {
+		Random random = new Random(config.seed ^ ((chunkIndex + 1) * 0x9E3779B97F4A7C15L));
+		Chunk chunk = new Chunk();
+		long first = chunkIndex * CHUNK_SIZE;
+		long end = Math.min(config.fileCount, first + CHUNK_SIZE);
+		int directory = getDirectory(first);
+		for (long i = first; i < end; ++i) {
+			FileRow file = new FileRow();
+			while (i >= directoryEnds[directory]) {
+				++directory;
+			}
+			file.objId = firstFileId + i;
+			file.parentId = firstDirectoryId + directory;
+			file.parentPath = directoryPaths[directory];
+			String name = (namePool.length > 0) ? namePool[(int) (namePool.length * square(random.nextDouble()))] : randomName(random);
+			String extension = config.extensions[random.nextInt(config.extensions.length)];
+			file.name = extension.isEmpty() ? name : name + "." + extension; //NON-NLS
+			file.size = randomSize(random);
+			if (random.nextDouble() < config.hashedFraction) {
+				if (random.nextDouble() < config.duplicateFraction) {
+					int duplicate = random.nextInt(DUPLICATE_POOL_SIZE);
+					file.md5 = duplicateHashes[duplicate];
+					file.size = duplicateSizes[duplicate];
+				} else {
+					file.md5 = randomHash(random);
+				}
+			}
+			file.crtime = START_TIME + (long) (random.nextDouble() * TIME_RANGE);
+			file.mtime = file.crtime + (long) (random.nextDouble() * (START_TIME + TIME_RANGE - file.crtime));
+			file.atime = file.mtime + (long) (random.nextDouble() * (START_TIME + TIME_RANGE - file.mtime));
+			if (config.tagNameCount > 0 && random.nextDouble() < config.taggedFileFraction) {
+				file.tagNameIndex = random.nextInt(config.tagNameCount);
+			}
+			chunk.files.add(file);
+
+			int artifacts = (int) config.artifactsPerFile;
+			if (random.nextDouble() < config.artifactsPerFile - artifacts) {
+				++artifacts;
+			}
+			for (int a = 0; a < artifacts; ++a) {
+				ArtifactRow artifact = new ArtifactRow();
+				artifact.objId = file.objId;
+				artifact.type = config.artifactTypes[random.nextInt(config.artifactTypes.length)];
+				for (int t = 0; t < config.attributesPerArtifact; ++t) {
+					artifact.attributes.add(randomAttribute(random));
+				}
+				if (config.tagNameCount > 0 && random.nextDouble() < config.taggedArtifactFraction) {
+					artifact.tagNameIndex = random.nextInt(config.tagNameCount);
+				}
+				chunk.artifacts.add(artifact);
+			}
+		}
+		return chunk;
+	}
+
+	private BlackboardAttribute randomAttribute(Random random) {
+		int index = random.nextInt(config.attributeTypes.length);
+		int typeId = config.attributeTypes[index].getTypeID();
+		switch (config.attributeValueTypes[index]) {
+			case INTEGER:
+				return new BlackboardAttribute(typeId, MODULE_NAME, random.nextInt(1000000));
+			case LONG:
+				return new BlackboardAttribute(typeId, MODULE_NAME, START_TIME + (long) (random.nextDouble() * TIME_RANGE));
+			case DOUBLE:
+				return new BlackboardAttribute(typeId, MODULE_NAME, random.nextDouble() * 180 - 90);
+			case BYTE:
+				byte[] bytes = new byte[16];
+				random.nextBytes(bytes);
+				return new BlackboardAttribute(typeId, MODULE_NAME, bytes);
+			default:
+				return new BlackboardAttribute(typeId, MODULE_NAME, "value" + random.nextInt(STRING_VALUE_POOL_SIZE)); //NON-NLS
+		}
+	}
+
+	/**
+	 * Write the image, then hash the layout files from it.
+	 *
+	 * @param layoutHashes receives the MD5 of each layout file
+	 */
+	private void writeImage(String[] layoutHashes) throws IOException {
+		Random random = new Random(config.seed);
+		byte[] buf = new byte[1024 * 1024];
+		OutputStream out = new FileOutputStream(result.imagePath);
+		try {
+			for (long written = 0; written < config.imageSize; written += buf.length) {
+				random.nextBytes(buf);
+				out.write(buf, 0, (int) Math.min(buf.length, config.imageSize - written));
+			}
+		} finally {
+			out.close();
+		}
+
+		RandomAccessFile image = new RandomAccessFile(result.imagePath, "r"); //NON-NLS
+		try {
+			byte[] range = new byte[config.rangeSize];
+			for (int i = 0; i < config.layoutFileCount; ++i) {
+				MessageDigest md5 = MessageDigest.getInstance("MD5"); //NON-NLS
+				for (int r = 0; r < config.rangesPerLayoutFile; ++r) {
+					image.seek(getRangeStart(i, r));
+					image.readFully(range);
+					md5.update(range);
+				}
+				layoutHashes[i] = toHex(md5.digest());
+			}
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IOException("MD5 not available", ex); //NON-NLS
+		} finally {
+			image.close();
+		}
+	}
+
+	/**
+	 * @return offset in the image of a range of a layout file; the ranges of
+	 * the layout files are interleaved across the image
+	 */
+	private long getRangeStart(int layoutFile, int range) {
+		long stride = config.imageSize / ((long) config.layoutFileCount * config.rangesPerLayoutFile);
+		return ((long) range * config.layoutFileCount + layoutFile) * stride;
+	}
+
+	/**
+	 * @return the directory of a file
+	 */
+	private int getDirectory(long file) {
+		int low = 1;
+		int high = directoryCount;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (directoryEnds[middle] > file) {
+				high = middle;
+			} else {
+				low = middle + 1;
+			}
+		}
+		return low;
+	}
+
+	private int getParentDirectory(int directory) {
+		if (config.directorySizes != null) {
+			return 0;
+		}
+		return (directory - 1) / config.directoryFanout;
+	}
+
+	private static String getDirectoryName(int directory) {
+		return "dir" + directory; //NON-NLS
+	}
+
+	private String randomName(Random random) {
+		int length = config.minNameLength + random.nextInt(config.maxNameLength - config.minNameLength + 1);
+		char[] name = new char[length];
+		for (int i = 0; i < length; ++i) {
+			name[i] = NAME_CHARS[random.nextInt(NAME_CHARS.length)];
+		}
+		return new String(name);
+	}
+
+	private long randomSize(Random random) {
+		if (config.maxFileSize == config.minFileSize) {
+			return config.minFileSize;
+		}
+		double low = Math.log(config.minFileSize + 1);
+		double high = Math.log(config.maxFileSize + 1);
+		return Math.min(config.maxFileSize, (long) Math.exp(low + random.nextDouble() * (high - low)) - 1);
+	}
+
+	private static String randomHash(Random random) {
+		byte[] hash = new byte[16];
+		random.nextBytes(hash);
+		return toHex(hash);
+	}
+
+	private static String toHex(byte[] bytes) {
+		char[] hex = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; ++i) {
+			hex[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+			hex[2 * i + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(hex);
+	}
+
+	private static double square(double value) {
+		return value * value;
+	}
+
+	/**
+	 * The prepared statements and batches of the rows, all on the one
+	 * connection.
+	 */
+	private final class Writer {
+
+		private final PreparedStatement objects;
+		private final PreparedStatement files;
+		private final PreparedStatement layout;
+		private final PreparedStatement artifacts;
+		private final PreparedStatement attributes;
+		private final PreparedStatement contentTags;
+		private final PreparedStatement artifactTags;
+		private final PreparedStatement md5;
+		private final Connection connection;
+
+		Writer(Connection connection) throws SQLException {
+			this.connection = connection;
+			objects = connection.prepareStatement("INSERT INTO tsk_objects (obj_id, par_obj_id, type) VALUES (?, ?, ?)"); //NON-NLS
+			files = connection.prepareStatement("INSERT INTO tsk_files (obj_id, fs_obj_id, type, name, meta_addr, meta_seq, has_layout, " //NON-NLS
+					+ "dir_type, meta_type, dir_flags, meta_flags, size, ctime, crtime, atime, mtime, mode, uid, gid, md5, known, parent_path) " //NON-NLS
+					+ "VALUES (?, ?, ?, ?, ?, 0, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0, 0, 0, ?, ?, ?)"); //NON-NLS
+			layout = connection.prepareStatement("INSERT INTO tsk_file_layout (obj_id, byte_start, byte_len, sequence) VALUES (?, ?, ?, ?)"); //NON-NLS
+			artifacts = connection.prepareStatement("INSERT INTO blackboard_artifacts (artifact_id, obj_id, artifact_type_id) VALUES (?, ?, ?)"); //NON-NLS
+			attributes = connection.prepareStatement("INSERT INTO blackboard_attributes (artifact_id, artifact_type_id, source, context, attribute_type_id, value_type, " //NON-NLS
+					+ "value_byte, value_text, value_int32, value_int64, value_double) VALUES (?, ?, ?, '', ?, ?, ?, ?, ?, ?, ?)"); //NON-NLS
+			contentTags = connection.prepareStatement("INSERT INTO content_tags (obj_id, tag_name_id, comment, begin_byte_offset, end_byte_offset) VALUES (?, ?, '', 0, 0)"); //NON-NLS
+			artifactTags = connection.prepareStatement("INSERT INTO blackboard_artifact_tags (artifact_id, tag_name_id, comment) VALUES (?, ?, '')"); //NON-NLS
+			md5 = connection.prepareStatement("UPDATE tsk_files SET md5 = ? WHERE obj_id = ?"); //NON-NLS
+		}
+
+		/**
+		 * Write the image, the file system, the directories and the tag
+		 * names.
+		 */
+		void writeVolume() throws SQLException {
+			addObject(1, null, ObjectType.IMG);
+			PreparedStatement statement = connection.prepareStatement("INSERT INTO tsk_image_info (obj_id, type, ssize, tzone, size) VALUES (1, ?, 512, 'UTC', ?)"); //NON-NLS
+			statement.setLong(1, TSK_IMG_TYPE_ENUM.TSK_IMG_TYPE_RAW_SING.getValue());
+			statement.setLong(2, config.imageSize);
+			statement.executeUpdate();
+			statement.close();
+			statement = connection.prepareStatement("INSERT INTO tsk_image_names (obj_id, name, sequence) VALUES (1, ?, 0)"); //NON-NLS
+			statement.setString(1, result.imagePath);
+			statement.executeUpdate();
+			statement.close();
+
+			addObject(2, 1L, ObjectType.FS);
+			statement = connection.prepareStatement("INSERT INTO tsk_fs_info (obj_id, img_offset, fs_type, block_size, block_count, root_inum, first_inum, last_inum) " //NON-NLS
+					+ "VALUES (2, 0, ?, 4096, ?, ?, 0, ?)"); //NON-NLS
+			statement.setInt(1, TSK_FS_TYPE_ENUM.TSK_FS_TYPE_NTFS.getValue());
+			statement.setLong(2, config.imageSize / 4096);
+			statement.setLong(3, firstDirectoryId);
+			statement.setLong(4, firstFileId + config.fileCount);
+			statement.executeUpdate();
+			statement.close();
+
+			for (int d = 0; d <= directoryCount; ++d) {
+				long objId = firstDirectoryId + d;
+				addObject(objId, (d == 0) ? 2 : firstDirectoryId + getParentDirectory(d), ObjectType.ABSTRACTFILE);
+				addFile(objId, 2L, TSK_DB_FILES_TYPE_ENUM.FS, (d == 0) ? "" : getDirectoryName(d), objId, false, //NON-NLS
+						TSK_FS_NAME_TYPE_ENUM.DIR, TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR, TSK_FS_NAME_FLAG_ENUM.ALLOC,
+						TSK_FS_META_FLAG_ENUM.ALLOC, 0, START_TIME, START_TIME, START_TIME, null,
+						(d == 0) ? "/" : directoryPaths[getParentDirectory(d)]); //NON-NLS
+			}
+			objects.executeBatch();
+			files.executeBatch();
+			result.directoryCount = directoryCount + 1;
+			result.fileCount += directoryCount + 1;
+
+			statement = connection.prepareStatement("INSERT INTO tag_names (tag_name_id, display_name, description, color) VALUES (?, ?, '', ?)"); //NON-NLS
+			TagName.HTML_COLOR[] colors = TagName.HTML_COLOR.values();
+			for (int t = 0; t < config.tagNameCount; ++t) {
+				statement.setLong(1, t + 1);
+				statement.setString(2, "Generated Tag " + (t + 1)); //NON-NLS
+				statement.setString(3, colors[t % colors.length].getName());
+				statement.addBatch();
+			}
+			statement.executeBatch();
+			statement.close();
+		}
+
+		void writeChunk(Chunk chunk) throws SQLException {
+			for (FileRow file : chunk.files) {
+				addObject(file.objId, file.parentId, ObjectType.ABSTRACTFILE);
+				addFile(file.objId, 2L, TSK_DB_FILES_TYPE_ENUM.FS, file.name, file.objId, false,
+						TSK_FS_NAME_TYPE_ENUM.REG, TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_REG, TSK_FS_NAME_FLAG_ENUM.ALLOC,
+						TSK_FS_META_FLAG_ENUM.ALLOC, file.size, file.crtime, file.mtime, file.atime, file.md5, file.parentPath);
+				if (file.tagNameIndex >= 0) {
+					contentTags.setLong(1, file.objId);
+					contentTags.setLong(2, file.tagNameIndex + 1);
+					contentTags.addBatch();
+					++result.tagCount;
+				}
+			}
+			for (ArtifactRow artifact : chunk.artifacts) {
+				long artifactId = nextArtifactId++;
+				artifacts.setLong(1, artifactId);
+				artifacts.setLong(2, artifact.objId);
+				artifacts.setInt(3, artifact.type.getTypeID());
+				artifacts.addBatch();
+				for (BlackboardAttribute attribute : artifact.attributes) {
+					addAttribute(artifactId, artifact.type.getTypeID(), attribute);
+				}
+				if (artifact.tagNameIndex >= 0) {
+					artifactTags.setLong(1, artifactId);
+					artifactTags.setLong(2, artifact.tagNameIndex + 1);
+					artifactTags.addBatch();
+					++result.tagCount;
+				}
+			}
+			objects.executeBatch();
+			files.executeBatch();
+			artifacts.executeBatch();
+			attributes.executeBatch();
+			contentTags.executeBatch();
+			artifactTags.executeBatch();
+			result.fileCount += chunk.files.size();
+			result.artifactCount += chunk.artifacts.size();
+		}
+
+		void writeLayoutFiles() throws SQLException {
+			for (int i = 0; i < config.layoutFileCount; ++i) {
+				long objId = getLayoutFileId(i);
+				addObject(objId, 1L, ObjectType.ABSTRACTFILE);
+				addFile(objId, null, TSK_DB_FILES_TYPE_ENUM.UNALLOC_BLOCKS, "Unalloc_" + i, null, true, //NON-NLS
+						TSK_FS_NAME_TYPE_ENUM.REG, TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_REG, TSK_FS_NAME_FLAG_ENUM.UNALLOC,
+						TSK_FS_META_FLAG_ENUM.UNALLOC, (long) config.rangesPerLayoutFile * config.rangeSize, 0, 0, 0, null, null);
+				for (int r = 0; r < config.rangesPerLayoutFile; ++r) {
+					layout.setLong(1, objId);
+					layout.setLong(2, getRangeStart(i, r));
+					layout.setLong(3, config.rangeSize);
+					layout.setInt(4, r);
+					layout.addBatch();
+				}
+			}
+			objects.executeBatch();
+			files.executeBatch();
+			layout.executeBatch();
+			result.fileCount += config.layoutFileCount;
+		}
+
+		void setLayoutHashes(String[] hashes) throws SQLException {
+			for (int i = 0; i < hashes.length; ++i) {
+				md5.setString(1, hashes[i]);
+				md5.setLong(2, getLayoutFileId(i));
+				md5.addBatch();
+			}
+			md5.executeBatch();
+		}
+
+		void close() throws SQLException {
+			objects.close();
+			files.close();
+			layout.close();
+			artifacts.close();
+			attributes.close();
+			contentTags.close();
+			artifactTags.close();
+			md5.close();
+		}
+
+		private void addObject(long objId, Long parentId, ObjectType type) throws SQLException {
+			objects.setLong(1, objId);
+			if (parentId != null) {
+				objects.setLong(2, parentId);
+			} else {
+				objects.setNull(2, Types.INTEGER);
+			}
+			objects.setShort(3, type.getObjectType());
+			objects.addBatch();
+		}
+
+		private void addFile(long objId, Long fsId, TSK_DB_FILES_TYPE_ENUM type, String name, Long metaAddr, boolean hasLayout,
+				TSK_FS_NAME_TYPE_ENUM dirType, TSK_FS_META_TYPE_ENUM metaType, TSK_FS_NAME_FLAG_ENUM dirFlag,
+				TSK_FS_META_FLAG_ENUM metaFlag, long size, long crtime, long mtime, long atime, String md5Hash,
+				String parentPath) throws SQLException {
+			files.setLong(1, objId);
+			setLong(files, 2, fsId);
+			files.setShort(3, type.getFileType());
+			files.setString(4, name);
+			setLong(files, 5, metaAddr);
+			files.setInt(6, hasLayout ? 1 : 0);
+			files.setShort(7, dirType.getValue());
+			files.setShort(8, metaType.getValue());
+			files.setShort(9, dirFlag.getValue());
+			files.setShort(10, metaFlag.getValue());
+			files.setLong(11, size);
+			files.setLong(12, mtime); //ctime
+			files.setLong(13, crtime);
+			files.setLong(14, atime);
+			files.setLong(15, mtime);
+			files.setString(16, md5Hash);
+			files.setByte(17, FileKnown.UNKNOWN.getFileKnownValue());
+			files.setString(18, parentPath);
+			files.addBatch();
+		}
+
+		private void addAttribute(long artifactId, int artifactTypeId, BlackboardAttribute attribute) throws SQLException {
+			attributes.setLong(1, artifactId);
+			attributes.setInt(2, artifactTypeId);
+			attributes.setString(3, attribute.getModuleName());
+			attributes.setInt(4, attribute.getAttributeTypeID());
+			attributes.setLong(5, attribute.getValueType().getType());
+			for (int column = 6; column <= 10; ++column) {
+				attributes.setNull(column, Types.NULL);
+			}
+			switch (attribute.getValueType()) {
+				case BYTE:
+					attributes.setBytes(6, attribute.getValueBytes());
+					break;
+				case INTEGER:
+					attributes.setInt(8, attribute.getValueInt());
+					break;
+				case LONG:
+					attributes.setLong(9, attribute.getValueLong());
+					break;
+				case DOUBLE:
+					attributes.setDouble(10, attribute.getValueDouble());
+					break;
+				default:
+					attributes.setString(7, attribute.getValueString());
+			}
+			attributes.addBatch();
+			++result.attributeCount;
+		}
+	}
+
+	private static void setLong(PreparedStatement statement, int column, Long value) throws SQLException {
+		if (value != null) {
+			statement.setLong(column, value);
+		} else {
+			statement.setNull(column, Types.INTEGER);
+		}
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * Sleuth Kit Data Model
+ * 
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
+
+/**
+ * Tests that ContentSearch finds hits that cross chunk boundaries, and reports
+ * each regular expression match whole and exactly once, for a range of chunk
+ * sizes and read lengths. Needs no case or image.
+ */
+public class ContentSearchTest {
+
+	private static final int[] CHUNK_SIZES = {1, 7, 64, 1000, ContentSearch.MAX_HIT_LENGTH, 4096};
+
+	/**
+	 * Make a Content over a byte array that returns at most maxRead bytes per
+	 * read. Only read(), getSize() and getId() are supported.
+	 */
+	private static Content content(final byte[] data, final int maxRead) {
+		return (Content) Proxy.newProxyInstance(Content.class.getClassLoader(), new Class<?>[]{Content.class}, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				String name = method.getName();
+				if (name.equals("read")) { //NON-NLS
+					byte[] buf = (byte[]) args[0];
+					long offset = (Long) args[1];
+					long len = Math.min((Long) args[2], maxRead);
+					int count = (int) Math.max(0, Math.min(len, data.length - offset));
+					System.arraycopy(data, (int) offset, buf, 0, count);
+					return count;
+				} else if (name.equals("getSize")) { //NON-NLS
+					return (long) data.length;
+				} else if (name.equals("getId")) { //NON-NLS
+					return 1L;
+				} else if (name.equals("toString")) { //NON-NLS
+					return "test content"; //NON-NLS
+				}
+				throw new UnsupportedOperationException(name);
+			}
+		});
+	}
+
+	private static ContentSearch newSearch(int chunkSize, Keyword... keywords) {
+		KeywordList list = new KeywordList("test", Arrays.asList(keywords)); //NON-NLS
+		return new ContentSearch(null, "test", Collections.singletonList(list), chunkSize, ContentSearch.DEFAULT_BATCH_SIZE); //NON-NLS
+	}
+
+	/**
+	 * @return the TSK_KEYWORD value of each hit, sorted
+	 */
+	private static List<String> keywords(List<List<BlackboardAttribute>> artifacts) {
+		List<String> keywords = new ArrayList<String>();
+		for (List<BlackboardAttribute> attributes : artifacts) {
+			for (BlackboardAttribute attribute : attributes) {
+				if (attribute.getAttributeTypeID() == ATTRIBUTE_TYPE.TSK_KEYWORD.getTypeID()) {
+					keywords.add(attribute.getValueString());
+				}
+			}
+		}
+		Collections.sort(keywords);
+		return keywords;
+	}
+
+	private static String preview(List<BlackboardAttribute> attributes) {
+		for (BlackboardAttribute attribute : attributes) {
+			if (attribute.getAttributeTypeID() == ATTRIBUTE_TYPE.TSK_KEYWORD_PREVIEW.getTypeID()) {
+				return attribute.getValueString();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Data of the given length with the text written at each offset, and
+	 * filler elsewhere that none of the keywords match.
+	 */
+	private static byte[] data(int length, Object... textAtOffset) {
+		byte[] data = new byte[length];
+		Arrays.fill(data, (byte) '.');
+		for (int i = 0; i < textAtOffset.length; i += 2) {
+			byte[] text = ((String) textAtOffset[i + 1]).getBytes();
+			System.arraycopy(text, 0, data, (Integer) textAtOffset[i], text.length);
+		}
+		return data;
+	}
+
+	@Test
+	public void testLiteralAcrossChunks() throws TskCoreException {
+		for (int chunkSize : CHUNK_SIZES) {
+			for (int offset = 0; offset < 16; ++offset) {
+				//the keyword straddles the end of the first chunk
+				int start = Math.max(0, chunkSize - offset);
+				byte[] data = data(start + 6000, start, "Password"); //NON-NLS
+				ContentSearch search = newSearch(chunkSize, new Keyword("password", true)); //NON-NLS
+				List<List<BlackboardAttribute>> hits = search.searchContent(content(data, Integer.MAX_VALUE));
+				assertEquals("chunk " + chunkSize + " start " + start, Arrays.asList("password"), keywords(hits)); //NON-NLS
+				assertTrue(preview(hits.get(0)).contains("Password")); //NON-NLS
+			}
+		}
+	}
+
+	@Test
+	public void testUtf16LiteralAcrossChunks() throws TskCoreException {
+		byte[] data = new byte[3000];
+		byte[] term = "secret".getBytes(java.nio.charset.Charset.forName("UTF-16LE")); //NON-NLS
+		System.arraycopy(term, 0, data, 1019, term.length);
+		for (int chunkSize : CHUNK_SIZES) {
+			ContentSearch search = newSearch(chunkSize, new Keyword("secret", true)); //NON-NLS
+			List<List<BlackboardAttribute>> hits = search.searchContent(content(data, Integer.MAX_VALUE));
+			assertEquals("chunk " + chunkSize, Arrays.asList("secret"), keywords(hits)); //NON-NLS
+			assertEquals("secret", preview(hits.get(0))); //NON-NLS
+		}
+	}
+
+	/**
+	 * Numbers placed around chunk boundaries and in the overlap of chunks are
+	 * each reported once, whole, with no fragments from the chunk before or
+	 * after.
+	 */
+	@Test
+	public void testRegexAcrossChunks() throws TskCoreException {
+		List<String> expected = new ArrayList<String>();
+		List<Object> placed = new ArrayList<Object>();
+		int offset = 5;
+		for (int i = 0; i < 60; ++i) {
+			String number = String.valueOf(1000000 + i * 7919);
+			placed.add(offset);
+			placed.add(number);
+			expected.add(number);
+			offset += number.length() + 1 + (i * 37) % 200;
+		}
+		Collections.sort(expected);
+		byte[] data = data(offset + 100, placed.toArray());
+		for (int chunkSize : CHUNK_SIZES) {
+			for (int maxRead : new int[]{Integer.MAX_VALUE, 5}) {
+				ContentSearch search = newSearch(chunkSize, new Keyword("[0-9]+", false)); //NON-NLS
+				assertEquals("chunk " + chunkSize + " read " + maxRead, expected, keywords(search.searchContent(content(data, maxRead)))); //NON-NLS
+			}
+		}
+	}
+
+	/**
+	 * A match that runs to the end of the data is reported from the last
+	 * chunk, not held back for a chunk that never comes.
+	 */
+	@Test
+	public void testRegexAtEnd() throws TskCoreException {
+		byte[] data = data(2500, 2490, "x=12345678"); //NON-NLS
+		for (int chunkSize : CHUNK_SIZES) {
+			ContentSearch search = newSearch(chunkSize, new Keyword("x=[0-9]+", false)); //NON-NLS
+			assertEquals("chunk " + chunkSize, Arrays.asList("x=12345678"), keywords(search.searchContent(content(data, Integer.MAX_VALUE)))); //NON-NLS
+		}
+	}
+
+	/**
+	 * A match is not found again, shortened, by the search of the next
+	 * window: regexResume starts that search after the end of the match.
+	 */
+	@Test
+	public void testRegexNotReportedTwice() throws TskCoreException {
+		//a match that ends inside the overlap kept for the next chunk
+		byte[] data = data(4000, 1000, "abcabcabc"); //NON-NLS
+		for (int chunkSize : CHUNK_SIZES) {
+			ContentSearch search = newSearch(chunkSize, new Keyword("(abc)+", false)); //NON-NLS
+			assertEquals("chunk " + chunkSize, Arrays.asList("abcabcabc"), keywords(search.searchContent(content(data, Integer.MAX_VALUE)))); //NON-NLS
+		}
+	}
+
+	@Test
+	public void testLiteralAndRegexTogether() throws TskCoreException {
+		byte[] data = data(5000, 100, "user@example.com", 4090, "Password"); //NON-NLS
+		ContentSearch search = newSearch(64, new Keyword("password", true), new Keyword("[a-z]+@[a-z]+\\.com", false)); //NON-NLS
+		assertEquals(Arrays.asList("password", "user@example.com"), keywords(search.searchContent(content(data, Integer.MAX_VALUE)))); //NON-NLS
+	}
+}
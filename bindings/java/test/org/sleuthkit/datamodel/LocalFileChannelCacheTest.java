@@ -0,0 +1,91 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2014 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that LocalFileChannelCache closes idle channels without further reads
+ * and when it is closed. Needs no case or image.
+ */
+public class LocalFileChannelCacheTest {
+
+	private static final long IDLE_TIMEOUT = 50;
+	private static final long WAIT_MILLIS = 10000;
+	private final LocalFileChannelCache cache = LocalFileChannelCache.getInstance();
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("channelcache", ".bin"); //NON-NLS
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(new byte[]{1, 2, 3, 4});
+		} finally {
+			out.close();
+		}
+		cache.closeAll();
+		cache.setIdleTimeout(IDLE_TIMEOUT);
+	}
+
+	@After
+	public void tearDown() {
+		cache.closeAll();
+		cache.setIdleTimeout(30000);
+		cache.setMappedReadThreshold(0);
+		file.delete();
+	}
+
+	@Test
+	public void testIdleChannelSwept() throws Exception {
+		readFile();
+		assertEquals(1, cache.getOpenChannelCount());
+		long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+		while (cache.getOpenChannelCount() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(IDLE_TIMEOUT);
+		}
+		assertEquals(0, cache.getOpenChannelCount());
+	}
+
+	@Test
+	public void testMappedChannelClosed() throws Exception {
+		cache.setMappedReadThreshold(1024);
+		cache.setIdleTimeout(WAIT_MILLIS);
+		readFile();
+		assertEquals(1, cache.getOpenChannelCount());
+		cache.closeAll();
+		assertEquals(0, cache.getOpenChannelCount());
+		assertTrue(file.delete());
+		// Reading the file again opens it again
+		assertTrue(file.createNewFile());
+		assertEquals(-1, cache.read(file.getAbsolutePath(), new byte[4], 0, 4));
+	}
+
+	private void readFile() throws TskCoreException {
+		byte[] buf = new byte[4];
+		assertEquals(4, cache.read(file.getAbsolutePath(), buf, 0, 4));
+		assertArrayEquals(new byte[]{1, 2, 3, 4}, buf);
+	}
+}
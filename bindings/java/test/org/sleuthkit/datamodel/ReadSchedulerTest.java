@@ -0,0 +1,263 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2014 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.sleuthkit.datamodel.ReadScheduler.Priority;
+
+/**
+ * Tests the order in which ReadScheduler runs reads, cancellation, and that
+ * read errors reach the returned Future. Needs no case or image.
+ *
+ * Each test uses a scheduler with one worker thread. A read at BLOCK_OFFSET
+ * waits until the test releases it, which keeps the worker busy while the
+ * test queues the reads it checks. The offsets of the reads are recorded in
+ * the order the worker runs them.
+ */
+public class ReadSchedulerTest {
+
+	private static final long BLOCK_OFFSET = 1000000;
+	private static final long TIMEOUT_SECONDS = 10;
+	private final List<Long> reads = Collections.synchronizedList(new ArrayList<Long>());
+	private final CountDownLatch blocking = new CountDownLatch(1);
+	private final CountDownLatch release = new CountDownLatch(1);
+	private ReadScheduler scheduler;
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		if (scheduler != null) {
+			scheduler.shutdown();
+		}
+	}
+
+	/**
+	 * Something that fails or succeeds a read, for content().
+	 */
+	private interface Reader {
+
+		int read(byte[] buf, long offset, long len) throws TskCoreException;
+	}
+
+	/**
+	 * Make a Content of 10MB that records the offset of each read, blocks
+	 * reads at BLOCK_OFFSET until released, and passes the others to reader.
+	 * Only read(), getSize(), getId() and getDataSource() are supported.
+	 */
+	private Content content(final Reader reader) {
+		return (Content) Proxy.newProxyInstance(Content.class.getClassLoader(), new Class<?>[]{Content.class}, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				if (name.equals("read")) { //NON-NLS
+					long offset = (Long) args[1];
+					reads.add(offset);
+					if (offset == BLOCK_OFFSET) {
+						blocking.countDown();
+						release.await();
+					}
+					return reader.read((byte[]) args[0], offset, (Long) args[2]);
+				} else if (name.equals("getSize")) { //NON-NLS
+					return 10L * 1024 * 1024;
+				} else if (name.equals("getId")) { //NON-NLS
+					return 1L;
+				} else if (name.equals("getDataSource")) { //NON-NLS
+					return null;
+				} else if (name.equals("toString")) { //NON-NLS
+					return "test content"; //NON-NLS
+				}
+				throw new UnsupportedOperationException(name);
+			}
+		});
+	}
+
+	private Content content() {
+		return content(new Reader() {
+			@Override
+			public int read(byte[] buf, long offset, long len) {
+				return (int) len;
+			}
+		});
+	}
+
+	/**
+	 * Submit a read that occupies the worker until release is counted down,
+	 * and wait until it is running.
+	 */
+	private Future<Integer> block(Content content) throws InterruptedException {
+		Future<Integer> future = scheduler.submit(content, new byte[10], BLOCK_OFFSET, 10, Priority.BATCH);
+		assertTrue(blocking.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		return future;
+	}
+
+	private static int get(Future<Integer> future) throws Exception {
+		return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testInteractiveBeforeBatch() throws Exception {
+		scheduler = new ReadScheduler(1, 1, ReadScheduler.DEFAULT_CHUNK_SIZE);
+		Content content = content();
+		Future<Integer> blocker = block(content);
+		Future<Integer> batch1 = scheduler.submit(content, new byte[10], 100, 10, Priority.BATCH);
+		Future<Integer> batch2 = scheduler.submit(content, new byte[10], 200, 10, Priority.BATCH);
+		Future<Integer> interactive1 = scheduler.submit(content, new byte[10], 300, 10, Priority.INTERACTIVE);
+		Future<Integer> interactive2 = scheduler.submit(content, new byte[10], 400, 10, Priority.INTERACTIVE);
+		assertEquals(4, scheduler.getQueuedCount());
+		release.countDown();
+		for (Future<Integer> future : Arrays.asList(blocker, batch1, batch2, interactive1, interactive2)) {
+			assertEquals(10, get(future));
+		}
+		assertEquals(Arrays.asList(BLOCK_OFFSET, 300L, 400L, 100L, 200L), reads);
+	}
+
+	/**
+	 * A long batch read goes back to its queue after each chunk, so an
+	 * interactive read queued while it runs is done before its next chunk.
+	 */
+	@Test
+	public void testChunkedReadYieldsToInteractive() throws Exception {
+		scheduler = new ReadScheduler(1, 1, 10);
+		Content content = content();
+		Future<Integer> batch = scheduler.submit(content, new byte[30], BLOCK_OFFSET, 30, Priority.BATCH);
+		assertTrue(blocking.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		Future<Integer> interactive = scheduler.submit(content, new byte[10], 5, 10, Priority.INTERACTIVE);
+		release.countDown();
+		assertEquals(10, get(interactive));
+		assertEquals(30, get(batch));
+		assertEquals(Arrays.asList(BLOCK_OFFSET, 5L, BLOCK_OFFSET + 10, BLOCK_OFFSET + 20), reads);
+	}
+
+	@Test
+	public void testCancelQueuedRead() throws Exception {
+		scheduler = new ReadScheduler(1, 1, ReadScheduler.DEFAULT_CHUNK_SIZE);
+		Content content = content();
+		Future<Integer> blocker = block(content);
+		Future<Integer> cancelled = scheduler.submit(content, new byte[10], 100, 10, Priority.BATCH);
+		Future<Integer> other = scheduler.submit(content, new byte[10], 200, 10, Priority.BATCH);
+		assertTrue(cancelled.cancel(false));
+		assertTrue(cancelled.isCancelled());
+		assertTrue(cancelled.isDone());
+		assertFalse(cancelled.cancel(false));
+		release.countDown();
+		assertEquals(10, get(blocker));
+		assertEquals(10, get(other));
+		try {
+			get(cancelled);
+			fail("Expected CancellationException"); //NON-NLS
+		} catch (CancellationException ex) {
+		}
+		assertEquals(Arrays.asList(BLOCK_OFFSET, 200L), reads);
+	}
+
+	/**
+	 * Cancelling a read in progress stops it at the next chunk boundary.
+	 */
+	@Test
+	public void testCancelReadInProgress() throws Exception {
+		scheduler = new ReadScheduler(1, 1, 10);
+		Content content = content();
+		Future<Integer> cancelled = scheduler.submit(content, new byte[100], BLOCK_OFFSET, 100, Priority.BATCH);
+		assertTrue(blocking.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertTrue(cancelled.cancel(true));
+		release.countDown();
+		//a read queued after it runs once the worker is free again
+		assertEquals(10, get(scheduler.submit(content, new byte[10], 100, 10, Priority.BATCH)));
+		try {
+			get(cancelled);
+			fail("Expected CancellationException"); //NON-NLS
+		} catch (CancellationException ex) {
+		}
+		assertEquals(Arrays.asList(BLOCK_OFFSET, 100L), reads);
+	}
+
+	@Test
+	public void testReadErrorReachesFuture() throws Exception {
+		scheduler = new ReadScheduler(1, 1, ReadScheduler.DEFAULT_CHUNK_SIZE);
+		final TskCoreException error = new TskCoreException("read failed"); //NON-NLS
+		Future<Integer> future = scheduler.submit(content(new Reader() {
+			@Override
+			public int read(byte[] buf, long offset, long len) throws TskCoreException {
+				throw error;
+			}
+		}), new byte[10], 0, 10, Priority.INTERACTIVE);
+		try {
+			get(future);
+			fail("Expected ExecutionException"); //NON-NLS
+		} catch (ExecutionException ex) {
+			assertSame(error, ex.getCause());
+		}
+		assertTrue(future.isDone());
+		assertFalse(future.isCancelled());
+	}
+
+	/**
+	 * An unexpected exception fails only its own read; the worker goes on
+	 * with the next one.
+	 */
+	@Test
+	public void testRuntimeErrorReachesFuture() throws Exception {
+		scheduler = new ReadScheduler(1, 1, ReadScheduler.DEFAULT_CHUNK_SIZE);
+		final IllegalStateException error = new IllegalStateException("bug"); //NON-NLS
+		Future<Integer> future = scheduler.submit(content(new Reader() {
+			@Override
+			public int read(byte[] buf, long offset, long len) {
+				throw error;
+			}
+		}), new byte[10], 0, 10, Priority.BATCH);
+		try {
+			get(future);
+			fail("Expected ExecutionException"); //NON-NLS
+		} catch (ExecutionException ex) {
+			assertSame(error, ex.getCause());
+		}
+		assertEquals(10, get(scheduler.submit(content(), new byte[10], 0, 10, Priority.BATCH)));
+	}
+
+	/**
+	 * A read past the end gives the bytes that could be read, and -1 when
+	 * there were none.
+	 */
+	@Test
+	public void testShortReads() throws Exception {
+		scheduler = new ReadScheduler(1, 1, 10);
+		Content content = content(new Reader() {
+			@Override
+			public int read(byte[] buf, long offset, long len) {
+				return (int) Math.max(0, Math.min(len, 25 - offset));
+			}
+		});
+		assertEquals(25, get(scheduler.submit(content, new byte[40], 0, 40, Priority.BATCH)));
+		assertEquals(-1, get(scheduler.submit(content, new byte[10], 30, 10, Priority.BATCH)));
+	}
+}
@@ -47,6 +47,7 @@ TskAutoDb::TskAutoDb(TskDbSqlite * a_db, TSK_HDB_INFO * a_NSRLDb, TSK_HDB_INFO *
     m_stopped = false;
     m_foundStructure = false;
     m_imgTransactionOpen = false;
+    m_fileIndexLastObjId = -1;
     m_NSRLDb = a_NSRLDb;
     m_knownBadDb = a_knownBadDb;
     if ((m_NSRLDb) || (m_knownBadDb))
@@ -56,6 +57,7 @@ TskAutoDb::TskAutoDb(TskDbSqlite * a_db, TSK_HDB_INFO * a_NSRLDb, TSK_HDB_INFO *
     m_noFatFsOrphans = false;
     m_addUnallocSpace = false;
 	m_chunkSize = -1;
+    m_parallelUnalloc = false;
     tsk_init_lock(&m_curDirPathLock);
 }
 
@@ -106,6 +108,11 @@ void TskAutoDb::setAddUnallocSpace(bool addUnallocSpace, int64_t chunkSize)
 	m_chunkSize = chunkSize;
 }
 
+void TskAutoDb::setParallelUnallocSpace(bool parallelUnalloc)
+{
+    m_parallelUnalloc = parallelUnalloc;
+}
+
 uint8_t
     TskAutoDb::openImageUtf8(int a_num, const char *const a_images[],
     TSK_IMG_TYPE_ENUM a_type, unsigned int a_ssize)
@@ -407,6 +414,14 @@ uint8_t
 
     m_imgTransactionOpen = true;
 
+    // fill the tsk_files indexes in bulk in commitAddImage()
+    if (m_db->deferFileIndexes(m_fileIndexLastObjId)) {
+        registerError();
+        if (revertAddImage())
+            registerError();
+        return 1;
+    }
+
     if (openImage(numImg, imagePaths, imgType, sSize)) {
         tsk_error_set_errstr2("TskAutoDb::startAddImage");
         registerError();
@@ -452,6 +467,14 @@ uint8_t
 
     m_imgTransactionOpen = true;
 
+    // fill the tsk_files indexes in bulk in commitAddImage()
+    if (m_db->deferFileIndexes(m_fileIndexLastObjId)) {
+        registerError();
+        if (revertAddImage())
+            registerError();
+        return 1;
+    }
+
     if (openImageUtf8(numImg, imagePaths, imgType, sSize)) {
         tsk_error_set_errstr2("TskAutoDb::startAddImage");
         registerError();
@@ -496,6 +519,8 @@ int
         return 1;
     }
 
+    // the rollback restores the insert triggers dropped by deferFileIndexes()
+    m_fileIndexLastObjId = -1;
     int retval = m_db->revertSavepoint(TSK_ADD_IMAGE_SAVEPOINT);
     if (retval == 0) {
         if (m_db->inTransaction()) {
@@ -526,6 +551,14 @@ TskAutoDb::commitAddImage()
         return -1;
     }
 
+    if (m_fileIndexLastObjId != -1) {
+        if (m_db->updateFileIndexes(m_fileIndexLastObjId)) {
+            revertAddImage();
+            return -1;
+        }
+        m_fileIndexLastObjId = -1;
+    }
+
     int retval = m_db->releaseSavepoint(TSK_ADD_IMAGE_SAVEPOINT);
     m_imgTransactionOpen = false;
     if (retval == 1) {
@@ -774,11 +807,20 @@ TSK_WALK_RET_ENUM TskAutoDb::fsWalkUnallocBlocksCb(const TSK_FS_BLOCK *a_block,
 
 	// at this point we are either chunking and have reached the chunk limit
 	// or we're not chunking. Either way we now add what we've got to the DB
-	int64_t fileObjId = 0;
-	if (unallocBlockWlkTrack->tskAutoDb.m_db->addUnallocBlockFile(unallocBlockWlkTrack->tskAutoDb.m_curUnallocDirId, 
-		unallocBlockWlkTrack->fsObjId, unallocBlockWlkTrack->size, unallocBlockWlkTrack->ranges, fileObjId) == TSK_ERR) {
-            // @@@ Handle error -> Don't have access to registerError() though...
-    }
+	// (or save it for the caller to add if we are on a worker thread)
+	if (unallocBlockWlkTrack->chunks != NULL) {
+		UNALLOC_CHUNK chunk;
+		chunk.size = unallocBlockWlkTrack->size;
+		chunk.ranges.swap(unallocBlockWlkTrack->ranges);
+		unallocBlockWlkTrack->chunks->push_back(chunk);
+	}
+	else {
+		int64_t fileObjId = 0;
+		if (unallocBlockWlkTrack->tskAutoDb.m_db->addUnallocBlockFile(unallocBlockWlkTrack->tskAutoDb.m_curUnallocDirId, 
+			unallocBlockWlkTrack->fsObjId, unallocBlockWlkTrack->size, unallocBlockWlkTrack->ranges, fileObjId) == TSK_ERR) {
+			// @@@ Handle error -> Don't have access to registerError() though...
+		}
+	}
 
 	// reset
 	unallocBlockWlkTrack->curRangeStart = a_block->addr;
@@ -855,6 +897,158 @@ TSK_RETVAL_ENUM TskAutoDb::addFsInfoUnalloc(const TSK_DB_FS_INFO & dbFsInfo) {
     return TSK_OK; 
 }
 
+/**
+* Walk the unallocated blocks of a single file system and collect the
+* unalloc files to create in a_job->chunks.  Does not touch the database 
+* or register errors, so it is safe to call from a worker thread as long
+* as each thread has its own job. 
+* @param a_job fs to process and place to store the results
+*/
+void TskAutoDb::walkFsInfoUnalloc(UNALLOC_FS_WALK_JOB * a_job) {
+    TskAutoDb & tskAutoDb = *a_job->tskAutoDb;
+    a_job->retval = TSK_OK;
+
+    TSK_FS_INFO * fsInfo = tsk_fs_open_img(tskAutoDb.m_img_info, a_job->dbFsInfo.imgOffset, a_job->dbFsInfo.fType);
+    if (fsInfo == NULL) {
+        stringstream errss;
+        errss << "TskAutoDb::walkFsInfoUnalloc: error opening fs at offset " << a_job->dbFsInfo.imgOffset;
+        errss << " (" << tsk_error_get() << ")";
+        a_job->errStr = errss.str();
+        a_job->retval = TSK_ERR;
+        return;
+    }
+
+    UNALLOC_BLOCK_WLK_TRACK unallocBlockWlkTrack(tskAutoDb, *fsInfo, a_job->dbFsInfo.objId, tskAutoDb.m_chunkSize, &a_job->chunks);
+    uint8_t block_walk_ret = tsk_fs_block_walk(fsInfo, fsInfo->first_block, fsInfo->last_block, (TSK_FS_BLOCK_WALK_FLAG_ENUM)(TSK_FS_BLOCK_WALK_FLAG_UNALLOC | TSK_FS_BLOCK_WALK_FLAG_AONLY), 
+        fsWalkUnallocBlocksCb, &unallocBlockWlkTrack);
+
+    if (block_walk_ret == 1) {
+        stringstream errss;
+        errss << "TskAutoDb::walkFsInfoUnalloc: error walking fs unalloc blocks, fs id: ";
+        errss << unallocBlockWlkTrack.fsObjId << " (" << tsk_error_get() << ")";
+        a_job->errStr = errss.str();
+        a_job->retval = TSK_ERR;
+        tsk_fs_close(fsInfo);
+        return;
+    }
+
+    if (tskAutoDb.m_stopAllProcessing) {
+        tsk_fs_close(fsInfo);
+        return;
+    }
+
+    // handle creation of the last range
+    const uint64_t byteStart = unallocBlockWlkTrack.curRangeStart * fsInfo->block_size + fsInfo->offset;
+    const uint64_t byteLen = (1 + unallocBlockWlkTrack.prevBlock - unallocBlockWlkTrack.curRangeStart) * fsInfo->block_size;
+    UNALLOC_CHUNK chunk;
+    chunk.ranges.swap(unallocBlockWlkTrack.ranges);
+    chunk.ranges.push_back(TSK_DB_FILE_LAYOUT_RANGE(byteStart, byteLen, 0));
+    chunk.size = unallocBlockWlkTrack.size + byteLen;
+    a_job->chunks.push_back(chunk);
+
+    tsk_fs_close(fsInfo);
+}
+
+#ifdef TSK_MULTITHREAD_LIB
+#ifdef TSK_WIN32
+DWORD WINAPI TskAutoDb::walkFsInfoUnallocThread(LPVOID a_job) {
+    walkFsInfoUnalloc((UNALLOC_FS_WALK_JOB *) a_job);
+    return 0;
+}
+#else
+void *TskAutoDb::walkFsInfoUnallocThread(void *a_job) {
+    walkFsInfoUnalloc((UNALLOC_FS_WALK_JOB *) a_job);
+    return NULL;
+}
+#endif
+#endif
+
+/**
+* Add unallocated space for the given file systems to the database, walking
+* the unallocated blocks of each file system on its own thread.  Files are 
+* added to the database on the calling thread once all walks are done, in the 
+* same order that addFsInfoUnalloc() would have added them.  Falls back to 
+* walking on the calling thread if threads are not available. 
+* @param fsInfos file systems to process
+* @returns TSK_OK on success, TSK_ERR on error (if some or all fs could not be processed)
+*/
+TSK_RETVAL_ENUM TskAutoDb::addUnallocFsSpaceToDbParallel(const vector<TSK_DB_FS_INFO> & fsInfos) {
+    vector<UNALLOC_FS_WALK_JOB> jobs(fsInfos.size());
+    for (size_t i = 0; i < fsInfos.size(); i++) {
+        jobs[i].tskAutoDb = this;
+        jobs[i].dbFsInfo = fsInfos[i];
+        jobs[i].retval = TSK_OK;
+    }
+
+#ifdef TSK_MULTITHREAD_LIB
+#ifdef TSK_WIN32
+    vector<HANDLE> threads(jobs.size(), (HANDLE) NULL);
+    for (size_t i = 0; i < jobs.size(); i++) {
+        threads[i] = CreateThread(NULL, 0, walkFsInfoUnallocThread, &jobs[i], 0, NULL);
+        if (threads[i] == NULL) 
+            walkFsInfoUnalloc(&jobs[i]);
+    }
+    for (size_t i = 0; i < threads.size(); i++) {
+        if (threads[i] != NULL) {
+            WaitForSingleObject(threads[i], INFINITE);
+            CloseHandle(threads[i]);
+        }
+    }
+#else
+    vector<pthread_t> threads(jobs.size());
+    vector<bool> started(jobs.size(), false);
+    for (size_t i = 0; i < jobs.size(); i++) {
+        if (pthread_create(&threads[i], NULL, walkFsInfoUnallocThread, &jobs[i]) == 0) 
+            started[i] = true;
+        else
+            walkFsInfoUnalloc(&jobs[i]);
+    }
+    for (size_t i = 0; i < threads.size(); i++) {
+        if (started[i]) 
+            pthread_join(threads[i], NULL);
+    }
+#endif
+#else
+    for (size_t i = 0; i < jobs.size(); i++) {
+        walkFsInfoUnalloc(&jobs[i]);
+    }
+#endif
+
+    TSK_RETVAL_ENUM allFsProcessRet = TSK_OK;
+    for (size_t i = 0; i < jobs.size(); i++) {
+        if (m_stopAllProcessing) {
+            break;
+        }
+        UNALLOC_FS_WALK_JOB & job = jobs[i];
+        if (job.retval == TSK_ERR) {
+            tsk_error_reset();
+            tsk_error_set_errno(TSK_ERR_AUTO_DB);
+            tsk_error_set_errstr("%s", job.errStr.c_str());
+            registerError();
+            allFsProcessRet = TSK_ERR;
+            continue;
+        }
+
+        if (m_db->addUnallocFsBlockFilesParent(job.dbFsInfo.objId, m_curUnallocDirId) == TSK_ERR) {
+            tsk_error_set_errstr2("addUnallocFsSpaceToDbParallel: error creating dir for unallocated space");
+            registerError();
+            allFsProcessRet = TSK_ERR;
+            continue;
+        }
+
+        for (vector<UNALLOC_CHUNK>::iterator it = job.chunks.begin(); it != job.chunks.end(); ++it) {
+            int64_t fileObjId = 0;
+            if (m_db->addUnallocBlockFile(m_curUnallocDirId, job.dbFsInfo.objId, it->size, it->ranges, fileObjId) == TSK_ERR) {
+                registerError();
+                allFsProcessRet = TSK_ERR;
+                break;
+            }
+        }
+    }
+
+    return allFsProcessRet;
+}
+
 /**
 * Process all unallocated space for this disk image and create "virtual" files with layouts
 * @returns TSK_OK on success, TSK_ERR on error
@@ -906,6 +1100,10 @@ TSK_RETVAL_ENUM TskAutoDb::addUnallocFsSpaceToDb(size_t & numFs) {
 
     numFs = fsInfos.size();
 
+    if (m_parallelUnalloc && fsInfos.size() > 1) {
+        return addUnallocFsSpaceToDbParallel(fsInfos);
+    }
+
     TSK_RETVAL_ENUM allFsProcessRet = TSK_OK;
     for (vector<TSK_DB_FS_INFO>::iterator it = fsInfos.begin(); it!= fsInfos.end(); ++it) {
         if (m_stopAllProcessing) {
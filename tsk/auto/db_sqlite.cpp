@@ -25,7 +25,50 @@ using std::stringstream;
 using std::sort;
 using std::for_each;
 
-#define TSK_SCHEMA_VER 3
+#define TSK_SCHEMA_VER 4
+
+/*
+* The tables, indexes and triggers of schema version 4 that speed up tsk_files
+* lookups. They must match SleuthkitCase.createFileIndexes() in the Java
+* bindings, which adds them to older cases.
+*/
+
+// size class of a file in tsk_files_summary, see CaseSummary.getSizeClassSql()
+#define TSK_FILES_SIZE_CLASS(size) \
+    "CASE WHEN IFNULL(" #size ", 0) < 1 THEN 0 WHEN IFNULL(" #size ", 0) < 1024 THEN 1 " \
+    "WHEN IFNULL(" #size ", 0) < 65536 THEN 2 WHEN IFNULL(" #size ", 0) < 1048576 THEN 3 " \
+    "WHEN IFNULL(" #size ", 0) < 16777216 THEN 4 WHEN IFNULL(" #size ", 0) < 1073741824 THEN 5 ELSE 6 END"
+
+// tsk_files_summary key values of a tsk_files row
+#define TSK_FILES_SUMMARY_KEY(row) \
+    "IFNULL(" #row ".fs_obj_id, -1), IFNULL(" #row ".type, -1), IFNULL(" #row ".meta_type, -1), " \
+    "IFNULL(" #row ".dir_type, -1), IFNULL(" #row ".known, -1), (" #row ".md5 IS NOT NULL), " \
+    TSK_FILES_SIZE_CLASS(row.size)
+
+// condition matching the tsk_files_summary row of a tsk_files row
+#define TSK_FILES_SUMMARY_MATCH(row) \
+    "fs_obj_id = IFNULL(" #row ".fs_obj_id, -1) AND type = IFNULL(" #row ".type, -1) AND " \
+    "meta_type = IFNULL(" #row ".meta_type, -1) AND dir_type = IFNULL(" #row ".dir_type, -1) AND " \
+    "known = IFNULL(" #row ".known, -1) AND hashed = (" #row ".md5 IS NOT NULL) AND " \
+    "size_class = " TSK_FILES_SIZE_CLASS(row.size)
+
+#define TSK_FILES_SUMMARY_ADD_NEW \
+    "INSERT OR IGNORE INTO tsk_files_summary VALUES (" TSK_FILES_SUMMARY_KEY(NEW) ", 0, 0); " \
+    "UPDATE tsk_files_summary SET file_count = file_count + 1, total_size = total_size + IFNULL(NEW.size, 0) " \
+    "WHERE " TSK_FILES_SUMMARY_MATCH(NEW) "; "
+
+#define TSK_FILES_SUMMARY_REMOVE_OLD \
+    "UPDATE tsk_files_summary SET file_count = file_count - 1, total_size = total_size - IFNULL(OLD.size, 0) " \
+    "WHERE " TSK_FILES_SUMMARY_MATCH(OLD) "; "
+
+static const char *TSK_FILES_PATH_INDEX_INSERT_TRIGGER =
+    "CREATE TRIGGER tsk_files_path_index_insert AFTER INSERT ON tsk_files BEGIN "
+    "INSERT INTO tsk_files_path_index (obj_id, fs_obj_id, name_lower, parent_path_lower) "
+    "VALUES (NEW.obj_id, NEW.fs_obj_id, LOWER(NEW.name), LOWER(NEW.parent_path)); END";
+
+static const char *TSK_FILES_SUMMARY_INSERT_TRIGGER =
+    "CREATE TRIGGER tsk_files_summary_insert AFTER INSERT ON tsk_files BEGIN "
+    TSK_FILES_SUMMARY_ADD_NEW "END";
 
 /**
 * Set the locations and logging object.  Must call
@@ -336,6 +379,9 @@ int
     if (createIndexes())
         return 1;
 
+    if (createFileIndexes())
+        return 1;
+
     return 0;
 }
 
@@ -366,6 +412,134 @@ int
 }
 
 
+/**
+* Create the name and path index, the summary and the MD5 index of the
+* tsk_files table, and the triggers that keep the first two up to date.
+* @returns 1 on error, 0 on success
+*/
+int
+    TskDbSqlite::createFileIndexes()
+{
+    return
+        attempt_exec("CREATE TABLE tsk_files_path_index (obj_id INTEGER PRIMARY KEY, fs_obj_id INTEGER, name_lower TEXT, parent_path_lower TEXT);",
+        "Error creating tsk_files_path_index table: %s\n") ||
+        attempt_exec("CREATE INDEX tsk_files_path_index_name ON tsk_files_path_index (fs_obj_id, name_lower);",
+        "Error creating tsk_files_path_index_name index on tsk_files_path_index: %s\n") ||
+        attempt_exec(TSK_FILES_PATH_INDEX_INSERT_TRIGGER,
+        "Error creating tsk_files_path_index_insert trigger: %s\n") ||
+        attempt_exec("CREATE TRIGGER tsk_files_path_index_update AFTER UPDATE OF fs_obj_id, name, parent_path ON tsk_files BEGIN "
+        "UPDATE tsk_files_path_index SET fs_obj_id = NEW.fs_obj_id, name_lower = LOWER(NEW.name), parent_path_lower = LOWER(NEW.parent_path) "
+        "WHERE obj_id = NEW.obj_id; END",
+        "Error creating tsk_files_path_index_update trigger: %s\n") ||
+        attempt_exec("CREATE TRIGGER tsk_files_path_index_delete AFTER DELETE ON tsk_files BEGIN "
+        "DELETE FROM tsk_files_path_index WHERE obj_id = OLD.obj_id; END",
+        "Error creating tsk_files_path_index_delete trigger: %s\n") ||
+        attempt_exec("CREATE TABLE tsk_files_summary (fs_obj_id INTEGER NOT NULL, type INTEGER NOT NULL, "
+        "meta_type INTEGER NOT NULL, dir_type INTEGER NOT NULL, known INTEGER NOT NULL, hashed INTEGER NOT NULL, "
+        "size_class INTEGER NOT NULL, file_count INTEGER NOT NULL, total_size INTEGER NOT NULL, "
+        "PRIMARY KEY (fs_obj_id, type, meta_type, dir_type, known, hashed, size_class));",
+        "Error creating tsk_files_summary table: %s\n") ||
+        attempt_exec(TSK_FILES_SUMMARY_INSERT_TRIGGER,
+        "Error creating tsk_files_summary_insert trigger: %s\n") ||
+        attempt_exec("CREATE TRIGGER tsk_files_summary_update AFTER UPDATE OF fs_obj_id, type, meta_type, dir_type, known, md5, size "
+        "ON tsk_files BEGIN " TSK_FILES_SUMMARY_REMOVE_OLD TSK_FILES_SUMMARY_ADD_NEW "END",
+        "Error creating tsk_files_summary_update trigger: %s\n") ||
+        attempt_exec("CREATE TRIGGER tsk_files_summary_delete AFTER DELETE ON tsk_files BEGIN "
+        TSK_FILES_SUMMARY_REMOVE_OLD "END",
+        "Error creating tsk_files_summary_delete trigger: %s\n") ||
+        attempt_exec("CREATE INDEX tsk_files_md5 ON tsk_files (md5, fs_obj_id, size);",
+        "Error creating tsk_files_md5 index on tsk_files: %s\n");
+}
+
+/**
+* Stop updating the name and path index and the summary of the tsk_files table
+* for each file inserted, so that adding an image is not slowed down by them.
+* Must be called in a transaction, and followed by updateFileIndexes() in the
+* same transaction, which adds the files inserted in between in bulk. The
+* insert triggers are dropped until then; a rollback restores them.
+* Files must not be updated or deleted in between.
+* @param lastObjId (out) the highest object id before the files are inserted,
+* or -1 if the database has no such triggers (an older schema)
+* @returns 1 on error, 0 on success
+*/
+int
+    TskDbSqlite::deferFileIndexes(int64_t & lastObjId)
+{
+    lastObjId = -1;
+    sqlite3_stmt * statement = NULL;
+    if (prepare_stmt("SELECT COUNT(*), (SELECT IFNULL(MAX(obj_id), 0) FROM tsk_objects) FROM sqlite_master "
+        "WHERE type = 'trigger' AND name IN ('tsk_files_path_index_insert', 'tsk_files_summary_insert')",
+        &statement)) {
+            return 1;
+    }
+    if (attempt(sqlite3_step(statement), SQLITE_ROW,
+        "TskDbSqlite::deferFileIndexes: Error selecting insert triggers: %s (result code %d)\n")) {
+            sqlite3_finalize(statement);
+            return 1;
+    }
+    int triggerCount = sqlite3_column_int(statement, 0);
+    int64_t maxObjId = sqlite3_column_int64(statement, 1);
+    sqlite3_finalize(statement);
+
+    if (triggerCount != 2) {
+        return 0;
+    }
+    if (attempt_exec("DROP TRIGGER tsk_files_path_index_insert",
+        "Error dropping tsk_files_path_index_insert trigger: %s\n") ||
+        attempt_exec("DROP TRIGGER tsk_files_summary_insert",
+        "Error dropping tsk_files_summary_insert trigger: %s\n")) {
+            return 1;
+    }
+    lastObjId = maxObjId;
+    return 0;
+}
+
+/**
+* Add the files inserted since deferFileIndexes() to the name and path index
+* and the summary of the tsk_files table, with one statement each, and
+* restore the insert triggers.
+* @param lastObjId the object id returned by deferFileIndexes()
+* @returns 1 on error, 0 on success
+*/
+int
+    TskDbSqlite::updateFileIndexes(int64_t lastObjId)
+{
+    char
+        foo[4096];
+
+    snprintf(foo, sizeof(foo),
+        "INSERT INTO tsk_files_path_index (obj_id, fs_obj_id, name_lower, parent_path_lower) "
+        "SELECT obj_id, fs_obj_id, LOWER(name), LOWER(parent_path) FROM tsk_files WHERE obj_id > %" PRId64,
+        lastObjId);
+    if (attempt_exec(foo, "Error adding files to tsk_files_path_index: %s\n")) {
+        return 1;
+    }
+
+    // add the counts of the new files to those already in the summary
+    snprintf(foo, sizeof(foo),
+        "INSERT OR REPLACE INTO tsk_files_summary "
+        "SELECT d.fs_obj_id, d.type, d.meta_type, d.dir_type, d.known, d.hashed, d.size_class, "
+        "IFNULL(s.file_count, 0) + d.file_count, IFNULL(s.total_size, 0) + d.total_size "
+        "FROM (SELECT fs_obj_id, type, meta_type, dir_type, known, hashed, size_class, COUNT(*) AS file_count, SUM(size) AS total_size "
+        "FROM (SELECT IFNULL(fs_obj_id, -1) AS fs_obj_id, IFNULL(type, -1) AS type, IFNULL(meta_type, -1) AS meta_type, "
+        "IFNULL(dir_type, -1) AS dir_type, IFNULL(known, -1) AS known, (md5 IS NOT NULL) AS hashed, "
+        TSK_FILES_SIZE_CLASS(size) " AS size_class, IFNULL(size, 0) AS size FROM tsk_files WHERE obj_id > %" PRId64 ") "
+        "GROUP BY fs_obj_id, type, meta_type, dir_type, known, hashed, size_class) AS d "
+        "LEFT JOIN tsk_files_summary AS s ON s.fs_obj_id = d.fs_obj_id AND s.type = d.type AND s.meta_type = d.meta_type "
+        "AND s.dir_type = d.dir_type AND s.known = d.known AND s.hashed = d.hashed AND s.size_class = d.size_class",
+        lastObjId);
+    if (attempt_exec(foo, "Error adding files to tsk_files_summary: %s\n")) {
+        return 1;
+    }
+
+    return
+        attempt_exec(TSK_FILES_PATH_INDEX_INSERT_TRIGGER,
+        "Error creating tsk_files_path_index_insert trigger: %s\n") ||
+        attempt_exec(TSK_FILES_SUMMARY_INSERT_TRIGGER,
+        "Error creating tsk_files_summary_insert trigger: %s\n");
+}
+
+
 /*
 * Open the database (will create file if it does not exist).
 * @param a_toInit Set to true if this is a new database that needs to have the tables created
@@ -81,6 +81,15 @@ class TskAutoDb:public TskAuto {
      */
     virtual void setAddUnallocSpace(bool addUnallocSpace, int64_t chunkSize);
 
+    /**
+     * When enabled, the unallocated blocks of each file system are walked 
+     * in a separate thread.  The resulting files are still added to the 
+     * database serially and in file system order. Has no effect if the 
+     * library was built without thread support. Default value is false.
+     * @param parallelUnalloc If true, walk file system unallocated space in parallel.
+     */
+    virtual void setParallelUnallocSpace(bool parallelUnalloc);
+
     uint8_t addFilesInImgToDb();
 
     uint8_t startAddImage(int numImg, const TSK_TCHAR * const imagePaths[],
@@ -111,11 +120,13 @@ class TskAutoDb:public TskAuto {
     bool m_volFound;
     bool m_stopped;
     bool m_imgTransactionOpen;
+    int64_t m_fileIndexLastObjId; ///< highest object id before the add-image files, -1 if the tsk_files indexes are not deferred
     TSK_HDB_INFO * m_NSRLDb;
     TSK_HDB_INFO * m_knownBadDb;
     bool m_noFatFsOrphans;
     bool m_addUnallocSpace;
 	int64_t m_chunkSize;
+    bool m_parallelUnalloc;
     bool m_foundStructure;  ///< Set to true when we find either a volume or file system
     bool m_attributeAdded; ///< Set to true when an attribute was added by processAttributes
 
@@ -123,10 +134,16 @@ class TskAutoDb:public TskAuto {
     TskAutoDb(const TskAutoDb&);
     TskAutoDb & operator=(const TskAutoDb&);
 
+    //internal structure to hold an unalloc file that has been computed but not yet added to the db
+    typedef struct _UNALLOC_CHUNK {
+        int64_t size;
+        vector<TSK_DB_FILE_LAYOUT_RANGE> ranges;
+    } UNALLOC_CHUNK;
+
     //internal structure to keep track of temp. unalloc block range
     typedef struct _UNALLOC_BLOCK_WLK_TRACK {
-        _UNALLOC_BLOCK_WLK_TRACK(const TskAutoDb & tskAutoDb, const TSK_FS_INFO & fsInfo, const int64_t fsObjId, int64_t chunkSize)
-            : tskAutoDb(tskAutoDb),fsInfo(fsInfo),fsObjId(fsObjId),curRangeStart(0), chunkSize(chunkSize), prevBlock(0), isStart(true) {}
+        _UNALLOC_BLOCK_WLK_TRACK(const TskAutoDb & tskAutoDb, const TSK_FS_INFO & fsInfo, const int64_t fsObjId, int64_t chunkSize, vector<UNALLOC_CHUNK> * chunks = NULL)
+            : tskAutoDb(tskAutoDb),fsInfo(fsInfo),fsObjId(fsObjId),curRangeStart(0), chunkSize(chunkSize), prevBlock(0), isStart(true), chunks(chunks) {}
         const TskAutoDb & tskAutoDb;
         const TSK_FS_INFO & fsInfo;
         const int64_t fsObjId;
@@ -136,8 +153,18 @@ class TskAutoDb:public TskAuto {
 		const int64_t chunkSize;
         TSK_DADDR_T prevBlock;
         bool isStart;
+        vector<UNALLOC_CHUNK> * chunks; ///< If not NULL, completed chunks are collected here instead of being added to the db
     } UNALLOC_BLOCK_WLK_TRACK;
 
+    //internal structure for walking the unalloc blocks of one fs on a worker thread
+    typedef struct _UNALLOC_FS_WALK_JOB {
+        TskAutoDb * tskAutoDb;
+        TSK_DB_FS_INFO dbFsInfo;
+        vector<UNALLOC_CHUNK> chunks;
+        TSK_RETVAL_ENUM retval;
+        string errStr;
+    } UNALLOC_FS_WALK_JOB;
+
     uint8_t addImageDetails(const char *const images[], int);
     TSK_RETVAL_ENUM insertFileData(TSK_FS_FILE * fs_file,
         const TSK_FS_ATTR *, const char *path,
@@ -152,6 +179,15 @@ class TskAutoDb:public TskAuto {
 
     static TSK_WALK_RET_ENUM fsWalkUnallocBlocksCb(const TSK_FS_BLOCK *a_block, void *a_ptr);
     TSK_RETVAL_ENUM addFsInfoUnalloc(const TSK_DB_FS_INFO & dbFsInfo);
+    static void walkFsInfoUnalloc(UNALLOC_FS_WALK_JOB * a_job);
+#ifdef TSK_MULTITHREAD_LIB
+#ifdef TSK_WIN32
+    static DWORD WINAPI walkFsInfoUnallocThread(LPVOID a_job);
+#else
+    static void *walkFsInfoUnallocThread(void *a_job);
+#endif
+#endif
+    TSK_RETVAL_ENUM addUnallocFsSpaceToDbParallel(const vector<TSK_DB_FS_INFO> & fsInfos);
     TSK_RETVAL_ENUM addUnallocFsSpaceToDb(size_t & numFs);
     TSK_RETVAL_ENUM addUnallocVsSpaceToDb(size_t & numVsP);
     TSK_RETVAL_ENUM addUnallocImageSpaceToDb();
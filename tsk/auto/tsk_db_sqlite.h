@@ -196,6 +196,8 @@ class TskDbSqlite {
     int revertSavepoint(const char *name);
     int releaseSavepoint(const char *name);
     bool inTransaction();
+    int deferFileIndexes(int64_t & lastObjId);
+    int updateFileIndexes(int64_t lastObjId);
 
     //query methods / getters
     TSK_RETVAL_ENUM getFileLayouts(vector<TSK_DB_FILE_LAYOUT_RANGE> & fileLayouts);
@@ -217,6 +219,7 @@ class TskDbSqlite {
     int setupFilePreparedStmt();
     void cleanupFilePreparedStmt();
     int createIndexes();
+    int createFileIndexes();
     int attempt(int resultCode, const char *errfmt);
     int attempt(int resultCode, int expectedResultCode,
         const char *errfmt);